@@ -1,8 +1,11 @@
 package dk.drb.blacktiger.config;
 
 import com.thetransactioncompany.cors.CORSFilter;
+import dk.drb.blacktiger.security.AuthTokenService;
+import dk.drb.blacktiger.security.CachingAuthenticationProvider;
 import dk.drb.blacktiger.security.RestAuthenticationEntryPoint;
 import dk.drb.blacktiger.security.StoredProcedureAuthenticationProvider;
+import dk.drb.blacktiger.security.TokenAuthenticationFilter;
 import dk.drb.blacktiger.util.SimpleFilterConfig;
 import java.util.HashMap;
 import java.util.Map;
@@ -18,12 +21,14 @@ import org.springframework.context.annotation.Import;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.core.env.Environment;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.authentication.configurers.provisioning.InMemoryUserDetailsManagerConfigurer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.web.access.channel.ChannelProcessingFilter;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 
 /**
  * Configuration Entry Point for the application.
@@ -41,6 +46,9 @@ public class AppConfig extends WebSecurityConfigurerAdapter {
     @Autowired
     private DataSource asteriskDataSource;
     
+    @Autowired
+    private AuthTokenService authTokenService;
+    
     @Resource
     private Environment env;
     
@@ -51,10 +59,23 @@ public class AppConfig extends WebSecurityConfigurerAdapter {
         return super.authenticationManagerBean();
     }
     
+    @Bean
+    public CachingAuthenticationProvider hallAuthenticationProvider() {
+        StoredProcedureAuthenticationProvider spap = new StoredProcedureAuthenticationProvider();
+        spap.setDataSource(asteriskDataSource);
+        spap.setEncryptionKey(env.getProperty(PROPERTY_ENCRYPTION_KEY));
+        
+        int cacheSize = env.getProperty("auth.cache.size", Integer.class, 1000);
+        long cacheTtl = env.getProperty("auth.cache.ttl", Long.class, 60L);
+        LOG.info("Caching authentications [size={};ttl={}]", cacheSize, cacheTtl);
+        return new CachingAuthenticationProvider(spap, cacheSize, cacheTtl);
+    }
+    
     @Override
     protected void configure(HttpSecurity http) throws Exception {
         LOG.info("Configuring HTTPSecurity");
         http.addFilterBefore(getCorsFilter(), ChannelProcessingFilter.class)
+                .addFilterBefore(new TokenAuthenticationFilter(authTokenService, new RestAuthenticationEntryPoint()), BasicAuthenticationFilter.class)
                 .authorizeRequests().antMatchers("/system/passwordRequests").permitAll()
                 .and().authorizeRequests().antMatchers("/system/authenticate").authenticated()
                 .and().authorizeRequests().antMatchers("/rooms/**").authenticated()
@@ -69,9 +90,7 @@ public class AppConfig extends WebSecurityConfigurerAdapter {
     @Override
     protected void configure(AuthenticationManagerBuilder auth) throws Exception {
         LOG.info("Configuring authentication manager.");
-        StoredProcedureAuthenticationProvider spap = new StoredProcedureAuthenticationProvider();
-        spap.setDataSource(asteriskDataSource);
-        spap.setEncryptionKey(env.getProperty(PROPERTY_ENCRYPTION_KEY));
+        AuthenticationProvider hallProvider = hallAuthenticationProvider();
         
         String adminCredentialString = env.getProperty("admin.credentials");
         if(adminCredentialString != null && !"".equals(adminCredentialString)) {
@@ -85,7 +104,7 @@ public class AppConfig extends WebSecurityConfigurerAdapter {
                 }
             }
             
-            configurer.and().authenticationProvider(spap);
+            configurer.and().authenticationProvider(hallProvider);
             
         }
         
@@ -26,6 +26,14 @@ public class AsteriskConfig {
         String host = env.getProperty("asterisk.host");
         String user = env.getProperty("asterisk.username");
         String pass = env.getProperty("asterisk.password");
+        return createServer(host, user, pass);
+    }
+    
+    /**
+     * Creates a connection to an Asterisk server. Used for the single server above as well as for each server when
+     * rooms are spread over several servers.
+     */
+    public static AsteriskServer createServer(String host, String user, String pass) {
         LOG.info("Creating server connection [host={};user={}]", host, user);
         DefaultAsteriskServer server = new DefaultAsteriskServer(host, user, pass);
         server.getManagerConnection().registerUserEventClass(ConfbridgeListEvent.class);
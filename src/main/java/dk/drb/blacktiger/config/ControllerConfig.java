@@ -1,7 +1,13 @@
 package dk.drb.blacktiger.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.List;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.security.config.annotation.web.servlet.configuration.EnableWebMvcSecurity;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
@@ -11,16 +17,32 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter
  * Configuration for Spring MVC Controllers.
  * This configuration class will scan for REST controllers and enable Spring Security Annotations for those.
  * It will also make sure that requests matching /static/** gets static content served directly.
+ * The Jackson mapper used for JSON responses is a bean, so controllers writing JSON to the response themselves give the
+ * same output.
  */
 @Configuration
 @ComponentScan("dk.drb.blacktiger.controller.rest") 
 @EnableWebMvc
 public class ControllerConfig extends WebMvcConfigurerAdapter {
 
+    @Bean
+    public ObjectMapper objectMapper() {
+        return Jackson2ObjectMapperBuilder.json().build();
+    }
+
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
         registry.addResourceHandler("/static/**").addResourceLocations("/static/");
     }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        for (HttpMessageConverter<?> converter : converters) {
+            if (converter instanceof MappingJackson2HttpMessageConverter) {
+                ((MappingJackson2HttpMessageConverter) converter).setObjectMapper(objectMapper());
+            }
+        }
+    }
     
     
 }
@@ -2,6 +2,7 @@ package dk.drb.blacktiger.config;
 
 import com.jolbox.bonecp.BoneCPConfig;
 import com.jolbox.bonecp.BoneCPDataSource;
+import java.util.Properties;
 import java.util.concurrent.TimeUnit;
 import javax.sql.DataSource;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,6 +32,28 @@ public class DatasourceConfig {
         return config;
     }
     
+    /**
+     * Properties for the MySQL driver. The repositories call stored procedures, and without caching the driver reads the
+     * procedure metadata from the server on every call. The caches are kept by the driver for each connection, so a
+     * statement is parsed and its metadata read once per pooled connection. BoneCP connects with these properties alone
+     * when they are given, so they hold the user and password as well.
+     */
+    private Properties getDriverProperties() {
+        Properties properties = new Properties();
+        if (env.getProperty("asteriskjdbc.username") != null) {
+            properties.setProperty("user", env.getProperty("asteriskjdbc.username"));
+        }
+        if (env.getProperty("asteriskjdbc.password") != null) {
+            properties.setProperty("password", env.getProperty("asteriskjdbc.password"));
+        }
+        properties.setProperty("cacheCallableStmts", "true");
+        properties.setProperty("callableStmtCacheSize", "100");
+        properties.setProperty("cachePrepStmts", "true");
+        properties.setProperty("prepStmtCacheSize", "250");
+        properties.setProperty("prepStmtCacheSqlLimit", "2048");
+        return properties;
+    }
+    
     @Bean(name = "asteriskDatasource")
     public DataSource asteriskDataSource() {
         BoneCPDataSource source = new BoneCPDataSource(getDefaulBoneCpConfig());
@@ -38,6 +61,7 @@ public class DatasourceConfig {
         source.setJdbcUrl(env.getProperty("asteriskjdbc.url"));
         source.setUsername(env.getProperty("asteriskjdbc.username"));
         source.setPassword(env.getProperty("asteriskjdbc.password"));
+        source.setDriverProperties(getDriverProperties());
         return source;
     }
 }
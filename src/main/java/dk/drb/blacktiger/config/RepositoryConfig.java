@@ -6,7 +6,12 @@ import dk.drb.blacktiger.repository.ContactRepository;
 import dk.drb.blacktiger.repository.PhonebookRepository;
 import dk.drb.blacktiger.repository.RoomInfoRepository;
 import dk.drb.blacktiger.repository.SipAccountRepository;
+import dk.drb.blacktiger.repository.asterisk.AmiActionClient;
 import dk.drb.blacktiger.repository.asterisk.Asterisk11ConfbridgeRepository;
+import dk.drb.blacktiger.repository.asterisk.RoomShardMapping;
+import dk.drb.blacktiger.repository.asterisk.ShardedConfbridgeRepository;
+import dk.drb.blacktiger.repository.cache.CachingPhonebookRepository;
+import dk.drb.blacktiger.repository.jdbc.HallInfoLoader;
 import dk.drb.blacktiger.repository.jdbc.JdbcPhonebookRepository;
 import dk.drb.blacktiger.repository.jdbc.JdbcCallInformationRepository;
 import dk.drb.blacktiger.repository.jdbc.JdbcContactRepository;
@@ -18,6 +23,13 @@ import dk.drb.blacktiger.repository.memory.InMemPhonebookRepository;
 import dk.drb.blacktiger.repository.memory.InMemSipAccountRepository;
 import dk.drb.blacktiger.repository.memory.InMemoryContactRepository;
 import dk.drb.blacktiger.repository.memory.InMemoryRoomInfoRepository;
+import dk.drb.blacktiger.repository.rest.RestConferenceRoomRepository;
+import dk.drb.blacktiger.util.BoundedEventQueue.OverflowPolicy;
+import dk.drb.blacktiger.util.ShardedExecutor;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import javax.annotation.PostConstruct;
 import javax.sql.DataSource;
 import org.asteriskjava.live.AsteriskServer;
@@ -29,6 +41,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
@@ -71,6 +84,11 @@ public class RepositoryConfig {
             JdbcCallInformationRepository repository = new JdbcCallInformationRepository();
             repository.setDataSource(asteriskDataSource);
             repository.setEncryptionKey(encryptionKey);
+            repository.setActionLogCapacity(env.getProperty("actionlog.capacity", Integer.class, 10000));
+            repository.setActionLogBatchSize(env.getProperty("actionlog.batchSize", Integer.class, 100));
+            repository.setActionLogFlushInterval(env.getProperty("actionlog.flushInterval", Long.class, 1000L));
+            repository.setReportFetchSize(env.getProperty("cdr.fetchSize", Integer.class, Integer.MIN_VALUE));
+            repository.setRoomColumn(env.getProperty("cdr.roomColumn", Boolean.class, false));
             return repository;
         }
     }
@@ -86,7 +104,11 @@ public class RepositoryConfig {
             repo.setDataSource(asteriskDataSource);
             repo.setEncryptionKey(encryptionKey);
             LOG.info("Creating JdbcPhonebookRepository instance [datasource={};encryptionKey={}]", asteriskDataSource != null, encryptionKey != null);
-            return repo;
+            
+            int cacheSize = env.getProperty("phonebook.cache.size", Integer.class, 10000);
+            long cacheTtl = env.getProperty("phonebook.cache.ttl", Long.class, 300L);
+            LOG.info("Caching phonebook lookups [size={};ttl={}]", cacheSize, cacheTtl);
+            return new CachingPhonebookRepository(repo, cacheSize, cacheTtl);
         }
     }
     
@@ -96,13 +118,71 @@ public class RepositoryConfig {
             LOG.info("** USING InMemConferenceRoomRepository FOR TEST **");
             return new InMemConferenceRoomRepository();
         } else {
-            Asterisk11ConfbridgeRepository repo = new Asterisk11ConfbridgeRepository();
+            if (isFrontEnd(env)) {
+                String producerUrl = env.getProperty("events.producer.url");
+                if (producerUrl == null || producerUrl.trim().isEmpty()) {
+                    throw new IllegalStateException("events.producer.url must be specified when events.producer is false.");
+                }
+                LOG.info("Reading rooms from the producer instead of Asterisk [url={}]", producerUrl);
+                return new RestConferenceRoomRepository(producerUrl.trim());
+            }
+            
+            String servers = env.getProperty("asterisk.servers");
+            if (servers != null && !servers.trim().isEmpty()) {
+                return shardedConferenceRoomRepository(Arrays.asList(servers.trim().split("\\s*,\\s*")));
+            }
+            
+            Asterisk11ConfbridgeRepository repo = createConfbridgeRepository();
             asteriskServer.initialize();
             repo.setAsteriskServer(asteriskServer);
             return repo;
         }
     }
     
+    /**
+     * Tells whether this node only serves clients while another node, the producer, is connected to Asterisk. That is
+     * the case when subscriptions are relayed to an external broker and <code>events.producer</code> is false.
+     */
+    static boolean isFrontEnd(Environment env) {
+        return "relay".equalsIgnoreCase(env.getProperty("websocket.broker", "simple")) 
+                && !env.getProperty("events.producer", Boolean.class, true);
+    }
+    
+    private ConferenceRoomRepository shardedConferenceRoomRepository(List<String> servers) {
+        String mapping = env.getProperty("asterisk.shards.mapping");
+        LOG.info("Spreading rooms over several servers [servers={};mapping={}]", servers, mapping);
+        Map<String, Asterisk11ConfbridgeRepository> shards = new LinkedHashMap<>();
+        for (String id : servers) {
+            AsteriskServer server = AsteriskConfig.createServer(env.getProperty("asterisk." + id + ".host"), 
+                    env.getProperty("asterisk." + id + ".username"), env.getProperty("asterisk." + id + ".password"));
+            Asterisk11ConfbridgeRepository repo = createConfbridgeRepository();
+            server.initialize();
+            repo.setAsteriskServer(server);
+            shards.put(id, repo);
+        }
+        return new ShardedConfbridgeRepository(shards, RoomShardMapping.parse(mapping, servers));
+    }
+    
+    private Asterisk11ConfbridgeRepository createConfbridgeRepository() {
+        int eventQueueCapacity = env.getProperty("asterisk.eventQueue.capacity", Integer.class, Asterisk11ConfbridgeRepository.DEFAULT_EVENT_QUEUE_CAPACITY);
+        OverflowPolicy overflowPolicy = OverflowPolicy.valueOf(env.getProperty("asterisk.eventQueue.overflowPolicy", 
+                Asterisk11ConfbridgeRepository.DEFAULT_OVERFLOW_POLICY.name()));
+        Asterisk11ConfbridgeRepository repo = new Asterisk11ConfbridgeRepository(eventQueueCapacity, overflowPolicy);
+        repo.setEventDispatcher(conferenceEventDispatcher());
+        repo.setActionClient(new AmiActionClient(env.getProperty("asterisk.actions.maxInFlight", Integer.class, AmiActionClient.DEFAULT_MAX_IN_FLIGHT),
+                env.getProperty("asterisk.actions.timeout", Long.class, AmiActionClient.DEFAULT_TIMEOUT)));
+        repo.setListTimeout(env.getProperty("asterisk.list.timeout", Long.class, Asterisk11ConfbridgeRepository.DEFAULT_LIST_TIMEOUT));
+        repo.setListRetries(env.getProperty("asterisk.list.retries", Integer.class, Asterisk11ConfbridgeRepository.DEFAULT_LIST_RETRIES));
+        return repo;
+    }
+    
+    @Bean(destroyMethod = "shutdown")
+    public ShardedExecutor conferenceEventDispatcher() {
+        int shards = env.getProperty("events.dispatcherThreads", Integer.class, Runtime.getRuntime().availableProcessors() * 2);
+        LOG.info("Creating event dispatcher [threads={}]", shards);
+        return new ShardedExecutor(shards, "conference-events");
+    }
+    
     @Bean
     public SipAccountRepository sipAccountRepository() {
         if(test) {
@@ -118,6 +198,14 @@ public class RepositoryConfig {
         }
     }
     
+    @Bean(destroyMethod = "shutdown")
+    public HallInfoLoader hallInfoLoader() {
+        long ttl = env.getProperty("hallinfo.cache.ttl", Long.class, 3600L);
+        long refreshInterval = env.getProperty("hallinfo.cache.refreshInterval", Long.class, 300L);
+        LOG.info("Creating HallInfoLoader [ttl={};refreshInterval={}]", ttl, refreshInterval);
+        return new HallInfoLoader(new JdbcTemplate(asteriskDataSource), env.getProperty("encryptionKey"), ttl, refreshInterval);
+    }
+    
     @Bean
     public ContactRepository contactRepository() {
         if(test) {
@@ -128,6 +216,7 @@ public class RepositoryConfig {
             JdbcContactRepository repo = new JdbcContactRepository();
             repo.setDataSource(asteriskDataSource);
             repo.setEncryptionKey(encryptionKey);
+            repo.setHallInfoLoader(hallInfoLoader());
             LOG.info("Creating JdbcContactRepository instance [datasource={};encryptionKey={}]", asteriskDataSource != null, encryptionKey != null);
             return repo;
         }
@@ -143,6 +232,7 @@ public class RepositoryConfig {
             JdbcRoomInfoRepository repo = new JdbcRoomInfoRepository();
             repo.setDataSource(asteriskDataSource);
             repo.setEncryptionKey(encryptionKey);
+            repo.setHallInfoLoader(hallInfoLoader());
             LOG.info("Creating JdbcRoomInfoRepository instance [datasource={};encryptionKey={}]", asteriskDataSource != null, encryptionKey != null);
             return repo;
         }
@@ -1,14 +1,21 @@
 package dk.drb.blacktiger.config;
 
+import dk.drb.blacktiger.security.AuthTokenService;
 import dk.drb.blacktiger.service.CallInformationService;
 import dk.drb.blacktiger.service.ConferenceService;
 import dk.drb.blacktiger.service.PhonebookService;
+import dk.drb.blacktiger.service.RoomStateService;
 import dk.drb.blacktiger.service.SipAccountService;
+import dk.drb.blacktiger.service.SummaryHistoryService;
 import dk.drb.blacktiger.service.SummaryService;
 import dk.drb.blacktiger.service.SystemService;
+import javax.annotation.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
+import org.springframework.core.env.Environment;
 
 /**
  * Configuration for Service classes.
@@ -17,15 +24,24 @@ import org.springframework.context.annotation.Import;
 @Import({RepositoryConfig.class})
 public class ServiceConfig {
     
+    private static final Logger LOG = LoggerFactory.getLogger(ServiceConfig.class);
+    
+    @Resource
+    private Environment env;
+    
     @Bean
     public CallInformationService callInformationService() {
         return new CallInformationService();
     }
 
+    /**
+     * Muteness is kept by the node connected to Asterisk. A front-end node gets participants with their muteness from
+     * the producer, and would otherwise override it with a state it never receives events for.
+     */
     @Bean
     public ConferenceService conferenceService() {
         ConferenceService service = new ConferenceService();
-        service.setHandleMuteness(true);
+        service.setHandleMuteness(!RepositoryConfig.isFrontEnd(env));
         return service;
     }
 
@@ -42,8 +58,28 @@ public class ServiceConfig {
         return new SummaryService();
     }
     
+    @Bean SummaryHistoryService summaryHistoryService() {
+        String series = env.getProperty("summary.history.series", SummaryHistoryService.DEFAULT_SERIES);
+        LOG.info("Keeping summary history [series={}]", series);
+        return new SummaryHistoryService(SummaryHistoryService.parseSeries(series));
+    }
+    
+    @Bean
+    public RoomStateService roomStateService() {
+        int replaySize = env.getProperty("rooms.state.replaySize", Integer.class, RoomStateService.DEFAULT_REPLAY_SIZE);
+        LOG.info("Streaming room state [replaySize={}]", replaySize);
+        return new RoomStateService(replaySize);
+    }
+    
     @Bean SystemService systemService() {
         return new SystemService();
     }
     
+    @Bean
+    public AuthTokenService authTokenService() {
+        long ttl = env.getProperty("auth.token.ttl", Long.class, 900L);
+        LOG.info("Issuing authentication tokens [ttl={}]", ttl);
+        return new AuthTokenService(env.getProperty("auth.token.secret"), ttl);
+    }
+    
 }
@@ -1,10 +1,22 @@
 package dk.drb.blacktiger.config;
 
+import dk.drb.blacktiger.controller.websocket.BrokerSettings;
+import dk.drb.blacktiger.security.AuthTokenService;
+import dk.drb.blacktiger.security.TokenChannelInterceptor;
+import dk.drb.blacktiger.util.EventBatcher;
 import dk.drb.blacktiger.util.EventConverter;
+import dk.drb.blacktiger.util.ShardedExecutor;
 import java.util.List;
+import javax.annotation.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
 import org.springframework.context.annotation.Import;
+import org.springframework.core.env.Environment;
 import org.springframework.messaging.converter.MessageConverter;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
@@ -15,6 +27,11 @@ import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 
 /**
  * Configuration for WebSocket controller.
+ * <p>
+ * Subscriptions are handled by a simple broker in this node, unless <code>websocket.broker</code> is
+ * <code>relay</code>. Then they are relayed to an external STOMP broker, so that several nodes can serve WebSocket
+ * clients, and only the node with <code>events.producer</code> set to true publishes conference events. The other nodes
+ * do not connect to Asterisk, but read rooms from the producer at <code>events.producer.url</code>.</p>
  */
 @Configuration
 @EnableScheduling
@@ -23,6 +40,47 @@ import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 @EnableWebSocketMessageBroker
 public class WebsocketConfig extends AbstractWebSocketMessageBrokerConfigurer {
 
+    private static final Logger LOG = LoggerFactory.getLogger(WebsocketConfig.class);
+
+    @Resource
+    private Environment env;
+
+    @Autowired
+    private AuthTokenService authTokenService;
+
+    @Autowired
+    private ShardedExecutor conferenceEventDispatcher;
+
+    /**
+     * Batching of events is disabled unless <code>events.batch.window</code> is set to a number of milliseconds. Batches
+     * are sent on the shard of their room in the conference event dispatcher, which is therefore stopped after the
+     * batcher.
+     */
+    @Bean(destroyMethod = "shutdown")
+    @DependsOn("conferenceEventDispatcher")
+    public EventBatcher eventBatcher() {
+        long window = env.getProperty("events.batch.window", Long.class, 0L);
+        int maxSize = env.getProperty("events.batch.maxSize", Integer.class, 100);
+        LOG.info("Creating event batcher [window={};maxSize={}]", window, maxSize);
+        return new EventBatcher(window, maxSize, conferenceEventDispatcher);
+    }
+
+    @Bean
+    public BrokerSettings brokerSettings() {
+        if (!isRelay()) {
+            return new BrokerSettings();
+        }
+        
+        String prefix = env.getProperty("websocket.broker.destinationPrefix", "/topic/");
+        boolean producer = env.getProperty("events.producer", Boolean.class, true);
+        LOG.info("Publishing events through broker relay [prefix={};producer={}]", prefix, producer);
+        return new BrokerSettings(prefix, producer);
+    }
+
+    private boolean isRelay() {
+        return "relay".equalsIgnoreCase(env.getProperty("websocket.broker", "simple"));
+    }
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry r) {
         r.addEndpoint("/socket").setAllowedOrigins("*");
@@ -30,6 +88,7 @@ public class WebsocketConfig extends AbstractWebSocketMessageBrokerConfigurer {
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.setInterceptors(new TokenChannelInterceptor(authTokenService));
     }
 
     @Override
@@ -48,7 +107,22 @@ public class WebsocketConfig extends AbstractWebSocketMessageBrokerConfigurer {
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
-        registry.enableSimpleBroker("/queue/"); // destination prefix
+        if (isRelay()) {
+            String host = env.getProperty("websocket.broker.host", "localhost");
+            int port = env.getProperty("websocket.broker.port", Integer.class, 61613);
+            String login = env.getProperty("websocket.broker.login", "guest");
+            String passcode = env.getProperty("websocket.broker.passcode", "guest");
+            LOG.info("Relaying subscriptions to STOMP broker [host={};port={}]", host, port);
+            registry.enableStompBrokerRelay("/queue/", "/topic/")
+                    .setRelayHost(host)
+                    .setRelayPort(port)
+                    .setClientLogin(login)
+                    .setClientPasscode(passcode)
+                    .setSystemLogin(login)
+                    .setSystemPasscode(passcode);
+        } else {
+            registry.enableSimpleBroker("/queue/"); // destination prefix
+        }
         registry.setApplicationDestinationPrefixes("/rooms");
     }
 }
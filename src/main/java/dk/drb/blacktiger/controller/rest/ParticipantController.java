@@ -55,6 +55,30 @@ public class ParticipantController {
         service.kickParticipant(roomNo, channel);
     }
 
+    /**
+     * Mutes several participants at once. The body is a list of channels. Without a body all participants except hosts
+     * are muted.
+     * @return The channels muted.
+     */
+    @RequestMapping(value = "/rooms/{roomNo}/participants/mute", method = RequestMethod.POST, headers = "Accept=application/json")
+    @ResponseBody
+    public List<String> muteParticipants(@PathVariable final String roomNo, @RequestBody(required = false) List<String> channels) {
+        LOG.debug("Muting participants in room [room={};channels={}].", roomNo, channels);
+        return service.muteParticipants(roomNo, channels);
+    }
+
+    /**
+     * Unmutes several participants at once. The body is a list of channels. Without a body all participants except hosts
+     * are unmuted.
+     * @return The channels unmuted.
+     */
+    @RequestMapping(value = "/rooms/{roomNo}/participants/unmute", method = RequestMethod.POST, headers = "Accept=application/json")
+    @ResponseBody
+    public List<String> unmuteParticipants(@PathVariable final String roomNo, @RequestBody(required = false) List<String> channels) {
+        LOG.debug("Unmuting participants in room [room={};channels={}].", roomNo, channels);
+        return service.unmuteParticipants(roomNo, channels);
+    }
+
     @RequestMapping(value = "/rooms/{roomNo}/participants/{channel}", method = {RequestMethod.PUT, RequestMethod.PATCH})
     @ResponseStatus(value = HttpStatus.OK)
     public void patchParticipant(@PathVariable final String roomNo, @PathVariable final String channel, @RequestBody Participant participant) {
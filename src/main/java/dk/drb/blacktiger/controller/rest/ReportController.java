@@ -1,47 +1,79 @@
 package dk.drb.blacktiger.controller.rest;
 
+import java.io.IOException;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.List;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import dk.drb.blacktiger.model.CallInformation;
 import dk.drb.blacktiger.service.CallInformationService;
+import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.lang.time.DateUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.bind.annotation.ResponseBody;
 
 /**
  * Controller for retrieving reports.
+ * <p>
+ * Reports are written to the response one call at a time as they are read. Without a limit the whole report is written
+ * as an array. With a limit a page is written as an object holding the calls in <code>items</code> and the cursor for
+ * the next page in <code>next</code>, which is null on the last page.</p>
  */
 @Controller
 public class ReportController {
 
     @Autowired
     private CallInformationService service;
-    
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @RequestMapping("/reports/{roomNo}")
-    @ResponseBody
-    public List<CallInformation> get(@PathVariable String roomNo, @RequestParam(defaultValue = "0") int hourStart, 
-        @RequestParam(defaultValue = "23") int hourEnd, @RequestParam(defaultValue = "0") int duration, 
-        @RequestParam(required = false) String[] numbers) {
-        return resolveCallInformations(roomNo, hourStart, hourEnd, duration, numbers);
-    }
-    
-    
-    private List<CallInformation> resolveCallInformations(String roomNo, int hourStart, int hourEnd, int duration, String[] numbers) {
+    public void get(@PathVariable String roomNo, @RequestParam(defaultValue = "0") int hourStart,
+        @RequestParam(defaultValue = "23") int hourEnd, @RequestParam(defaultValue = "0") int duration,
+        @RequestParam(required = false) String[] numbers, @RequestParam(required = false) String after,
+        @RequestParam(defaultValue = "0") int limit, HttpServletResponse response) throws IOException {
         Date dateStart = DateUtils.truncate(new Date(), Calendar.HOUR_OF_DAY);
         Date dateEnd = DateUtils.truncate(new Date(), Calendar.HOUR_OF_DAY);
         int durationInSeconds = duration*60;
-        
+
         //Adjust dates
         dateStart = DateUtils.setHours(dateStart, hourStart);
         dateEnd = DateUtils.setHours(dateEnd, hourEnd);
-        
-        return service.getReport(roomNo, dateStart, dateEnd, durationInSeconds, numbers);
+
+        response.setContentType("application/json;charset=UTF-8");
+        final JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream(), JsonEncoding.UTF8);
+        if(limit > 0) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("items");
+        } else {
+            generator.writeStartArray();
+        }
+
+        String next = service.streamReport(roomNo, dateStart, dateEnd, durationInSeconds, numbers, after, limit,
+                new CallInformationService.ReportHandler() {
+
+            @Override
+            public void onCall(CallInformation callInformation) {
+                try {
+                    generator.writeObject(callInformation);
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        });
+
+        generator.writeEndArray();
+        if(limit > 0) {
+            generator.writeStringField("next", next);
+            generator.writeEndObject();
+        }
+        // Only closed on success, so a failure before anything has been flushed can still be sent as an error.
+        generator.close();
     }
-    
+
 }
@@ -2,9 +2,16 @@ package dk.drb.blacktiger.controller.rest;
 
 import java.util.List;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dk.drb.blacktiger.model.Participant;
 import dk.drb.blacktiger.model.Room;
 import dk.drb.blacktiger.service.ConferenceService;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import javax.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -25,31 +32,46 @@ public class RoomController {
     private static final Logger LOG = LoggerFactory.getLogger(RoomController.class);
     private static final String MODE_FULL = "full";
     private final ConferenceService service;
+    private final ObjectMapper objectMapper;
     
     
     /**
      * Constructor for new instance of RoomController.
      *
      * @param service The service which is to be used by the RoomController.
+     * @param objectMapper The mapper used for JSON written directly to the response.
      */
     @Autowired
-    public RoomController(ConferenceService service) {
+    public RoomController(ConferenceService service, ObjectMapper objectMapper) {
         this.service = service;
+        this.objectMapper = objectMapper;
     }
 
     @RequestMapping("/rooms")
     @ResponseBody
-    public List getRooms(String mode) {
+    public List<Room> getRooms() {
         LOG.debug("Got request for all available rooms.");
+        return service.listRooms();
+    }
+    
+    /**
+     * Writes all rooms with their participants directly to the response, one room at a time, instead of building the
+     * whole document in memory first.
+     */
+    @RequestMapping(value = "/rooms", params = "mode=" + MODE_FULL)
+    public void getRoomsWithParticipants(HttpServletResponse response) throws IOException {
+        LOG.debug("Got request for all available rooms with participants.");
+        List<Room> rooms = service.listRooms();
+        Map<String, List<Participant>> participants = service.listParticipants(rooms);
         
-        if(MODE_FULL.equalsIgnoreCase(mode)) {
-            List<RoomWithParticipants> rooms = new ArrayList<>();
-            for(Room room : service.listRooms()) {
-                rooms.add(new RoomWithParticipants(room, service.listParticipants(room.getId())));
+        response.setContentType("application/json;charset=UTF-8");
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream(), JsonEncoding.UTF8)) {
+            generator.writeStartArray();
+            for(Room room : rooms) {
+                List<Participant> list = participants.get(room.getId());
+                generator.writeObject(new RoomWithParticipants(room, list == null ? Collections.<Participant>emptyList() : list));
             }
-            return rooms;
-        } else {
-            return service.listRooms();
+            generator.writeEndArray();
         }
     }
     
@@ -3,18 +3,24 @@ package dk.drb.blacktiger.controller.rest;
 import dk.drb.blacktiger.controller.rest.model.ResourceNotFoundException;
 import dk.drb.blacktiger.controller.rest.model.SendPasswordRequest;
 import dk.drb.blacktiger.controller.rest.model.UserPresentation;
+import dk.drb.blacktiger.security.AuthTokenService;
+import dk.drb.blacktiger.security.TokenAuthentication;
+import dk.drb.blacktiger.service.SummaryHistoryService;
 import dk.drb.blacktiger.service.SummaryService;
 import dk.drb.blacktiger.service.SystemService;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
 /**
@@ -31,6 +37,12 @@ public class SystemController {
     @Autowired
     private SummaryService summaryService;
     
+    @Autowired
+    private SummaryHistoryService summaryHistoryService;
+    
+    @Autowired(required = false)
+    private AuthTokenService tokenService;
+    
     @RequestMapping(value = "/system/information", headers = "Accept=application/json")
     @ResponseBody
     public Map getInformation() {
@@ -62,10 +74,44 @@ public class SystemController {
        return summaryService.getSummary();
     }
     
+    /**
+     * Retrieves the history of the summary for a region.
+     * @param region The region, defaults to all.
+     * @param from Start time in milliseconds since epoch, defaults to one hour ago.
+     * @param to End time in milliseconds since epoch, defaults to now.
+     * @param step Wanted time in seconds between points, defaults to the best resolution available.
+     */
+    @RequestMapping(value = "/system/summary/history", headers = "Accept=application/json")
+    @ResponseBody
+    public Map getSummaryHistory(@RequestParam(required = false, defaultValue = SummaryService.GLOBAL_IDENTIFIER) String region,
+            @RequestParam(required = false) Long from, @RequestParam(required = false) Long to, 
+            @RequestParam(required = false, defaultValue = "0") long step) {
+        LOG.debug("Got request for summary history. [region={}]", region);
+        long end = to == null ? System.currentTimeMillis() : to;
+        long start = from == null ? end - TimeUnit.HOURS.toMillis(1) : from;
+        Map history = summaryHistoryService.getHistory(region, start, end, TimeUnit.SECONDS.toMillis(step));
+        return RestExceptionHandler.notNull(history, "No history for region.");
+    }
+    
+    @RequestMapping(value = "/system/metrics", headers = "Accept=application/json")
+    @ResponseBody
+    public Map getMetrics() {
+        LOG.debug("Got request for metrics.");
+        return service.getMetrics();
+    }
+    
     @RequestMapping(value = "/system/authenticate", produces = "application/json")
     @ResponseBody
     public UserPresentation authenticate() {
-        return UserPresentation.from(SecurityContextHolder.getContext().getAuthentication());
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        UserPresentation user = UserPresentation.from(authentication);
+        
+        // Tokens are only issued for credentials, so that a token cannot be used for prolonging itself.
+        if(tokenService != null && authentication != null && authentication.isAuthenticated() 
+                && !(authentication instanceof TokenAuthentication)) {
+            user.withToken(tokenService.issue(authentication));
+        }
+        return user;
     }
     
     @RequestMapping(value = "/system/passwordRequests", produces = "application/json", method = RequestMethod.POST)
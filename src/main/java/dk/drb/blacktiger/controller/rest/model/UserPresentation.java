@@ -1,5 +1,7 @@
 package dk.drb.blacktiger.controller.rest.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import dk.drb.blacktiger.security.AuthToken;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -10,10 +12,13 @@ import org.springframework.security.core.GrantedAuthority;
  *
  * @author michael
  */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class UserPresentation {
     
     private final String name;
     private final List roles;
+    private String token;
+    private Long tokenExpires;
 
     public UserPresentation(String name, List roles) {
         this.name = name;
@@ -27,6 +32,20 @@ public class UserPresentation {
     public List getRoles() {
         return roles;
     }
+
+    public String getToken() {
+        return token;
+    }
+
+    public Long getTokenExpires() {
+        return tokenExpires;
+    }
+    
+    public UserPresentation withToken(AuthToken authToken) {
+        this.token = authToken.getValue();
+        this.tokenExpires = authToken.getExpires();
+        return this;
+    }
     
     public static UserPresentation from(Authentication authentication) {
         if(authentication == null) {
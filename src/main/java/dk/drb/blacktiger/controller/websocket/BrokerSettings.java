@@ -0,0 +1,38 @@
+package dk.drb.blacktiger.controller.websocket;
+
+/**
+ * Tells the WebSocket controllers where to publish events and whether this node publishes at all.
+ * <p>
+ * With the simple broker every node has its own subscribers and publishes to <code>/queue/</code>. With an external
+ * broker relay the nodes share subscribers, so events are published to <code>/topic/</code>, which the broker
+ * delivers to every subscriber, and only the node designated as producer publishes. The other nodes just serve
+ * WebSocket clients.</p>
+ */
+public class BrokerSettings {
+
+    private final String destinationPrefix;
+    private final boolean producer;
+
+    public BrokerSettings() {
+        this("/queue/", true);
+    }
+
+    public BrokerSettings(String destinationPrefix, boolean producer) {
+        this.destinationPrefix = destinationPrefix;
+        this.producer = producer;
+    }
+
+    /**
+     * The prefix of the destinations events are published to, fx. <code>/queue/</code>.
+     */
+    public String getDestinationPrefix() {
+        return destinationPrefix;
+    }
+
+    /**
+     * Whether this node publishes the conference events it receives from Asterisk.
+     */
+    public boolean isProducer() {
+        return producer;
+    }
+}
@@ -3,6 +3,8 @@ package dk.drb.blacktiger.controller.websocket;
 import dk.drb.blacktiger.model.ConferenceEvent;
 import dk.drb.blacktiger.model.ConferenceEventListener;
 import dk.drb.blacktiger.service.ConferenceService;
+import dk.drb.blacktiger.util.EventBatcher;
+import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,7 +15,11 @@ import org.springframework.stereotype.Controller;
 import org.springframework.util.Assert;
 
 /**
- *
+ * Sends conference events to <code>/queue/events/&lt;roomNo&gt;</code>, or the prefix given by
+ * <code>BrokerSettings</code>.
+ * <p>
+ * By default every event is sent in a frame of its own. If an enabled <code>EventBatcher</code> is set, the events of a
+ * room are coalesced and sent as a JSON array per batch instead. Nodes which are not the producer send nothing.</p>
  * @author michael
  */
 @Controller
@@ -25,13 +31,31 @@ public class EventController {
     private MessageSendingOperations<String> messagingTemplate;
     private ConferenceService service;
     private EventHandler eventHandler = new EventHandler();
+    private EventBatcher eventBatcher;
+    private BrokerSettings brokerSettings = new BrokerSettings();
     
-    private class EventHandler implements ConferenceEventListener {
+    private class EventHandler implements ConferenceEventListener, EventBatcher.Sink {
 
         @Override
         public void onParticipantEvent(ConferenceEvent event) {
-            LOG.info("Sending event to queue [queue={};type={}]", event.getRoomNo(), event.getType());
-            messagingTemplate.convertAndSend("/queue/events/" + event.getRoomNo(), event);
+            if (!brokerSettings.isProducer()) {
+                return;
+            }
+            
+            EventBatcher batcher = eventBatcher;
+            if (batcher != null && batcher.isEnabled()) {
+                batcher.add(event);
+                return;
+            }
+            
+            LOG.debug("Sending event to queue [queue={};type={}]", event.getRoomNo(), event.getType());
+            messagingTemplate.convertAndSend(brokerSettings.getDestinationPrefix() + "events/" + event.getRoomNo(), event);
+        }
+
+        @Override
+        public void send(String roomNo, List<ConferenceEvent> events) {
+            LOG.debug("Sending events to queue [queue={};count={}]", roomNo, events.size());
+            messagingTemplate.convertAndSend(brokerSettings.getDestinationPrefix() + "events/" + roomNo, events);
         }
     }
     
@@ -48,6 +72,24 @@ public class EventController {
         LOG.info("EventController initialized.");
     }
 
+    /**
+     * Sets the batcher used for coalescing events. Passing null or a disabled batcher sends every event by itself.
+     */
+    @Autowired(required = false)
+    public void setEventBatcher(EventBatcher eventBatcher) {
+        if (eventBatcher != null) {
+            eventBatcher.setSink(eventHandler);
+            LOG.info("Batching events [enabled={};window={};maxSize={}]", 
+                    new Object[]{eventBatcher.isEnabled(), eventBatcher.getWindow(), eventBatcher.getMaxSize()});
+        }
+        this.eventBatcher = eventBatcher;
+    }
+
+    @Autowired(required = false)
+    public void setBrokerSettings(BrokerSettings brokerSettings) {
+        this.brokerSettings = brokerSettings == null ? new BrokerSettings() : brokerSettings;
+    }
+
     @MessageExceptionHandler
     @SendToUser("/queue/errors")
     public String handleException(Throwable exception) {
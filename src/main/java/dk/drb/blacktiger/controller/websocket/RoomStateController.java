@@ -0,0 +1,107 @@
+package dk.drb.blacktiger.controller.websocket;
+
+import dk.drb.blacktiger.model.RoomState;
+import dk.drb.blacktiger.model.RoomStateDelta;
+import dk.drb.blacktiger.service.RoomStateService;
+import java.security.Principal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.core.MessageSendingOperations;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Controller;
+import org.springframework.util.Assert;
+
+/**
+ * Streams the state of rooms.
+ * <p>
+ * Clients first subscribe to <code>/queue/state/&lt;roomNo&gt;</code>, or <code>/topic/state/&lt;roomNo&gt;</code> with a
+ * broker relay, for deltas and then to
+ * <code>/rooms/&lt;roomNo&gt;/state</code>, which replies with the state of the room once. To resume after a reconnect
+ * the second subscription carries the headers <code>epoch</code> and <code>sequence</code> from the last state or delta
+ * seen, and the reply is a replay of the missed deltas if possible. Deltas with a sequence number not above the one of
+ * the state are ignored by the client.</p>
+ * <p>
+ * Deltas are published by the producer node only, see <code>BrokerSettings</code>. Other nodes cannot know its
+ * sequence numbers, so they reply with snapshots of epoch and sequence 0. Clients then apply all deltas received after
+ * subscribing, which is safe as deltas are idempotent, and get a snapshot again when resuming.</p>
+ */
+@Controller
+public class RoomStateController {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RoomStateController.class);
+
+    @Autowired
+    private MessageSendingOperations<String> messagingTemplate;
+    private RoomStateService service;
+    private BrokerSettings brokerSettings = new BrokerSettings();
+    private final RoomStateService.RoomStateListener deltaHandler = new RoomStateService.RoomStateListener() {
+
+        @Override
+        public void onDelta(RoomStateDelta delta) {
+            if (!brokerSettings.isProducer()) {
+                return;
+            }
+            LOG.debug("Sending delta to queue [queue={};sequence={}]", delta.getRoomNo(), delta.getSequence());
+            messagingTemplate.convertAndSend(brokerSettings.getDestinationPrefix() + "state/" + delta.getRoomNo(), delta);
+        }
+    };
+
+    @Autowired
+    public void setService(RoomStateService service) {
+        Assert.notNull(service, "service cannot be null.");
+
+        if (this.service != null) {
+            this.service.removeListener(deltaHandler);
+        }
+
+        this.service = service;
+        this.service.addListener(deltaHandler);
+    }
+
+    @Autowired(required = false)
+    public void setBrokerSettings(BrokerSettings brokerSettings) {
+        this.brokerSettings = brokerSettings == null ? new BrokerSettings() : brokerSettings;
+    }
+
+    @SubscribeMapping("/{roomNo}/state")
+    public RoomState subscribe(@DestinationVariable String roomNo, SimpMessageHeaderAccessor headers) {
+        Long epoch = toLong(headers.getFirstNativeHeader("epoch"));
+        Long sequence = toLong(headers.getFirstNativeHeader("sequence"));
+        LOG.debug("Room state requested. [room={};epoch={};sequence={}]", new Object[]{roomNo, epoch, sequence});
+
+        // Access to rooms is checked against the security context, which is not populated for messages.
+        SecurityContext previous = SecurityContextHolder.getContext();
+        Principal user = headers.getUser();
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        if (user instanceof Authentication) {
+            context.setAuthentication((Authentication) user);
+        }
+        SecurityContextHolder.setContext(context);
+        try {
+            if (!brokerSettings.isProducer()) {
+                RoomState state = service.getState(roomNo, null, null);
+                return RoomState.snapshot(roomNo, 0, 0, state.getParticipants());
+            }
+            return service.getState(roomNo, epoch, sequence);
+        } finally {
+            SecurityContextHolder.setContext(previous);
+        }
+    }
+
+    private static Long toLong(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value.trim());
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+}
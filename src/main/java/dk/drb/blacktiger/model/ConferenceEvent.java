@@ -8,6 +8,7 @@ import dk.drb.blacktiger.service.*;
 public abstract class ConferenceEvent {
 
     private final String roomNo;
+    private String origin;
     
     public ConferenceEvent(String roomNo) {
         this.roomNo = roomNo;
@@ -18,6 +19,17 @@ public abstract class ConferenceEvent {
         return roomNo;
     }
 
+    /**
+     * The id of the Asterisk server the event originates from, or null if not known.
+     */
+    public String getOrigin() {
+        return origin;
+    }
+
+    public void setOrigin(String origin) {
+        this.origin = origin;
+    }
+
     public abstract String getType();
     
 }
@@ -0,0 +1,19 @@
+package dk.drb.blacktiger.model;
+
+import java.util.List;
+
+/**
+ * Fired once when several participants of a room have been muted together.
+ */
+public class ParticipantsMuteEvent extends SparseParticipantsEvent {
+    
+    public ParticipantsMuteEvent(String roomNo, List<String> channels) {
+        super(roomNo, channels);
+    }
+
+    @Override
+    public String getType() {
+        return "BulkMute";
+    }
+    
+}
@@ -0,0 +1,19 @@
+package dk.drb.blacktiger.model;
+
+import java.util.List;
+
+/**
+ * Fired once when several participants of a room have been unmuted together.
+ */
+public class ParticipantsUnmuteEvent extends SparseParticipantsEvent {
+    
+    public ParticipantsUnmuteEvent(String roomNo, List<String> channels) {
+        super(roomNo, channels);
+    }
+
+    @Override
+    public String getType() {
+        return "BulkUnmute";
+    }
+    
+}
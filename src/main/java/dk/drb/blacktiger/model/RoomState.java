@@ -0,0 +1,72 @@
+package dk.drb.blacktiger.model;
+
+import java.util.List;
+
+/**
+ * The state of a room at a sequence number in its state stream.
+ * <p>
+ * A state is either a snapshot holding all participants, or a replay holding the deltas following the sequence number a
+ * client resumed from. Sequence numbers are only comparable within the same epoch, which changes when the server
+ * restarts.</p>
+ */
+public class RoomState {
+
+    private final String roomNo;
+    private final long epoch;
+    private final long sequence;
+    private final List<Participant> participants;
+    private final List<RoomStateDelta> deltas;
+
+    private RoomState(String roomNo, long epoch, long sequence, List<Participant> participants, List<RoomStateDelta> deltas) {
+        this.roomNo = roomNo;
+        this.epoch = epoch;
+        this.sequence = sequence;
+        this.participants = participants;
+        this.deltas = deltas;
+    }
+
+    public static RoomState snapshot(String roomNo, long epoch, long sequence, List<Participant> participants) {
+        return new RoomState(roomNo, epoch, sequence, participants, null);
+    }
+
+    public static RoomState replay(String roomNo, long epoch, long sequence, List<RoomStateDelta> deltas) {
+        return new RoomState(roomNo, epoch, sequence, null, deltas);
+    }
+
+    public String getRoomNo() {
+        return roomNo;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * The sequence number of the last delta reflected in this state.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public boolean isReplay() {
+        return deltas != null;
+    }
+
+    /**
+     * The participants of a snapshot, or null for a replay.
+     */
+    public List<Participant> getParticipants() {
+        return participants;
+    }
+
+    /**
+     * The deltas of a replay, or null for a snapshot.
+     */
+    public List<RoomStateDelta> getDeltas() {
+        return deltas;
+    }
+
+    public String getType() {
+        return isReplay() ? "Replay" : "Snapshot";
+    }
+}
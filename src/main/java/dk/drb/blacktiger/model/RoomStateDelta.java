@@ -0,0 +1,28 @@
+package dk.drb.blacktiger.model;
+
+/**
+ * A change to the state of a room, numbered by its position in the state stream of the room.
+ */
+public class RoomStateDelta {
+
+    private final long sequence;
+    private final ConferenceEvent event;
+
+    public RoomStateDelta(long sequence, ConferenceEvent event) {
+        this.sequence = sequence;
+        this.event = event;
+    }
+
+    public String getRoomNo() {
+        return event.getRoomNo();
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public ConferenceEvent getEvent() {
+        return event;
+    }
+
+}
@@ -0,0 +1,21 @@
+package dk.drb.blacktiger.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Base class for events concerning several participants of a room at once, identified by their channels.
+ */
+public abstract class SparseParticipantsEvent extends ConferenceEvent {
+    private final List<String> channels;
+
+    public SparseParticipantsEvent(String roomNo, List<String> channels) {
+        super(roomNo);
+        this.channels = Collections.unmodifiableList(channels);
+    }
+
+    public List<String> getChannels() {
+        return channels;
+    }
+    
+}
@@ -9,8 +9,31 @@ import java.util.List;
  */
 public interface CallInformationRepository  {
     
+    /**
+     * Receives calls one at a time as they are read.
+     */
+    public interface CallInformationHandler {
+        
+        /**
+         * @param cursor Identifies the position of the call, so reading can continue after it.
+         */
+        void onCall(CallInformation callInformation, String cursor);
+    }
+    
     List<CallInformation> findByRoomNoAndPeriodAndDuration(String roomNo, Date start, Date end, int minimumDuration);
     List<CallInformation> findByRoomNoAndPeriodAndDurationAndNumbers(String roomNo, Date start, Date end, int minimumDuration, String[] numbers);
     
+    /**
+     * Reads the calls of a room, passing each to the handler as it is read instead of collecting them in a list. The calls
+     * are ordered by first call, except when read in pages with a cursor or a limit, where they are ordered by the key
+     * of their cursor.
+     * @param numbers The numbers to include or null for all.
+     * @param after The cursor of the last call already read or null to start from the first call.
+     * @param limit The maximum number of calls to read or 0 for no limit.
+     * @return The number of calls read.
+     */
+    int streamByRoomNoAndPeriodAndDurationAndNumbers(String roomNo, Date start, Date end, int minimumDuration, String[] numbers, 
+            String after, int limit, CallInformationHandler handler);
+    
     void logAction(String caller, String callee, String action);
 }
@@ -4,6 +4,8 @@ import dk.drb.blacktiger.model.ConferenceEventListener;
 import dk.drb.blacktiger.model.Participant;
 import dk.drb.blacktiger.model.Room;
 import java.util.List;
+import java.util.Map;
+import org.springframework.util.concurrent.ListenableFuture;
 
 /**
  *
@@ -17,6 +19,12 @@ public interface ConferenceRoomRepository {
     
     List<Participant> findByRoomNo(String roomNo);
     
+    /**
+     * Retrieves the participants of several rooms in one go.
+     * @return The participants by room number. Rooms that do not exist are not included.
+     */
+    Map<String, List<Participant>> findByRoomNos(List<String> roomNos);
+    
     Participant findByRoomNoAndChannel(String roomNo, String channel);
     
     void kickParticipant(String roomNo, String channel);
@@ -24,6 +32,22 @@ public interface ConferenceRoomRepository {
     void muteParticipant(String roomNo, String channel);
     void unmuteParticipant(String roomNo, String channel);
     
+    /**
+     * Kicks, mutes or unmutes a participant without waiting for it to be done. The future completes when the action has
+     * been carried out and fails if it could not be.
+     */
+    ListenableFuture<Void> kickParticipantAsync(String roomNo, String channel);
+    ListenableFuture<Void> muteParticipantAsync(String roomNo, String channel);
+    ListenableFuture<Void> unmuteParticipantAsync(String roomNo, String channel);
+    
+    /**
+     * Mutes or unmutes several participants of a room at once. The participants are handled concurrently and a single
+     * event is fired for those whose muteness was changed.
+     * @return The channels whose muteness was changed. Channels which failed are left out.
+     */
+    List<String> muteParticipants(String roomNo, List<String> channels);
+    List<String> unmuteParticipants(String roomNo, List<String> channels);
+    
     void addEventListener(ConferenceEventListener listener);
     void removeEventListener(ConferenceEventListener listener);
 }
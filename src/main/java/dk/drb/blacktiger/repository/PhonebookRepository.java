@@ -2,6 +2,8 @@ package dk.drb.blacktiger.repository;
 
 import dk.drb.blacktiger.model.PhonebookEntry;
 import dk.drb.blacktiger.model.PhonebookUpdateEvent;
+import java.util.Collection;
+import java.util.Map;
 
 /**
  *
@@ -15,5 +17,12 @@ public interface PhonebookRepository {
     public void removeEventListener(PhonebookEventListener eventListener);
     
     PhonebookEntry findByCallerId(String hallCalling, String number);
+    
+    /**
+     * Resolves several numbers in one go.
+     * @return The entries by number. Numbers without an entry are not included.
+     */
+    Map<String, PhonebookEntry> findByCallerIds(String hallCalling, Collection<String> numbers);
+    
     PhonebookEntry save(String hallCalling, PhonebookEntry entry);
 }
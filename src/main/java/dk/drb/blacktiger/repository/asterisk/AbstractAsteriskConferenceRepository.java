@@ -2,9 +2,10 @@ package dk.drb.blacktiger.repository.asterisk;
 
 import dk.drb.blacktiger.model.ConferenceEventListener;
 import dk.drb.blacktiger.model.ConferenceEvent;
-import java.util.ArrayList;
+import dk.drb.blacktiger.util.ShardedExecutor;
 import java.util.List;
 import java.util.Timer;
+import java.util.concurrent.CopyOnWriteArrayList;
 import org.asteriskjava.live.AsteriskServer;
 import org.asteriskjava.manager.ManagerEventListener;
 import org.asteriskjava.manager.event.ManagerEvent;
@@ -17,10 +18,11 @@ import org.slf4j.LoggerFactory;
  */
 public abstract class AbstractAsteriskConferenceRepository implements ManagerEventListener {
     private static final Logger LOG = LoggerFactory.getLogger(AbstractAsteriskConferenceRepository.class);
-    protected List<ConferenceEventListener> eventListeners = new ArrayList<>();
+    protected List<ConferenceEventListener> eventListeners = new CopyOnWriteArrayList<>();
     protected Timer eventTimer = new Timer();
     protected AsteriskServer asteriskServer;
     private ManagerEventListener managerEventListener;
+    private ShardedExecutor eventDispatcher;
 
     protected void setManagerEventListener(ManagerEventListener managerEventListener) {
         this.managerEventListener = managerEventListener;
@@ -29,12 +31,34 @@ public abstract class AbstractAsteriskConferenceRepository implements ManagerEve
     @Override
     public abstract void onManagerEvent(ManagerEvent event);
     
+    /**
+     * Sets the dispatcher used for notifying listeners. Events are dispatched by room number, so events for the same room
+     * are delivered in order while different rooms are handled in parallel. If no dispatcher is set, listeners are 
+     * notified on the calling thread.
+     */
+    public void setEventDispatcher(ShardedExecutor eventDispatcher) {
+        this.eventDispatcher = eventDispatcher;
+    }
+    
     protected void fireEvent(final ConferenceEvent event) {
+        if (eventDispatcher == null) {
+            notifyListeners(event);
+        } else {
+            eventDispatcher.execute(event.getRoomNo(), new Runnable() {
+
+                @Override
+                public void run() {
+                    notifyListeners(event);
+                }
+            });
+        }
+    }
+    
+    private void notifyListeners(ConferenceEvent event) {
         LOG.debug("Firering conferenceevent to {} listeners. [event={}]", eventListeners.size(), event);
         for (ConferenceEventListener listener : eventListeners) {
             listener.onParticipantEvent(event);
         }
-        
     }
     
     public void addEventListener(ConferenceEventListener listener) {
@@ -0,0 +1,156 @@
+package dk.drb.blacktiger.repository.asterisk;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.asteriskjava.manager.ManagerConnection;
+import org.asteriskjava.manager.SendActionCallback;
+import org.asteriskjava.manager.action.ManagerAction;
+import org.asteriskjava.manager.response.ManagerResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+/**
+ * Sends manager actions without waiting for the responses.
+ * <p>
+ * Actions are written to the manager connection right away and the responses are matched to their actions by the
+ * connection using the ActionID, so any number of actions may be on their way at once. The caller gets a future which
+ * is completed when the response arrives, or fails if no response has arrived within the timeout.</p>
+ * <p>
+ * The number of actions in flight is limited. Actions sent while the limit is reached are rejected right away without
+ * being sent, so a server which has stopped responding makes callers fail fast instead of piling up actions.</p>
+ */
+public class AmiActionClient {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AmiActionClient.class);
+    public static final int DEFAULT_MAX_IN_FLIGHT = 100;
+    public static final long DEFAULT_TIMEOUT = 5000;
+
+    private final int maxInFlight;
+    private final long timeout;
+    private final Semaphore permits;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public AmiActionClient() {
+        this(DEFAULT_MAX_IN_FLIGHT, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Creates a new client.
+     * @param maxInFlight The maximum number of actions waiting for a response.
+     * @param timeout The time in milliseconds to wait for a response.
+     */
+    public AmiActionClient(int maxInFlight, long timeout) {
+        if (maxInFlight < 1 || timeout < 1) {
+            throw new IllegalArgumentException("Max in flight and timeout must be at least 1.");
+        }
+        this.maxInFlight = maxInFlight;
+        this.timeout = timeout;
+        this.permits = new Semaphore(maxInFlight);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ami-action-timeouts");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Sends an action.
+     * @return A future completed with the response. It fails with a <code>TimeoutException</code> if no response arrives
+     * in time and with a <code>RejectedExecutionException</code> if too many actions are in flight.
+     */
+    public ListenableFuture<ManagerResponse> send(ManagerConnection connection, final ManagerAction action) {
+        final SettableListenableFuture<ManagerResponse> future = new SettableListenableFuture<>();
+        if (!permits.tryAcquire()) {
+            rejected.incrementAndGet();
+            LOG.warn("Too many actions waiting for a response. Rejecting action. [action={}]", action);
+            future.setException(new RejectedExecutionException("Too many actions waiting for a response."));
+            return future;
+        }
+
+        final AtomicBoolean done = new AtomicBoolean();
+        final ScheduledFuture<?> timeoutTask = scheduler.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                if (done.compareAndSet(false, true)) {
+                    permits.release();
+                    timedOut.incrementAndGet();
+                    LOG.warn("No response for action in time. [action={};timeout={}]", action, timeout);
+                    future.setException(new TimeoutException("No response for action within " + timeout + "ms."));
+                }
+            }
+        }, timeout, TimeUnit.MILLISECONDS);
+
+        LOG.debug("Sending ManagerAction to server asynchronously [action={}]", action);
+        try {
+            connection.sendAction(action, new SendActionCallback() {
+
+                @Override
+                public void onResponse(ManagerResponse response) {
+                    if (done.compareAndSet(false, true)) {
+                        timeoutTask.cancel(false);
+                        permits.release();
+                        future.set(response);
+                    }
+                }
+            });
+            sent.incrementAndGet();
+        } catch (IOException | IllegalArgumentException | IllegalStateException ex) {
+            if (done.compareAndSet(false, true)) {
+                timeoutTask.cancel(false);
+                permits.release();
+                future.setException(ex);
+            }
+        }
+        return future;
+    }
+
+    /**
+     * The number of actions currently waiting for a response.
+     */
+    public int getInFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getTimedOut() {
+        return timedOut.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
@@ -11,17 +11,32 @@ import dk.drb.blacktiger.model.ParticipantCommentRequestCancelEvent;
 import dk.drb.blacktiger.model.ParticipantCommentRequestEvent;
 import dk.drb.blacktiger.model.ParticipantMuteEvent;
 import dk.drb.blacktiger.model.ParticipantUnmuteEvent;
+import dk.drb.blacktiger.model.ParticipantsMuteEvent;
+import dk.drb.blacktiger.model.ParticipantsUnmuteEvent;
 import dk.drb.blacktiger.model.Room;
 import dk.drb.blacktiger.repository.ConferenceRoomRepository;
+import dk.drb.blacktiger.repository.asterisk.ChannelRoomIndex.Entry;
+import dk.drb.blacktiger.util.BoundedEventQueue;
+import dk.drb.blacktiger.util.BoundedEventQueue.OverflowPolicy;
+import dk.drb.blacktiger.util.MetricsSource;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import org.asteriskjava.live.AsteriskServer;
+import org.asteriskjava.manager.ManagerConnection;
 import org.asteriskjava.manager.EventTimeoutException;
 import org.asteriskjava.manager.ResponseEvents;
 import org.asteriskjava.manager.TimeoutException;
@@ -49,98 +64,213 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.InvalidDataAccessResourceUsageException;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+import org.springframework.util.concurrent.SettableListenableFuture;
 
 /**
  * This implementation of ConferenceRepository uses the Confbridge conference in Asterisk.
  */
-public class Asterisk11ConfbridgeRepository extends AbstractAsteriskConferenceRepository implements ConferenceRoomRepository {
+public class Asterisk11ConfbridgeRepository extends AbstractAsteriskConferenceRepository implements ConferenceRoomRepository, MetricsSource {
 
-    private class ChannelRoomEntry {
-        private final boolean host;
-        private final String roomId;
-
-        public ChannelRoomEntry(boolean host, String roomId) {
-            this.host = host;
-            this.roomId = roomId;
-        }
-
-        public boolean isHost() {
-            return host;
-        }
-
-        public String getRoomId() {
-            return roomId;
-        }
-        
-    }
     private static final Logger LOG = LoggerFactory.getLogger(Asterisk11ConfbridgeRepository.class);
     private static final String DIGIT_COMMENT_REQUEST = "1";
     private static final String DIGIT_COMMENT_REQUEST_CANCEL = "0";
+    public static final int DEFAULT_EVENT_QUEUE_CAPACITY = 10000;
+    public static final OverflowPolicy DEFAULT_OVERFLOW_POLICY = OverflowPolicy.DROP_OLDEST;
+    public static final long DEFAULT_LIST_TIMEOUT = 5000;
+    public static final int DEFAULT_LIST_RETRIES = 2;
 
-    private final Queue<ManagerEvent> managerEvents = new LinkedList<>();
+    /**
+     * Events are received on the asterisk-java reader thread and handled on the consumer thread via this queue.
+     */
+    private final BoundedEventQueue<ManagerEvent> managerEvents;
+    private final AtomicLong handledEvents = new AtomicLong();
+    private final AtomicLong unknownDtmfChannels = new AtomicLong();
+    private final AtomicLong evictedChannels = new AtomicLong();
+    private final AtomicLong listRetriesUsed = new AtomicLong();
+    private final AtomicLong unreadRooms = new AtomicLong();
+    private long listTimeout = DEFAULT_LIST_TIMEOUT;
+    private int listRetries = DEFAULT_LIST_RETRIES;
+    private volatile Thread consumerThread;
+    private AmiActionClient actionClient = new AmiActionClient();
     
     /**
-     * A map between channels and rooms. 
+     * An index between channels and rooms. 
      * This is used for DTMF events which never carries the conference room which the user sending the DTMF event resides in.
+     * Only changed while holding the state lock, so it follows the live state.
      */
-    private final Map<String, ChannelRoomEntry> channelRoomMap = new HashMap<>();
+    private final ChannelRoomIndex channelIndex = new ChannelRoomIndex();
+    
+    /**
+     * The live state of rooms and participants. All reads are served from this state.
+     */
+    private final ConferenceState state = new ConferenceState();
+    
+    /**
+     * Guards changes to the state so that events and audits are applied one at a time.
+     */
+    private final Object stateLock = new Object();
     
     public Asterisk11ConfbridgeRepository() {
-        LOG.debug("Instantiating AsteriskConfbridgeRepository");
+        this(DEFAULT_EVENT_QUEUE_CAPACITY, DEFAULT_OVERFLOW_POLICY);
+    }
+
+    /**
+     * Creates a new instance with a specific event queue setup.
+     * @param eventQueueCapacity The maximum number of events waiting to be handled.
+     * @param overflowPolicy What to do with events received while the queue is full.
+     */
+    public Asterisk11ConfbridgeRepository(int eventQueueCapacity, OverflowPolicy overflowPolicy) {
+        LOG.debug("Instantiating AsteriskConfbridgeRepository [eventQueueCapacity={};overflowPolicy={}]", eventQueueCapacity, overflowPolicy);
+        managerEvents = new BoundedEventQueue<>(eventQueueCapacity, overflowPolicy);
         setManagerEventListener(this);
     }
 
     @Override
     public void onManagerEvent(final ManagerEvent event) {
         LOG.debug("Manager event recieved and being added to queue. [event={}]", event);
-        try {
-            managerEvents.add(event);
-        } catch (IllegalStateException ex) {
-            LOG.error("Unable to add event to queue.", ex);
+        if (!managerEvents.offer(event)) {
+            LOG.warn("Event queue is full. Event dropped. [event={}]", event);
         }
+    }
+
+    /**
+     * Starts the thread handling events from the event queue.
+     */
+    @PostConstruct
+    public synchronized void start() {
+        if (consumerThread != null) {
+            return;
+        }
+        
+        LOG.info("Starting event consumer thread.");
+        consumerThread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                Thread current = Thread.currentThread();
+                while (consumerThread == current) {
+                    try {
+                        handleEventQueue();
+                    } catch (RuntimeException ex) {
+                        LOG.error("Error occured while handling event queue.", ex);
+                    }
+                    managerEvents.await(1, TimeUnit.SECONDS);
+                }
+                LOG.info("Event consumer thread stopped.");
+            }
+        }, "asterisk-event-consumer");
+        consumerThread.setDaemon(true);
+        consumerThread.start();
+    }
+
+    /**
+     * Stops the thread handling events from the event queue.
+     */
+    @PreDestroy
+    public synchronized void stop() {
+        Thread thread = consumerThread;
+        consumerThread = null;
+        if (thread != null) {
+            LOG.info("Stopping event consumer thread.");
+            LockSupport.unpark(thread);
+        }
+        actionClient.shutdown();
+    }
+    
+    /**
+     * Sets the client used for sending actions asynchronously. Defaults to a client with default settings.
+     */
+    public void setActionClient(AmiActionClient actionClient) {
+        this.actionClient = actionClient;
+    }
+
+    /**
+     * Sets the time in milliseconds to wait for the server to list rooms or participants. Right after a reconnect the
+     * server answers slowly, as asterisk-java reads all channels again first.
+     */
+    public void setListTimeout(long listTimeout) {
+        this.listTimeout = listTimeout;
+    }
 
+    /**
+     * Sets the number of times to try listing rooms or participants again when the server does not answer in time.
+     */
+    public void setListRetries(int listRetries) {
+        this.listRetries = listRetries;
     }
 
-    @Scheduled(fixedDelay = 50)
+    /**
+     * Handles all events currently in the event queue. Called by the consumer thread.
+     */
     protected void handleEventQueue() {
         ManagerEvent event = null;
         while ((event = managerEvents.poll()) != null) {
             LOG.debug("Handling event from queue. [event={}]", event);
-            if (event instanceof ConfbridgeJoinEvent) {
-                onConfbridgeJoinEvent((ConfbridgeJoinEvent) event);
-            }
-            if (event instanceof ConfbridgeLeaveEvent) {
-                onConfbridgeLeaveEvent((ConfbridgeLeaveEvent) event);
-            }
-            if (event instanceof ConfbridgeStartEvent) {
-                onConfbridgeStart((ConfbridgeStartEvent) event);
+            synchronized (stateLock) {
+                handleEvent(event);
             }
+            handledEvents.incrementAndGet();
+        }
+    }
 
-            if (event instanceof ConfbridgeEndEvent) {
-                onConfbridgeEnd((ConfbridgeEndEvent) event);
-            }
+    @Override
+    public Map<String, Number> getMetrics() {
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        metrics.put("eventQueueDepth", managerEvents.size());
+        metrics.put("eventQueueCapacity", managerEvents.getCapacity());
+        metrics.put("eventQueueLagMillis", managerEvents.getLagMillis());
+        metrics.put("eventsReceived", managerEvents.getAdded());
+        metrics.put("eventsDropped", managerEvents.getDropped());
+        metrics.put("eventsHandled", handledEvents.get());
+        metrics.put("rooms", state.getRoomCount());
+        metrics.put("participants", state.getParticipantCount());
+        metrics.put("indexedChannels", channelIndex.size());
+        metrics.put("indexedRooms", channelIndex.getRoomCount());
+        metrics.put("evictedChannels", evictedChannels.get());
+        metrics.put("unknownDtmfChannels", unknownDtmfChannels.get());
+        metrics.put("listRetries", listRetriesUsed.get());
+        metrics.put("unreadRooms", unreadRooms.get());
+        metrics.put("actionsInFlight", actionClient.getInFlight());
+        metrics.put("actionsSent", actionClient.getSent());
+        metrics.put("actionsTimedOut", actionClient.getTimedOut());
+        metrics.put("actionsRejected", actionClient.getRejected());
+        return metrics;
+    }
+
+    private void handleEvent(ManagerEvent event) {
+        if (event instanceof ConfbridgeJoinEvent) {
+            onConfbridgeJoinEvent((ConfbridgeJoinEvent) event);
+        }
+        if (event instanceof ConfbridgeLeaveEvent) {
+            onConfbridgeLeaveEvent((ConfbridgeLeaveEvent) event);
+        }
+        if (event instanceof ConfbridgeStartEvent) {
+            onConfbridgeStart((ConfbridgeStartEvent) event);
+        }
 
-            if (event instanceof DtmfEvent) {
-                onDtmfEvent((DtmfEvent) event);
-            }
-            
-            if(event instanceof DisconnectEvent) {
-                onDisconnectEvent((DisconnectEvent) event);
-            }
-            
-            if(event instanceof ConnectEvent) {
-                reload();
-            }
+        if (event instanceof ConfbridgeEndEvent) {
+            onConfbridgeEnd((ConfbridgeEndEvent) event);
+        }
+
+        if (event instanceof DtmfEvent) {
+            onDtmfEvent((DtmfEvent) event);
+        }
+        
+        if(event instanceof DisconnectEvent) {
+            onDisconnectEvent((DisconnectEvent) event);
+        }
+        
+        if(event instanceof ConnectEvent) {
+            reload();
         }
     }
 
     private void onDisconnectEvent(DisconnectEvent event) {
         LOG.info("Disconnect event recieved. Informing all partakers thats participants have left and Conference rooms have ended.");
-        for(Room room : findAll()) {
-            for(Participant participant : findByRoomNo(room.getId())) {
-                Asterisk11ConfbridgeRepository.this.fireEvent(new ParticipantLeaveEvent(room.getId(), participant));
-            }
-            Asterisk11ConfbridgeRepository.this.fireEvent(new ConferenceEndEvent(room.getId()));
+        for(String roomNo : state.getRoomIds()) {
+            endRoom(roomNo);
         }
         reset();
     }
@@ -148,9 +278,15 @@ public class Asterisk11ConfbridgeRepository extends AbstractAsteriskConferenceRe
     private void onDtmfEvent(DtmfEvent event) {
         if (event.isEnd() && (event.getDigit().equals(DIGIT_COMMENT_REQUEST) || event.getDigit().equals(DIGIT_COMMENT_REQUEST_CANCEL))) {
             // A DTMF event has been received. We need to retrieve roomId and callerId. 
-            ChannelRoomEntry roomEntry = channelRoomMap.get(event.getChannel());
+            Entry roomEntry = channelIndex.get(normalizeChannelName(event.getChannel()));
+            if(roomEntry == null) {
+                LOG.warn("DTMF Event from channel not in any known room received. Ignoring it. [channel={}]", event.getChannel());
+                unknownDtmfChannels.incrementAndGet();
+                return;
+            }
+            
             if(roomEntry.isHost()) {
-                LOG.debug("DTMF Event from host in {} received. Ignoring it.", roomEntry.getRoomId());
+                LOG.debug("DTMF Event from host in {} received. Ignoring it.", roomEntry.getRoomNo());
                 return;
             }
             
@@ -158,11 +294,11 @@ public class Asterisk11ConfbridgeRepository extends AbstractAsteriskConferenceRe
             switch (event.getDigit()) {
                 case DIGIT_COMMENT_REQUEST:
                     LOG.debug("Dtmf Event is a Comment Request.");
-                    ce = new ParticipantCommentRequestEvent(roomEntry.getRoomId(), normalizeChannelName(event.getChannel()));
+                    ce = new ParticipantCommentRequestEvent(roomEntry.getRoomNo(), normalizeChannelName(event.getChannel()));
                     break;
                 case DIGIT_COMMENT_REQUEST_CANCEL:
                     LOG.debug("Dtmf Event is a Comment Cancel Request.");
-                    ce = new ParticipantCommentRequestCancelEvent(roomEntry.getRoomId(), normalizeChannelName(event.getChannel()));
+                    ce = new ParticipantCommentRequestCancelEvent(roomEntry.getRoomNo(), normalizeChannelName(event.getChannel()));
                     break;
             }
 
@@ -173,15 +309,19 @@ public class Asterisk11ConfbridgeRepository extends AbstractAsteriskConferenceRe
     private void onConfbridgeJoinEvent(ConfbridgeJoinEvent event) {
         String roomNo = event.getConference();
         Participant p = participantFromEvent(event);
-        channelRoomMap.put(event.getChannel(), new ChannelRoomEntry(p.isHost(), roomNo));
+        channelIndex.put(p.getChannel(), roomNo, p.isHost());
+        state.addParticipant(roomNo, p);
         Asterisk11ConfbridgeRepository.this.fireEvent(new ParticipantJoinEvent(roomNo, p));
     }
 
     private void onConfbridgeLeaveEvent(ConfbridgeLeaveEvent event) {
         String roomNo = event.getConference();
         
-        Participant p = participantFromEvent(event);
-        channelRoomMap.remove(event.getChannel());
+        Participant p = state.removeParticipant(roomNo, normalizeChannelName(event.getChannel()));
+        if (p == null) {
+            p = participantFromEvent(event);
+        }
+        channelIndex.remove(p.getChannel());
 
         Asterisk11ConfbridgeRepository.this.fireEvent(new ParticipantLeaveEvent(roomNo, p));
         
@@ -190,21 +330,26 @@ public class Asterisk11ConfbridgeRepository extends AbstractAsteriskConferenceRe
     private void onConfbridgeStart(ConfbridgeStartEvent e) {
         LOG.debug("Handling ConfbridgeStartEvent [event={}]", e);
         Room room = new Room(e.getConference());
+        state.startRoom(room.getId());
         Asterisk11ConfbridgeRepository.this.fireEvent(new ConferenceStartEvent(room));
     }
 
     private void onConfbridgeEnd(ConfbridgeEndEvent e) {
         LOG.debug("Handling ConfbridgeEndEvent [event={}]", e);
+        state.endRoom(e.getConference());
+        channelIndex.removeRoom(e.getConference());
         Asterisk11ConfbridgeRepository.this.fireEvent(new ConferenceEndEvent(e.getConference()));
     }
     
     private void onMuted(String conference, String channel) {
         LOG.debug("Handling onMuted. [room={};channel={}]", conference, channel);
+        state.setMuted(conference, channel, true);
         Asterisk11ConfbridgeRepository.this.fireEvent(new ParticipantMuteEvent(conference, channel));
     }
 
     private void onUnmuted(String conference, String channel) {
         LOG.debug("Handling onUnmuted. [room={};channel={}]", conference, channel);
+        state.setMuted(conference, channel, false);
         Asterisk11ConfbridgeRepository.this.fireEvent(new ParticipantUnmuteEvent(conference, channel));
     }
     
@@ -214,31 +359,168 @@ public class Asterisk11ConfbridgeRepository extends AbstractAsteriskConferenceRe
 
         LOG.info("Asterisk Server specified. Reading rooms from server.");
 
-        reload();
+        synchronized (stateLock) {
+            reload();
+        }
     }
 
     
     private void reset() {
-        this.channelRoomMap.clear();
+        this.channelIndex.clear();
+        this.state.clear();
     }
     
+    /**
+     * Replaces the live state with the state on the server. A room whose participants cannot be read is kept without
+     * participants, and the participants are added by the next audit.
+     */
     private void reload() {
         reset();
         
         for(Room room : readRoomsFromServer()) {
+            List<Participant> participants;
+            try {
+                participants = readParticipantsFromServer(room.getId());
+            } catch (RuntimeException ex) {
+                LOG.warn("Unable to read participants from server. Keeping room until next audit. [room=" + room.getId() + "]", ex);
+                unreadRooms.incrementAndGet();
+                participants = Collections.emptyList();
+            }
+            if (participants == null) {
+                continue;
+            }
+            state.startRoom(room.getId());
             Asterisk11ConfbridgeRepository.this.fireEvent(new ConferenceStartEvent(room));
-            for(Participant participant : findByRoomNo(room.getId())) {
+            for(Participant participant : participants) {
+                state.addParticipant(room.getId(), participant);
+                channelIndex.put(participant.getChannel(), room.getId(), participant.isHost());
                 Asterisk11ConfbridgeRepository.this.fireEvent(new ParticipantJoinEvent(room.getId(), participant));
             }
         }
     }
     
+    /**
+     * Reconciles the live state with the rooms and participants actually on the Asterisk server.
+     * <p>
+     * Events may get lost, fx. if Asterisk drops them under load. The audit reads the full state from the server and
+     * emits the events needed to bring the live state in line with it. Rooms changed or ended by events while the server
+     * is being read are skipped, as the events received are newer than what the server reported. So are rooms whose
+     * participants could not be read.</p>
+     */
+    @Scheduled(fixedDelay = 60000, initialDelay = 60000)
+    public void audit() {
+        if (asteriskServer == null) {
+            return;
+        }
+        
+        LOG.debug("Auditing live conference state against server.");
+        long auditVersion = state.getVersion();
+        Map<String, List<Participant>> serverState = new HashMap<>();
+        Set<String> unreadRoomIds = new HashSet<>();
+        List<Room> serverRooms;
+        try {
+            serverRooms = readRoomsFromServer();
+        } catch (RuntimeException ex) {
+            LOG.warn("Unable to read rooms from server. Skipping audit.", ex);
+            return;
+        }
+        
+        for(Room room : serverRooms) {
+            try {
+                List<Participant> participants = readParticipantsFromServer(room.getId());
+                if (participants != null) {
+                    serverState.put(room.getId(), participants);
+                }
+            } catch (RuntimeException ex) {
+                LOG.warn("Unable to read participants from server. Skipping room in audit. [room=" + room.getId() + "]", ex);
+                unreadRooms.incrementAndGet();
+                unreadRoomIds.add(room.getId());
+            }
+        }
+        
+        synchronized (stateLock) {
+            for(String roomNo : state.getRoomIds()) {
+                if (!serverState.containsKey(roomNo) && !unreadRoomIds.contains(roomNo) && state.getRoomVersion(roomNo) <= auditVersion) {
+                    LOG.info("Audit found room no longer on server. Ending it. [room={}]", roomNo);
+                    endRoom(roomNo);
+                }
+            }
+            
+            for(Map.Entry<String, List<Participant>> entry : serverState.entrySet()) {
+                String roomNo = entry.getKey();
+                if (state.getRoomVersion(roomNo) > auditVersion) {
+                    LOG.debug("Room changed or ended during audit. Skipping it. [room={}]", roomNo);
+                    continue;
+                }
+                
+                if (state.startRoom(roomNo)) {
+                    LOG.info("Audit found room not known. Starting it. [room={}]", roomNo);
+                    Asterisk11ConfbridgeRepository.this.fireEvent(new ConferenceStartEvent(new Room(roomNo)));
+                }
+                
+                Map<String, Participant> serverParticipants = new HashMap<>();
+                for(Participant participant : entry.getValue()) {
+                    serverParticipants.put(participant.getChannel(), participant);
+                }
+                
+                for(Participant participant : state.getParticipants(roomNo)) {
+                    if (serverParticipants.remove(participant.getChannel()) == null) {
+                        LOG.info("Audit found participant no longer on server. [room={};channel={}]", roomNo, participant.getChannel());
+                        state.removeParticipant(roomNo, participant.getChannel());
+                        channelIndex.remove(participant.getChannel());
+                        Asterisk11ConfbridgeRepository.this.fireEvent(new ParticipantLeaveEvent(roomNo, participant));
+                    }
+                }
+                
+                for(Participant participant : serverParticipants.values()) {
+                    LOG.info("Audit found participant not known. [room={};channel={}]", roomNo, participant.getChannel());
+                    state.addParticipant(roomNo, participant);
+                    Asterisk11ConfbridgeRepository.this.fireEvent(new ParticipantJoinEvent(roomNo, participant));
+                }
+                
+                for(Participant participant : entry.getValue()) {
+                    channelIndex.put(participant.getChannel(), roomNo, participant.isHost());
+                }
+            }
+            
+            evictOrphanedChannels();
+            state.forgetEndedRooms(auditVersion);
+        }
+    }
+    
+    /**
+     * Removes channels from the channel index which are not in the live state anymore, fx. because the leave event was
+     * lost. Must be called while holding the state lock.
+     */
+    private void evictOrphanedChannels() {
+        for(Entry entry : channelIndex.getEntries()) {
+            if (state.getParticipant(entry.getRoomNo(), entry.getChannel()) == null
+                    && channelIndex.remove(entry.getChannel(), entry.getRoomNo())) {
+                LOG.info("Evicting channel no longer in live state from channel index. [room={};channel={}]", entry.getRoomNo(), entry.getChannel());
+                evictedChannels.incrementAndGet();
+            }
+        }
+    }
+    
+    private void endRoom(String roomNo) {
+        List<Participant> participants = state.endRoom(roomNo);
+        if (participants == null) {
+            return;
+        }
+        
+        channelIndex.removeRoom(roomNo);
+        for(Participant participant : participants) {
+            Asterisk11ConfbridgeRepository.this.fireEvent(new ParticipantLeaveEvent(roomNo, participant));
+        }
+        Asterisk11ConfbridgeRepository.this.fireEvent(new ConferenceEndEvent(roomNo));
+    }
+    
     /**
      * Reads rooms directly from the asterisk server.
      */
     private List<Room> readRoomsFromServer() {
         LOG.debug("Reading rooms from server.");
-        ResponseEvents events = sendAction(new ConfbridgeListRoomsAction());
+        ResponseEvents events = sendListAction(new ConfbridgeListRoomsAction());
 
         List<Room> result = new ArrayList();
 
@@ -252,9 +534,13 @@ public class Asterisk11ConfbridgeRepository extends AbstractAsteriskConferenceRe
         return result;
     }
 
+    /**
+     * Reads the participants of a room directly from the asterisk server.
+     * @return The participants or null if the server responded with an error, fx. because the room has ended.
+     */
     private List<Participant> readParticipantsFromServer(String roomId) {
         LOG.debug("Reading participants from server. [room={}]", roomId);
-        ResponseEvents events = sendAction(new ConfbridgeListAction(roomId));
+        ResponseEvents events = sendListAction(new ConfbridgeListAction(roomId));
         
         if(events.getResponse() != null && events.getResponse().getResponse().equals("Error")) {
             LOG.error("Error occured when sending ConfBridgeListAction to Asterisk. [{}]", events.getResponse());
@@ -269,7 +555,6 @@ public class Asterisk11ConfbridgeRepository extends AbstractAsteriskConferenceRe
                 ConfbridgeListEvent confbridgeListEvent = (ConfbridgeListEvent) event;
                 Participant p = participantFromEvent(confbridgeListEvent);
                 result.add(p);
-                channelRoomMap.put(confbridgeListEvent.getChannel(), new ChannelRoomEntry(p.isHost(), roomId));
             }
         }
         LOG.debug("Participants returned from server: {}", result.size());
@@ -279,18 +564,21 @@ public class Asterisk11ConfbridgeRepository extends AbstractAsteriskConferenceRe
     @Override
     public Room findOne(String id) {
         LOG.debug("Retrieving room [id={}]", id);
-        List<Participant> participants = readParticipantsFromServer(id);
-        if(participants == null) {
-            return null;
-        } else {
+        if(state.hasRoom(id)) {
             return new Room(id);
+        } else {
+            return null;
         }
     }
 
     @Override
     public List<Room> findAll() {
         LOG.debug("Retreiving all rooms.");
-        return readRoomsFromServer();
+        List<Room> result = new ArrayList<>();
+        for(String roomNo : state.getRoomIds()) {
+            result.add(new Room(roomNo));
+        }
+        return result;
     }
 
     @Override
@@ -310,19 +598,26 @@ public class Asterisk11ConfbridgeRepository extends AbstractAsteriskConferenceRe
     @Override
     public List<Participant> findByRoomNo(String roomNo) {
         LOG.debug("Listing participants. [room={}]", roomNo);
-        return readParticipantsFromServer(roomNo);
+        return state.getParticipants(roomNo);
     }
 
     @Override
-    public Participant findByRoomNoAndChannel(String roomNo, String channel) {
-        LOG.debug("Retrieving participant. [room={};channel={}]", roomNo, channel);
-        List<Participant> participants = findByRoomNo(roomNo);
-        for (Participant p : participants) {
-            if (channel.equals(p.getChannel())) {
-                return p;
+    public Map<String, List<Participant>> findByRoomNos(List<String> roomNos) {
+        LOG.debug("Listing participants. [rooms={}]", roomNos.size());
+        Map<String, List<Participant>> result = new LinkedHashMap<>();
+        for(String roomNo : roomNos) {
+            List<Participant> participants = state.getParticipants(roomNo);
+            if(participants != null) {
+                result.put(roomNo, participants);
             }
         }
-        return null;
+        return result;
+    }
+
+    @Override
+    public Participant findByRoomNoAndChannel(String roomNo, String channel) {
+        LOG.debug("Retrieving participant. [room={};channel={}]", roomNo, channel);
+        return state.getParticipant(roomNo, channel);
     }
 
     @Override
@@ -345,6 +640,94 @@ public class Asterisk11ConfbridgeRepository extends AbstractAsteriskConferenceRe
         onUnmuted(roomNo, channel);
     }
 
+    @Override
+    public ListenableFuture<Void> kickParticipantAsync(String roomNo, String channel) {
+        LOG.debug("Kicking participant asynchronously [room={};channel={}]", roomNo, channel);
+        return sendActionAsync(new ConfbridgeKickAction(roomNo, denormalizeChannelName(channel)), null);
+    }
+
+    @Override
+    public ListenableFuture<Void> muteParticipantAsync(final String roomNo, final String channel) {
+        LOG.debug("Muting participant asynchronously [room={};channel={}]", roomNo, channel);
+        return sendActionAsync(new ConfbridgeMuteAction(roomNo, denormalizeChannelName(channel)), new Runnable() {
+
+            @Override
+            public void run() {
+                onMuted(roomNo, channel);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> unmuteParticipantAsync(final String roomNo, final String channel) {
+        LOG.debug("Unmuting participant asynchronously [room={};channel={}]", roomNo, channel);
+        return sendActionAsync(new ConfbridgeUnmuteAction(roomNo, denormalizeChannelName(channel)), new Runnable() {
+
+            @Override
+            public void run() {
+                onUnmuted(roomNo, channel);
+            }
+        });
+    }
+
+    @Override
+    public List<String> muteParticipants(String roomNo, List<String> channels) {
+        LOG.debug("Muting participants [room={};count={}]", roomNo, channels.size());
+        List<String> changed = setMutenessOfParticipants(roomNo, channels, true);
+        if (!changed.isEmpty()) {
+            Asterisk11ConfbridgeRepository.this.fireEvent(new ParticipantsMuteEvent(roomNo, changed));
+        }
+        return changed;
+    }
+
+    @Override
+    public List<String> unmuteParticipants(String roomNo, List<String> channels) {
+        LOG.debug("Unmuting participants [room={};count={}]", roomNo, channels.size());
+        List<String> changed = setMutenessOfParticipants(roomNo, channels, false);
+        if (!changed.isEmpty()) {
+            Asterisk11ConfbridgeRepository.this.fireEvent(new ParticipantsUnmuteEvent(roomNo, changed));
+        }
+        return changed;
+    }
+
+    /**
+     * Sends the mute or unmute actions for several channels through the action client, at most half the actions allowed
+     * in flight at a time to leave room for other requests, and updates the live state for those which succeeded.
+     * @return The channels which succeeded.
+     */
+    private List<String> setMutenessOfParticipants(String roomId, List<String> channels, boolean value) {
+        ManagerConnection connection = asteriskServer.getManagerConnection();
+        int chunkSize = Math.max(1, actionClient.getMaxInFlight() / 2);
+        List<String> changed = new ArrayList<>();
+        
+        for (int i = 0; i < channels.size(); i += chunkSize) {
+            Map<String, ListenableFuture<ManagerResponse>> futures = new LinkedHashMap<>();
+            for (String channel : channels.subList(i, Math.min(channels.size(), i + chunkSize))) {
+                String denormChannel = denormalizeChannelName(channel);
+                ManagerAction a = value ? new ConfbridgeMuteAction(roomId, denormChannel) : new ConfbridgeUnmuteAction(roomId, denormChannel);
+                futures.put(channel, actionClient.send(connection, a));
+            }
+            
+            for (Map.Entry<String, ListenableFuture<ManagerResponse>> entry : futures.entrySet()) {
+                try {
+                    ManagerResponse response = entry.getValue().get();
+                    if ("Error".equals(response.getResponse())) {
+                        LOG.warn("Unable to set muteness of participant. Asterisk responded: {} [room={};channel={}]", 
+                                new Object[]{response.getMessage(), roomId, entry.getKey()});
+                        continue;
+                    }
+                    state.setMuted(roomId, entry.getKey(), value);
+                    changed.add(entry.getKey());
+                } catch (ExecutionException ex) {
+                    LOG.warn("Unable to set muteness of participant. [room=" + roomId + ";channel=" + entry.getKey() + "]", ex.getCause());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return changed;
+                }
+            }
+        }
+        return changed;
+    }
 
     private void setMutenessOfParticipant(String roomId, String channel, boolean value) {
         String denormChannel = denormalizeChannelName(channel);
@@ -397,12 +780,53 @@ public class Asterisk11ConfbridgeRepository extends AbstractAsteriskConferenceRe
         }
     }
 
-    private ResponseEvents sendAction(EventGeneratingAction action) {
-        LOG.debug("Sending EventGeneratingAction to server [action={}]", action);
-        try {
-            return asteriskServer.getManagerConnection().sendEventGeneratingAction(action, 1000);
-        } catch (IOException | EventTimeoutException | IllegalArgumentException | IllegalStateException ex) {
-            throw new RuntimeException(ex);
+    /**
+     * Sends an action through the action client.
+     * @param onSuccess Run when the server has accepted the action. May be null.
+     * @return A future which fails if the server responds with an error.
+     */
+    private ListenableFuture<Void> sendActionAsync(final ManagerAction action, final Runnable onSuccess) {
+        final SettableListenableFuture<Void> result = new SettableListenableFuture<>();
+        actionClient.send(asteriskServer.getManagerConnection(), action).addCallback(new ListenableFutureCallback<ManagerResponse>() {
+
+            @Override
+            public void onSuccess(ManagerResponse response) {
+                if ("Error".equals(response.getResponse())) {
+                    LOG.error("Unable to carry out action. Asterisk responded: {} [action={}]", response.getMessage(), action);
+                    result.setException(new InvalidDataAccessResourceUsageException(response.getMessage()));
+                    return;
+                }
+                if (onSuccess != null) {
+                    onSuccess.run();
+                }
+                result.set(null);
+            }
+
+            @Override
+            public void onFailure(Throwable ex) {
+                result.setException(ex);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Sends an action listing rooms or participants. The action is sent again if the server does not answer in time.
+     */
+    private ResponseEvents sendListAction(EventGeneratingAction action) {
+        for (int attempt = 0; ; attempt++) {
+            LOG.debug("Sending EventGeneratingAction to server [action={};attempt={}]", action, attempt + 1);
+            try {
+                return asteriskServer.getManagerConnection().sendEventGeneratingAction(action, listTimeout);
+            } catch (EventTimeoutException ex) {
+                if (attempt >= listRetries) {
+                    throw new RuntimeException(ex);
+                }
+                LOG.warn("Server did not answer in time. Trying again. [action={};timeout={}]", action, listTimeout);
+                listRetriesUsed.incrementAndGet();
+            } catch (IOException | IllegalArgumentException | IllegalStateException ex) {
+                throw new RuntimeException(ex);
+            }
         }
     }
     
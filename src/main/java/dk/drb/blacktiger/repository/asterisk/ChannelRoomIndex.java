@@ -0,0 +1,155 @@
+package dk.drb.blacktiger.repository.asterisk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Index between the channels on the Asterisk server and the conference rooms they are in.
+ * <p>
+ * DTMF events never carry the conference room the caller is in, so the room is looked up in this index by the channel of
+ * the event. The index is kept both ways, so all channels of a room can be removed when the room ends. Channels are kept
+ * normalized, like in <code>ConferenceState</code>.</p>
+ * <p>
+ * Lookups may be done from any thread without locking. Changes are serialized, so the two directions always agree.</p>
+ */
+public class ChannelRoomIndex {
+
+    public static class Entry {
+        private final String channel;
+        private final String roomNo;
+        private final boolean host;
+
+        public Entry(String channel, String roomNo, boolean host) {
+            this.channel = channel;
+            this.roomNo = roomNo;
+            this.host = host;
+        }
+
+        public String getChannel() {
+            return channel;
+        }
+
+        public String getRoomNo() {
+            return roomNo;
+        }
+
+        public boolean isHost() {
+            return host;
+        }
+    }
+
+    private final ConcurrentMap<String, Entry> channels = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<String>> rooms = new ConcurrentHashMap<>();
+
+    /**
+     * Registers a channel as being in a room. A channel already registered in another room is moved.
+     */
+    public synchronized void put(String channel, String roomNo, boolean host) {
+        Entry previous = channels.put(channel, new Entry(channel, roomNo, host));
+        if (previous != null && !previous.roomNo.equals(roomNo)) {
+            removeFromRoom(previous);
+        }
+        Set<String> roomChannels = rooms.get(roomNo);
+        if (roomChannels == null) {
+            roomChannels = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            rooms.put(roomNo, roomChannels);
+        }
+        roomChannels.add(channel);
+    }
+
+    /**
+     * Retrieves the entry of a channel.
+     * @return The entry or null if the channel is not known.
+     */
+    public Entry get(String channel) {
+        return channels.get(channel);
+    }
+
+    /**
+     * Removes a channel.
+     * @return The entry removed or null if the channel was not known.
+     */
+    public synchronized Entry remove(String channel) {
+        Entry entry = channels.remove(channel);
+        if (entry != null) {
+            removeFromRoom(entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Removes a channel, but only if it is still registered in the given room.
+     * @return True if the channel was removed.
+     */
+    public synchronized boolean remove(String channel, String roomNo) {
+        Entry entry = channels.get(channel);
+        if (entry == null || !entry.roomNo.equals(roomNo)) {
+            return false;
+        }
+        channels.remove(channel);
+        removeFromRoom(entry);
+        return true;
+    }
+
+    /**
+     * Removes all channels of a room.
+     * @return The number of channels removed.
+     */
+    public synchronized int removeRoom(String roomNo) {
+        Set<String> roomChannels = rooms.remove(roomNo);
+        if (roomChannels == null) {
+            return 0;
+        }
+        for (String channel : roomChannels) {
+            channels.remove(channel);
+        }
+        return roomChannels.size();
+    }
+
+    /**
+     * Retrieves the channels registered in a room.
+     * @return The channels. The set is empty if the room is not known.
+     */
+    public Set<String> getChannels(String roomNo) {
+        Set<String> roomChannels = rooms.get(roomNo);
+        return roomChannels == null ? Collections.<String>emptySet() : new HashSet<>(roomChannels);
+    }
+
+    /**
+     * Retrieves all entries of the index.
+     */
+    public List<Entry> getEntries() {
+        return new ArrayList<>(channels.values());
+    }
+
+    public int size() {
+        return channels.size();
+    }
+
+    public int getRoomCount() {
+        return rooms.size();
+    }
+
+    /**
+     * Removes all channels.
+     */
+    public synchronized void clear() {
+        channels.clear();
+        rooms.clear();
+    }
+
+    private void removeFromRoom(Entry entry) {
+        Set<String> roomChannels = rooms.get(entry.roomNo);
+        if (roomChannels != null) {
+            roomChannels.remove(entry.channel);
+            if (roomChannels.isEmpty()) {
+                rooms.remove(entry.roomNo);
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package dk.drb.blacktiger.repository.asterisk;
+
+import dk.drb.blacktiger.model.Participant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory view of the conference rooms and participants currently live on the Asterisk server.
+ * <p>
+ * The state is maintained from the Confbridge events received from the server and serves all reads without round-trips
+ * to Asterisk. Participants are copied when stored and when read, so callers are free to decorate the instances they
+ * receive.</p>
+ * <p>
+ * Every change bumps a version number which is recorded on the room being changed. This allows an audit against the
+ * server to detect rooms which have been changed by events while the server was being queried. The version at which a
+ * room ended is kept as well, so a room ended while the server was being queried is not started again from the older
+ * answer of the server.</p>
+ */
+public class ConferenceState {
+
+    private static class RoomEntry {
+        private final Map<String, Participant> participants = new LinkedHashMap<>();
+        private long version;
+    }
+
+    private final ConcurrentNavigableMap<String, RoomEntry> rooms = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, Long> endedRooms = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private volatile long clearedVersion = -1;
+
+    /**
+     * Registers a room as started. Nothing happens if the room is already known.
+     * @return True if the room was not known beforehand.
+     */
+    public boolean startRoom(String roomNo) {
+        RoomEntry entry = new RoomEntry();
+        entry.version = version.incrementAndGet();
+        return rooms.putIfAbsent(roomNo, entry) == null;
+    }
+
+    /**
+     * Removes a room and all of its participants.
+     * @return The participants which were in the room or null if the room was not known.
+     */
+    public List<Participant> endRoom(String roomNo) {
+        endedRooms.put(roomNo, version.incrementAndGet());
+        RoomEntry entry = rooms.remove(roomNo);
+        if (entry == null) {
+            return null;
+        }
+        synchronized (entry) {
+            return copyOf(entry.participants.values());
+        }
+    }
+
+    public boolean hasRoom(String roomNo) {
+        return rooms.containsKey(roomNo);
+    }
+
+    /**
+     * Retrieves the ids of all known rooms ordered by id.
+     */
+    public List<String> getRoomIds() {
+        return new ArrayList<>(rooms.keySet());
+    }
+
+    /**
+     * Adds a participant to a room. The room is registered as started if it was not known.
+     */
+    public void addParticipant(String roomNo, Participant participant) {
+        RoomEntry entry = entryForUpdate(roomNo);
+        synchronized (entry) {
+            entry.participants.put(participant.getChannel(), copyOf(participant));
+            entry.version = version.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes a participant from a room.
+     * @return The participant removed or null if the participant was not known.
+     */
+    public Participant removeParticipant(String roomNo, String channel) {
+        RoomEntry entry = rooms.get(roomNo);
+        if (entry == null) {
+            return null;
+        }
+        synchronized (entry) {
+            entry.version = version.incrementAndGet();
+            return entry.participants.remove(channel);
+        }
+    }
+
+    /**
+     * Sets the muteness of a participant.
+     * @return True if the participant was known.
+     */
+    public boolean setMuted(String roomNo, String channel, boolean muted) {
+        RoomEntry entry = rooms.get(roomNo);
+        if (entry == null) {
+            return false;
+        }
+        synchronized (entry) {
+            Participant participant = entry.participants.get(channel);
+            if (participant == null) {
+                return false;
+            }
+            participant.setMuted(muted);
+            entry.version = version.incrementAndGet();
+            return true;
+        }
+    }
+
+    /**
+     * Retrieves copies of the participants in a room in the order they joined.
+     * @return The list of participants or null if the room is not known.
+     */
+    public List<Participant> getParticipants(String roomNo) {
+        RoomEntry entry = rooms.get(roomNo);
+        if (entry == null) {
+            return null;
+        }
+        synchronized (entry) {
+            return copyOf(entry.participants.values());
+        }
+    }
+
+    /**
+     * Retrieves a copy of a specific participant.
+     * @return The participant or null if not known.
+     */
+    public Participant getParticipant(String roomNo, String channel) {
+        RoomEntry entry = rooms.get(roomNo);
+        if (entry == null) {
+            return null;
+        }
+        synchronized (entry) {
+            Participant participant = entry.participants.get(channel);
+            return participant == null ? null : copyOf(participant);
+        }
+    }
+
+    /**
+     * The current version of the state. The version is incremented on every change.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * The version of the state when the given room was last changed. For a room which is not known this is the version
+     * at which it ended or the state was cleared.
+     * @return The version or -1 if the room has never been known.
+     */
+    public long getRoomVersion(String roomNo) {
+        RoomEntry entry = rooms.get(roomNo);
+        if (entry == null) {
+            Long ended = endedRooms.get(roomNo);
+            return Math.max(ended == null ? -1 : ended, clearedVersion);
+        }
+        synchronized (entry) {
+            return entry.version;
+        }
+    }
+
+    /**
+     * Forgets the versions of rooms which ended at or before the given version. Once no audit started before that
+     * version is running, they are not needed anymore.
+     */
+    public void forgetEndedRooms(long upToVersion) {
+        for (Map.Entry<String, Long> entry : endedRooms.entrySet()) {
+            if (entry.getValue() <= upToVersion) {
+                endedRooms.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * The number of ended rooms whose version is still kept.
+     */
+    public int getEndedRoomCount() {
+        return endedRooms.size();
+    }
+
+    public int getRoomCount() {
+        return rooms.size();
+    }
+
+    public int getParticipantCount() {
+        int count = 0;
+        for (RoomEntry entry : rooms.values()) {
+            synchronized (entry) {
+                count += entry.participants.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Removes all rooms and participants.
+     */
+    public void clear() {
+        clearedVersion = version.incrementAndGet();
+        endedRooms.clear();
+        rooms.clear();
+    }
+
+    private RoomEntry entryForUpdate(String roomNo) {
+        RoomEntry entry = rooms.get(roomNo);
+        if (entry == null) {
+            startRoom(roomNo);
+            entry = rooms.get(roomNo);
+        }
+        return entry;
+    }
+
+    private static List<Participant> copyOf(Iterable<Participant> participants) {
+        List<Participant> result = new ArrayList<>();
+        for (Participant participant : participants) {
+            result.add(copyOf(participant));
+        }
+        return result;
+    }
+
+    private static Participant copyOf(Participant p) {
+        return new Participant(p.getChannel(), p.getCallerId(), p.getName(), p.getPhoneNumber(), p.isMuted(), p.isHost(), p.getType(),
+                p.getDateJoined());
+    }
+}
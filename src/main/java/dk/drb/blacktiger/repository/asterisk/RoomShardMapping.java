@@ -0,0 +1,84 @@
+package dk.drb.blacktiger.repository.asterisk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Maps room numbers to the Asterisk server hosting them by prefix.
+ * <p>
+ * The mapping is written as <code>prefix=server</code> pairs separated by comma, fx. <code>H45=a,H46=b,*=a</code>. The
+ * longest matching prefix wins and <code>*</code> matches all rooms.</p>
+ */
+public class RoomShardMapping {
+
+    private static class Rule {
+        private final String prefix;
+        private final String server;
+
+        public Rule(String prefix, String server) {
+            this.prefix = prefix;
+            this.server = server;
+        }
+    }
+
+    private final List<Rule> rules;
+    private final String defaultServer;
+
+    private RoomShardMapping(List<Rule> rules, String defaultServer) {
+        this.rules = rules;
+        this.defaultServer = defaultServer;
+    }
+
+    /**
+     * Parses a mapping.
+     * @param text The mapping, fx. <code>H45=a,*=b</code>.
+     * @param servers The known servers. The first one is used for rooms not matched by the mapping.
+     */
+    public static RoomShardMapping parse(String text, List<String> servers) {
+        if (servers.isEmpty()) {
+            throw new IllegalArgumentException("At least one server must be specified.");
+        }
+
+        List<Rule> rules = new ArrayList<>();
+        String defaultServer = servers.get(0);
+        if (text != null && !text.trim().isEmpty()) {
+            for (String part : text.split(",")) {
+                String[] pair = part.trim().split("=");
+                if (pair.length != 2 || !servers.contains(pair[1].trim())) {
+                    throw new IllegalArgumentException("Invalid room mapping: " + part);
+                }
+
+                String prefix = pair[0].trim();
+                String server = pair[1].trim();
+                if ("*".equals(prefix)) {
+                    defaultServer = server;
+                } else {
+                    rules.add(new Rule(prefix, server));
+                }
+            }
+        }
+
+        Collections.sort(rules, new Comparator<Rule>() {
+
+            @Override
+            public int compare(Rule o1, Rule o2) {
+                return o2.prefix.length() - o1.prefix.length();
+            }
+        });
+        return new RoomShardMapping(rules, defaultServer);
+    }
+
+    /**
+     * Retrieves the server a room is mapped to.
+     */
+    public String serverFor(String roomNo) {
+        for (Rule rule : rules) {
+            if (roomNo.startsWith(rule.prefix)) {
+                return rule.server;
+            }
+        }
+        return defaultServer;
+    }
+}
@@ -0,0 +1,323 @@
+package dk.drb.blacktiger.repository.asterisk;
+
+import dk.drb.blacktiger.model.ConferenceEndEvent;
+import dk.drb.blacktiger.model.ConferenceEvent;
+import dk.drb.blacktiger.model.ConferenceEventListener;
+import dk.drb.blacktiger.model.ConferenceStartEvent;
+import dk.drb.blacktiger.model.Participant;
+import dk.drb.blacktiger.model.ParticipantJoinEvent;
+import dk.drb.blacktiger.model.Room;
+import dk.drb.blacktiger.repository.ConferenceRoomRepository;
+import dk.drb.blacktiger.util.MetricsSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.concurrent.ListenableFuture;
+
+/**
+ * A ConferenceRoomRepository spread over several Asterisk servers, each handled by its own
+ * <code>Asterisk11ConfbridgeRepository</code>.
+ * <p>
+ * Rooms are routed to the server they were last seen on, or by the <code>RoomShardMapping</code> for rooms not seen
+ * yet. Rooms of all servers are read in parallel. Events from the servers are passed on with their origin set to the
+ * id of the server.</p>
+ */
+public class ShardedConfbridgeRepository implements ConferenceRoomRepository, MetricsSource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ShardedConfbridgeRepository.class);
+    private static final long READ_TIMEOUT = 5000;
+
+    private final Map<String, Asterisk11ConfbridgeRepository> shards;
+    private final RoomShardMapping mapping;
+    private final ConcurrentMap<String, String> roomServers = new ConcurrentHashMap<>();
+    private final List<ConferenceEventListener> eventListeners = new CopyOnWriteArrayList<>();
+    private final ExecutorService executor;
+    private final AtomicLong failedReads = new AtomicLong();
+
+    /**
+     * Creates a new instance.
+     * @param shards The repositories by server id.
+     * @param mapping The mapping of rooms not seen on any server yet.
+     */
+    public ShardedConfbridgeRepository(Map<String, Asterisk11ConfbridgeRepository> shards, RoomShardMapping mapping) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard must be specified.");
+        }
+        this.shards = Collections.unmodifiableMap(new LinkedHashMap<>(shards));
+        this.mapping = mapping;
+
+        final AtomicInteger threadNo = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(shards.size(), new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "asterisk-shards-" + threadNo.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        for (final Map.Entry<String, Asterisk11ConfbridgeRepository> entry : this.shards.entrySet()) {
+            entry.getValue().addEventListener(new ConferenceEventListener() {
+
+                @Override
+                public void onParticipantEvent(ConferenceEvent event) {
+                    onShardEvent(entry.getKey(), event);
+                }
+            });
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        for (Asterisk11ConfbridgeRepository shard : shards.values()) {
+            shard.start();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        for (Asterisk11ConfbridgeRepository shard : shards.values()) {
+            shard.stop();
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * Audits all servers in parallel, see <code>Asterisk11ConfbridgeRepository.audit()</code>.
+     */
+    @Scheduled(fixedDelay = 60000, initialDelay = 60000)
+    public void audit() {
+        forEachShard(new ShardCall<Void>() {
+
+            @Override
+            public Void call(Asterisk11ConfbridgeRepository shard) {
+                shard.audit();
+                return null;
+            }
+        });
+    }
+
+    private void onShardEvent(String server, ConferenceEvent event) {
+        event.setOrigin(server);
+        if (event instanceof ConferenceStartEvent || event instanceof ParticipantJoinEvent) {
+            roomServers.put(event.getRoomNo(), server);
+        }
+        if (event instanceof ConferenceEndEvent) {
+            roomServers.remove(event.getRoomNo(), server);
+        }
+
+        for (ConferenceEventListener listener : eventListeners) {
+            listener.onParticipantEvent(event);
+        }
+    }
+
+    /**
+     * Retrieves the id of the server hosting a room.
+     */
+    public String serverFor(String roomNo) {
+        String server = roomServers.get(roomNo);
+        return server == null ? mapping.serverFor(roomNo) : server;
+    }
+
+    private Asterisk11ConfbridgeRepository shardFor(String roomNo) {
+        return shards.get(serverFor(roomNo));
+    }
+
+    @Override
+    public List<Room> findAll() {
+        LOG.debug("Retreiving all rooms from {} servers.", shards.size());
+        List<Room> result = new ArrayList<>();
+        for (Map.Entry<String, List<Room>> entry : forEachShard(new ShardCall<List<Room>>() {
+
+            @Override
+            public List<Room> call(Asterisk11ConfbridgeRepository shard) {
+                return shard.findAll();
+            }
+        }).entrySet()) {
+            for (Room room : entry.getValue()) {
+                roomServers.putIfAbsent(room.getId(), entry.getKey());
+                result.add(room);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Room> findAllByIds(List<String> ids) {
+        List<Room> result = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : groupByServer(ids).entrySet()) {
+            result.addAll(shards.get(entry.getKey()).findAllByIds(entry.getValue()));
+        }
+        return result;
+    }
+
+    @Override
+    public Room findOne(String id) {
+        return shardFor(id).findOne(id);
+    }
+
+    @Override
+    public List<Participant> findByRoomNo(String roomNo) {
+        return shardFor(roomNo).findByRoomNo(roomNo);
+    }
+
+    @Override
+    public Map<String, List<Participant>> findByRoomNos(List<String> roomNos) {
+        Map<String, List<Participant>> found = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> entry : groupByServer(roomNos).entrySet()) {
+            found.putAll(shards.get(entry.getKey()).findByRoomNos(entry.getValue()));
+        }
+
+        // Keep the order of the room numbers given.
+        Map<String, List<Participant>> result = new LinkedHashMap<>();
+        for (String roomNo : roomNos) {
+            if (found.containsKey(roomNo)) {
+                result.put(roomNo, found.get(roomNo));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Participant findByRoomNoAndChannel(String roomNo, String channel) {
+        return shardFor(roomNo).findByRoomNoAndChannel(roomNo, channel);
+    }
+
+    @Override
+    public void kickParticipant(String roomNo, String channel) {
+        shardFor(roomNo).kickParticipant(roomNo, channel);
+    }
+
+    @Override
+    public void muteParticipant(String roomNo, String channel) {
+        shardFor(roomNo).muteParticipant(roomNo, channel);
+    }
+
+    @Override
+    public void unmuteParticipant(String roomNo, String channel) {
+        shardFor(roomNo).unmuteParticipant(roomNo, channel);
+    }
+
+    @Override
+    public ListenableFuture<Void> kickParticipantAsync(String roomNo, String channel) {
+        return shardFor(roomNo).kickParticipantAsync(roomNo, channel);
+    }
+
+    @Override
+    public ListenableFuture<Void> muteParticipantAsync(String roomNo, String channel) {
+        return shardFor(roomNo).muteParticipantAsync(roomNo, channel);
+    }
+
+    @Override
+    public ListenableFuture<Void> unmuteParticipantAsync(String roomNo, String channel) {
+        return shardFor(roomNo).unmuteParticipantAsync(roomNo, channel);
+    }
+
+    @Override
+    public List<String> muteParticipants(String roomNo, List<String> channels) {
+        return shardFor(roomNo).muteParticipants(roomNo, channels);
+    }
+
+    @Override
+    public List<String> unmuteParticipants(String roomNo, List<String> channels) {
+        return shardFor(roomNo).unmuteParticipants(roomNo, channels);
+    }
+
+    @Override
+    public void addEventListener(ConferenceEventListener listener) {
+        if (listener != null) {
+            eventListeners.add(listener);
+        }
+    }
+
+    @Override
+    public void removeEventListener(ConferenceEventListener listener) {
+        eventListeners.remove(listener);
+    }
+
+    @Override
+    public Map<String, Number> getMetrics() {
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        metrics.put("servers", shards.size());
+        metrics.put("failedReads", failedReads.get());
+        for (Map.Entry<String, Asterisk11ConfbridgeRepository> entry : shards.entrySet()) {
+            for (Map.Entry<String, Number> metric : entry.getValue().getMetrics().entrySet()) {
+                metrics.put(entry.getKey() + "." + metric.getKey(), metric.getValue());
+            }
+        }
+        return metrics;
+    }
+
+    private Map<String, List<String>> groupByServer(List<String> roomNos) {
+        Map<String, List<String>> groups = new LinkedHashMap<>();
+        for (String roomNo : roomNos) {
+            String server = serverFor(roomNo);
+            List<String> group = groups.get(server);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(server, group);
+            }
+            group.add(roomNo);
+        }
+        return groups;
+    }
+
+    private interface ShardCall<T> {
+
+        T call(Asterisk11ConfbridgeRepository shard);
+    }
+
+    /**
+     * Calls all shards in parallel. Shards failing or not answering in time are logged and left out of the result, so
+     * that one server being down does not take the others with it.
+     */
+    private <T> Map<String, T> forEachShard(final ShardCall<T> call) {
+        Map<String, Future<T>> futures = new LinkedHashMap<>();
+        for (final Map.Entry<String, Asterisk11ConfbridgeRepository> entry : shards.entrySet()) {
+            futures.put(entry.getKey(), executor.submit(new Callable<T>() {
+
+                @Override
+                public T call() throws Exception {
+                    return call.call(entry.getValue());
+                }
+            }));
+        }
+
+        Map<String, T> result = new LinkedHashMap<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(READ_TIMEOUT);
+        for (Map.Entry<String, Future<T>> entry : futures.entrySet()) {
+            try {
+                result.put(entry.getKey(), entry.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (ExecutionException | TimeoutException ex) {
+                failedReads.incrementAndGet();
+                entry.getValue().cancel(true);
+                LOG.error("Unable to read from server. [server=" + entry.getKey() + "]", ex);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,161 @@
+package dk.drb.blacktiger.repository.cache;
+
+import dk.drb.blacktiger.model.PhonebookEntry;
+import dk.drb.blacktiger.model.PhonebookUpdateEvent;
+import dk.drb.blacktiger.repository.PhonebookRepository;
+import dk.drb.blacktiger.util.MetricsSource;
+import dk.drb.blacktiger.util.TtlCache;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A PhonebookRepository which caches lookups from another PhonebookRepository.
+ * <p>
+ * Entries are cached per hall and number. When an entry is saved, all cached entries for the number are invalidated,
+ * both directly and when the update event from the underlying repository arrives. Unknown numbers are not cached.</p>
+ * <p>
+ * Every invalidation starts a new generation. Entries loaded are only cached if no invalidation happened while they
+ * were loaded, as they may have been read before the save they would otherwise hide until they expire.</p>
+ */
+public class CachingPhonebookRepository implements PhonebookRepository, MetricsSource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachingPhonebookRepository.class);
+
+    private final PhonebookRepository delegate;
+    private final TtlCache<String, PhonebookEntry> cache;
+    private final Object generationLock = new Object();
+    private long generation;
+
+    /**
+     * Creates a new instance.
+     * @param delegate The repository to cache lookups from.
+     * @param maxSize The maximum number of entries to cache.
+     * @param ttl The time in seconds entries are cached.
+     */
+    public CachingPhonebookRepository(PhonebookRepository delegate, int maxSize, long ttl) {
+        this.delegate = delegate;
+        this.cache = new TtlCache<>(maxSize, ttl, TimeUnit.SECONDS);
+
+        // Registered before any other listener, so the cache is invalidated before others are notified.
+        delegate.addEventListener(new PhonebookEventListener() {
+
+            @Override
+            public void onUpdate(PhonebookUpdateEvent event) {
+                invalidateNumber(event.getPhoneNumber());
+            }
+        });
+    }
+
+    @Override
+    public void addEventListener(PhonebookEventListener eventListener) {
+        delegate.addEventListener(eventListener);
+    }
+
+    @Override
+    public void removeEventListener(PhonebookEventListener eventListener) {
+        delegate.removeEventListener(eventListener);
+    }
+
+    @Override
+    public PhonebookEntry findByCallerId(String hallCalling, String number) {
+        String key = keyOf(hallCalling, number);
+        PhonebookEntry entry = cache.get(key);
+        if (entry == null) {
+            long loadGeneration = currentGeneration();
+            entry = delegate.findByCallerId(hallCalling, number);
+            putLoaded(loadGeneration, Collections.singletonMap(key, entry));
+        }
+        return entry;
+    }
+
+    @Override
+    public Map<String, PhonebookEntry> findByCallerIds(String hallCalling, Collection<String> numbers) {
+        Map<String, PhonebookEntry> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for(String number : numbers) {
+            PhonebookEntry entry = cache.get(keyOf(hallCalling, number));
+            if(entry == null) {
+                missing.add(number);
+            } else {
+                result.put(number, entry);
+            }
+        }
+        
+        if(!missing.isEmpty()) {
+            long loadGeneration = currentGeneration();
+            Map<String, PhonebookEntry> loaded = delegate.findByCallerIds(hallCalling, missing);
+            Map<String, PhonebookEntry> entries = new HashMap<>();
+            for(Map.Entry<String, PhonebookEntry> e : loaded.entrySet()) {
+                entries.put(keyOf(hallCalling, e.getKey()), e.getValue());
+            }
+            putLoaded(loadGeneration, entries);
+            result.putAll(loaded);
+        }
+        return result;
+    }
+
+    @Override
+    public PhonebookEntry save(String hallCalling, PhonebookEntry entry) {
+        invalidateNumber(entry.getNumber());
+        PhonebookEntry result = delegate.save(hallCalling, entry);
+        invalidateNumber(entry.getNumber());
+        return result;
+    }
+
+    @Override
+    public Map<String, Number> getMetrics() {
+        return cache.getMetrics();
+    }
+
+    private void invalidateNumber(final String number) {
+        if (number == null) {
+            return;
+        }
+
+        LOG.debug("Invalidating cached phonebook entries. [number={}]", number);
+        synchronized (generationLock) {
+            generation++;
+        }
+        final String keySuffix = "|" + number;
+        cache.invalidateAll(new TtlCache.EntryFilter<String, PhonebookEntry>() {
+
+            @Override
+            public boolean matches(String key, PhonebookEntry value) {
+                return key.endsWith(keySuffix) || number.equals(value.getNumber());
+            }
+        });
+    }
+
+    private long currentGeneration() {
+        synchronized (generationLock) {
+            return generation;
+        }
+    }
+
+    /**
+     * Caches entries loaded in the given generation, unless an invalidation has happened since. An invalidation
+     * starting after the check removes the entries again, as the generation is changed before entries are removed.
+     */
+    private void putLoaded(long loadGeneration, Map<String, PhonebookEntry> entries) {
+        synchronized (generationLock) {
+            if (generation != loadGeneration) {
+                LOG.debug("Not caching phonebook entries invalidated while loading. [count={}]", entries.size());
+                return;
+            }
+            for (Map.Entry<String, PhonebookEntry> e : entries.entrySet()) {
+                cache.put(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    private String keyOf(String hall, String number) {
+        return hall + "|" + number;
+    }
+}
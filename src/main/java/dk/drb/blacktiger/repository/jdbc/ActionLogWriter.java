@@ -0,0 +1,200 @@
+package dk.drb.blacktiger.repository.jdbc;
+
+import dk.drb.blacktiger.util.MetricsSource;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Write-behind writer for the call action log.
+ * <p>
+ * Entries are buffered in memory and written by a background thread in JDBC batches of <code>WRITE_CALL_LOG</code>
+ * calls, either when a full batch is available or when the flush interval has elapsed. Adding an entry never blocks; if
+ * the buffer is full the entry is dropped and counted.</p>
+ */
+public class ActionLogWriter implements MetricsSource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ActionLogWriter.class);
+    private static final String SQL = "CALL WRITE_CALL_LOG(?,?,?,?)";
+
+    private static class Entry {
+        private final String caller;
+        private final String callee;
+        private final String action;
+
+        public Entry(String caller, String callee, String action) {
+            this.caller = caller;
+            this.callee = callee;
+            this.action = action;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String encryptionKey;
+    private final BlockingQueue<Entry> queue;
+    private final int batchSize;
+    private final long flushInterval;
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private volatile Thread flusherThread;
+
+    /**
+     * Creates a new writer.
+     * @param jdbcTemplate The template used for writing.
+     * @param encryptionKey The encryption key passed to the stored procedure.
+     * @param capacity The maximum number of entries waiting to be written.
+     * @param batchSize The maximum number of entries written in one batch.
+     * @param flushInterval The maximum time in milliseconds an entry waits before being written.
+     */
+    public ActionLogWriter(JdbcTemplate jdbcTemplate, String encryptionKey, int capacity, int batchSize, long flushInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.encryptionKey = encryptionKey;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * Adds an entry to be written.
+     * @return False if the entry was dropped because the buffer is full.
+     */
+    public boolean add(String caller, String callee, String action) {
+        if (!queue.offer(new Entry(caller, callee, action))) {
+            dropped.incrementAndGet();
+            LOG.warn("Action log buffer is full. Entry dropped. [caller={};callee={};action={}]", new Object[]{caller, callee, action});
+            return false;
+        }
+        return true;
+    }
+
+    public synchronized void start() {
+        if (flusherThread != null) {
+            return;
+        }
+
+        flusherThread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                Thread current = Thread.currentThread();
+                while (flusherThread == current) {
+                    try {
+                        List<Entry> batch = takeBatch();
+                        if (!batch.isEmpty()) {
+                            write(batch);
+                        }
+                    } catch (InterruptedException ex) {
+                        break;
+                    }
+                }
+                flush();
+            }
+        }, "action-log-writer");
+        flusherThread.setDaemon(true);
+        flusherThread.start();
+    }
+
+    /**
+     * Stops the background thread after writing the entries left in the buffer.
+     */
+    public synchronized void stop() {
+        Thread thread = flusherThread;
+        flusherThread = null;
+        if (thread != null) {
+            try {
+                thread.join(flushInterval + TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Writes all entries currently in the buffer on the calling thread.
+     */
+    public void flush() {
+        List<Entry> batch = new ArrayList<>();
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    @Override
+    public Map<String, Number> getMetrics() {
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        metrics.put("pending", queue.size());
+        metrics.put("written", written.get());
+        metrics.put("batches", batches.get());
+        metrics.put("dropped", dropped.get());
+        metrics.put("failed", failed.get());
+        return metrics;
+    }
+
+    /**
+     * Waits for the first entry and then collects entries until the batch is full or the flush interval has elapsed.
+     */
+    private List<Entry> takeBatch() throws InterruptedException {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        Entry first = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return batch;
+        }
+        batch.add(first);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushInterval);
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) {
+                break;
+            }
+            Entry next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    private void write(final List<Entry> batch) {
+        LOG.debug("Writing action log batch. [size={}]", batch.size());
+        try {
+            jdbcTemplate.batchUpdate(SQL, new BatchPreparedStatementSetter() {
+
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    Entry entry = batch.get(i);
+                    ps.setString(1, entry.caller);
+                    ps.setString(2, entry.callee);
+                    ps.setString(3, entry.action);
+                    ps.setString(4, encryptionKey);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return batch.size();
+                }
+            });
+            written.addAndGet(batch.size());
+            batches.incrementAndGet();
+        } catch (RuntimeException ex) {
+            failed.addAndGet(batch.size());
+            LOG.error("Error while writing action log batch. [size=" + batch.size() + "]", ex);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package dk.drb.blacktiger.repository.jdbc;
+
+import dk.drb.blacktiger.util.MetricsSource;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Loads and caches the result of the <code>get_hall_info</code> stored procedure.
+ * <p>
+ * The procedure returns both the room information and the contact of a hall, so this loader is shared by
+ * <code>JdbcRoomInfoRepository</code> and <code>JdbcContactRepository</code>, making one call serve both.</p>
+ * <p>
+ * Results are cached for the ttl. When a result older than the refresh interval is requested, the cached result is
+ * returned and a reload is started in the background, so callers rarely wait for the database.</p>
+ */
+public class HallInfoLoader implements MetricsSource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HallInfoLoader.class);
+
+    private static class CacheEntry {
+        private final Map<String, String> data;
+        private final long loaded;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        public CacheEntry(Map<String, String> data, long loaded) {
+            this.data = data;
+            this.loaded = loaded;
+        }
+    }
+
+    private final GetHallInfoSP procedure;
+    private final String encryptionKey;
+    private final long ttlNanos;
+    private final long refreshNanos;
+    private final ConcurrentMap<String, CacheEntry> cache = new ConcurrentHashMap<>();
+    private final ExecutorService refreshExecutor;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong refreshFailures = new AtomicLong();
+
+    /**
+     * Creates a new loader.
+     * @param jdbcTemplate The template used for calling the procedure.
+     * @param encryptionKey The encryption key passed to the procedure.
+     * @param ttl The time in seconds a result is cached.
+     * @param refreshInterval The time in seconds after which a result is reloaded in the background when requested.
+     */
+    public HallInfoLoader(JdbcTemplate jdbcTemplate, String encryptionKey, long ttl, long refreshInterval) {
+        this.procedure = new GetHallInfoSP(jdbcTemplate);
+        this.encryptionKey = encryptionKey;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttl);
+        this.refreshNanos = TimeUnit.SECONDS.toNanos(Math.min(ttl, refreshInterval));
+        this.refreshExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "hall-info-refresh");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Retrieves the hall information for a hall.
+     * @return The raw output parameters of the procedure.
+     */
+    public Map<String, String> load(final String hall) {
+        long now = System.nanoTime();
+        final CacheEntry entry = cache.get(hall);
+        if (entry == null || now - entry.loaded >= ttlNanos) {
+            loads.incrementAndGet();
+            CacheEntry loaded = loadFromDatabase(hall);
+            if (ttlNanos > 0) {
+                cache.put(hall, loaded);
+            }
+            return loaded.data;
+        }
+
+        hits.incrementAndGet();
+        if (now - entry.loaded >= refreshNanos && entry.refreshing.compareAndSet(false, true)) {
+            try {
+                refreshExecutor.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        refresh(hall, entry);
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                LOG.debug("Refresh of hall info rejected. [hall={}]", hall);
+            }
+        }
+        return entry.data;
+    }
+
+    /**
+     * Removes the cached information for a hall, so that it is read from the database on the next request.
+     */
+    public void invalidate(String hall) {
+        LOG.debug("Invalidating hall info. [hall={}]", hall);
+        cache.remove(hall);
+    }
+
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    @Override
+    public Map<String, Number> getMetrics() {
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        metrics.put("size", cache.size());
+        metrics.put("hits", hits.get());
+        metrics.put("loads", loads.get());
+        metrics.put("refreshes", refreshes.get());
+        metrics.put("refreshFailures", refreshFailures.get());
+        return metrics;
+    }
+
+    private void refresh(String hall, CacheEntry entry) {
+        try {
+            // Only replace the entry if it has not been invalidated or replaced in the meantime.
+            if (cache.replace(hall, entry, loadFromDatabase(hall))) {
+                refreshes.incrementAndGet();
+            }
+        } catch (RuntimeException ex) {
+            refreshFailures.incrementAndGet();
+            LOG.warn("Unable to refresh hall info. Keeping cached information. [hall=" + hall + "]", ex);
+        } finally {
+            entry.refreshing.set(false);
+        }
+    }
+
+    private CacheEntry loadFromDatabase(String hall) {
+        LOG.debug("Loading hall info. [hall={}]", hall);
+        Map<String, String> data = new HashMap<>();
+        Map<String, Object> result = procedure.execute(hall, encryptionKey);
+        for (Map.Entry<String, Object> e : result.entrySet()) {
+            data.put(e.getKey(), e.getValue() == null ? null : e.getValue().toString());
+        }
+
+        return new CacheEntry(Collections.unmodifiableMap(data), System.nanoTime());
+    }
+}
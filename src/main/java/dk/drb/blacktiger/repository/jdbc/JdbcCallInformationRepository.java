@@ -3,33 +3,45 @@ package dk.drb.blacktiger.repository.jdbc;
 import dk.drb.blacktiger.repository.CallInformationRepository;
 import dk.drb.blacktiger.model.CallInformation;
 import dk.drb.blacktiger.util.IpPhoneNumber;
+import dk.drb.blacktiger.util.MetricsSource;
 import dk.drb.blacktiger.util.PhoneNumber;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.sql.DataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
-import org.springframework.jdbc.core.SqlParameter;
-import org.springframework.jdbc.object.StoredProcedure;
 import org.springframework.util.Assert;
 
 /**
  *
  */
-public class JdbcCallInformationRepository implements CallInformationRepository {
+public class JdbcCallInformationRepository implements CallInformationRepository, MetricsSource {
 
     private static final Logger LOG = LoggerFactory.getLogger(JdbcCallInformationRepository.class);
     private JdbcTemplate jdbcTemplate;
     private CallInformationMapper mapper = new CallInformationMapper();
     private String encryptionKey;
+    private int actionLogCapacity = 10000;
+    private int actionLogBatchSize = 100;
+    private long actionLogFlushInterval = 1000;
+    private int reportFetchSize;
+    private boolean roomColumn;
+    private ActionLogWriter actionLogWriter;
 
     private class CallInformationMapper implements RowMapper<CallInformation> {
 
@@ -46,62 +58,190 @@ public class JdbcCallInformationRepository implements CallInformationRepository
         }
     }
     
-    private class ActionLogSP extends StoredProcedure {
-        
-        public ActionLogSP(JdbcTemplate jdbcTemplate) {
-            super(jdbcTemplate, "WRITE_CALL_LOG");
-            declareParameter(new SqlParameter("caller", Types.VARCHAR));
-            declareParameter(new SqlParameter("callee", Types.VARCHAR));
-            declareParameter(new SqlParameter("action", Types.VARCHAR));
-            declareParameter(new SqlParameter("key", Types.VARCHAR));
-            compile();
-        }
+    public void setDataSource(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
 
-        public void execute(String caller, String callee, String action) {
-            LOG.debug("Executing ActionLogSP [caller={};callee={};action={}]", new Object[]{caller, callee, action});
-            Map<String, Object> params = new HashMap<>();
-            params.put("caller", caller);
-            params.put("callee", callee);
-            params.put("action", action);
-            params.put("key", encryptionKey);
-            execute(params);
-        }
+    /**
+     * Sets the fetch size used when reading calls. 0 leaves it to the driver. With MySQL, Integer.MIN_VALUE makes the
+     * driver pass rows on as they arrive instead of reading the whole result first.
+     */
+    public void setReportFetchSize(int reportFetchSize) {
+        this.reportFetchSize = reportFetchSize;
     }
 
-    public void setDataSource(DataSource dataSource) {
-        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    /**
+     * Sets whether calls are found by the room number column added by src/scripts/cdr_room_no.sql. Without it calls are
+     * found by the end of their destination context, which cannot use an index.
+     */
+    public void setRoomColumn(boolean roomColumn) {
+        this.roomColumn = roomColumn;
     }
 
     public void setEncryptionKey(String encryptionKey) {
         this.encryptionKey = encryptionKey;
     }
+
+    /**
+     * Sets the maximum number of action log entries waiting to be written. Entries logged while full are dropped.
+     */
+    public void setActionLogCapacity(int actionLogCapacity) {
+        this.actionLogCapacity = actionLogCapacity;
+    }
+
+    /**
+     * Sets the maximum number of action log entries written in one batch.
+     */
+    public void setActionLogBatchSize(int actionLogBatchSize) {
+        this.actionLogBatchSize = actionLogBatchSize;
+    }
+
+    /**
+     * Sets the maximum time in milliseconds an action log entry waits before being written.
+     */
+    public void setActionLogFlushInterval(long actionLogFlushInterval) {
+        this.actionLogFlushInterval = actionLogFlushInterval;
+    }
     
     @PostConstruct
     protected void init() {
         Assert.notNull(encryptionKey, "Encryption key not set.");
+        actionLogWriter = new ActionLogWriter(jdbcTemplate, encryptionKey, actionLogCapacity, actionLogBatchSize, actionLogFlushInterval);
+        actionLogWriter.start();
+    }
+    
+    @PreDestroy
+    protected void destroy() {
+        actionLogWriter.stop();
     }
 
     @Override
     public List<CallInformation> findByRoomNoAndPeriodAndDuration(String roomNo, Date start, Date end, int minimumDuration) {
-        String roomSearch = "%" + roomNo;
-        String sql = "SELECT count(*) as numberOfCalls,sum(billsec) as totalDuration, min(calldate) as firstCallTimeStamp,src as phoneNumber "
-                + "FROM cdr where calldate > ? and calldate < ? and dcontext LIKE ? group by src having totalDuration > ? ORDER BY firstCallTimeStamp";
-        return this.jdbcTemplate.query(sql, new Object[]{start, end, roomSearch, minimumDuration}, mapper);
+        return findByRoomNoAndPeriodAndDurationAndNumbers(roomNo, start, end, minimumDuration, null);
     }
 
     @Override
     public List<CallInformation> findByRoomNoAndPeriodAndDurationAndNumbers(String roomNo, Date start, Date end, int minimumDuration, String[] numbers) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        final List<CallInformation> result = new ArrayList<>();
+        streamByRoomNoAndPeriodAndDurationAndNumbers(roomNo, start, end, minimumDuration, numbers, null, 0, new CallInformationHandler() {
+
+            @Override
+            public void onCall(CallInformation callInformation, String cursor) {
+                result.add(callInformation);
+            }
+        });
+        return result;
     }
 
+    /**
+     * Calls are grouped by source number. The cursor of a call is its source number as stored in the cdr table. When
+     * paging, calls after the cursor are left out before grouping, so a page only aggregates the numbers it reads.
+     */
     @Override
-    public void logAction(String caller, String callee, String action) {
-        ActionLogSP sp = new ActionLogSP(jdbcTemplate);
-        try {
-            sp.execute(caller, callee, action);
-        } catch(Exception ex) {
-            LOG.error("Error while logging action.", ex);
+    public int streamByRoomNoAndPeriodAndDurationAndNumbers(String roomNo, Date start, Date end, int minimumDuration, String[] numbers, 
+            String after, int limit, final CallInformationHandler handler) {
+        StringBuilder sql = new StringBuilder("SELECT count(*) as numberOfCalls,sum(billsec) as totalDuration, min(calldate) as firstCallTimeStamp,src as phoneNumber,src "
+                + "FROM cdr where calldate > ? and calldate < ? and ");
+        final List<Object> args = new ArrayList<>();
+        args.add(start);
+        args.add(end);
+        if(roomColumn) {
+            sql.append("roomNo = ?");
+            args.add(roomNo);
+        } else {
+            sql.append("dcontext LIKE ?");
+            args.add("%" + roomNo);
+        }
+        
+        if(numbers != null) {
+            Set<String> sources = sourceNumbers(numbers);
+            if(sources.isEmpty()) {
+                return 0;
+            }
+            sql.append(" and src IN (");
+            boolean first = true;
+            for(String source : sources) {
+                sql.append(first ? "?" : ",?");
+                args.add(source);
+                first = false;
+            }
+            sql.append(")");
         }
+        
+        if(after != null) {
+            sql.append(" and src > ?");
+            args.add(after);
+        }
+        
+        sql.append(" group by src having sum(billsec) > ?");
+        args.add(minimumDuration);
+        
+        boolean paged = after != null || limit > 0;
+        sql.append(paged ? " ORDER BY src" : " ORDER BY firstCallTimeStamp, src");
+        if(limit > 0) {
+            sql.append(" LIMIT ?");
+            args.add(limit);
+        }
+        
+        final String query = sql.toString();
+        LOG.debug("Reading calls [room={};numbers={};after={};limit={}]", new Object[]{roomNo, numbers == null ? null : numbers.length, after, limit});
+        final int[] count = new int[1];
+        this.jdbcTemplate.query(new PreparedStatementCreator() {
+
+            @Override
+            public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
+                PreparedStatement ps = con.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                if(reportFetchSize != 0) {
+                    ps.setFetchSize(reportFetchSize);
+                }
+                new ArgumentPreparedStatementSetter(args.toArray()).setValues(ps);
+                return ps;
+            }
+        }, new RowCallbackHandler() {
+
+            @Override
+            public void processRow(ResultSet rs) throws SQLException {
+                CallInformation info = mapper.mapRow(rs, count[0]++);
+                handler.onCall(info, rs.getString("src"));
+            }
+        });
+        return count[0];
+    }
+    
+    /**
+     * The numbers are normalized, while the cdr table holds them as received. Resolves the forms a number may be stored
+     * in, so the numbers can be matched by the index on the source number.
+     */
+    private Set<String> sourceNumbers(String[] numbers) {
+        Set<String> sources = new LinkedHashSet<>();
+        for(String number : numbers) {
+            if(number == null || number.isEmpty()) {
+                continue;
+            }
+            sources.add(number);
+            if(number.startsWith("IP-")) {
+                sources.add(number.substring(3));
+            }
+            if(number.startsWith("+")) {
+                sources.add(number.substring(1));
+                sources.add("00" + number.substring(1));
+            }
+            if(number.startsWith("+45")) {
+                sources.add(number.substring(3));
+            }
+        }
+        return sources;
+    }
+
+    @Override
+    public void logAction(String caller, String callee, String action) {
+        LOG.debug("Logging action [caller={};callee={};action={}]", new Object[]{caller, callee, action});
+        actionLogWriter.add(caller, callee, action);
+    }
+
+    @Override
+    public Map<String, Number> getMetrics() {
+        return actionLogWriter.getMetrics();
     }
     
     
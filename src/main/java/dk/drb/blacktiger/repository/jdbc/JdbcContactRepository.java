@@ -24,6 +24,8 @@ public class JdbcContactRepository implements ContactRepository {
     private static final Logger LOG = LoggerFactory.getLogger(JdbcPhonebookRepository.class);
     private JdbcTemplate jdbcTemplate;
     private String encryptionKey;
+    private HallInfoLoader hallInfoLoader;
+    private UpdateContactSP updateContactProcedure;
     
     private class UpdateContactSP extends StoredProcedure {
         
@@ -54,11 +56,19 @@ public class JdbcContactRepository implements ContactRepository {
 
     public void setDataSource(DataSource dataSource) {
         this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.updateContactProcedure = new UpdateContactSP(jdbcTemplate);
     }
 
     public void setEncryptionKey(String encryptionKey) {
         this.encryptionKey = encryptionKey;
     }
+
+    /**
+     * Sets the loader used for reading hall information. If not set, a loader without caching is used.
+     */
+    public void setHallInfoLoader(HallInfoLoader hallInfoLoader) {
+        this.hallInfoLoader = hallInfoLoader;
+    }
     
     @PostConstruct
     protected void init() {
@@ -67,8 +77,7 @@ public class JdbcContactRepository implements ContactRepository {
     
     @Override
     public Contact findByRoomId(String roomId) {
-        GetHallInfoSP sp = new GetHallInfoSP(jdbcTemplate);
-        Map<String, String> data = sp.execute(roomId, encryptionKey);
+        Map<String, String> data = getHallInfoLoader().load(roomId);
         
         String name = (String)data.get("name");
         if(name == null || name.startsWith("*ERROR*")) {
@@ -82,8 +91,14 @@ public class JdbcContactRepository implements ContactRepository {
 
     @Override
     public void save(String roomId, Contact contact) {
-        UpdateContactSP sp = new UpdateContactSP(jdbcTemplate);
-        String result = sp.execute(roomId, contact);
+        String result = updateContactProcedure.execute(roomId, contact);
+        getHallInfoLoader().invalidate(roomId);
+    }
+
+    private synchronized HallInfoLoader getHallInfoLoader() {
+        if (hallInfoLoader == null) {
+            hallInfoLoader = new HallInfoLoader(jdbcTemplate, encryptionKey, 0, 0);
+        }
+        return hallInfoLoader;
     }
-    
 }
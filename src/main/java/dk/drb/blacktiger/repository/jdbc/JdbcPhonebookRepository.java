@@ -4,15 +4,22 @@ import dk.drb.blacktiger.model.CallType;
 import dk.drb.blacktiger.model.PhonebookEntry;
 import dk.drb.blacktiger.model.PhonebookUpdateEvent;
 import dk.drb.blacktiger.repository.PhonebookRepository;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import javax.annotation.PostConstruct;
 import javax.sql.DataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.SqlOutParameter;
 import org.springframework.jdbc.core.SqlParameter;
@@ -25,8 +32,11 @@ import org.springframework.util.Assert;
 public class JdbcPhonebookRepository implements PhonebookRepository {
 
     private static final Logger LOG = LoggerFactory.getLogger(JdbcPhonebookRepository.class);
+    private static final String GET_CALL_INFO_SQL = "{call get_call_info(?, ?, ?, ?, ?, ?)}";
     private JdbcTemplate jdbcTemplate;
     private String encryptionKey;
+    private GetNameStoredProcedure getNameProcedure;
+    private ChangeNameStoredProcedure changeNameProcedure;
     
     private class GetNameStoredProcedure extends StoredProcedure {
         
@@ -96,6 +106,8 @@ public class JdbcPhonebookRepository implements PhonebookRepository {
     
     public void setDataSource(DataSource dataSource) {
         this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.getNameProcedure = new GetNameStoredProcedure(jdbcTemplate);
+        this.changeNameProcedure = new ChangeNameStoredProcedure(jdbcTemplate);
     }
 
     public void setEncryptionKey(String encryptionKey) {
@@ -110,23 +122,62 @@ public class JdbcPhonebookRepository implements PhonebookRepository {
     @Override
     public PhonebookEntry findByCallerId(String hallCalling, String number) {
         LOG.debug("Resolving PhonebookEntry [hallCalling={};number={}]", hallCalling, number);
-        GetNameStoredProcedure procedure = new GetNameStoredProcedure(jdbcTemplate);
-        Map data = procedure.execute(number, hallCalling);
+        Map data = getNameProcedure.execute(number, hallCalling);
         
-        String name = (String)data.get("name");
-        if(name.startsWith("*ERROR*")) {
+        return toEntry((String)data.get("e164"), (String)data.get("name"), (String)data.get("type"));
+    }
+
+    /**
+     * Resolves several numbers using one connection and one prepared call. The procedure has output parameters and
+     * registers unknown numbers, so it cannot be folded into a single select.
+     */
+    @Override
+    public Map<String, PhonebookEntry> findByCallerIds(final String hallCalling, Collection<String> numbers) {
+        final Collection<String> distinctNumbers = new LinkedHashSet<>(numbers);
+        LOG.debug("Resolving PhonebookEntries [hallCalling={};numbers={}]", hallCalling, distinctNumbers.size());
+        if(distinctNumbers.isEmpty()) {
+            return new HashMap<>();
+        }
+        
+        return jdbcTemplate.execute(new ConnectionCallback<Map<String, PhonebookEntry>>() {
+
+            @Override
+            public Map<String, PhonebookEntry> doInConnection(Connection con) throws SQLException, DataAccessException {
+                Map<String, PhonebookEntry> result = new HashMap<>();
+                try (CallableStatement cs = con.prepareCall(GET_CALL_INFO_SQL)) {
+                    cs.registerOutParameter(4, Types.VARCHAR);
+                    cs.registerOutParameter(5, Types.VARCHAR);
+                    cs.registerOutParameter(6, Types.VARCHAR);
+                    for(String number : distinctNumbers) {
+                        cs.setString(1, number);
+                        cs.setString(2, hallCalling);
+                        cs.setString(3, encryptionKey);
+                        cs.execute();
+                        
+                        PhonebookEntry entry = toEntry(cs.getString(4), cs.getString(5), cs.getString(6));
+                        if(entry != null) {
+                            result.put(number, entry);
+                        }
+                    }
+                }
+                return result;
+            }
+        });
+    }
+
+    private PhonebookEntry toEntry(String e164, String name, String type) {
+        if(name == null || name.startsWith("*ERROR*")) {
             LOG.warn("Stored procedure returned a result specifying an error. Ignoring result. [message={}]", name);
             return null;
         } else {
             // Type: H=hall, P=phone, C=computer,
-            return new PhonebookEntry((String)data.get("e164"), name, CallType.fromCode((String)data.get("type"))); 
+            return new PhonebookEntry(e164, name, CallType.fromCode(type)); 
         }
     }
 
     @Override
     public PhonebookEntry save(String hallCalling, PhonebookEntry entry) {
-        ChangeNameStoredProcedure procedure = new ChangeNameStoredProcedure(jdbcTemplate);
-        String name = procedure.execute(entry.getNumber(), entry.getName(), hallCalling);
+        String name = changeNameProcedure.execute(entry.getNumber(), entry.getName(), hallCalling);
         fireUpdate(entry.getNumber(), entry.getName());
         return new PhonebookEntry(entry.getNumber(), name, entry.getCallType());
     }
@@ -19,6 +19,7 @@ public class JdbcRoomInfoRepository implements RoomInfoRepository {
     private static final Logger LOG = LoggerFactory.getLogger(JdbcPhonebookRepository.class);
     private JdbcTemplate jdbcTemplate;
     private String encryptionKey;
+    private HallInfoLoader hallInfoLoader;
     
     public void setDataSource(DataSource dataSource) {
         this.jdbcTemplate = new JdbcTemplate(dataSource);
@@ -27,6 +28,13 @@ public class JdbcRoomInfoRepository implements RoomInfoRepository {
     public void setEncryptionKey(String encryptionKey) {
         this.encryptionKey = encryptionKey;
     }
+
+    /**
+     * Sets the loader used for reading hall information. If not set, a loader without caching is used.
+     */
+    public void setHallInfoLoader(HallInfoLoader hallInfoLoader) {
+        this.hallInfoLoader = hallInfoLoader;
+    }
     
     @PostConstruct
     protected void init() {
@@ -34,8 +42,7 @@ public class JdbcRoomInfoRepository implements RoomInfoRepository {
     }
     
     public Room findById(String id) {
-        GetHallInfoSP sp = new GetHallInfoSP(jdbcTemplate);
-        Map<String, String> data = sp.execute(id, encryptionKey);
+        Map<String, String> data = getHallInfoLoader().load(id);
         
         String name = (String)data.get("name");
         if(name == null || name.startsWith("*ERROR*")) {
@@ -60,4 +67,11 @@ public class JdbcRoomInfoRepository implements RoomInfoRepository {
         }
         
     }
+
+    private synchronized HallInfoLoader getHallInfoLoader() {
+        if (hallInfoLoader == null) {
+            hallInfoLoader = new HallInfoLoader(jdbcTemplate, encryptionKey, 0, 0);
+        }
+        return hallInfoLoader;
+    }
 }
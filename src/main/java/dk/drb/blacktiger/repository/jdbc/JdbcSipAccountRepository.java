@@ -24,6 +24,9 @@ public class JdbcSipAccountRepository implements SipAccountRepository {
     private static final Logger LOG = LoggerFactory.getLogger(JdbcSipAccountRepository.class);
     private JdbcTemplate jdbcTemplate;
     private String encryptionKey;
+    private CreateComputerListenerSP createComputerListenerProcedure;
+    private SendPasswordSP sendPasswordProcedure;
+    private GetSipSP getSipProcedure;
 
 
     
@@ -121,6 +124,9 @@ public class JdbcSipAccountRepository implements SipAccountRepository {
 
     public void setDataSource(DataSource dataSource) {
         this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.createComputerListenerProcedure = new CreateComputerListenerSP(jdbcTemplate);
+        this.sendPasswordProcedure = new SendPasswordSP(jdbcTemplate);
+        this.getSipProcedure = new GetSipSP(jdbcTemplate);
     }
 
     public void setEncryptionKey(String encryptionKey) {
@@ -135,8 +141,7 @@ public class JdbcSipAccountRepository implements SipAccountRepository {
     @Override
     public SipAccount findOneByKeyAndPhonenumber(String key, String phoneNumber) {
         LOG.debug("Retrieving phonenumber [key={};phoneNumber={}]", key, phoneNumber);
-        GetSipSP sp = new GetSipSP(jdbcTemplate);
-        Map<String, String> map = sp.execute(phoneNumber, key);
+        Map<String, String> map = getSipProcedure.execute(phoneNumber, key);
         
         if(map.get("name") == null &&
                 map.get("phoneNumber") == null &&
@@ -158,10 +163,8 @@ public class JdbcSipAccountRepository implements SipAccountRepository {
     @Override
     public boolean create(String hall, SipAccount account, String mailText) {
         LOG.info("Creating new SipAccount. [hall={};account={}]", hall, account);
-        CreateComputerListenerSP sp = new CreateComputerListenerSP(jdbcTemplate);
-        
         try {
-            sp.execute(account.getPhoneNumber(), account.getName(), account.getEmail(), hall, mailText);
+            createComputerListenerProcedure.execute(account.getPhoneNumber(), account.getName(), account.getEmail(), hall, mailText);
             return true;
         } catch(Exception e) {
             LOG.error("Error while saving sipaccount.", e);
@@ -172,10 +175,8 @@ public class JdbcSipAccountRepository implements SipAccountRepository {
         @Override
     public boolean sendPasswordEmail(String name, String phoneNumber, String email, String cityOfHall, String phoneNumberOfHall, String emailSubject, String emailTextManager, String emailTextUser) {
         LOG.info("Sending password for sipaccount. [name={};phoneNumber={}]", name, phoneNumber);
-        SendPasswordSP sp = new SendPasswordSP(jdbcTemplate);
-        
         try {
-            return sp.execute(name, phoneNumber, email, cityOfHall, phoneNumberOfHall, emailSubject, emailTextManager, emailTextUser);
+            return sendPasswordProcedure.execute(name, phoneNumber, email, cityOfHall, phoneNumberOfHall, emailSubject, emailTextManager, emailTextUser);
         } catch(Exception e) {
             LOG.error("Error while sending password.", e);
             return false;
@@ -45,24 +45,38 @@ public class InMemCallInformationRepository implements CallInformationRepository
 
     @Override
     public List<CallInformation> findByRoomNoAndPeriodAndDurationAndNumbers(String roomNo, Date start, Date end, int minimumDuration, String[] numbers) {
+        final List<CallInformation> result = new ArrayList<>();
+        streamByRoomNoAndPeriodAndDurationAndNumbers(roomNo, start, end, minimumDuration, numbers, null, 0, new CallInformationHandler() {
+
+            @Override
+            public void onCall(CallInformation callInformation, String cursor) {
+                result.add(callInformation);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * The cursor of a call is its position in the list of calls for the room.
+     */
+    @Override
+    public int streamByRoomNoAndPeriodAndDurationAndNumbers(String roomNo, Date start, Date end, int minimumDuration, String[] numbers, 
+            String after, int limit, CallInformationHandler handler) {
         List<CallInformation> list = callMap.get(roomNo);
-        List<CallInformation> result = new ArrayList<>();
-        
         if(list == null) {
-            list = new ArrayList<>();
+            return 0;
         }
         
-        if(numbers != null) {
-            List<String> numberList = Arrays.asList(numbers);
-            for(CallInformation ci : list) {
-                if(numberList.contains(ci.getPhoneNumber())) {
-                    result.add(ci);
-                }
+        List<String> numberList = numbers == null ? null : Arrays.asList(numbers);
+        int count = 0;
+        for(int i = after == null ? 0 : Integer.parseInt(after) + 1; i < list.size() && (limit <= 0 || count < limit); i++) {
+            CallInformation ci = list.get(i);
+            if(numberList == null || numberList.contains(ci.getPhoneNumber())) {
+                handler.onCall(ci, Integer.toString(i));
+                count++;
             }
-        } else {
-            result.addAll(list);
         }
-        return result;
+        return count;
     }
     
     @Override
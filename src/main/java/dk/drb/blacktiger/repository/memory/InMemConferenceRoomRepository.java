@@ -22,7 +22,9 @@ import javax.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.AsyncResult;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.concurrent.ListenableFuture;
 
 /**
  * An in-memory implementation of ConferenceRoomRepository for use in test scenarios.
@@ -106,6 +108,17 @@ public class InMemConferenceRoomRepository implements ConferenceRoomRepository {
         return Collections.EMPTY_LIST;
     }
 
+    @Override
+    public Map<String, List<Participant>> findByRoomNos(List<String> roomNos) {
+        Map<String, List<Participant>> result = new HashMap<>();
+        for(String roomNo : roomNos) {
+            if (participantMap.containsKey(roomNo)) {
+                result.put(roomNo, Collections.unmodifiableList(participantMap.get(roomNo)));
+            }
+        }
+        return result;
+    }
+
     @Override
     public Participant findByRoomNoAndChannel(String roomNo, String callerId) {
         if (participantMap.containsKey(roomNo)) {
@@ -173,6 +186,40 @@ public class InMemConferenceRoomRepository implements ConferenceRoomRepository {
         }
     }
 
+    @Override
+    public ListenableFuture<Void> kickParticipantAsync(String roomNo, String callerId) {
+        kickParticipant(roomNo, callerId);
+        return new AsyncResult<>(null);
+    }
+
+    @Override
+    public ListenableFuture<Void> muteParticipantAsync(String roomNo, String callerId) {
+        muteParticipant(roomNo, callerId);
+        return new AsyncResult<>(null);
+    }
+
+    @Override
+    public ListenableFuture<Void> unmuteParticipantAsync(String roomNo, String callerId) {
+        unmuteParticipant(roomNo, callerId);
+        return new AsyncResult<>(null);
+    }
+
+    @Override
+    public List<String> muteParticipants(String roomNo, List<String> callerIds) {
+        for (String callerId : callerIds) {
+            muteParticipant(roomNo, callerId);
+        }
+        return new ArrayList<>(callerIds);
+    }
+
+    @Override
+    public List<String> unmuteParticipants(String roomNo, List<String> callerIds) {
+        for (String callerId : callerIds) {
+            unmuteParticipant(roomNo, callerId);
+        }
+        return new ArrayList<>(callerIds);
+    }
+
     @Override
     public void addEventListener(ConferenceEventListener listener) {
         if (listener != null && !eventListeners.contains(listener)) {
@@ -2,6 +2,7 @@ package dk.drb.blacktiger.repository.memory;
 
 import dk.drb.blacktiger.model.PhonebookEntry;
 import dk.drb.blacktiger.repository.PhonebookRepository;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -14,6 +15,18 @@ public class InMemPhonebookRepository implements PhonebookRepository {
         return phonebook.get(number);
     }
 
+    @Override
+    public Map<String, PhonebookEntry> findByCallerIds(String hallCalling, Collection<String> numbers) {
+        Map<String, PhonebookEntry> result = new HashMap<>();
+        for(String number : numbers) {
+            PhonebookEntry entry = phonebook.get(number);
+            if(entry != null) {
+                result.put(number, entry);
+            }
+        }
+        return result;
+    }
+
     @Override
     public PhonebookEntry save(String hallCalling, PhonebookEntry entity) {
         phonebook.put(entity.getNumber(), entity);
@@ -0,0 +1,207 @@
+package dk.drb.blacktiger.repository.rest;
+
+import dk.drb.blacktiger.model.ConferenceEventListener;
+import dk.drb.blacktiger.model.Participant;
+import dk.drb.blacktiger.model.Room;
+import dk.drb.blacktiger.repository.ConferenceRoomRepository;
+import dk.drb.blacktiger.security.AuthTokenService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.AsyncResult;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * A ConferenceRoomRepository for nodes which only serve clients, while another node, the producer, is connected to
+ * Asterisk.
+ * <p>
+ * Rooms and participants are read and changed through the REST api of the producer, on behalf of the user of the
+ * current request. The user is authenticated with a token, so the producer must use the same
+ * <code>auth.token.secret</code>. Participants are returned as decorated by the producer.</p>
+ * <p>
+ * No conference events are fired. They are published by the producer only, so that every call is handled, and logged,
+ * once.</p>
+ */
+public class RestConferenceRoomRepository implements ConferenceRoomRepository {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RestConferenceRoomRepository.class);
+
+    private final String producerUrl;
+    private RestTemplate restTemplate = new RestTemplate();
+    private AuthTokenService authTokenService;
+
+    /**
+     * Creates a new instance.
+     * @param producerUrl The url of the producer including the context path, fx. <code>http://producer:8080/blacktiger</code>.
+     */
+    public RestConferenceRoomRepository(String producerUrl) {
+        this.producerUrl = producerUrl.endsWith("/") ? producerUrl.substring(0, producerUrl.length() - 1) : producerUrl;
+    }
+
+    @Autowired
+    public void setAuthTokenService(AuthTokenService authTokenService) {
+        this.authTokenService = authTokenService;
+    }
+
+    public void setRestTemplate(RestTemplate restTemplate) {
+        this.restTemplate = restTemplate;
+    }
+
+    @Override
+    public List<Room> findAll() {
+        Room[] rooms = exchange(HttpMethod.GET, "/rooms", null, Room[].class);
+        return rooms == null ? new ArrayList<Room>() : new ArrayList<>(Arrays.asList(rooms));
+    }
+
+    @Override
+    public List<Room> findAllByIds(List<String> ids) {
+        List<Room> rooms = new ArrayList<>();
+        for (String id : ids) {
+            Room room = findOne(id);
+            if (room != null) {
+                rooms.add(room);
+            }
+        }
+        return rooms;
+    }
+
+    @Override
+    public Room findOne(String id) {
+        try {
+            return exchange(HttpMethod.GET, "/rooms/{roomNo}", null, Room.class, id);
+        } catch (HttpClientErrorException ex) {
+            if (ex.getStatusCode() == HttpStatus.NOT_FOUND) {
+                return null;
+            }
+            throw ex;
+        }
+    }
+
+    @Override
+    public List<Participant> findByRoomNo(String roomNo) {
+        Participant[] participants = exchange(HttpMethod.GET, "/rooms/{roomNo}/participants", null, Participant[].class, roomNo);
+        return participants == null ? new ArrayList<Participant>() : new ArrayList<>(Arrays.asList(participants));
+    }
+
+    /**
+     * Retrieves the participants room by room. The producer does not tell a room without participants from a room that
+     * does not exist, so rooms without participants are left out.
+     */
+    @Override
+    public Map<String, List<Participant>> findByRoomNos(List<String> roomNos) {
+        Map<String, List<Participant>> result = new LinkedHashMap<>();
+        for (String roomNo : roomNos) {
+            List<Participant> participants = findByRoomNo(roomNo);
+            if (!participants.isEmpty()) {
+                result.put(roomNo, participants);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Participant findByRoomNoAndChannel(String roomNo, String channel) {
+        try {
+            return exchange(HttpMethod.GET, "/rooms/{roomNo}/participants/{channel}", null, Participant.class, roomNo, channel);
+        } catch (HttpClientErrorException ex) {
+            if (ex.getStatusCode() == HttpStatus.NOT_FOUND) {
+                return null;
+            }
+            throw ex;
+        }
+    }
+
+    @Override
+    public void kickParticipant(String roomNo, String channel) {
+        exchange(HttpMethod.DELETE, "/rooms/{roomNo}/participants/{channel}", null, Void.class, roomNo, channel);
+    }
+
+    @Override
+    public void muteParticipant(String roomNo, String channel) {
+        setMuted(roomNo, channel, true);
+    }
+
+    @Override
+    public void unmuteParticipant(String roomNo, String channel) {
+        setMuted(roomNo, channel, false);
+    }
+
+    @Override
+    public ListenableFuture<Void> kickParticipantAsync(String roomNo, String channel) {
+        kickParticipant(roomNo, channel);
+        return new AsyncResult<>(null);
+    }
+
+    @Override
+    public ListenableFuture<Void> muteParticipantAsync(String roomNo, String channel) {
+        muteParticipant(roomNo, channel);
+        return new AsyncResult<>(null);
+    }
+
+    @Override
+    public ListenableFuture<Void> unmuteParticipantAsync(String roomNo, String channel) {
+        unmuteParticipant(roomNo, channel);
+        return new AsyncResult<>(null);
+    }
+
+    @Override
+    public List<String> muteParticipants(String roomNo, List<String> channels) {
+        return Arrays.asList(exchange(HttpMethod.POST, "/rooms/{roomNo}/participants/mute", channels, String[].class, roomNo));
+    }
+
+    @Override
+    public List<String> unmuteParticipants(String roomNo, List<String> channels) {
+        return Arrays.asList(exchange(HttpMethod.POST, "/rooms/{roomNo}/participants/unmute", channels, String[].class, roomNo));
+    }
+
+    /**
+     * Does nothing. Conference events are published by the producer.
+     */
+    @Override
+    public void addEventListener(ConferenceEventListener listener) {
+        LOG.debug("Conference events are published by the producer. Listener not added. [listener={}]", listener);
+    }
+
+    @Override
+    public void removeEventListener(ConferenceEventListener listener) {
+        // Listeners are never added.
+    }
+
+    private void setMuted(String roomNo, String channel, boolean muted) {
+        Participant participant = new Participant();
+        participant.setChannel(channel);
+        participant.setMuted(muted);
+        exchange(HttpMethod.PUT, "/rooms/{roomNo}/participants/{channel}", participant, Void.class, roomNo, channel);
+    }
+
+    private <T> T exchange(HttpMethod method, String path, Object body, Class<T> type, Object ... variables) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null) {
+            throw new IllegalStateException("No user to request the producer on behalf of.");
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(Arrays.asList(MediaType.APPLICATION_JSON));
+        headers.set(HttpHeaders.AUTHORIZATION, "Bearer " + authTokenService.issue(authentication).getValue());
+        if (body != null) {
+            headers.setContentType(MediaType.APPLICATION_JSON);
+        }
+
+        LOG.debug("Requesting producer [method={};path={}]", method, path);
+        return restTemplate.exchange(producerUrl + path, method, new HttpEntity<>(body, headers), type, variables).getBody();
+    }
+}
@@ -0,0 +1,26 @@
+package dk.drb.blacktiger.security;
+
+/**
+ * A token issued by <code>AuthTokenService</code>.
+ */
+public class AuthToken {
+
+    private final String value;
+    private final long expires;
+
+    public AuthToken(String value, long expires) {
+        this.value = value;
+        this.expires = expires;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * The time the token expires in milliseconds since epoch.
+     */
+    public long getExpires() {
+        return expires;
+    }
+}
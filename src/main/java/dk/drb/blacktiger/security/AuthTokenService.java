@@ -0,0 +1,141 @@
+package dk.drb.blacktiger.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.CredentialsExpiredException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.crypto.codec.Base64;
+
+/**
+ * Issues and verifies signed, short-lived authentication tokens.
+ * <p>
+ * A token carries the username, the authorities and the expiry time of an authentication, signed with HMAC-SHA256.
+ * Verifying a token therefore needs no database access. Tokens cannot be revoked before they expire, which is why they
+ * should be short-lived.</p>
+ * <p>
+ * The format is <code>base64(expires:authorities:username).base64(signature)</code>.</p>
+ */
+public class AuthTokenService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AuthTokenService.class);
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+    private final long ttlMillis;
+
+    /**
+     * Creates a new instance.
+     * @param secret The secret used for signing tokens. If null or empty a random secret is used, meaning that tokens
+     * are only valid for this instance and until it is restarted.
+     * @param ttl The time in seconds a token is valid.
+     */
+    public AuthTokenService(String secret, long ttl) {
+        byte[] keyBytes;
+        if (secret == null || secret.isEmpty()) {
+            LOG.warn("No secret for authentication tokens configured. Using a random secret.");
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(ttl);
+    }
+
+    /**
+     * Issues a token for an authentication.
+     */
+    public AuthToken issue(Authentication authentication) {
+        long expires = System.currentTimeMillis() + ttlMillis;
+        StringBuilder payload = new StringBuilder();
+        payload.append(expires).append(':');
+        boolean first = true;
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            if (!first) {
+                payload.append(',');
+            }
+            payload.append(authority.getAuthority());
+            first = false;
+        }
+        payload.append(':').append(authentication.getName());
+
+        byte[] payloadBytes = payload.toString().getBytes(StandardCharsets.UTF_8);
+        String token = encode(payloadBytes) + "." + encode(sign(payloadBytes));
+        return new AuthToken(token, expires);
+    }
+
+    /**
+     * Verifies a token.
+     * @return The authentication carried by the token.
+     * @throws BadCredentialsException If the token is malformed or the signature does not match.
+     * @throws CredentialsExpiredException If the token has expired.
+     */
+    public TokenAuthentication verify(String token) {
+        int separator = token == null ? -1 : token.indexOf('.');
+        if (separator < 0) {
+            throw new BadCredentialsException("Token is malformed.");
+        }
+
+        byte[] payloadBytes;
+        byte[] signature;
+        try {
+            payloadBytes = Base64.decode(token.substring(0, separator).getBytes(StandardCharsets.US_ASCII));
+            signature = Base64.decode(token.substring(separator + 1).getBytes(StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException ex) {
+            throw new BadCredentialsException("Token is malformed.");
+        }
+
+        if (!MessageDigest.isEqual(sign(payloadBytes), signature)) {
+            throw new BadCredentialsException("Token signature is not valid.");
+        }
+
+        String[] parts = new String(payloadBytes, StandardCharsets.UTF_8).split(":", 3);
+        if (parts.length != 3) {
+            throw new BadCredentialsException("Token is malformed.");
+        }
+
+        long expires;
+        try {
+            expires = Long.parseLong(parts[0]);
+        } catch (NumberFormatException ex) {
+            throw new BadCredentialsException("Token is malformed.");
+        }
+        if (expires <= System.currentTimeMillis()) {
+            throw new CredentialsExpiredException("Token has expired.");
+        }
+
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        for (String authority : parts[1].split(",")) {
+            if (!authority.isEmpty()) {
+                authorities.add(new SimpleGrantedAuthority(authority));
+            }
+        }
+        return new TokenAuthentication(parts[2], token, authorities);
+    }
+
+    private byte[] sign(byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(payload);
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("Unable to sign token.", ex);
+        }
+    }
+
+    private static String encode(byte[] data) {
+        return new String(Base64.encode(data), StandardCharsets.US_ASCII);
+    }
+}
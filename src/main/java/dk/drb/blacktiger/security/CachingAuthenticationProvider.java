@@ -0,0 +1,135 @@
+package dk.drb.blacktiger.security;
+
+import dk.drb.blacktiger.util.MetricsSource;
+import dk.drb.blacktiger.util.TtlCache;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Formatter;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.GrantedAuthority;
+
+/**
+ * An AuthenticationProvider which caches successful authentications from another AuthenticationProvider.
+ * <p>
+ * Entries are keyed on a SHA-256 hash of the username and password salted with a random value generated per instance,
+ * so neither the password nor an unsalted hash of it is kept in memory. Only successful authentications are cached;
+ * failed attempts always reach the underlying provider. Cached entries expire after the ttl and can be evicted per
+ * user.</p>
+ */
+public class CachingAuthenticationProvider implements AuthenticationProvider, MetricsSource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachingAuthenticationProvider.class);
+
+    private static class CachedAuthentication {
+        private final String username;
+        private final Object principal;
+        private final Collection<? extends GrantedAuthority> authorities;
+
+        public CachedAuthentication(String username, Object principal, Collection<? extends GrantedAuthority> authorities) {
+            this.username = username;
+            this.principal = principal;
+            this.authorities = new ArrayList<>(authorities);
+        }
+    }
+
+    private final AuthenticationProvider delegate;
+    private final TtlCache<String, CachedAuthentication> cache;
+    private final byte[] salt = new byte[16];
+
+    /**
+     * Creates a new instance.
+     * @param delegate The provider to cache authentications from.
+     * @param maxSize The maximum number of authentications to cache.
+     * @param ttl The time in seconds authentications are cached.
+     */
+    public CachingAuthenticationProvider(AuthenticationProvider delegate, int maxSize, long ttl) {
+        this.delegate = delegate;
+        this.cache = new TtlCache<>(maxSize, ttl, TimeUnit.SECONDS);
+        new SecureRandom().nextBytes(salt);
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        String username = authentication.getName();
+        Object credentials = authentication.getCredentials();
+        if (username == null || !(credentials instanceof String)) {
+            return delegate.authenticate(authentication);
+        }
+
+        String key = keyOf(username, (String) credentials);
+        CachedAuthentication cached = cache.get(key);
+        if (cached != null) {
+            LOG.debug("Using cached authentication. [username={}]", username);
+            // A new token every time, as the caller may erase the credentials of the token returned.
+            return new UsernamePasswordAuthenticationToken(cached.principal, credentials, cached.authorities);
+        }
+
+        Authentication result = delegate.authenticate(authentication);
+        if (result != null && result.isAuthenticated()) {
+            cache.put(key, new CachedAuthentication(username, result.getPrincipal(), result.getAuthorities()));
+        }
+        return result;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return delegate.supports(authentication);
+    }
+
+    /**
+     * Removes all cached authentications for a user, so that the next request is authenticated by the underlying
+     * provider.
+     */
+    public void evict(final String username) {
+        LOG.debug("Evicting cached authentications. [username={}]", username);
+        cache.invalidateAll(new TtlCache.EntryFilter<String, CachedAuthentication>() {
+
+            @Override
+            public boolean matches(String key, CachedAuthentication value) {
+                return value.username.equals(username);
+            }
+        });
+    }
+
+    public void evictAll() {
+        cache.clear();
+    }
+
+    @Override
+    public Map<String, Number> getMetrics() {
+        return cache.getMetrics();
+    }
+
+    private String keyOf(String username, String password) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(salt);
+            digest.update(username.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(password.getBytes(StandardCharsets.UTF_8));
+            return byteToHex(digest.digest());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not supported.", ex);
+        }
+    }
+
+    private static String byteToHex(final byte[] hash) {
+        try (Formatter formatter = new Formatter()) {
+            for (byte b : hash) {
+                formatter.format("%02x", b);
+            }
+            return formatter.toString();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package dk.drb.blacktiger.security;
+
+import java.util.Collection;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+
+/**
+ * An authentication established by a verified token from <code>AuthTokenService</code>.
+ */
+public class TokenAuthentication extends AbstractAuthenticationToken {
+
+    private static final long serialVersionUID = 1L;
+    private final String username;
+    private final String token;
+
+    public TokenAuthentication(String username, String token, Collection<? extends GrantedAuthority> authorities) {
+        super(authorities);
+        this.username = username;
+        this.token = token;
+        setAuthenticated(true);
+    }
+
+    @Override
+    public Object getCredentials() {
+        return token;
+    }
+
+    @Override
+    public Object getPrincipal() {
+        return username;
+    }
+}
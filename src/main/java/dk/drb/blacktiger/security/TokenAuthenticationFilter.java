@@ -0,0 +1,55 @@
+package dk.drb.blacktiger.security;
+
+import java.io.IOException;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.AuthenticationEntryPoint;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Authenticates requests carrying an <code>Authorization: Bearer &lt;token&gt;</code> header with a token issued by
+ * <code>AuthTokenService</code>. Requests without such a header are passed on untouched, so that they can be
+ * authenticated by other means.
+ */
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+
+    public static final String SCHEME = "Bearer ";
+    private static final Logger LOG = LoggerFactory.getLogger(TokenAuthenticationFilter.class);
+
+    private final AuthTokenService tokenService;
+    private final AuthenticationEntryPoint entryPoint;
+
+    public TokenAuthenticationFilter(AuthTokenService tokenService, AuthenticationEntryPoint entryPoint) {
+        this.tokenService = tokenService;
+        this.entryPoint = entryPoint;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String header = request.getHeader("Authorization");
+        if (header == null || !header.startsWith(SCHEME)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        try {
+            TokenAuthentication authentication = tokenService.verify(header.substring(SCHEME.length()).trim());
+            LOG.debug("Authenticated by token. [username={}]", authentication.getName());
+            SecurityContextHolder.getContext().setAuthentication(authentication);
+        } catch (AuthenticationException ex) {
+            LOG.debug("Token authentication failed. [message={}]", ex.getMessage());
+            SecurityContextHolder.clearContext();
+            entryPoint.commence(request, response, ex);
+            return;
+        }
+
+        chain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,51 @@
+package dk.drb.blacktiger.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptorAdapter;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+
+/**
+ * Authenticates STOMP connections carrying a token issued by <code>AuthTokenService</code> in the
+ * <code>Authorization</code> header of the CONNECT frame. The authentication becomes the user of the session.
+ * Connections with an invalid token are refused; connections without a token are passed on untouched.
+ */
+public class TokenChannelInterceptor extends ChannelInterceptorAdapter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TokenChannelInterceptor.class);
+
+    private final AuthTokenService tokenService;
+
+    public TokenChannelInterceptor(AuthTokenService tokenService) {
+        this.tokenService = tokenService;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || !StompCommand.CONNECT.equals(accessor.getCommand())) {
+            return message;
+        }
+
+        String header = accessor.getFirstNativeHeader("Authorization");
+        if (header == null || !header.startsWith(TokenAuthenticationFilter.SCHEME)) {
+            return message;
+        }
+
+        // Throws an AuthenticationException for invalid tokens, which makes the broker refuse the connection.
+        TokenAuthentication authentication = tokenService.verify(header.substring(TokenAuthenticationFilter.SCHEME.length()).trim());
+        LOG.debug("STOMP connection authenticated by token. [username={}]", authentication.getName());
+        if (accessor.isMutable()) {
+            accessor.setUser(authentication);
+            return message;
+        }
+        StompHeaderAccessor copy = StompHeaderAccessor.wrap(message);
+        copy.setUser(authentication);
+        return MessageBuilder.createMessage(message.getPayload(), copy.getMessageHeaders());
+    }
+}
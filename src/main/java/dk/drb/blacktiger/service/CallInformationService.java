@@ -1,12 +1,15 @@
 package dk.drb.blacktiger.service;
 
 import dk.drb.blacktiger.repository.CallInformationRepository;
+import dk.drb.blacktiger.repository.CallInformationRepository.CallInformationHandler;
 import dk.drb.blacktiger.repository.PhonebookRepository;
 import dk.drb.blacktiger.model.CallInformation;
 import dk.drb.blacktiger.model.PhonebookEntry;
 import dk.drb.blacktiger.util.Access;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.annotation.Secured;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -16,6 +19,15 @@ import org.springframework.security.core.context.SecurityContextHolder;
  */
 public class CallInformationService {
 
+    /**
+     * Receives the calls of a streamed report.
+     */
+    public interface ReportHandler {
+        void onCall(CallInformation callInformation);
+    }
+    
+    private static final int NAME_BATCH_SIZE = 500;
+    
     private CallInformationRepository repository;
     private PhonebookRepository phonebookRepository;
 
@@ -42,12 +54,65 @@ public class CallInformationService {
         String hall = SecurityContextHolder.getContext().getAuthentication().getName();
         
         List<CallInformation> list = repository.findByRoomNoAndPeriodAndDurationAndNumbers(roomNo, start, end, minimumDuration, numbers);
+        resolveNames(hall, list);
+        return list;
+    }
+    
+    /**
+     * Streams archived calls to a handler without holding the whole report in memory. The names are resolved for a
+     * batch of calls at a time, so the calls reach the handler in batches.
+     * @param after The cursor returned by the previous page or null to start from the first call.
+     * @param limit The maximum number of calls to stream or 0 for no limit.
+     * @return The cursor for the next page or null if there are no more calls.
+     */
+    @Secured("ROLE_USER")
+    public String streamReport(String roomNo, Date start, Date end, int minimumDuration, String[] numbers, String after, int limit, 
+            final ReportHandler handler) {
+        Access.checkRoomAccess(roomNo);
+        final String hall = SecurityContextHolder.getContext().getAuthentication().getName();
+        final List<CallInformation> batch = new ArrayList<>();
+        final String[] cursor = new String[1];
+        
+        int count = repository.streamByRoomNoAndPeriodAndDurationAndNumbers(roomNo, start, end, minimumDuration, numbers, after, limit, 
+                new CallInformationHandler() {
+
+            @Override
+            public void onCall(CallInformation callInformation, String callCursor) {
+                batch.add(callInformation);
+                cursor[0] = callCursor;
+                if(batch.size() == NAME_BATCH_SIZE) {
+                    flush(hall, batch, handler);
+                }
+            }
+        });
+        flush(hall, batch, handler);
+        return limit > 0 && count == limit ? cursor[0] : null;
+    }
+    
+    private void flush(String hall, List<CallInformation> batch, ReportHandler handler) {
+        resolveNames(hall, batch);
+        for(CallInformation info : batch) {
+            handler.onCall(info);
+        }
+        batch.clear();
+    }
+    
+    private void resolveNames(String hall, List<CallInformation> list) {
+        if(list.isEmpty()) {
+            return;
+        }
+        
+        List<String> numbers = new ArrayList<>(list.size());
+        for(CallInformation info : list) {
+            numbers.add(info.getPhoneNumber());
+        }
+        
+        Map<String, PhonebookEntry> entries = phonebookRepository.findByCallerIds(hall, numbers);
         for(CallInformation info : list) {
-            PhonebookEntry entry = phonebookRepository.findByCallerId(hall, info.getPhoneNumber());
+            PhonebookEntry entry = entries.get(info.getPhoneNumber());
             if(entry != null) {
                 info.setName(entry.getName());
             }
         }
-        return list;
     }
 }
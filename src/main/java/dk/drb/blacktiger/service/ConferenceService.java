@@ -1,6 +1,7 @@
 package dk.drb.blacktiger.service;
 
 import dk.drb.blacktiger.model.CallType;
+import dk.drb.blacktiger.model.ConferenceEndEvent;
 import dk.drb.blacktiger.model.ConferenceEvent;
 import dk.drb.blacktiger.repository.PhonebookRepository;
 import dk.drb.blacktiger.model.ConferenceEventListener;
@@ -8,6 +9,8 @@ import dk.drb.blacktiger.model.ConferenceStartEvent;
 import dk.drb.blacktiger.model.Contact;
 import dk.drb.blacktiger.model.Participant;
 import dk.drb.blacktiger.model.ParticipantChangeEvent;
+import dk.drb.blacktiger.model.ParticipantCommentRequestCancelEvent;
+import dk.drb.blacktiger.model.ParticipantCommentRequestEvent;
 import dk.drb.blacktiger.model.ParticipantJoinEvent;
 import dk.drb.blacktiger.model.ParticipantLeaveEvent;
 import dk.drb.blacktiger.model.PhonebookEntry;
@@ -18,14 +21,18 @@ import dk.drb.blacktiger.repository.ConferenceRoomRepository;
 import dk.drb.blacktiger.repository.ContactRepository;
 import dk.drb.blacktiger.repository.PhonebookRepository.PhonebookEventListener;
 import dk.drb.blacktiger.repository.RoomInfoRepository;
+import dk.drb.blacktiger.service.ParticipantStateTable.ParticipantState;
 import dk.drb.blacktiger.util.Access;
+import dk.drb.blacktiger.util.MetricsSource;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import javax.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,7 +43,7 @@ import org.springframework.util.Assert;
 /**
  *
  */
-public class ConferenceService {
+public class ConferenceService implements MetricsSource {
  
     private static final Logger LOG = LoggerFactory.getLogger(ConferenceService.class);
     private PhonebookRepository phonebookRepository;
@@ -44,9 +51,8 @@ public class ConferenceService {
     private ContactRepository contactRepository;
     private RoomInfoRepository roomInfoRepository;
     private CallInformationRepository callInformationRepository;
-    private final List<ConferenceEventListener> listeners = new ArrayList<>();
-    private final List<String> unmutedChannelsList = new ArrayList<>();
-    private final Map<String, Long> channelTimestampMap = new HashMap<>();
+    private final List<ConferenceEventListener> listeners = new CopyOnWriteArrayList<>();
+    private final ParticipantStateTable participantStates = new ParticipantStateTable();
     private boolean handleMuteness;
     
     private class ConferenceEventHandler implements ConferenceEventListener {
@@ -57,19 +63,41 @@ public class ConferenceService {
             LOG.debug("ConferenceEvent recieved [event={}]", event);
             if(event instanceof ParticipantJoinEvent) {
                 ParticipantJoinEvent joinEvent = (ParticipantJoinEvent) event;
-                channelTimestampMap.put(joinEvent.getParticipant().getChannel(), System.currentTimeMillis());
-                Participant p = decorateParticipant(joinEvent.getRoomNo(), joinEvent.getParticipant());
+                if(joinEvent.getParticipant().getChannel() != null) {
+                    participantStates.join(joinEvent.getRoomNo(), joinEvent.getParticipant().getChannel(), System.currentTimeMillis());
+                }
+                Participant p = decorateParticipant(joinEvent.getRoomNo(), joinEvent.getRoomNo(), joinEvent.getParticipant());
                 event = new ParticipantJoinEvent(joinEvent.getRoomNo(), p);
                 doActionLog(p, joinEvent.getRoomNo(), "call");
             }
             if(event instanceof ParticipantLeaveEvent) {
                 ParticipantLeaveEvent leaveEvent = (ParticipantLeaveEvent) event;
-                channelTimestampMap.remove(leaveEvent.getParticipant().getChannel());
                 String room = event.getRoomNo();
-                Participant p = decorateParticipant(room, leaveEvent.getParticipant());
+                Participant p = decorateParticipant(room, room, leaveEvent.getParticipant());
+                if(p.getChannel() != null) {
+                    participantStates.leave(room, p.getChannel());
+                }
                 doActionLog(p, room, "hangup");
             }
             
+            if(event instanceof ParticipantCommentRequestEvent) {
+                String channel = ((ParticipantCommentRequestEvent) event).getChannel();
+                if(channel != null) {
+                    participantStates.setCommentRequested(event.getRoomNo(), channel, true);
+                }
+            }
+            
+            if(event instanceof ParticipantCommentRequestCancelEvent) {
+                String channel = ((ParticipantCommentRequestCancelEvent) event).getChannel();
+                if(channel != null) {
+                    participantStates.setCommentRequested(event.getRoomNo(), channel, false);
+                }
+            }
+            
+            if(event instanceof ConferenceEndEvent) {
+                participantStates.endRoom(event.getRoomNo());
+            }
+            
             if(event instanceof ConferenceStartEvent) {
                 ConferenceStartEvent startEvent = (ConferenceStartEvent) event;
                 decorateRoom(startEvent.getRoom());
@@ -87,7 +115,7 @@ public class ConferenceService {
             String roomNo = SecurityContextHolder.getContext().getAuthentication().getName();
             Room room = roomRepository.findOne(roomNo);
             if(room != null) {
-                List<Participant> participants = decorateParticipants(roomNo, roomRepository.findByRoomNo(roomNo));
+                List<Participant> participants = decorateParticipants(roomNo, roomNo, roomRepository.findByRoomNo(roomNo));
                 for(Participant p : participants) {
                     if(event.getPhoneNumber().equals(p.getPhoneNumber())) {
                         fireEvent(new ParticipantChangeEvent(roomNo, p));
@@ -200,10 +228,49 @@ public class ConferenceService {
         if(list == null) {
             return Collections.EMPTY_LIST;
         } else {
-            return decorateParticipants(hall, list);
+            return decorateParticipants(hall, roomNo, list);
         }
     }
 
+    /**
+     * Retrieves the participants of several rooms in one pass. Phonebook information for all participants is resolved
+     * in one batched lookup.
+     * @param rooms The rooms.
+     * @return The participants by room number in the order of the rooms given. Rooms that do not exist have an empty
+     * list.
+     */
+    public Map<String, List<Participant>> listParticipants(List<Room> rooms) {
+        LOG.debug("Listing participants. [rooms={}]", rooms.size());
+        List<String> roomNos = new ArrayList<>();
+        for(Room room : rooms) {
+            Access.checkRoomAccess(room.getId());
+            roomNos.add(room.getId());
+        }
+        
+        String hall = SecurityContextHolder.getContext().getAuthentication().getName();
+        Map<String, List<Participant>> found = roomRepository.findByRoomNos(roomNos);
+        Set<String> callerIds = new LinkedHashSet<>();
+        for(List<Participant> participants : found.values()) {
+            for(Participant p : participants) {
+                callerIds.add(p.getCallerId());
+            }
+        }
+        Map<String, PhonebookEntry> entries = phonebookRepository.findByCallerIds(hall, callerIds);
+        
+        Map<String, List<Participant>> result = new LinkedHashMap<>();
+        for(String roomNo : roomNos) {
+            List<Participant> participants = found.get(roomNo);
+            if(participants == null) {
+                participants = Collections.<Participant>emptyList();
+            }
+            for(Participant p : participants) {
+                applyDecoration(roomNo, p, entries.get(p.getCallerId()));
+            }
+            result.put(roomNo, participants);
+        }
+        return result;
+    }
+
     /**
      * Retrieves a specific participant in a room. 
      * @param roomNo The room number
@@ -215,7 +282,7 @@ public class ConferenceService {
         LOG.debug("Retrieving participant. [room={};participant={}]", roomNo, channel);
         Access.checkRoomAccess(roomNo);
         String hall = SecurityContextHolder.getContext().getAuthentication().getName();
-        return decorateParticipant(hall, roomRepository.findByRoomNoAndChannel(roomNo, channel));
+        return decorateParticipant(hall, roomNo, roomRepository.findByRoomNoAndChannel(roomNo, channel));
     }
 
     /**
@@ -238,7 +305,7 @@ public class ConferenceService {
         roomRepository.muteParticipant(roomNo, channel);
         
         if(handleMuteness) {
-            unmutedChannelsList.remove(channel);
+            participantStates.setUnmuted(roomNo, channel, false);
         }
     }
 
@@ -252,7 +319,61 @@ public class ConferenceService {
         roomRepository.unmuteParticipant(roomNo, channel);
         
         if(handleMuteness) {
-            unmutedChannelsList.add(channel);
+            markUnmuted(roomNo, channel);
+        }
+    }
+
+    /**
+     * Mutes several participants in a room at once.
+     * @param roomNo The room number.
+     * @param channels The channels or null to mute all participants except hosts.
+     * @return The channels muted.
+     */
+    public List<String> muteParticipants(String roomNo, List<String> channels) {
+        Access.checkRoomAccess(roomNo);
+        List<String> muted = roomRepository.muteParticipants(roomNo, channels == null ? listNonHostChannels(roomNo) : channels);
+        
+        if(handleMuteness) {
+            for(String channel : muted) {
+                participantStates.setUnmuted(roomNo, channel, false);
+            }
+        }
+        return muted;
+    }
+
+    /**
+     * Unmutes several participants in a room at once.
+     * @param roomNo The room number.
+     * @param channels The channels or null to unmute all participants except hosts.
+     * @return The channels unmuted.
+     */
+    public List<String> unmuteParticipants(String roomNo, List<String> channels) {
+        Access.checkRoomAccess(roomNo);
+        List<String> unmuted = roomRepository.unmuteParticipants(roomNo, channels == null ? listNonHostChannels(roomNo) : channels);
+        
+        if(handleMuteness) {
+            for(String channel : unmuted) {
+                markUnmuted(roomNo, channel);
+            }
+        }
+        return unmuted;
+    }
+
+    /**
+     * Marks a participant as unmuted. Events are handled on other threads, so the join event of the participant may
+     * not have been handled yet. The participant is then tracked ahead of it, unless it is no longer in the room. The
+     * state is created before looking in the room, so a leave handled in between removes it.
+     */
+    private void markUnmuted(String roomNo, String channel) {
+        if(participantStates.setUnmuted(roomNo, channel, true)) {
+            return;
+        }
+        
+        ParticipantState state = participantStates.track(roomNo, channel);
+        participantStates.setUnmuted(roomNo, channel, true);
+        if(roomRepository.findByRoomNoAndChannel(roomNo, channel) == null) {
+            LOG.debug("Participant unmuted has left. Not keeping state. [room={};channel={}]", roomNo, channel);
+            participantStates.forget(roomNo, channel, state);
         }
     }
 
@@ -264,17 +385,47 @@ public class ConferenceService {
         listeners.remove(listener);
     }
     
-    private List<Participant> decorateParticipants(String hall, List<Participant> participants) {
+    @Override
+    public Map<String, Number> getMetrics() {
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        metrics.put("participantStates", participantStates.size());
+        metrics.put("participantStateRooms", participantStates.getRoomCount());
+        metrics.put("unmutedParticipants", participantStates.getUnmutedCount());
+        metrics.put("commentRequests", participantStates.getCommentRequestCount());
+        return metrics;
+    }
+    
+    private List<String> listNonHostChannels(String roomNo) {
+        List<String> channels = new ArrayList<>();
+        List<Participant> participants = roomRepository.findByRoomNo(roomNo);
+        if(participants != null) {
+            for(Participant p : participants) {
+                if(!p.isHost() && p.getChannel() != null) {
+                    channels.add(p.getChannel());
+                }
+            }
+        }
+        return channels;
+    }
+    
+    private List<Participant> decorateParticipants(String hall, String roomNo, List<Participant> participants) {
         
         for(Participant p : participants) {
-            decorateParticipant(hall, p);
+            decorateParticipant(hall, roomNo, p);
         }
         return participants;
     }
     
-    private Participant decorateParticipant(String roomNo, Participant participant) {
+    /**
+     * Decorates a participant with the entry in the phonebook of the hall and the state kept for the participant.
+     */
+    private Participant decorateParticipant(String hall, String roomNo, Participant participant) {
         LOG.debug("Decorating event with phonebook information. [room={};participant={}]", roomNo ,participant);
-        PhonebookEntry entry = phonebookRepository.findByCallerId(roomNo, participant.getCallerId());
+        PhonebookEntry entry = phonebookRepository.findByCallerId(hall, participant.getCallerId());
+        return applyDecoration(roomNo, participant, entry);
+    }
+    
+    private Participant applyDecoration(String roomNo, Participant participant, PhonebookEntry entry) {
         if(entry != null) {
             participant.setPhoneNumber(entry.getNumber());
             participant.setName(entry.getName());
@@ -284,13 +435,14 @@ public class ConferenceService {
             participant.setType(CallType.Unknown);
         }
         
+        String channel = participant.getChannel();
+        ParticipantState state = channel == null ? null : participantStates.get(roomNo, channel);
         if(handleMuteness) {
-            participant.setMuted(!unmutedChannelsList.contains(participant.getChannel()));
+            participant.setMuted(state == null || !state.isUnmuted());
         }
         
-        Long joinTimestamp = channelTimestampMap.get(participant.getChannel());
-        if(joinTimestamp != null) {
-            participant.setDateJoined(new Date(joinTimestamp));
+        if(state != null && state.getJoined() != null) {
+            participant.setDateJoined(new Date(state.getJoined()));
         }
         
         return participant;
@@ -0,0 +1,173 @@
+package dk.drb.blacktiger.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The state <code>ConferenceService</code> keeps per participant on top of what the conference repository knows: whether
+ * the microphone has been opened, when the participant joined and whether the participant has requested to comment.
+ * <p>
+ * The state is held per room and channel, and is removed when the participant leaves or the room ends. Participants
+ * without state are muted, have no known join time and have not requested to comment. The setters only change state
+ * which already exists, so a change handled after the participant has left does not leave state behind. A participant
+ * known to be in the room before its join event has been handled may be tracked ahead of it. All methods may be called
+ * from several threads at once.</p>
+ */
+public class ParticipantStateTable {
+
+    public static class ParticipantState {
+        private volatile Long joined;
+        private volatile boolean unmuted;
+        private volatile boolean commentRequested;
+
+        /**
+         * The time the participant joined in milliseconds or null if not known.
+         */
+        public Long getJoined() {
+            return joined;
+        }
+
+        public boolean isUnmuted() {
+            return unmuted;
+        }
+
+        public boolean isCommentRequested() {
+            return commentRequested;
+        }
+    }
+
+    private final ConcurrentMap<String, ConcurrentMap<String, ParticipantState>> rooms = new ConcurrentHashMap<>();
+
+    /**
+     * Registers a participant as joined. Flags set on a participant tracked ahead of its join are kept.
+     */
+    public ParticipantState join(String roomNo, String channel, long timestamp) {
+        ParticipantState state = track(roomNo, channel);
+        state.joined = timestamp;
+        return state;
+    }
+
+    /**
+     * Retrieves the state of a participant, creating it without a join time if there is none. Only to be used for
+     * participants known to be in the room, as nothing else removes the state than the participant leaving.
+     */
+    public ParticipantState track(String roomNo, String channel) {
+        ConcurrentMap<String, ParticipantState> room = roomForUpdate(roomNo);
+        ParticipantState state = room.get(channel);
+        if (state == null) {
+            ParticipantState newState = new ParticipantState();
+            state = room.putIfAbsent(channel, newState);
+            if (state == null) {
+                state = newState;
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Removes the state of a participant, but only if it is still the given state.
+     * @return True if the state was removed.
+     */
+    public boolean forget(String roomNo, String channel, ParticipantState state) {
+        ConcurrentMap<String, ParticipantState> room = rooms.get(roomNo);
+        return room != null && room.remove(channel, state);
+    }
+
+    /**
+     * Removes the state of a participant.
+     * @return The state removed or null if there was none.
+     */
+    public ParticipantState leave(String roomNo, String channel) {
+        ConcurrentMap<String, ParticipantState> room = rooms.get(roomNo);
+        return room == null ? null : room.remove(channel);
+    }
+
+    /**
+     * Removes the state of all participants in a room.
+     */
+    public void endRoom(String roomNo) {
+        rooms.remove(roomNo);
+    }
+
+    /**
+     * Retrieves the state of a participant.
+     * @return The state or null if there is none.
+     */
+    public ParticipantState get(String roomNo, String channel) {
+        ConcurrentMap<String, ParticipantState> room = rooms.get(roomNo);
+        return room == null ? null : room.get(channel);
+    }
+
+    /**
+     * @return True if the participant has state.
+     */
+    public boolean setUnmuted(String roomNo, String channel, boolean unmuted) {
+        ParticipantState state = get(roomNo, channel);
+        if (state != null) {
+            state.unmuted = unmuted;
+        }
+        return state != null;
+    }
+
+    /**
+     * @return True if the participant has state.
+     */
+    public boolean setCommentRequested(String roomNo, String channel, boolean commentRequested) {
+        ParticipantState state = get(roomNo, channel);
+        if (state != null) {
+            state.commentRequested = commentRequested;
+        }
+        return state != null;
+    }
+
+    /**
+     * The number of participants with state.
+     */
+    public int size() {
+        int size = 0;
+        for (ConcurrentMap<String, ParticipantState> room : rooms.values()) {
+            size += room.size();
+        }
+        return size;
+    }
+
+    public int getRoomCount() {
+        return rooms.size();
+    }
+
+    public int getUnmutedCount() {
+        int count = 0;
+        for (ConcurrentMap<String, ParticipantState> room : rooms.values()) {
+            for (ParticipantState state : room.values()) {
+                if (state.unmuted) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    public int getCommentRequestCount() {
+        int count = 0;
+        for (ConcurrentMap<String, ParticipantState> room : rooms.values()) {
+            for (ParticipantState state : room.values()) {
+                if (state.commentRequested) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private ConcurrentMap<String, ParticipantState> roomForUpdate(String roomNo) {
+        ConcurrentMap<String, ParticipantState> room = rooms.get(roomNo);
+        if (room == null) {
+            ConcurrentMap<String, ParticipantState> newRoom = new ConcurrentHashMap<>();
+            room = rooms.putIfAbsent(roomNo, newRoom);
+            if (room == null) {
+                room = newRoom;
+            }
+        }
+        return room;
+    }
+}
@@ -0,0 +1,187 @@
+package dk.drb.blacktiger.service;
+
+import dk.drb.blacktiger.model.ConferenceEndEvent;
+import dk.drb.blacktiger.model.ConferenceEvent;
+import dk.drb.blacktiger.model.ConferenceEventListener;
+import dk.drb.blacktiger.model.Participant;
+import dk.drb.blacktiger.model.RoomState;
+import dk.drb.blacktiger.model.RoomStateDelta;
+import dk.drb.blacktiger.util.Access;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.util.Assert;
+
+/**
+ * Turns the conference events of each room into a numbered stream of deltas.
+ * <p>
+ * The last deltas of each room are kept in a bounded replay buffer. A client that has been disconnected can resume from
+ * the last sequence number it saw and receive only the deltas it missed, as long as they are still in the buffer.
+ * Otherwise it receives a new snapshot. The buffer of a room is emptied when the room ends, so ended meetings do not
+ * keep their deltas. The sequence numbers of the room continue, as room numbers are reused by the next meeting of the
+ * hall and clients subscribed to the room ignore deltas not numbered above the last one they saw.</p>
+ * <p>
+ * Deltas are idempotent, ie. applying a join, leave, mute or unmute already reflected in the state has no effect. A
+ * snapshot may therefore include changes of deltas numbered after its sequence number, and clients simply apply all
+ * deltas following the sequence number of the snapshot.</p>
+ */
+public class RoomStateService {
+
+    public static final int DEFAULT_REPLAY_SIZE = 200;
+    private static final Logger LOG = LoggerFactory.getLogger(RoomStateService.class);
+
+    /**
+     * Listener for deltas.
+     */
+    public interface RoomStateListener {
+
+        /**
+         * Fired for each delta. Deltas of a room are fired in the order of their sequence numbers.
+         */
+        void onDelta(RoomStateDelta delta);
+    }
+
+    private static class Stream {
+        private long sequence;
+        private Deque<RoomStateDelta> replay = new ArrayDeque<>();
+    }
+
+    private final long epoch = System.currentTimeMillis();
+    private final int replaySize;
+    private final ConcurrentMap<String, Stream> streamMap = new ConcurrentHashMap<>();
+    private final List<RoomStateListener> listeners = new CopyOnWriteArrayList<>();
+    private ConferenceService conferenceService;
+
+    public RoomStateService() {
+        this(DEFAULT_REPLAY_SIZE);
+    }
+
+    /**
+     * Creates a new instance.
+     * @param replaySize The number of deltas kept per room for clients resuming.
+     */
+    public RoomStateService(int replaySize) {
+        if (replaySize < 0) {
+            throw new IllegalArgumentException("Replay size must not be negative.");
+        }
+        this.replaySize = replaySize;
+    }
+
+    @Autowired
+    public void setConferenceService(ConferenceService conferenceService) {
+        this.conferenceService = conferenceService;
+    }
+
+    @PostConstruct
+    protected void init() {
+        Assert.notNull(conferenceService, "ConferenceService must be specified. Was null.");
+        conferenceService.addEventListener(new ConferenceEventListener() {
+
+            @Override
+            public void onParticipantEvent(ConferenceEvent event) {
+                append(event);
+            }
+        });
+    }
+
+    public void addListener(RoomStateListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(RoomStateListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * The epoch of the sequence numbers, ie. the time this service was created.
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Retrieves the state of a room.
+     * @param roomNo The room number.
+     * @param epoch The epoch the client resumes from, or null.
+     * @param sequence The last sequence number seen by the client, or null to get a snapshot.
+     * @return A replay of the missed deltas if they are all still available, otherwise a snapshot.
+     */
+    public RoomState getState(String roomNo, Long epoch, Long sequence) {
+        Access.checkRoomAccess(roomNo);
+        Stream stream = streamFor(roomNo);
+
+        if (epoch != null && sequence != null && epoch == this.epoch) {
+            synchronized (stream) {
+                // The oldest delta kept must directly follow the sequence, unless nothing has been missed.
+                long oldest = stream.replay.isEmpty() ? stream.sequence + 1 : stream.replay.peekFirst().getSequence();
+                if (sequence <= stream.sequence && sequence >= oldest - 1) {
+                    List<RoomStateDelta> deltas = new ArrayList<>();
+                    for (RoomStateDelta delta : stream.replay) {
+                        if (delta.getSequence() > sequence) {
+                            deltas.add(delta);
+                        }
+                    }
+                    LOG.debug("Replaying deltas. [room={};from={};count={}]", new Object[]{roomNo, sequence, deltas.size()});
+                    return RoomState.replay(roomNo, this.epoch, stream.sequence, deltas);
+                }
+            }
+            LOG.debug("Cannot resume from sequence. Returning snapshot. [room={};sequence={}]", roomNo, sequence);
+        }
+
+        long current;
+        synchronized (stream) {
+            current = stream.sequence;
+        }
+
+        // Read after the sequence number, so the participants reflect at least the deltas up to it.
+        List<Participant> participants = conferenceService.listParticipants(roomNo);
+        return RoomState.snapshot(roomNo, this.epoch, current, participants);
+    }
+
+    private void append(ConferenceEvent event) {
+        Stream stream = streamFor(event.getRoomNo());
+        synchronized (stream) {
+            RoomStateDelta delta = new RoomStateDelta(++stream.sequence, event);
+            if (replaySize > 0) {
+                if (stream.replay.size() == replaySize) {
+                    stream.replay.removeFirst();
+                }
+                stream.replay.addLast(delta);
+            }
+
+            // Fired while holding the lock to keep the deltas of the room in order.
+            for (RoomStateListener listener : listeners) {
+                try {
+                    listener.onDelta(delta);
+                } catch (RuntimeException ex) {
+                    LOG.error("Room state listener caused an exception.", ex);
+                }
+            }
+
+            if (event instanceof ConferenceEndEvent) {
+                // Replaced rather than cleared, as a cleared deque keeps the capacity it has grown to.
+                stream.replay = new ArrayDeque<>();
+            }
+        }
+    }
+
+    private Stream streamFor(String roomNo) {
+        Stream stream = streamMap.get(roomNo);
+        if (stream == null) {
+            Stream created = new Stream();
+            stream = streamMap.putIfAbsent(roomNo, created);
+            if (stream == null) {
+                stream = created;
+            }
+        }
+        return stream;
+    }
+}
@@ -0,0 +1,209 @@
+package dk.drb.blacktiger.service;
+
+import dk.drb.blacktiger.model.Summary;
+import dk.drb.blacktiger.util.RingBufferSeries;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Keeps a history of the summaries from <code>SummaryService</code> per region.
+ * <p>
+ * The summaries are sampled every second into a number of series with different resolution and retention, for example
+ * one second resolution for an hour and one minute resolution for a week. Each series uses a fixed amount of memory
+ * per region.</p>
+ */
+public class SummaryHistoryService {
+
+    public static final String DEFAULT_SERIES = "1s/1h,1m/7d";
+    public static final int MAX_POINTS = 5000;
+    private static final Logger LOG = LoggerFactory.getLogger(SummaryHistoryService.class);
+    private static final String[] METRICS = {"halls", "participants", "participantsViaPhone", "participantsViaSip", "openMicrophones"};
+    private static final Pattern SERIES_PATTERN = Pattern.compile("(\\d+)([smhd])/(\\d+)([smhd])");
+
+    /**
+     * Resolution and retention of a series in milliseconds.
+     */
+    public static class SeriesSpec {
+        private final long resolution;
+        private final long retention;
+
+        public SeriesSpec(long resolution, long retention) {
+            if (resolution < 1 || retention < resolution) {
+                throw new IllegalArgumentException("Retention must be at least the resolution.");
+            }
+            this.resolution = resolution;
+            this.retention = retention;
+        }
+
+        public long getResolution() {
+            return resolution;
+        }
+
+        public long getRetention() {
+            return retention;
+        }
+    }
+
+    private final List<SeriesSpec> specs;
+    private final ConcurrentMap<String, RingBufferSeries[]> seriesMap = new ConcurrentHashMap<>();
+    private SummaryService summaryService;
+
+    public SummaryHistoryService() {
+        this(parseSeries(DEFAULT_SERIES));
+    }
+
+    /**
+     * Creates a new instance.
+     * @param specs The series to keep for each region.
+     */
+    public SummaryHistoryService(List<SeriesSpec> specs) {
+        if (specs.isEmpty()) {
+            throw new IllegalArgumentException("At least one series must be specified.");
+        }
+        List<SeriesSpec> sorted = new ArrayList<>(specs);
+        Collections.sort(sorted, new Comparator<SeriesSpec>() {
+
+            @Override
+            public int compare(SeriesSpec o1, SeriesSpec o2) {
+                return Long.compare(o1.resolution, o2.resolution);
+            }
+        });
+        this.specs = Collections.unmodifiableList(sorted);
+    }
+
+    /**
+     * Parses a list of series like <code>1s/1h,1m/7d</code>, ie. resolution/retention separated by comma. Units are
+     * s, m, h and d.
+     */
+    public static List<SeriesSpec> parseSeries(String text) {
+        List<SeriesSpec> result = new ArrayList<>();
+        for (String part : text.split(",")) {
+            Matcher matcher = SERIES_PATTERN.matcher(part.trim());
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("Invalid series specification: " + part);
+            }
+            result.add(new SeriesSpec(toMillis(matcher.group(1), matcher.group(2)), toMillis(matcher.group(3), matcher.group(4))));
+        }
+        return result;
+    }
+
+    private static long toMillis(String value, String unit) {
+        long amount = Long.parseLong(value);
+        switch (unit) {
+            case "s":
+                return TimeUnit.SECONDS.toMillis(amount);
+            case "m":
+                return TimeUnit.MINUTES.toMillis(amount);
+            case "h":
+                return TimeUnit.HOURS.toMillis(amount);
+            default:
+                return TimeUnit.DAYS.toMillis(amount);
+        }
+    }
+
+    @Autowired
+    public void setSummaryService(SummaryService summaryService) {
+        this.summaryService = summaryService;
+    }
+
+    @Scheduled(fixedRate = 1000)
+    public void sample() {
+        record(System.currentTimeMillis(), summaryService.getSummary());
+    }
+
+    /**
+     * Records summaries for the given time. Regions with history but no summary are recorded as empty.
+     */
+    public void record(long time, Map<String, Summary> summaries) {
+        for (Map.Entry<String, Summary> entry : summaries.entrySet()) {
+            Summary summary = entry.getValue();
+            int[] sample = {summary.getHalls(), summary.getParticipants(), summary.getParticipantsViaPhone(),
+                summary.getParticipantsViaSip(), summary.getOpenMicrophones()};
+            for (RingBufferSeries series : seriesFor(entry.getKey())) {
+                series.record(time, sample);
+            }
+        }
+
+        int[] empty = new int[METRICS.length];
+        for (Map.Entry<String, RingBufferSeries[]> entry : seriesMap.entrySet()) {
+            if (!summaries.containsKey(entry.getKey())) {
+                for (RingBufferSeries series : entry.getValue()) {
+                    series.record(time, empty);
+                }
+            }
+        }
+    }
+
+    /**
+     * Retrieves the history of a region.
+     * <p>
+     * The series with the finest resolution that still covers the start time is used, and the points are downsampled
+     * to the step by keeping the maximum values. The step is increased if needed to return at most
+     * <code>MAX_POINTS</code> points.</p>
+     * @param region The region identifier, or <code>SummaryService.GLOBAL_IDENTIFIER</code>.
+     * @param from The start time in milliseconds since epoch.
+     * @param to The end time in milliseconds since epoch.
+     * @param step The wanted time between points in milliseconds, or 0 for the resolution of the series used.
+     * @return The start, step and a list of values per metric, or null if there is no history for the region.
+     */
+    public Map<String, Object> getHistory(String region, long from, long to, long step) {
+        RingBufferSeries[] regionSeries = seriesMap.get(region);
+        if (regionSeries == null) {
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        RingBufferSeries chosen = regionSeries[regionSeries.length - 1];
+        for (RingBufferSeries series : regionSeries) {
+            if (now - series.getRetention() <= from) {
+                chosen = series;
+                break;
+            }
+        }
+
+        // Nothing is kept beyond the retention, so do not iterate over it.
+        from = Math.max(from, now - chosen.getRetention());
+        step = Math.max(step, (to - from) / MAX_POINTS + 1);
+        LOG.debug("Reading summary history. [region={};resolution={};step={}]", new Object[]{region, chosen.getResolution(), step});
+        RingBufferSeries.Range range = chosen.read(from, to, step);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("region", region);
+        result.put("start", range.getStart());
+        result.put("step", range.getStep());
+        for (int m = 0; m < METRICS.length; m++) {
+            result.put(METRICS[m], Arrays.asList(range.getValues()[m]));
+        }
+        return result;
+    }
+
+    private RingBufferSeries[] seriesFor(String region) {
+        RingBufferSeries[] series = seriesMap.get(region);
+        if (series == null) {
+            RingBufferSeries[] created = new RingBufferSeries[specs.size()];
+            for (int i = 0; i < created.length; i++) {
+                SeriesSpec spec = specs.get(i);
+                created[i] = new RingBufferSeries(METRICS.length, spec.resolution, (int) (spec.retention / spec.resolution));
+            }
+            series = seriesMap.putIfAbsent(region, created);
+            if (series == null) {
+                series = created;
+            }
+        }
+        return series;
+    }
+}
@@ -11,14 +11,19 @@ import dk.drb.blacktiger.model.ParticipantJoinEvent;
 import dk.drb.blacktiger.model.ParticipantLeaveEvent;
 import dk.drb.blacktiger.model.ParticipantMuteEvent;
 import dk.drb.blacktiger.model.ParticipantUnmuteEvent;
+import dk.drb.blacktiger.model.ParticipantsMuteEvent;
+import dk.drb.blacktiger.model.ParticipantsUnmuteEvent;
 import dk.drb.blacktiger.model.Room;
 import dk.drb.blacktiger.model.Summary;
 import dk.drb.blacktiger.repository.ConferenceRoomRepository;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.annotation.PostConstruct;
@@ -27,15 +32,56 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.annotation.Secured;
 
+/**
+ * Keeps a summary of halls, participants and open microphones per region and for the whole system.
+ * <p>
+ * Events may arrive on several threads at once. Counters are updated without locking, and readers get immutable
+ * snapshots. A snapshot is only published when no update was in progress while it was taken, so readers never see an
+ * event half applied. If updates keep coming, readers get the last published snapshot.</p>
+ */
 public class SummaryService {
 
     public static final String GLOBAL_IDENTIFIER = "all";
 
     private static final Logger LOG = LoggerFactory.getLogger(SummaryService.class);
     private static final Pattern roomPattern = Pattern.compile("([a-zA-Z0-9]+)-.*");
-    private final Set<String> openMicsChannelSet = new HashSet<>();
-    private final Map<String, Summary> summaryMap = new HashMap<>();
-    private Summary globalSummary;
+    private static final String NO_IDENTIFIER = "";
+    private static final int SNAPSHOT_ATTEMPTS = 3;
+
+    private static class Counters {
+        private final AtomicInteger halls = new AtomicInteger();
+        private final AtomicInteger participants = new AtomicInteger();
+        private final AtomicInteger participantsViaPhone = new AtomicInteger();
+        private final AtomicInteger participantsViaSip = new AtomicInteger();
+        private final AtomicInteger openMicrophones = new AtomicInteger();
+
+        private boolean isEmpty() {
+            return halls.get() == 0 && participants.get() == 0;
+        }
+
+        private Summary toSummary() {
+            return new Summary(halls.get(), participants.get(), participantsViaPhone.get(), participantsViaSip.get(),
+                    openMicrophones.get());
+        }
+    }
+
+    private static class Snapshot {
+        private final long version;
+        private final Map<String, Summary> summaries;
+
+        public Snapshot(long version, Map<String, Summary> summaries) {
+            this.version = version;
+            this.summaries = summaries;
+        }
+    }
+
+    private final Set<String> openMicsChannelSet = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final ConcurrentMap<String, Counters> countersMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> identifierCache = new ConcurrentHashMap<>();
+    private final Counters globalCounters = new Counters();
+    private final AtomicInteger updatesInProgress = new AtomicInteger();
+    private final AtomicLong version = new AtomicLong();
+    private volatile Snapshot snapshot = new Snapshot(0, Collections.singletonMap(GLOBAL_IDENTIFIER, new Summary()));
 
     private ConferenceRoomRepository conferenceRepository;
 
@@ -47,14 +93,12 @@ public class SummaryService {
     @PostConstruct
     protected void init() {
         LOG.debug("Initializing SummaryService.");
-        globalSummary = new Summary();
-        summaryMap.put(GLOBAL_IDENTIFIER, globalSummary);
-        
+
         LOG.debug("Loading rooms");
         for(Room room : conferenceRepository.findAll()) {
             adjustHalls(room.getId(), 1);
             LOG.debug("Room add [room={}]", room.getId());
-            
+
             for(Participant participant : conferenceRepository.findByRoomNo(room.getId())) {
                 if(!participant.isHost()) {
                     adjustParticipants(room.getId(), 1, participant.getType());
@@ -62,93 +106,143 @@ public class SummaryService {
                 }
             }
         }
-        
+        version.incrementAndGet();
+
         conferenceRepository.addEventListener(new ConferenceEventListener() {
 
             @Override
             public void onParticipantEvent(ConferenceEvent event) {
                 LOG.debug("Conference event recieved for summary. [class={}]", event.getClass());
-                if (event instanceof ConferenceStartEvent) {
-                    adjustHalls(event.getRoomNo(), 1);
-                    LOG.debug("Conference added to summary.");
+                updatesInProgress.incrementAndGet();
+                try {
+                    handleEvent(event);
+                } finally {
+                    // Version is changed before the update is marked as done, see takeSnapshot.
+                    version.incrementAndGet();
+                    updatesInProgress.decrementAndGet();
                 }
+            }
+        });
+    }
 
-                if (event instanceof ConferenceEndEvent) {
-                    adjustHalls(event.getRoomNo(), -1);
-                    LOG.debug("Conference removed from summary.");
-                }
+    private void handleEvent(ConferenceEvent event) {
+        if (event instanceof ConferenceStartEvent) {
+            adjustHalls(event.getRoomNo(), 1);
+            LOG.debug("Conference added to summary.");
+        }
+
+        if (event instanceof ConferenceEndEvent) {
+            adjustHalls(event.getRoomNo(), -1);
+            LOG.debug("Conference removed from summary.");
+        }
+
+        if (event instanceof ParticipantMuteEvent) {
+            String channel = ((ParticipantMuteEvent)event).getChannel();
+            if (channel != null && openMicsChannelSet.remove(channel)) {
+                adjustOpenMicrophones(event.getRoomNo(), -1);
+                LOG.debug("Open microphone removed from summary.");
+            }
+        }
 
-                if (event instanceof ParticipantMuteEvent) {
-                    openMicsChannelSet.remove(((ParticipantMuteEvent)event).getChannel());
+        if (event instanceof ParticipantUnmuteEvent) {
+            String channel = ((ParticipantUnmuteEvent)event).getChannel();
+            if (channel != null && openMicsChannelSet.add(channel)) {
+                adjustOpenMicrophones(event.getRoomNo(), 1);
+                LOG.debug("Open microphone added to summary.");
+            }
+        }
+
+        if (event instanceof ParticipantsMuteEvent) {
+            for (String channel : ((ParticipantsMuteEvent)event).getChannels()) {
+                if (openMicsChannelSet.remove(channel)) {
                     adjustOpenMicrophones(event.getRoomNo(), -1);
-                    LOG.debug("Open microphone removed from summary.");
                 }
+            }
+            LOG.debug("Open microphones removed from summary.");
+        }
 
-                if (event instanceof ParticipantUnmuteEvent) {
-                    openMicsChannelSet.add(((ParticipantUnmuteEvent)event).getChannel());
+        if (event instanceof ParticipantsUnmuteEvent) {
+            for (String channel : ((ParticipantsUnmuteEvent)event).getChannels()) {
+                if (openMicsChannelSet.add(channel)) {
                     adjustOpenMicrophones(event.getRoomNo(), 1);
-                    LOG.debug("Open microphone added to summary.");
                 }
+            }
+            LOG.debug("Open microphones added to summary.");
+        }
 
-                if (event instanceof ParticipantEvent) {
-                    ParticipantEvent pEvent = (ParticipantEvent) event;
-
-                    if (event instanceof ParticipantJoinEvent) {
-                        adjustParticipants(pEvent.getRoomNo(), 1, pEvent.getParticipant().getType());
-                        LOG.debug("Participant added to summary.");
-                    }
+        if (event instanceof ParticipantEvent) {
+            ParticipantEvent pEvent = (ParticipantEvent) event;
 
-                    if (event instanceof ParticipantLeaveEvent) {
-                        if(openMicsChannelSet.contains(((ParticipantLeaveEvent)event).getParticipant().getChannel())) {
-                            adjustOpenMicrophones(event.getRoomNo(), -1);
-                        }
-                        adjustParticipants(pEvent.getRoomNo(), -1, pEvent.getParticipant().getType());
-                        LOG.debug("Participant removed from summary.");
-                    }
+            if (event instanceof ParticipantJoinEvent) {
+                adjustParticipants(pEvent.getRoomNo(), 1, pEvent.getParticipant().getType());
+                LOG.debug("Participant added to summary.");
+            }
 
+            if (event instanceof ParticipantLeaveEvent) {
+                String channel = pEvent.getParticipant().getChannel();
+                if(channel != null && openMicsChannelSet.remove(channel)) {
+                    adjustOpenMicrophones(event.getRoomNo(), -1);
                 }
-                clean(event.getRoomNo());
+                adjustParticipants(pEvent.getRoomNo(), -1, pEvent.getParticipant().getType());
+                LOG.debug("Participant removed from summary.");
             }
-        });
+
+        }
     }
 
+    /**
+     * Retrieves the region identifier of a room. The pattern is only matched once per room.
+     */
     private String identifierFromRoom(String roomNo) {
-        Matcher matcher = roomPattern.matcher(roomNo);
-        if (matcher.matches()) {
-            return matcher.group(1);
-        } else {
-            LOG.warn("Roomno does not match pattern of room numbers and identifier cannot be retrieved.");
-            return null;
+        String identifier = identifierCache.get(roomNo);
+        if (identifier == null) {
+            Matcher matcher = roomPattern.matcher(roomNo);
+            if (matcher.matches()) {
+                identifier = matcher.group(1);
+            } else {
+                LOG.warn("Roomno does not match pattern of room numbers and identifier cannot be retrieved. [room={}]", roomNo);
+                identifier = NO_IDENTIFIER;
+            }
+            identifierCache.putIfAbsent(roomNo, identifier);
         }
+        return NO_IDENTIFIER.equals(identifier) ? null : identifier;
     }
 
-    private Summary summaryFromRoom(String room) {
-        Summary regionalSummary = null;
-
+    private Counters countersFromRoom(String room) {
         String identifier = identifierFromRoom(room);
-        if (identifier != null) {
-            regionalSummary = summaryMap.get(identifier);
+        if (identifier == null) {
+            return null;
+        }
 
-            if (regionalSummary == null) {
-                regionalSummary = new Summary();
-                summaryMap.put(identifier, regionalSummary);
+        Counters counters = countersMap.get(identifier);
+        if (counters == null) {
+            Counters created = new Counters();
+            counters = countersMap.putIfAbsent(identifier, created);
+            if (counters == null) {
+                counters = created;
             }
         }
-        return regionalSummary;
+        return counters;
     }
 
-    private void clean(String room) {
-        Summary regionalSummary = summaryFromRoom(room);
-        if (regionalSummary != null && regionalSummary.getHalls() == 0 && regionalSummary.getParticipants() == 0) {
-            summaryMap.remove(identifierFromRoom(room));
+    /**
+     * Adds a value to a counter without letting it drop below zero.
+     */
+    private static void adjust(AtomicInteger counter, int value) {
+        while (true) {
+            int current = counter.get();
+            int next = Math.max(0, current + value);
+            if (counter.compareAndSet(current, next)) {
+                return;
+            }
         }
     }
 
     private void adjustHalls(String room, int value) {
-        globalSummary.adjustHalls(value);
-        Summary regionalSummary = summaryFromRoom(room);
-        if (regionalSummary != null) {
-            regionalSummary.adjustHalls(value);
+        adjust(globalCounters.halls, value);
+        Counters regionalCounters = countersFromRoom(room);
+        if (regionalCounters != null) {
+            adjust(regionalCounters.halls, value);
         }
     }
 
@@ -157,47 +251,77 @@ public class SummaryService {
             return;
         }
 
-        globalSummary.adjustParticipants(value);
+        adjustParticipants(globalCounters, value, type);
+        Counters regionalCounters = countersFromRoom(room);
+        if (regionalCounters != null) {
+            adjustParticipants(regionalCounters, value, type);
+        }
+    }
+
+    private void adjustParticipants(Counters counters, int value, CallType type) {
+        adjust(counters.participants, value);
 
         switch (type) {
             case Phone:
-                globalSummary.adjustParticipantsViaPhone(value);
+                adjust(counters.participantsViaPhone, value);
                 break;
             case Sip:
-                globalSummary.adjustParticipantsViaSip(value);
+                adjust(counters.participantsViaSip, value);
                 break;
         }
-
-        Summary regionalSummary = summaryFromRoom(room);
-        if (regionalSummary != null) {
-            regionalSummary.adjustParticipants(value);
-
-            switch (type) {
-                case Phone:
-                    regionalSummary.adjustParticipantsViaPhone(value);
-                    break;
-                case Sip:
-                    regionalSummary.adjustParticipantsViaSip(value);
-                    break;
-            }
-        }
     }
 
     private void adjustOpenMicrophones(String room, int value) {
-        globalSummary.adjustOpenMicrophones(value);
-        Summary regionalSummary = summaryFromRoom(room);
-        if (regionalSummary != null) {
-            regionalSummary.adjustOpenMicrophones(value);
+        adjust(globalCounters.openMicrophones, value);
+        Counters regionalCounters = countersFromRoom(room);
+        if (regionalCounters != null) {
+            adjust(regionalCounters.openMicrophones, value);
         }
     }
 
+    /**
+     * Retrieves a snapshot of the summaries. Regions without halls and participants are left out.
+     */
     @Secured("ROLE_ADMIN")
     public Map<String, Summary> getSummary() {
-        return Collections.unmodifiableMap(summaryMap);
+        return takeSnapshot().summaries;
     }
-    
+
     public Summary getGlobalSummary() {
-        return summaryMap.get(GLOBAL_IDENTIFIER);
+        return takeSnapshot().summaries.get(GLOBAL_IDENTIFIER);
+    }
+
+    private Snapshot takeSnapshot() {
+        for (int attempt = 0; attempt < SNAPSHOT_ATTEMPTS; attempt++) {
+            Snapshot current = snapshot;
+            long startVersion = version.get();
+            if (updatesInProgress.get() != 0) {
+                Thread.yield();
+                continue;
+            }
+            if (current.version == startVersion) {
+                return current;
+            }
+
+            Map<String, Summary> summaries = new HashMap<>();
+            summaries.put(GLOBAL_IDENTIFIER, globalCounters.toSummary());
+            for (Map.Entry<String, Counters> entry : countersMap.entrySet()) {
+                if (!entry.getValue().isEmpty()) {
+                    summaries.put(entry.getKey(), entry.getValue().toSummary());
+                }
+            }
+
+            // Only consistent if no update started or finished while reading the counters.
+            if (updatesInProgress.get() == 0 && version.get() == startVersion) {
+                Snapshot taken = new Snapshot(startVersion, Collections.unmodifiableMap(summaries));
+                if (taken.version > snapshot.version) {
+                    snapshot = taken;
+                }
+                return taken;
+            }
+        }
+        LOG.debug("Summary is being updated. Returning last published snapshot.");
+        return snapshot;
     }
 
 }
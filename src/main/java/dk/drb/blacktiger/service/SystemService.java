@@ -3,8 +3,12 @@ package dk.drb.blacktiger.service;
 import com.sun.management.OperatingSystemMXBean;
 import dk.drb.blacktiger.controller.rest.model.SendPasswordRequest;
 import dk.drb.blacktiger.repository.SipAccountRepository;
+import dk.drb.blacktiger.util.MetricsSource;
 import java.io.File;
 import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import org.springframework.beans.factory.ListableBeanFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.annotation.Secured;
 
@@ -20,6 +24,9 @@ public class SystemService {
     @Autowired
     private SipAccountRepository sipAccountRepository;
     
+    @Autowired(required = false)
+    private ListableBeanFactory beanFactory;
+    
     @Secured("ROLE_ADMIN")
     public long getTotalDiskSpace() {
         return file.getTotalSpace();
@@ -61,6 +68,20 @@ public class SystemService {
         return osmxb.getSystemLoadAverage();
     }
     
+    /**
+     * Returns the metrics of all beans implementing MetricsSource, grouped by bean name.
+     */
+    @Secured("ROLE_ADMIN")
+    public Map<String, Map<String, Number>> getMetrics() {
+        Map<String, Map<String, Number>> result = new TreeMap<>();
+        if (beanFactory != null) {
+            for (Map.Entry<String, MetricsSource> entry : beanFactory.getBeansOfType(MetricsSource.class).entrySet()) {
+                result.put(entry.getKey(), entry.getValue().getMetrics());
+            }
+        }
+        return result;
+    }
+    
         
     public boolean sendPasswordEmail(SendPasswordRequest request) {
         //The following 3 if's is a fallback from when the client originally did'nt deliver the texts.
@@ -0,0 +1,174 @@
+package dk.drb.blacktiger.util;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded, lock-free queue for handing events from any number of producer threads to a single consumer thread.
+ * <p>
+ * The consumer waits for events using <code>await</code> and is woken as soon as an event arrives. When the queue is full
+ * the configured <code>OverflowPolicy</code> decides what happens to new events.</p>
+ * <p>
+ * Each event is timestamped when added, which allows the queue to report how far behind the consumer is.</p>
+ */
+public class BoundedEventQueue<E> {
+
+    /**
+     * What to do with an event offered while the queue is full.
+     */
+    public enum OverflowPolicy {
+        /** The event offered is discarded. */
+        DROP_NEWEST,
+        /** The oldest event in the queue is discarded to make room for the event offered. */
+        DROP_OLDEST,
+        /** The producer waits until room is available. */
+        BLOCK
+    }
+
+    private static class Entry<E> {
+        private final E element;
+        private final long timestamp;
+
+        public Entry(E element, long timestamp) {
+            this.element = element;
+            this.timestamp = timestamp;
+        }
+    }
+
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final ConcurrentLinkedQueue<Entry<E>> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong added = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private volatile Thread waitingConsumer;
+    private volatile long lastLag;
+
+    public BoundedEventQueue(int capacity, OverflowPolicy overflowPolicy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1.");
+        }
+        if (overflowPolicy == null) {
+            throw new IllegalArgumentException("OverflowPolicy must be specified.");
+        }
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Adds an event to the queue.
+     * @return False if the event was discarded because the queue was full.
+     */
+    public boolean offer(E element) {
+        while (true) {
+            int current = size.get();
+            if (current < capacity) {
+                if (size.compareAndSet(current, current + 1)) {
+                    break;
+                }
+                continue;
+            }
+
+            switch (overflowPolicy) {
+                case DROP_NEWEST:
+                    dropped.incrementAndGet();
+                    return false;
+                case DROP_OLDEST:
+                    if (queue.poll() != null) {
+                        size.decrementAndGet();
+                        dropped.incrementAndGet();
+                    }
+                    break;
+                case BLOCK:
+                    LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+                    break;
+            }
+        }
+
+        queue.offer(new Entry<>(element, System.nanoTime()));
+        added.incrementAndGet();
+
+        Thread consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    /**
+     * Retrieves and removes the oldest event in the queue.
+     * @return The event or null if the queue is empty.
+     */
+    public E poll() {
+        Entry<E> entry = queue.poll();
+        if (entry == null) {
+            return null;
+        }
+        size.decrementAndGet();
+        lastLag = System.nanoTime() - entry.timestamp;
+        return entry.element;
+    }
+
+    /**
+     * Waits until an event is available, the timeout elapses or the thread is interrupted. Only one thread may wait at a
+     * time.
+     */
+    public void await(long timeout, TimeUnit unit) {
+        if (!queue.isEmpty()) {
+            return;
+        }
+        waitingConsumer = Thread.currentThread();
+        try {
+            // Check again now that producers can see us waiting, to avoid missing an unpark.
+            if (queue.isEmpty()) {
+                LockSupport.parkNanos(this, unit.toNanos(timeout));
+            }
+        } finally {
+            waitingConsumer = null;
+        }
+    }
+
+    /**
+     * The number of events currently waiting in the queue.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * The total number of events added to the queue.
+     */
+    public long getAdded() {
+        return added.get();
+    }
+
+    /**
+     * The total number of events discarded due to the queue being full.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * The time in milliseconds the oldest waiting event has been in the queue, or the time the last event taken from the
+     * queue spent waiting if the queue is empty.
+     */
+    public long getLagMillis() {
+        Entry<E> head = queue.peek();
+        long lag = head == null ? lastLag : System.nanoTime() - head.timestamp;
+        return TimeUnit.NANOSECONDS.toMillis(lag);
+    }
+}
@@ -0,0 +1,234 @@
+package dk.drb.blacktiger.util;
+
+import dk.drb.blacktiger.model.ConferenceEvent;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coalesces conference events per room into batches.
+ * <p>
+ * The first event for a room starts a window. Events for the room arriving within the window are collected and passed
+ * to the sink together when the window ends, or as soon as the batch reaches the maximum size. Events are passed on in
+ * the order they were added. A window of 0 disables batching, see <code>isEnabled()</code>.</p>
+ * <p>
+ * The timer and the adding thread only trigger sending. The batches are taken and passed to the sink on the shard of
+ * their room in the given executor, without holding the lock of the batch, so encoding a batch neither holds up the
+ * other rooms nor events being added to the room.</p>
+ * <p>
+ * The batch of a room is dropped when it has been sent and no window is running, so rooms which have ended do not keep
+ * a batch. The next event for the room starts a new one.</p>
+ */
+public class EventBatcher implements MetricsSource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EventBatcher.class);
+
+    /**
+     * Receives the batches.
+     */
+    public interface Sink {
+
+        void send(String roomNo, List<ConferenceEvent> events);
+    }
+
+    private static class Batch {
+        private List<ConferenceEvent> events = new ArrayList<>();
+        private boolean scheduled;
+        private boolean sendQueued;
+        private boolean removed;
+    }
+
+    private final long window;
+    private final int maxSize;
+    private final ConcurrentMap<String, Batch> batchMap = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final ShardedExecutor executor;
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private Sink sink;
+
+    /**
+     * Creates a new batcher.
+     * @param window The time in milliseconds events for a room are collected before being sent.
+     * @param maxSize The maximum number of events in a batch.
+     * @param executor The executor the batches are sent on, keyed by room number.
+     */
+    public EventBatcher(long window, int maxSize, ShardedExecutor executor) {
+        if (window < 0 || maxSize < 1) {
+            throw new IllegalArgumentException("Window must not be negative and max size must be at least 1.");
+        }
+        this.window = window;
+        this.maxSize = maxSize;
+        this.executor = executor;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "event-batcher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public void setSink(Sink sink) {
+        this.sink = sink;
+    }
+
+    public boolean isEnabled() {
+        return window > 0;
+    }
+
+    public long getWindow() {
+        return window;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Adds an event to the batch of its room.
+     */
+    public void add(ConferenceEvent event) {
+        final String roomNo = event.getRoomNo();
+        events.incrementAndGet();
+        while (true) {
+            final Batch batch = batchFor(roomNo);
+            synchronized (batch) {
+                if (batch.removed) {
+                    // Dropped after we found it. The next lookup finds or creates the current batch.
+                    continue;
+                }
+
+                batch.events.add(event);
+                if (batch.events.size() >= maxSize || !isEnabled()) {
+                    queueSend(roomNo, batch);
+                    return;
+                }
+
+                // A full batch sent before the window ends leaves the timer running, so no event waits longer than the window.
+                if (!batch.scheduled) {
+                    batch.scheduled = true;
+                    scheduler.schedule(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            synchronized (batch) {
+                                batch.scheduled = false;
+                                queueSend(roomNo, batch);
+                            }
+                        }
+                    }, window, TimeUnit.MILLISECONDS);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sends all pending batches on the calling thread.
+     */
+    public void flush() {
+        for (Map.Entry<String, Batch> entry : batchMap.entrySet()) {
+            send(entry.getKey(), take(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    /**
+     * Sends the pending batches and stops the timer.
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+        flush();
+    }
+
+    @Override
+    public Map<String, Number> getMetrics() {
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        metrics.put("events", events.get());
+        metrics.put("batches", batches.get());
+        metrics.put("failed", failed.get());
+        metrics.put("rooms", batchMap.size());
+        return metrics;
+    }
+
+    private Batch batchFor(String roomNo) {
+        Batch batch = batchMap.get(roomNo);
+        if (batch == null) {
+            Batch created = new Batch();
+            batch = batchMap.putIfAbsent(roomNo, created);
+            if (batch == null) {
+                batch = created;
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Queues sending the batch on the shard of its room, unless it is already queued. Must be called while holding the
+     * lock of the batch.
+     * <p>
+     * The events are taken when the task runs, so sends of a room are taken and sent in order on the same thread.</p>
+     */
+    private void queueSend(final String roomNo, final Batch batch) {
+        if (batch.sendQueued) {
+            return;
+        }
+
+        batch.sendQueued = true;
+        executor.execute(roomNo, new Runnable() {
+
+            @Override
+            public void run() {
+                send(roomNo, take(roomNo, batch));
+            }
+        });
+    }
+
+    /**
+     * Takes the pending events of a batch. The batch is dropped if no window is running, as nothing is left to send.
+     */
+    private List<ConferenceEvent> take(String roomNo, Batch batch) {
+        synchronized (batch) {
+            batch.sendQueued = false;
+            List<ConferenceEvent> pending = batch.events;
+            batch.events = new ArrayList<>();
+            if (!batch.scheduled && !batch.removed) {
+                batch.removed = true;
+                batchMap.remove(roomNo, batch);
+            }
+            return pending;
+        }
+    }
+
+    /**
+     * Passes events taken from a batch to the sink, split in batches of at most the maximum size, as more events may
+     * have been added while the send was queued.
+     */
+    private void send(String roomNo, List<ConferenceEvent> pending) {
+        for (int start = 0; start < pending.size(); start += maxSize) {
+            List<ConferenceEvent> events = pending.size() <= maxSize ? pending
+                    : new ArrayList<>(pending.subList(start, Math.min(start + maxSize, pending.size())));
+            batches.incrementAndGet();
+            LOG.debug("Sending event batch. [room={};size={}]", roomNo, events.size());
+            try {
+                sink.send(roomNo, events);
+            } catch (RuntimeException ex) {
+                failed.addAndGet(events.size());
+                LOG.error("Error while sending event batch. [room=" + roomNo + ";size=" + events.size() + "]", ex);
+            }
+        }
+    }
+}
@@ -14,14 +14,19 @@ import dk.drb.blacktiger.model.ConferenceEvent;
 import dk.drb.blacktiger.model.ConferenceStartEvent;
 import dk.drb.blacktiger.model.Participant;
 import dk.drb.blacktiger.model.ParticipantEvent;
+import dk.drb.blacktiger.model.RoomState;
+import dk.drb.blacktiger.model.RoomStateDelta;
 import dk.drb.blacktiger.model.SparseParticipantEvent;
+import dk.drb.blacktiger.model.SparseParticipantsEvent;
 import java.io.IOException;
+import java.util.Collection;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MessageConversionException;
 import org.springframework.messaging.converter.MappingJackson2MessageConverter;
 
 /**
- *
+ * Converts conference events, or collections of them, and room states to JSON.
  * @author michael
  */
 public class EventConverter extends MappingJackson2MessageConverter {
@@ -40,6 +45,10 @@ public class EventConverter extends MappingJackson2MessageConverter {
                 jgen.writeStringField("channel", ((SparseParticipantEvent) value).getChannel());
             }
 
+            if (value instanceof SparseParticipantsEvent) {
+                jgen.writeObjectField("channels", ((SparseParticipantsEvent) value).getChannels());
+            }
+
             if (value instanceof ConferenceStartEvent) {
                 jgen.writeObjectField("room", ((ConferenceStartEvent) value).getRoom());
             }
@@ -80,18 +89,93 @@ public class EventConverter extends MappingJackson2MessageConverter {
         }
     };
 
+    private final JsonSerializer<RoomStateDelta> deltaSerializer = new JsonSerializer<RoomStateDelta>() {
+        @Override
+        public void serialize(RoomStateDelta value, JsonGenerator jgen, SerializerProvider provider) throws IOException, JsonProcessingException {
+            jgen.writeStartObject();
+            jgen.writeNumberField("sequence", value.getSequence());
+            jgen.writeObjectField("event", value.getEvent());
+            jgen.writeEndObject();
+        }
+
+        @Override
+        public Class<RoomStateDelta> handledType() {
+            return RoomStateDelta.class;
+        }
+    };
+
+    private final JsonSerializer<RoomState> stateSerializer = new JsonSerializer<RoomState>() {
+        @Override
+        public void serialize(RoomState value, JsonGenerator jgen, SerializerProvider provider) throws IOException, JsonProcessingException {
+            jgen.writeStartObject();
+            jgen.writeStringField("roomNo", value.getRoomNo());
+            jgen.writeNumberField("epoch", value.getEpoch());
+            jgen.writeNumberField("sequence", value.getSequence());
+            if (value.isReplay()) {
+                jgen.writeObjectField("deltas", value.getDeltas());
+            } else {
+                jgen.writeObjectField("participants", value.getParticipants());
+            }
+            jgen.writeStringField("type", value.getType());
+            jgen.writeEndObject();
+        }
+
+        @Override
+        public Class<RoomState> handledType() {
+            return RoomState.class;
+        }
+    };
+
+    private final EventEncoder encoder;
+
     public EventConverter() {
+        this(true);
+    }
+
+    /**
+     * Creates a new converter.
+     * @param streaming Whether to encode with <code>EventEncoder</code>. Otherwise the payload is serialized through
+     * the <code>ObjectMapper</code>, which gives the same output but is slower.
+     */
+    public EventConverter(boolean streaming) {
         SimpleModule m = new SimpleModule("EventModule");
         m.addSerializer(eventSerializer);
         m.addSerializer(participantSerializer);
+        m.addSerializer(deltaSerializer);
+        m.addSerializer(stateSerializer);
 
         getObjectMapper().registerModule(m);
-
+        encoder = streaming ? new EventEncoder(getObjectMapper().getFactory()) : null;
     }
 
     @Override
     protected boolean canConvertTo(Object payload, MessageHeaders headers) {
-        return payload instanceof ConferenceEvent;
+        return payload instanceof ConferenceEvent || payload instanceof RoomState || payload instanceof RoomStateDelta
+                || isEventCollection(payload);
+    }
+
+    private boolean isEventCollection(Object payload) {
+        if (!(payload instanceof Collection)) {
+            return false;
+        }
+        for (Object element : (Collection<?>) payload) {
+            if (!(element instanceof ConferenceEvent)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Object convertToInternal(Object payload, MessageHeaders headers) {
+        if (encoder == null) {
+            return super.convertToInternal(payload, headers);
+        }
+        try {
+            return encoder.encode(payload);
+        } catch (IOException ex) {
+            throw new MessageConversionException("Could not write JSON: " + ex.getMessage(), ex);
+        }
     }
 
     @Override
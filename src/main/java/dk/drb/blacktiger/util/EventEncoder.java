@@ -0,0 +1,295 @@
+package dk.drb.blacktiger.util;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import dk.drb.blacktiger.model.ConferenceEvent;
+import dk.drb.blacktiger.model.ConferenceStartEvent;
+import dk.drb.blacktiger.model.Participant;
+import dk.drb.blacktiger.model.ParticipantEvent;
+import dk.drb.blacktiger.model.RoomState;
+import dk.drb.blacktiger.model.RoomStateDelta;
+import dk.drb.blacktiger.model.SparseParticipantEvent;
+import dk.drb.blacktiger.model.SparseParticipantsEvent;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes events and room states to JSON bytes with a streaming generator.
+ * <p>
+ * The output is the same as the serializers of <code>EventConverter</code>, but written straight into a reusable buffer
+ * per thread. Dates are written from a precomputed encoding of the current day. The bytes of the last event encoded
+ * on a thread are kept, so an event sent to several destinations, fx. as an event and as a room state delta, is only
+ * encoded once.</p>
+ */
+public class EventEncoder {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final byte[] DELTA_START = "{\"sequence\":".getBytes(UTF8);
+    private static final byte[] DELTA_EVENT = ",\"event\":".getBytes(UTF8);
+
+    /**
+     * A buffer exposing its array, so the content can be copied without an intermediate copy.
+     */
+    private static class Buffer extends ByteArrayOutputStream {
+
+        public Buffer() {
+            super(1024);
+        }
+
+        private void append(byte[] bytes) {
+            write(bytes, 0, bytes.length);
+        }
+
+        private void append(char c) {
+            write((byte) c);
+        }
+
+        private byte[] toBytes() {
+            byte[] bytes = new byte[count];
+            System.arraycopy(buf, 0, bytes, 0, count);
+            return bytes;
+        }
+    }
+
+    private static class Cached {
+        private ConferenceEvent event;
+        private byte[] bytes;
+    }
+
+    /**
+     * The first part of the dates of a day, ie. <code>yyyy-MM-ddT</code>.
+     */
+    private static class DayPrefix {
+        private final long start;
+        private final char[] chars;
+
+        public DayPrefix(long start, char[] chars) {
+            this.start = start;
+            this.chars = chars;
+        }
+    }
+
+    private final JsonFactory jsonFactory;
+    private final ThreadLocal<Buffer> buffers = new ThreadLocal<Buffer>() {
+
+        @Override
+        protected Buffer initialValue() {
+            return new Buffer();
+        }
+    };
+    // Events are encoded into a buffer of their own, as they may be part of a collection or delta being encoded.
+    private final ThreadLocal<Buffer> eventBuffers = new ThreadLocal<Buffer>() {
+
+        @Override
+        protected Buffer initialValue() {
+            return new Buffer();
+        }
+    };
+    private final ThreadLocal<Cached> lastEvent = new ThreadLocal<Cached>() {
+
+        @Override
+        protected Cached initialValue() {
+            return new Cached();
+        }
+    };
+    private final ThreadLocal<char[]> dateChars = new ThreadLocal<char[]>() {
+
+        @Override
+        protected char[] initialValue() {
+            return new char[20];
+        }
+    };
+    private volatile DayPrefix dayPrefix = prefixFor(System.currentTimeMillis());
+
+    /**
+     * Creates a new encoder.
+     * @param jsonFactory The factory for generators. Its codec is used for values without a dedicated encoding, ie.
+     * rooms.
+     */
+    public EventEncoder(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * Encodes an event, a collection of events, a room state or a delta.
+     */
+    public byte[] encode(Object payload) throws IOException {
+        if (payload instanceof ConferenceEvent) {
+            return encode((ConferenceEvent) payload);
+        }
+
+        Buffer buffer = buffers.get();
+        buffer.reset();
+        if (payload instanceof RoomStateDelta) {
+            RoomStateDelta delta = (RoomStateDelta) payload;
+            // The event is usually encoded already, so it is copied instead of being written by the generator.
+            byte[] event = encode(delta.getEvent());
+            buffer.append(DELTA_START);
+            buffer.append(Long.toString(delta.getSequence()).getBytes(UTF8));
+            buffer.append(DELTA_EVENT);
+            buffer.append(event);
+            buffer.append('}');
+        } else if (payload instanceof RoomState) {
+            JsonGenerator generator = jsonFactory.createGenerator(buffer, JsonEncoding.UTF8);
+            writeState(generator, (RoomState) payload);
+            generator.close();
+        } else {
+            JsonGenerator generator = jsonFactory.createGenerator(buffer, JsonEncoding.UTF8);
+            generator.writeStartArray();
+            for (Object event : (Collection<?>) payload) {
+                writeEvent(generator, (ConferenceEvent) event);
+            }
+            generator.writeEndArray();
+            generator.close();
+        }
+        return buffer.toBytes();
+    }
+
+    public byte[] encode(ConferenceEvent event) throws IOException {
+        Cached cached = lastEvent.get();
+        if (cached.event == event) {
+            return cached.bytes;
+        }
+
+        Buffer buffer = eventBuffers.get();
+        buffer.reset();
+        JsonGenerator generator = jsonFactory.createGenerator(buffer, JsonEncoding.UTF8);
+        writeEvent(generator, event);
+        generator.close();
+
+        cached.event = event;
+        cached.bytes = buffer.toBytes();
+        return cached.bytes;
+    }
+
+    private void writeEvent(JsonGenerator generator, ConferenceEvent event) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("roomNo", event.getRoomNo());
+
+        if (event instanceof ParticipantEvent) {
+            generator.writeFieldName("participant");
+            writeParticipant(generator, ((ParticipantEvent) event).getParticipant());
+        }
+
+        if (event instanceof SparseParticipantEvent) {
+            generator.writeStringField("channel", ((SparseParticipantEvent) event).getChannel());
+        }
+
+        if (event instanceof SparseParticipantsEvent) {
+            generator.writeArrayFieldStart("channels");
+            for (String channel : ((SparseParticipantsEvent) event).getChannels()) {
+                generator.writeString(channel);
+            }
+            generator.writeEndArray();
+        }
+
+        if (event instanceof ConferenceStartEvent) {
+            generator.writeObjectField("room", ((ConferenceStartEvent) event).getRoom());
+        }
+
+        generator.writeStringField("type", event.getType());
+        generator.writeEndObject();
+    }
+
+    private void writeParticipant(JsonGenerator generator, Participant participant) throws IOException {
+        if (participant == null) {
+            generator.writeNull();
+            return;
+        }
+
+        generator.writeStartObject();
+        generator.writeStringField("callerId", participant.getCallerId());
+        generator.writeStringField("channel", participant.getChannel());
+        generator.writeBooleanField("muted", participant.isMuted());
+        generator.writeStringField("phoneNumber", participant.getPhoneNumber());
+        generator.writeFieldName("dateJoined");
+        writeDate(generator, participant.getDateJoined());
+        generator.writeNumberField("millisSinceJoin", participant.getMillisSinceJoin());
+        generator.writeStringField("name", participant.getName());
+        generator.writeStringField("type", participant.getType() == null ? null : participant.getType().name());
+        generator.writeBooleanField("host", participant.isHost());
+        generator.writeEndObject();
+    }
+
+    private void writeState(JsonGenerator generator, RoomState state) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("roomNo", state.getRoomNo());
+        generator.writeNumberField("epoch", state.getEpoch());
+        generator.writeNumberField("sequence", state.getSequence());
+        if (state.isReplay()) {
+            generator.writeArrayFieldStart("deltas");
+            for (RoomStateDelta delta : state.getDeltas()) {
+                generator.writeStartObject();
+                generator.writeNumberField("sequence", delta.getSequence());
+                generator.writeFieldName("event");
+                writeEvent(generator, delta.getEvent());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        } else if (state.getParticipants() == null) {
+            generator.writeNullField("participants");
+        } else {
+            generator.writeArrayFieldStart("participants");
+            for (Participant participant : state.getParticipants()) {
+                writeParticipant(generator, participant);
+            }
+            generator.writeEndArray();
+        }
+        generator.writeStringField("type", state.getType());
+        generator.writeEndObject();
+    }
+
+    /**
+     * Writes a date as <code>yyyy-MM-ddTHH:mm:ssZ</code> in UTC, like <code>ISO8601DateFormat</code>.
+     */
+    private void writeDate(JsonGenerator generator, Date date) throws IOException {
+        if (date == null) {
+            generator.writeNull();
+            return;
+        }
+
+        long time = date.getTime();
+        DayPrefix prefix = dayPrefix;
+        if (time < prefix.start || time >= prefix.start + DAY) {
+            prefix = prefixFor(time);
+            // Most dates are of today, so only the day of the latest date is kept.
+            if (prefix.start > dayPrefix.start) {
+                dayPrefix = prefix;
+            }
+        }
+
+        char[] chars = dateChars.get();
+        System.arraycopy(prefix.chars, 0, chars, 0, 11);
+        int seconds = (int) ((time - prefix.start) / 1000);
+        writeTwoDigits(chars, 11, seconds / 3600);
+        chars[13] = ':';
+        writeTwoDigits(chars, 14, seconds / 60 % 60);
+        chars[16] = ':';
+        writeTwoDigits(chars, 17, seconds % 60);
+        chars[19] = 'Z';
+        generator.writeString(chars, 0, 20);
+    }
+
+    private static DayPrefix prefixFor(long time) {
+        long offset = time % DAY;
+        long start = time - (offset < 0 ? offset + DAY : offset);
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
+        calendar.setTimeInMillis(start);
+        String text = String.format("%04d-%02d-%02dT", calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1,
+                calendar.get(Calendar.DAY_OF_MONTH));
+        return new DayPrefix(start, text.toCharArray());
+    }
+
+    private static void writeTwoDigits(char[] chars, int offset, int value) {
+        chars[offset] = (char) ('0' + value / 10);
+        chars[offset + 1] = (char) ('0' + value % 10);
+    }
+}
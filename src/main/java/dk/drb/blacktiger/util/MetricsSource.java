@@ -0,0 +1,17 @@
+package dk.drb.blacktiger.util;
+
+import java.util.Map;
+
+/**
+ * Implemented by beans which expose runtime metrics, fx. queue depths or cache hit rates.
+ * <p>
+ * The metrics of all beans implementing this interface are available from <code>SystemService.getMetrics()</code>,
+ * grouped by bean name.</p>
+ */
+public interface MetricsSource {
+
+    /**
+     * Retrieves a snapshot of the current metrics by name.
+     */
+    Map<String, Number> getMetrics();
+}
@@ -0,0 +1,132 @@
+package dk.drb.blacktiger.util;
+
+import java.util.Arrays;
+
+/**
+ * A fixed size time series of integer metrics stored in primitive ring buffers.
+ * <p>
+ * Time is divided into slots of the resolution. Samples recorded within the same slot are aggregated by keeping the
+ * maximum of each metric, so peaks are not lost when sampling faster than the resolution. When the buffer is full the
+ * oldest slot is overwritten. All methods are thread safe.</p>
+ */
+public class RingBufferSeries {
+
+    /**
+     * A range read from a series. Values are <code>null</code> for slots with no samples.
+     */
+    public static class Range {
+        private final long start;
+        private final long step;
+        private final Integer[][] values;
+
+        public Range(long start, long step, Integer[][] values) {
+            this.start = start;
+            this.step = step;
+            this.values = values;
+        }
+
+        /**
+         * The time of the first point in milliseconds since epoch.
+         */
+        public long getStart() {
+            return start;
+        }
+
+        /**
+         * The time between points in milliseconds.
+         */
+        public long getStep() {
+            return step;
+        }
+
+        /**
+         * The values indexed by metric and point.
+         */
+        public Integer[][] getValues() {
+            return values;
+        }
+    }
+
+    private final long resolution;
+    private final int capacity;
+    private final int[][] values;
+    private final long[] slotBuckets;
+
+    /**
+     * Creates a new series.
+     * @param metricCount The number of metrics in each sample.
+     * @param resolution The length of a slot in milliseconds.
+     * @param capacity The number of slots kept.
+     */
+    public RingBufferSeries(int metricCount, long resolution, int capacity) {
+        if (resolution < 1 || capacity < 1) {
+            throw new IllegalArgumentException("Resolution and capacity must be at least 1.");
+        }
+        this.resolution = resolution;
+        this.capacity = capacity;
+        this.values = new int[metricCount][capacity];
+        this.slotBuckets = new long[capacity];
+        Arrays.fill(slotBuckets, -1);
+    }
+
+    public long getResolution() {
+        return resolution;
+    }
+
+    /**
+     * The length of time covered by the series in milliseconds.
+     */
+    public long getRetention() {
+        return resolution * capacity;
+    }
+
+    /**
+     * Records a sample.
+     * @param time The time of the sample in milliseconds since epoch.
+     * @param sample The value of each metric.
+     */
+    public synchronized void record(long time, int[] sample) {
+        long bucket = time / resolution;
+        int slot = (int) (bucket % capacity);
+        if (slotBuckets[slot] != bucket) {
+            slotBuckets[slot] = bucket;
+            for (int m = 0; m < values.length; m++) {
+                values[m][slot] = sample[m];
+            }
+        } else {
+            for (int m = 0; m < values.length; m++) {
+                values[m][slot] = Math.max(values[m][slot], sample[m]);
+            }
+        }
+    }
+
+    /**
+     * Reads the slots between two points in time, downsampled by keeping the maximum of each metric per step.
+     * @param from The start time in milliseconds since epoch, inclusive.
+     * @param to The end time in milliseconds since epoch, exclusive.
+     * @param step The time between points in milliseconds. Rounded up to a multiple of the resolution.
+     */
+    public synchronized Range read(long from, long to, long step) {
+        long slotsPerStep = Math.max(1, (step + resolution - 1) / resolution);
+        long firstBucket = from / resolution;
+        long lastBucket = (to - 1) / resolution;
+        int points = to <= from ? 0 : (int) ((lastBucket - firstBucket) / slotsPerStep + 1);
+
+        Integer[][] result = new Integer[values.length][points];
+        for (int p = 0; p < points; p++) {
+            long start = firstBucket + p * slotsPerStep;
+            long end = Math.min(lastBucket + 1, start + slotsPerStep);
+            for (long bucket = start; bucket < end; bucket++) {
+                int slot = (int) (bucket % capacity);
+                if (slotBuckets[slot] != bucket) {
+                    continue;
+                }
+                for (int m = 0; m < values.length; m++) {
+                    Integer current = result[m][p];
+                    result[m][p] = current == null ? values[m][slot] : Math.max(current, values[m][slot]);
+                }
+            }
+        }
+        return new Range(firstBucket * resolution, slotsPerStep * resolution, result);
+    }
+}
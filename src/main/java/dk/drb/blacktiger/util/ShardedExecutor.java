@@ -0,0 +1,123 @@
+package dk.drb.blacktiger.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes tasks on a fixed number of single threaded shards chosen by a key.
+ * <p>
+ * Tasks with the same key are always executed on the same shard and therefore in the order they were submitted, while
+ * tasks with different keys may execute in parallel. This is used for dispatching conference events, keyed by room
+ * number, so that events for a room stay ordered and a slow room does not hold up the other rooms.</p>
+ */
+public class ShardedExecutor implements MetricsSource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ShardedExecutor.class);
+
+    private final ThreadPoolExecutor[] shards;
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * Creates a new ShardedExecutor.
+     * @param shardCount The number of shards, ie. the maximum number of tasks executing in parallel.
+     * @param name The name used for the threads.
+     */
+    public ShardedExecutor(int shardCount, final String name) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Number of shards must be at least 1.");
+        }
+
+        shards = new ThreadPoolExecutor[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            final String threadName = name + "-" + i;
+            shards[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, threadName);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    /**
+     * Executes a task on the shard belonging to the given key. Exceptions thrown by the task are logged and otherwise
+     * ignored so that following tasks on the shard will still execute.
+     */
+    public void execute(String key, final Runnable task) {
+        shardFor(key).execute(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } catch (RuntimeException ex) {
+                    failed.incrementAndGet();
+                    LOG.error("Task caused an exception.", ex);
+                }
+            }
+        });
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Stops the shards after tasks already submitted have executed.
+     */
+    public void shutdown() {
+        for (ThreadPoolExecutor shard : shards) {
+            shard.shutdown();
+        }
+    }
+
+    /**
+     * Waits until all tasks submitted before calling shutdown have executed.
+     * @return True if all shards terminated before the timeout.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (ThreadPoolExecutor shard : shards) {
+            if (!shard.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Map<String, Number> getMetrics() {
+        int pending = 0;
+        int maxPending = 0;
+        long completed = 0;
+        for (ThreadPoolExecutor shard : shards) {
+            int size = shard.getQueue().size();
+            pending += size;
+            maxPending = Math.max(maxPending, size);
+            completed += shard.getCompletedTaskCount();
+        }
+
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        metrics.put("shards", shards.length);
+        metrics.put("pending", pending);
+        metrics.put("maxPendingInShard", maxPending);
+        metrics.put("completed", completed);
+        metrics.put("failed", failed.get());
+        return metrics;
+    }
+
+    private ThreadPoolExecutor shardFor(String key) {
+        int hash = key == null ? 0 : key.hashCode();
+        return shards[(hash & Integer.MAX_VALUE) % shards.length];
+    }
+}
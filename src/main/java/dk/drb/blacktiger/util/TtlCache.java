@@ -0,0 +1,141 @@
+package dk.drb.blacktiger.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A simple size and time bounded cache.
+ * <p>
+ * Entries expire a fixed time after they were put in the cache. When the cache is full the least recently used entry is
+ * evicted. Null values are not cached. All methods are thread safe.</p>
+ */
+public class TtlCache<K, V> implements MetricsSource {
+
+    /**
+     * Decides which entries to remove in <code>invalidateAll</code>.
+     */
+    public interface EntryFilter<K, V> {
+        boolean matches(K key, V value);
+    }
+
+    private static class CacheEntry<V> {
+        private final V value;
+        private final long expires;
+
+        public CacheEntry(V value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+
+    private final Map<K, CacheEntry<V>> map;
+    private final long ttlNanos;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Creates a new cache.
+     * @param maxSize The maximum number of entries in the cache.
+     * @param ttl The time entries live in the cache.
+     * @param unit The unit of the ttl.
+     */
+    public TtlCache(final int maxSize, long ttl, TimeUnit unit) {
+        this.ttlNanos = unit.toNanos(ttl);
+        this.map = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+                if (size() > maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Retrieves a value from the cache.
+     * @return The value or null if not cached or expired.
+     */
+    public V get(K key) {
+        synchronized (map) {
+            CacheEntry<V> entry = map.get(key);
+            if (entry != null && entry.expires - System.nanoTime() > 0) {
+                hits.incrementAndGet();
+                return entry.value;
+            }
+            if (entry != null) {
+                map.remove(key);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(K key, V value) {
+        if (value == null) {
+            return;
+        }
+        synchronized (map) {
+            map.put(key, new CacheEntry<>(value, System.nanoTime() + ttlNanos));
+        }
+    }
+
+    public void invalidate(K key) {
+        synchronized (map) {
+            if (map.remove(key) != null) {
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Removes all entries matched by the filter.
+     */
+    public void invalidateAll(EntryFilter<K, V> filter) {
+        synchronized (map) {
+            Iterator<Map.Entry<K, CacheEntry<V>>> it = map.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<K, CacheEntry<V>> entry = it.next();
+                if (filter.matches(entry.getKey(), entry.getValue().value)) {
+                    it.remove();
+                    invalidations.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (map) {
+            map.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (map) {
+            return map.size();
+        }
+    }
+
+    @Override
+    public Map<String, Number> getMetrics() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        metrics.put("size", size());
+        metrics.put("hits", hitCount);
+        metrics.put("misses", missCount);
+        metrics.put("hitRatio", total == 0 ? 0.0 : (double) hitCount / total);
+        metrics.put("evictions", evictions.get());
+        metrics.put("invalidations", invalidations.get());
+        return metrics;
+    }
+}
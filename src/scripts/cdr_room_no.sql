@@ -0,0 +1,60 @@
+# Adds an indexed room number to the Asterisk cdr table.
+#
+# Reports used to find the calls of a room with "dcontext LIKE '%H45-0000'", which cannot use an index and scans the
+# whole call history. This script adds the room number as a column of its own, fills it for new calls with a trigger
+# and for existing calls in batches, and indexes it together with the columns read by the reports.
+#
+# Run it against the database holding the cdr table. When it has finished, set cdr.roomColumn=true for BlackTiger to
+# query on the new column. The backfill may be run again if it is interrupted.
+
+# ======== Room number of a destination context
+# The room number is the part at the end of the context on the form H<country>-<number>[-<line>].
+delimiter $$
+CREATE FUNCTION `cdr_room_no`(context_ VARCHAR(80)) RETURNS VARCHAR(20)
+    DETERMINISTIC
+BEGIN
+    DECLARE pos_ INT DEFAULT CHAR_LENGTH(context_);
+    IF context_ IS NULL THEN
+        RETURN NULL;
+    END IF;
+    WHILE pos_ > 0 DO
+        IF SUBSTRING(context_, pos_, 1) = 'H' AND SUBSTRING(context_, pos_) REGEXP '^H[0-9]+-[0-9]+(-[0-9]+)?$' THEN
+            RETURN SUBSTRING(context_, pos_);
+        END IF;
+        SET pos_ = pos_ - 1;
+    END WHILE;
+    RETURN NULL;
+END$$
+delimiter ;
+
+# ======== Column and index
+# The index covers the report query, so the rows of a room are read from the index alone.
+ALTER TABLE cdr
+    ADD COLUMN roomNo VARCHAR(20) NULL,
+    ADD INDEX cdr_room_calldate (roomNo, calldate, src, billsec);
+
+# ======== New calls
+delimiter $$
+CREATE TRIGGER `cdr_room_no_insert` BEFORE INSERT ON cdr
+FOR EACH ROW
+BEGIN
+    SET NEW.roomNo = cdr_room_no(NEW.dcontext);
+END$$
+delimiter ;
+
+# ======== Existing calls
+# Updated in batches, so the table is not locked for the whole history at once. Contexts without a room number are set
+# to the empty string, so they are not visited again.
+delimiter $$
+CREATE PROCEDURE `cdr_room_no_backfill`(batch_ INT)
+BEGIN
+    DECLARE updated_ INT DEFAULT batch_;
+    WHILE updated_ = batch_ DO
+        UPDATE cdr SET roomNo = IFNULL(cdr_room_no(dcontext), '') WHERE roomNo IS NULL LIMIT batch_;
+        SET updated_ = ROW_COUNT();
+    END WHILE;
+END$$
+delimiter ;
+
+call cdr_room_no_backfill(10000);
+DROP PROCEDURE cdr_room_no_backfill;
@@ -0,0 +1,67 @@
+package dk.drb.blacktiger.benchmark;
+
+import dk.drb.blacktiger.util.Access;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * Measures <code>Access.checkRoomAccess</code>, which is done for every request and message concerning a room. A hall
+ * has access through its own room role, while an admin is only let in after the room role has been looked for.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccessBenchmark {
+
+    private static final String ROOM_NO = "H45-0000";
+
+    @Param({"hall", "admin"})
+    private String user;
+
+    @Setup
+    public void setup() {
+        List<GrantedAuthority> authorities;
+        if ("admin".equals(user)) {
+            authorities = Arrays.<GrantedAuthority>asList(new SimpleGrantedAuthority("ROLE_ADMIN"));
+        } else {
+            authorities = Arrays.<GrantedAuthority>asList(new SimpleGrantedAuthority("ROLE_ROOMACCESS_" + ROOM_NO),
+                    new SimpleGrantedAuthority("ROLE_USER"), new SimpleGrantedAuthority("ROLE_HOST"));
+        }
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(user, null, authorities));
+    }
+
+    @Benchmark
+    public void checkRoomAccess() {
+        Access.checkRoomAccess(ROOM_NO);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AccessBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
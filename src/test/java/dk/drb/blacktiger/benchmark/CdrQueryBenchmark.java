@@ -0,0 +1,105 @@
+package dk.drb.blacktiger.benchmark;
+
+import dk.drb.blacktiger.model.CallInformation;
+import dk.drb.blacktiger.repository.jdbc.JdbcCallInformationRepository;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Measures reading the report of one room for one month from a cdr table holding two years of calls, finding the calls
+ * by the end of their destination context against finding them by the room number column added by
+ * <code>src/scripts/cdr_room_no.sql</code>.
+ * <p>
+ * The table is seeded in an H2 database with the indexes of the script and an index on the call date, as the Asterisk
+ * cdr table has. The calls are spread evenly over 500 rooms, so a month of one room is a few hundred calls. The number
+ * of calls may be set with <code>-p rows=...</code>. Seeding takes a while and the heap must hold the table, so the
+ * fork is given 2GB.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class CdrQueryBenchmark {
+
+    private static final long SPAN_SECONDS = 2L * 365 * 24 * 3600;
+    private static final int ROOMS = 500;
+
+    @Param({"2000000"})
+    private int rows;
+
+    @Param({"false", "true"})
+    private boolean roomColumn;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcCallInformationRepository repository;
+    private Date start;
+    private Date end;
+
+    @Setup
+    public void setup() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:cdr;DB_CLOSE_DELAY=-1", "sa", "", true);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS cdr");
+        jdbcTemplate.execute("CREATE TABLE cdr (calldate TIMESTAMP, src VARCHAR(80), dcontext VARCHAR(80), billsec INT, roomNo VARCHAR(20))");
+        jdbcTemplate.execute("INSERT INTO cdr SELECT "
+                + "DATEADD('SECOND', X * " + SPAN_SECONDS + " / " + rows + ", TIMESTAMP '2014-01-01 00:00:00'), "
+                + "'+45' || CAST(20000000 + MOD(X * 7919, 100000) AS VARCHAR), "
+                + "'conference-H45-' || LPAD(CAST(MOD(X, " + ROOMS + ") AS VARCHAR), 4, '0'), "
+                + "MOD(X, 3600), "
+                + "'H45-' || LPAD(CAST(MOD(X, " + ROOMS + ") AS VARCHAR), 4, '0') "
+                + "FROM SYSTEM_RANGE(1, " + rows + ")");
+        jdbcTemplate.execute("CREATE INDEX cdr_calldate ON cdr (calldate)");
+        jdbcTemplate.execute("CREATE INDEX cdr_room_calldate ON cdr (roomNo, calldate, src, billsec)");
+        jdbcTemplate.execute("ANALYZE");
+
+        repository = new JdbcCallInformationRepository();
+        repository.setDataSource(dataSource);
+        repository.setRoomColumn(roomColumn);
+
+        start = Timestamp.valueOf("2015-01-01 00:00:00");
+        end = new Date(start.getTime() + 30L * 24 * 3600 * 1000);
+        if (findReport().isEmpty()) {
+            throw new IllegalStateException("No calls found, so we would not be measuring a report.");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        new JdbcTemplate(dataSource).execute("DROP TABLE cdr");
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    public List<CallInformation> findReport() {
+        return repository.findByRoomNoAndPeriodAndDuration("H45-0042", start, end, 0);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(CdrQueryBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,140 @@
+package dk.drb.blacktiger.benchmark;
+
+import dk.drb.blacktiger.model.ConferenceEvent;
+import dk.drb.blacktiger.model.ConferenceEventListener;
+import dk.drb.blacktiger.repository.asterisk.Asterisk11ConfbridgeRepository;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.asteriskjava.manager.event.ConfbridgeEndEvent;
+import org.asteriskjava.manager.event.ConfbridgeJoinEvent;
+import org.asteriskjava.manager.event.ConfbridgeLeaveEvent;
+import org.asteriskjava.manager.event.ConfbridgeStartEvent;
+import org.asteriskjava.manager.event.DtmfEvent;
+import org.asteriskjava.manager.event.ManagerEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the throughput of <code>Asterisk11ConfbridgeRepository.handleEventQueue</code>, ie. how many Asterisk
+ * events per second the consumer thread can apply to the live state and turn into conference events.
+ * <p>
+ * Each invocation queues the events of a full meeting in every room, from the rooms starting over callers joining and
+ * requesting to comment to the rooms ending, and handles the queue. No Asterisk server is involved.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfbridgeEventBenchmark {
+
+    private static final int ROOMS = 10;
+    private static final int CALLERS_PER_ROOM = 40;
+    private static final int EVENTS = ROOMS * (2 + CALLERS_PER_ROOM * 4);
+
+    /**
+     * Gives access to the event queue, which is otherwise handled by the consumer thread.
+     */
+    private static class Repository extends Asterisk11ConfbridgeRepository {
+
+        public void handleEvents() {
+            handleEventQueue();
+        }
+    }
+
+    private Repository repository;
+    private List<ManagerEvent> events;
+    private long conferenceEvents;
+
+    @Setup
+    public void setup() {
+        repository = new Repository();
+        repository.addEventListener(new ConferenceEventListener() {
+
+            @Override
+            public void onParticipantEvent(ConferenceEvent event) {
+                conferenceEvents++;
+            }
+        });
+
+        DecimalFormat roomFormat = new DecimalFormat("H45-0000");
+        DecimalFormat numberFormat = new DecimalFormat("+4500000000");
+        events = new ArrayList<>();
+        for (int i = 0; i < ROOMS; i++) {
+            String roomNo = roomFormat.format(i);
+            ConfbridgeStartEvent start = new ConfbridgeStartEvent(this);
+            start.setConference(roomNo);
+            events.add(start);
+
+            List<String> numbers = new ArrayList<>();
+            for (int j = 0; j < CALLERS_PER_ROOM; j++) {
+                String number = numberFormat.format(i * CALLERS_PER_ROOM + j);
+                numbers.add(number);
+                ConfbridgeJoinEvent join = new ConfbridgeJoinEvent(this);
+                join.setConference(roomNo);
+                join.setChannel("SIP/" + number);
+                join.setCallerIdNum(number);
+                join.setCallerIdName("Caller");
+                events.add(join);
+            }
+            for (String number : numbers) {
+                events.add(dtmf("SIP/" + number, "1"));
+                events.add(dtmf("SIP/" + number, "0"));
+            }
+            for (String number : numbers) {
+                ConfbridgeLeaveEvent leave = new ConfbridgeLeaveEvent(this);
+                leave.setConference(roomNo);
+                leave.setChannel("SIP/" + number);
+                leave.setCallerIdNum(number);
+                leave.setCallerIdName("Caller");
+                events.add(leave);
+            }
+
+            ConfbridgeEndEvent end = new ConfbridgeEndEvent(this);
+            end.setConference(roomNo);
+            events.add(end);
+        }
+    }
+
+    private DtmfEvent dtmf(String channel, String digit) {
+        DtmfEvent event = new DtmfEvent(this);
+        event.setChannel(channel);
+        event.setDigit(digit);
+        event.setBegin(false);
+        event.setEnd(true);
+        return event;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public long handleEventQueue() {
+        for (ManagerEvent event : events) {
+            repository.onManagerEvent(event);
+        }
+        repository.handleEvents();
+        return conferenceEvents;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ConfbridgeEventBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
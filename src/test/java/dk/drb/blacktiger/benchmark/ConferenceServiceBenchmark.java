@@ -0,0 +1,94 @@
+package dk.drb.blacktiger.benchmark;
+
+import dk.drb.blacktiger.model.Participant;
+import dk.drb.blacktiger.model.Room;
+import dk.drb.blacktiger.repository.memory.InMemCallInformationRepository;
+import dk.drb.blacktiger.repository.memory.InMemConferenceRoomRepository;
+import dk.drb.blacktiger.repository.memory.InMemPhonebookRepository;
+import dk.drb.blacktiger.repository.memory.InMemoryContactRepository;
+import dk.drb.blacktiger.repository.memory.InMemoryRoomInfoRepository;
+import dk.drb.blacktiger.service.ConferenceService;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * Measures listing the participants of a room through <code>ConferenceService</code>, which decorates every participant
+ * with phonebook information, muteness and join time. Both the single room listing, looking up each participant by
+ * itself, and the listing of several rooms, looking up all participants in one batch, are measured.
+ * <p>
+ * The service uses the in-memory repositories. The room is filled by <code>InMemConferenceRoomRepository.maintain</code>
+ * like in test mode, which levels out at around a dozen participants.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConferenceServiceBenchmark {
+
+    private static final String ROOM_NO = "H45-0000";
+
+    private ConferenceService service;
+    private List<Room> rooms;
+
+    @Setup
+    public void setup() {
+        InMemConferenceRoomRepository roomRepository = new InMemConferenceRoomRepository();
+        while (roomRepository.findByRoomNo(ROOM_NO).size() < 10) {
+            roomRepository.maintain();
+        }
+        InMemCallInformationRepository callInformationRepository = new InMemCallInformationRepository();
+        callInformationRepository.setParticipantRepository(roomRepository);
+
+        service = new ConferenceService();
+        service.setRoomRepository(roomRepository);
+        service.setPhonebookRepository(new InMemPhonebookRepository());
+        service.setContactRepository(new InMemoryContactRepository());
+        service.setRoomInfoRepository(new InMemoryRoomInfoRepository());
+        service.setCallInformationRepository(callInformationRepository);
+        rooms = Collections.singletonList(new Room(ROOM_NO));
+
+        List<GrantedAuthority> authorities = Arrays.<GrantedAuthority>asList(new SimpleGrantedAuthority("ROLE_ROOMACCESS_" + ROOM_NO),
+                new SimpleGrantedAuthority("ROLE_USER"), new SimpleGrantedAuthority("ROLE_HOST"));
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(ROOM_NO, null, authorities));
+    }
+
+    @Benchmark
+    public List<Participant> listParticipants() {
+        return service.listParticipants(ROOM_NO);
+    }
+
+    @Benchmark
+    public Map<String, List<Participant>> listParticipantsOfRooms() {
+        return service.listParticipants(rooms);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ConferenceServiceBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,204 @@
+package dk.drb.blacktiger.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dk.drb.blacktiger.config.WebsocketConfig;
+import dk.drb.blacktiger.repository.ConferenceRoomRepository;
+import dk.drb.blacktiger.repository.asterisk.Asterisk11ConfbridgeRepository;
+import dk.drb.blacktiger.util.ShardedExecutor;
+import java.io.IOException;
+import java.util.Map;
+import org.apache.log4j.Level;
+import org.apache.log4j.LogManager;
+import org.asteriskjava.live.AsteriskServer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.Environment;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.messaging.support.ChannelInterceptorAdapter;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+
+/**
+ * Measures the latency of conference events from a fake Asterisk server to the WebSocket sessions subscribing to them.
+ * <p>
+ * The application is set up as in test mode, except that the conference repository is the real
+ * <code>Asterisk11ConfbridgeRepository</code> connected over TCP to a <code>FakeAmiServer</code>. Events therefore pass
+ * the asterisk-java reader, the event queue, the dispatcher, <code>ConferenceService</code>, <code>EventController</code>
+ * and the simple broker before being handed to a session on the outbound channel, which is where they are measured.
+ * Each hall gets a number of subscribing sessions, so the fan-out is part of the measurement.</p>
+ * <p>
+ * Run with <code>main</code>, optionally with a script for <code>LoadGenerator</code> as argument. The number of
+ * sessions per hall is given by the system property <code>subscribers</code>. Other settings of the application, fx.
+ * <code>events.batch.window</code> or <code>asterisk.list.timeout</code>, can be given as system properties as well. Logging of the application is turned
+ * down to <code>WARN</code> unless <code>loadtest.logLevel</code> says otherwise.</p>
+ */
+public class EndToEndLoadBenchmark {
+
+    private static final String DEFAULT_SCRIPT = "halls 50; join 40; dtmf 2; reconnect 1; dtmf 2; leave";
+    private static final String EMITTED_HEADER = "loadtest-emitted";
+
+    @Configuration
+    @Import(WebsocketConfig.class)
+    public static class Config {
+
+        @Autowired
+        private Environment env;
+
+        @Autowired
+        private ShardedExecutor conferenceEventDispatcher;
+
+        /**
+         * Replaces the server of <code>AsteriskConfig</code>.
+         */
+        @Bean(destroyMethod = "shutdown")
+        public AsteriskServer asteriskServer() {
+            return LoadGenerator.createServer(env.getProperty("loadtest.ami.port", Integer.class));
+        }
+
+        /**
+         * Replaces the in-memory repository used in test mode.
+         */
+        @Bean
+        public ConferenceRoomRepository conferenceRoomRepository() {
+            AsteriskServer server = asteriskServer();
+            server.initialize();
+            Asterisk11ConfbridgeRepository repo = new Asterisk11ConfbridgeRepository();
+            repo.setEventDispatcher(conferenceEventDispatcher);
+            repo.setListTimeout(env.getProperty("asterisk.list.timeout", Long.class, Asterisk11ConfbridgeRepository.DEFAULT_LIST_TIMEOUT));
+            repo.setListRetries(env.getProperty("asterisk.list.retries", Integer.class, Asterisk11ConfbridgeRepository.DEFAULT_LIST_RETRIES));
+            repo.setAsteriskServer(server);
+            return repo;
+        }
+    }
+
+    /**
+     * Intercepts messages on the thread handing them to the session, ie. after waiting for the executor.
+     */
+    private abstract static class DeliveryInterceptor extends ChannelInterceptorAdapter implements ExecutorChannelInterceptor {
+
+        @Override
+        public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String script = args.length > 0 ? args[0] : DEFAULT_SCRIPT;
+        final int subscribers = Integer.getInteger("subscribers", 5);
+
+        // Logging every event to the console would be measured rather than the application.
+        LogManager.getLogger("dk.drb").setLevel(Level.toLevel(System.getProperty("loadtest.logLevel"), Level.WARN));
+        LogManager.getLogger("org.asteriskjava").setLevel(Level.WARN);
+        LogManager.getLogger(LoadGenerator.class).setLevel(Level.INFO);
+
+        final FakeAmiServer ami = new FakeAmiServer();
+        ami.start();
+        System.setProperty("test", "true");
+        System.setProperty("loadtest.ami.port", Integer.toString(ami.getPort()));
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(Config.class);
+
+        final SimpleBrokerMessageHandler broker = context.getBean(SimpleBrokerMessageHandler.class);
+        final LatencyRecorder latencies = new LatencyRecorder(1 << 22);
+        final LoadGenerator generator = new LoadGenerator(ami, new LoadGenerator.HallListener() {
+
+            @Override
+            public void onHall(String roomNo) {
+                for (int i = 0; i < subscribers; i++) {
+                    StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+                    headers.setSessionId(roomNo + "-" + i);
+                    headers.setSubscriptionId("0");
+                    headers.setDestination("/queue/events/" + roomNo);
+                    broker.handleMessage(MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()));
+                }
+            }
+        });
+
+        context.getBean("brokerChannel", AbstractSubscribableChannel.class).addInterceptor(new ChannelInterceptorAdapter() {
+            private final ObjectMapper mapper = new ObjectMapper();
+
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+                if (destination == null || !destination.startsWith("/queue/events/")) {
+                    return message;
+                }
+
+                Long emitted = null;
+                try {
+                    JsonNode node = mapper.readTree((byte[]) message.getPayload());
+                    for (JsonNode event : node.isArray() ? node : mapper.createArrayNode().add(node)) {
+                        Long time = generator.takeEmitted(keyOf(event));
+                        if (time != null && (emitted == null || time < emitted)) {
+                            emitted = time;
+                        }
+                    }
+                } catch (IOException ex) {
+                    throw new IllegalStateException(ex);
+                }
+                if (emitted == null) {
+                    return message;
+                }
+                // The broker needs the header accessor of the message, which MessageBuilder.fromMessage would drop.
+                SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(message);
+                headers.setHeader(EMITTED_HEADER, emitted);
+                return MessageBuilder.createMessage(message.getPayload(), headers.getMessageHeaders());
+            }
+        });
+
+        context.getBean("clientOutboundChannel", AbstractSubscribableChannel.class).addInterceptor(new DeliveryInterceptor() {
+
+            @Override
+            public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+                Long emitted = (Long) message.getHeaders().get(EMITTED_HEADER);
+                if (emitted != null) {
+                    latencies.record(System.nanoTime() - emitted);
+                }
+                return message;
+            }
+        });
+
+        long start = System.currentTimeMillis();
+        generator.run(script);
+
+        // Wait for the events in flight to come out.
+        int count;
+        do {
+            count = latencies.getCount();
+            Thread.sleep(1000);
+        } while (count != latencies.getCount());
+
+        System.out.println("Script: " + script);
+        System.out.println("Sessions per hall: " + subscribers);
+        System.out.println("Events emitted: " + generator.getEmittedCount() + " in " + (System.currentTimeMillis() - start - 1000) + "ms");
+        System.out.println("Deliveries: " + latencies.report());
+        for (Map.Entry<String, Number> metric : ((Asterisk11ConfbridgeRepository) context.getBean(ConferenceRoomRepository.class)).getMetrics().entrySet()) {
+            System.out.println("Repository " + metric.getKey() + ": " + metric.getValue());
+        }
+
+        context.close();
+        ami.stop();
+        // The repository keeps a timer thread which would keep the JVM running.
+        System.exit(0);
+    }
+
+    private static String keyOf(JsonNode event) {
+        String type = event.path("type").asText();
+        if (event.has("participant")) {
+            return LoadGenerator.keyOf(type, event.path("participant").path("channel").asText());
+        }
+        if (event.has("channel")) {
+            return LoadGenerator.keyOf(type, event.path("channel").asText());
+        }
+        return LoadGenerator.keyOf(type, event.path("roomNo").asText());
+    }
+}
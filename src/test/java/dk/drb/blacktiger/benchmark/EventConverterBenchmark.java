@@ -0,0 +1,94 @@
+package dk.drb.blacktiger.benchmark;
+
+import dk.drb.blacktiger.model.CallType;
+import dk.drb.blacktiger.model.ConferenceEvent;
+import dk.drb.blacktiger.model.Participant;
+import dk.drb.blacktiger.model.ParticipantJoinEvent;
+import dk.drb.blacktiger.model.RoomStateDelta;
+import dk.drb.blacktiger.util.EventConverter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures converting conference events to message payloads through the <code>ObjectMapper</code>, as
+ * <code>EventConverter</code> used to do, against the streaming <code>EventEncoder</code> it uses now.
+ * <p>
+ * Each join is a new event, like in production, and is converted both as an event and as a room state delta, which
+ * is what happens for every event. Run with <code>-prof gc</code> to compare allocations as well.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventConverterBenchmark {
+
+    private EventConverter mapperConverter;
+    private EventConverter streamingConverter;
+    private Participant participant;
+    private List<ConferenceEvent> batch;
+
+    @Setup
+    public void setup() {
+        mapperConverter = new EventConverter(false);
+        streamingConverter = new EventConverter(true);
+        participant = new Participant("SIP/1-00000001", "+4512345678", "Jens Jensen", "+4512345678", false, false,
+                CallType.Sip, new Date());
+
+        batch = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            batch.add(new ParticipantJoinEvent("H45-0000", participant));
+        }
+    }
+
+    private void convertEventAndDelta(EventConverter converter, Blackhole blackhole) {
+        ConferenceEvent event = new ParticipantJoinEvent("H45-0000", participant);
+        blackhole.consume(converter.toMessage(event, null));
+        blackhole.consume(converter.toMessage(new RoomStateDelta(1, event), null));
+    }
+
+    @Benchmark
+    public void mapperEventAndDelta(Blackhole blackhole) {
+        convertEventAndDelta(mapperConverter, blackhole);
+    }
+
+    @Benchmark
+    public void streamingEventAndDelta(Blackhole blackhole) {
+        convertEventAndDelta(streamingConverter, blackhole);
+    }
+
+    @Benchmark
+    public Object mapperBatch() {
+        return mapperConverter.toMessage(batch, null);
+    }
+
+    @Benchmark
+    public Object streamingBatch() {
+        return streamingConverter.toMessage(batch, null);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(EventConverterBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
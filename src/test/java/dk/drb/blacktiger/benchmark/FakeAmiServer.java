@@ -0,0 +1,452 @@
+package dk.drb.blacktiger.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A fake Asterisk Manager Interface server speaking enough of the protocol for asterisk-java to log in and for
+ * <code>Asterisk11ConfbridgeRepository</code> to work against it.
+ * <p>
+ * The server keeps rooms and callers in memory. It answers the Confbridge actions from that state and emits the
+ * Confbridge, channel and DTMF events when the state is changed through its methods, fx. by <code>LoadGenerator</code>. Actions
+ * asterisk-java sends while initializing, like <code>Status</code> and <code>QueueStatus</code>, are answered with empty
+ * lists, except <code>Status</code> which lists the channels of the callers.</p>
+ */
+public class FakeAmiServer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FakeAmiServer.class);
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final String VERSION = "Asterisk 11.25.0";
+
+    private static class Caller {
+        private final String channel;
+        private final String number;
+        private final String name;
+
+        public Caller(String channel, String number, String name) {
+            this.channel = channel;
+            this.number = number;
+            this.name = name;
+        }
+    }
+
+    private class Connection implements Runnable {
+
+        private final Socket socket;
+        private final OutputStream out;
+        private volatile boolean loggedIn;
+
+        public Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = socket.getOutputStream();
+        }
+
+        @Override
+        public void run() {
+            try {
+                write("Asterisk Call Manager/1.3\r\n");
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), ASCII));
+                Map<String, String> packet = new HashMap<>();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty()) {
+                        if (!packet.isEmpty()) {
+                            handleAction(this, packet);
+                            packet = new HashMap<>();
+                        }
+                        continue;
+                    }
+                    int colon = line.indexOf(':');
+                    if (colon > 0) {
+                        packet.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+                    }
+                }
+            } catch (SocketException ex) {
+                LOG.debug("Connection closed. [{}]", ex.getMessage());
+            } catch (IOException ex) {
+                LOG.warn("Error reading from connection.", ex);
+            } finally {
+                close();
+            }
+        }
+
+        private synchronized void write(String text) throws IOException {
+            out.write(text.getBytes(ASCII));
+            out.flush();
+        }
+
+        private void shutdown() {
+            loggedIn = false;
+            try {
+                socket.shutdownOutput();
+            } catch (IOException ex) {
+                LOG.debug("Error shutting down connection.", ex);
+                close();
+            }
+        }
+
+        private void close() {
+            connections.remove(this);
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                LOG.debug("Error closing connection.", ex);
+            }
+        }
+    }
+
+    private final List<Connection> connections = new CopyOnWriteArrayList<>();
+    private final Map<String, Map<String, Caller>> rooms = new LinkedHashMap<>();
+    private final Map<String, String> channelRooms = new HashMap<>();
+    private final Set<String> mutedChannels = new LinkedHashSet<>();
+    private final AtomicLong listRequests = new AtomicLong();
+    private ServerSocket serverSocket;
+    private Thread acceptThread;
+
+    /**
+     * Starts listening on a free port on the loopback interface.
+     */
+    public synchronized void start() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        acceptThread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        Connection connection = new Connection(serverSocket.accept());
+                        connections.add(connection);
+                        Thread thread = new Thread(connection, "fake-ami-connection");
+                        thread.setDaemon(true);
+                        thread.start();
+                    } catch (IOException ex) {
+                        if (!serverSocket.isClosed()) {
+                            LOG.warn("Error accepting connection.", ex);
+                        }
+                    }
+                }
+            }
+        }, "fake-ami-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        LOG.info("Fake AMI server started. [port={}]", getPort());
+    }
+
+    public synchronized void stop() throws IOException {
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+        for (Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Closes all client connections, as if the server was restarted. Events already written are still delivered, and the
+     * connections are closed when the clients have read them. The rooms are kept, so clients reconnecting will read the
+     * same state.
+     */
+    public void dropConnections() {
+        for (Connection connection : connections) {
+            connection.shutdown();
+        }
+    }
+
+    /**
+     * The number of <code>ConfbridgeList</code> actions received. Clients read the callers of every room after connecting,
+     * so this tells when they are up to date again.
+     */
+    public long getListRequests() {
+        return listRequests.get();
+    }
+
+    /**
+     * The number of clients connected and logged in.
+     */
+    public int getLoggedInCount() {
+        int count = 0;
+        for (Connection connection : connections) {
+            if (connection.loggedIn) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public synchronized void startRoom(String roomNo) {
+        if (rooms.containsKey(roomNo)) {
+            return;
+        }
+        rooms.put(roomNo, new LinkedHashMap<String, Caller>());
+        emit(packet("Event", "ConfbridgeStart", "Privilege", "call,all", "Conference", roomNo));
+    }
+
+    public synchronized void endRoom(String roomNo) {
+        Map<String, Caller> callers = rooms.remove(roomNo);
+        if (callers == null) {
+            return;
+        }
+        for (Caller caller : callers.values()) {
+            channelRooms.remove(caller.channel);
+            mutedChannels.remove(caller.channel);
+            emit(callerEvent("ConfbridgeLeave", roomNo, caller));
+            emitHangup(caller.channel);
+        }
+        emit(packet("Event", "ConfbridgeEnd", "Privilege", "call,all", "Conference", roomNo));
+    }
+
+    /**
+     * Lets a caller join a room.
+     * @return The channel of the caller, ie. <code>SIP/&lt;number&gt;</code>.
+     */
+    public synchronized String join(String roomNo, String number, String name) {
+        startRoom(roomNo);
+        Caller caller = new Caller("SIP/" + number, number, name);
+        rooms.get(roomNo).put(caller.channel, caller);
+        channelRooms.put(caller.channel, roomNo);
+        emit(packet("Event", "Newchannel", "Privilege", "call,all", "Channel", caller.channel, "ChannelState", "4",
+                "ChannelStateDesc", "Ring", "CallerIDNum", number, "CallerIDName", name, "AccountCode", "",
+                "Exten", roomNo, "Context", "default", "Uniqueid", uniqueId(caller.channel)));
+        emit(callerEvent("ConfbridgeJoin", roomNo, caller));
+        return caller.channel;
+    }
+
+    public synchronized void leave(String channel) {
+        String roomNo = channelRooms.remove(channel);
+        if (roomNo == null) {
+            return;
+        }
+        mutedChannels.remove(channel);
+        emit(callerEvent("ConfbridgeLeave", roomNo, rooms.get(roomNo).remove(channel)));
+        emitHangup(channel);
+    }
+
+    /**
+     * Emits a DTMF digit as pressed by a caller.
+     */
+    public synchronized void dtmf(String channel, String digit) {
+        emit(packet("Event", "DTMF", "Privilege", "dtmf,all", "Channel", channel, "Uniqueid", uniqueId(channel),
+                "Digit", digit, "Direction", "Received", "Begin", "No", "End", "Yes"));
+    }
+
+    private void emitHangup(String channel) {
+        emit(packet("Event", "Hangup", "Privilege", "call,all", "Channel", channel, "Uniqueid", uniqueId(channel),
+                "Cause", "16", "Cause-txt", "Normal Clearing"));
+    }
+
+    private void emit(String packet) {
+        for (Connection connection : connections) {
+            if (connection.loggedIn) {
+                try {
+                    connection.write(packet);
+                } catch (IOException ex) {
+                    LOG.debug("Unable to write event. Closing connection.", ex);
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    private void handleAction(Connection connection, Map<String, String> action) throws IOException {
+        String name = String.valueOf(action.get("action")).toLowerCase();
+        String actionId = action.get("actionid");
+        LOG.debug("Action received. [action={};actionId={}]", name, actionId);
+        switch (name) {
+            case "challenge":
+                connection.write(packet("Response", "Success", "ActionID", actionId, "Challenge", "123456789"));
+                break;
+            case "login":
+                connection.write(packet("Response", "Success", "ActionID", actionId, "Message", "Authentication accepted"));
+                connection.loggedIn = true;
+                connection.write(packet("Event", "FullyBooted", "Privilege", "system,all", "Status", "Fully Booted"));
+                break;
+            case "logoff":
+                connection.write(packet("Response", "Goodbye", "ActionID", actionId, "Message", "Thanks for all the fish."));
+                connection.close();
+                break;
+            case "command":
+                String output = String.valueOf(action.get("command")).contains("version") ? VERSION + " built by fake\n" : "";
+                connection.write("Response: Follows\r\nPrivilege: Command\r\nActionID: " + actionId + "\r\n" + output
+                        + "--END COMMAND--\r\n\r\n");
+                break;
+            case "coresettings":
+                connection.write(packet("Response", "Success", "ActionID", actionId, "AMIversion", "1.3",
+                        "AsteriskVersion", VERSION.substring("Asterisk ".length())));
+                break;
+            case "status":
+                listChannels(connection, actionId);
+                break;
+            case "agents":
+                emptyList(connection, actionId, "AgentsComplete");
+                break;
+            case "queuestatus":
+                emptyList(connection, actionId, "QueueStatusComplete");
+                break;
+            case "confbridgelistrooms":
+                listRooms(connection, actionId);
+                break;
+            case "confbridgelist":
+                listRequests.incrementAndGet();
+                listCallers(connection, actionId, action.get("conference"));
+                break;
+            case "confbridgemute":
+            case "confbridgeunmute":
+                boolean muted = "confbridgemute".equals(name);
+                connection.write(setMuted(action, muted) ? packet("Response", "Success", "ActionID", actionId, "Message",
+                        muted ? "User muted" : "User unmuted") : error(actionId, "No Conference by that name found."));
+                break;
+            case "confbridgekick":
+                if (hasCaller(action)) {
+                    connection.write(packet("Response", "Success", "ActionID", actionId, "Message", "User kicked"));
+                    leave(action.get("channel"));
+                } else {
+                    connection.write(error(actionId, "No Conference by that name found."));
+                }
+                break;
+            default:
+                connection.write(error(actionId, "Invalid/unknown command"));
+        }
+    }
+
+    private synchronized boolean hasCaller(Map<String, String> action) {
+        Map<String, Caller> callers = rooms.get(action.get("conference"));
+        return callers != null && callers.containsKey(action.get("channel"));
+    }
+
+    private synchronized boolean setMuted(Map<String, String> action, boolean muted) {
+        if (!hasCaller(action)) {
+            return false;
+        }
+        if (muted) {
+            mutedChannels.add(action.get("channel"));
+        } else {
+            mutedChannels.remove(action.get("channel"));
+        }
+        return true;
+    }
+
+    private synchronized void listRooms(Connection connection, String actionId) throws IOException {
+        if (rooms.isEmpty()) {
+            connection.write(error(actionId, "No active conferences."));
+            return;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(packet("Response", "Success", "ActionID", actionId, "EventList", "start", "Message", "Confbridge conferences will follow"));
+        for (Map.Entry<String, Map<String, Caller>> entry : rooms.entrySet()) {
+            sb.append(packet("Event", "ConfbridgeListRooms", "ActionID", actionId, "Conference", entry.getKey(),
+                    "Parties", Integer.toString(entry.getValue().size()), "Marked", "0", "Locked", "No"));
+        }
+        sb.append(packet("Event", "ConfbridgeListRoomsComplete", "ActionID", actionId, "EventList", "Complete",
+                "ListItems", Integer.toString(rooms.size())));
+        connection.write(sb.toString());
+    }
+
+    private synchronized void listCallers(Connection connection, String actionId, String roomNo) throws IOException {
+        Map<String, Caller> callers = rooms.get(roomNo);
+        if (callers == null || callers.isEmpty()) {
+            connection.write(error(actionId, "No Conference by that name found."));
+            return;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(packet("Response", "Success", "ActionID", actionId, "EventList", "start", "Message", "Confbridge user list will follow"));
+        for (Caller caller : callers.values()) {
+            sb.append(packet("Event", "ConfbridgeList", "ActionID", actionId, "Conference", roomNo, "CallerIDNum", caller.number,
+                    "CallerIDName", caller.name, "Channel", caller.channel, "Admin", "No", "MarkedUser", "No"));
+        }
+        sb.append(packet("Event", "ConfbridgeListComplete", "ActionID", actionId, "EventList", "Complete",
+                "ListItems", Integer.toString(callers.size())));
+        connection.write(sb.toString());
+    }
+
+    private synchronized void listChannels(Connection connection, String actionId) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append(packet("Response", "Success", "ActionID", actionId, "Message", "Channel status will follow"));
+        for (Map<String, Caller> callers : rooms.values()) {
+            for (Caller caller : callers.values()) {
+                sb.append(packet("Event", "Status", "Privilege", "Call", "ActionID", actionId, "Channel", caller.channel,
+                        "CallerIDNum", caller.number, "CallerIDName", caller.name, "ChannelState", "6",
+                        "ChannelStateDesc", "Up", "Uniqueid", uniqueId(caller.channel)));
+            }
+        }
+        sb.append(packet("Event", "StatusComplete", "ActionID", actionId, "Items", Integer.toString(channelRooms.size())));
+        connection.write(sb.toString());
+    }
+
+    private void emptyList(Connection connection, String actionId, String completeEvent) throws IOException {
+        connection.write(packet("Response", "Success", "ActionID", actionId)
+                + packet("Event", completeEvent, "ActionID", actionId));
+    }
+
+    private static String callerEvent(String event, String roomNo, Caller caller) {
+        return packet("Event", event, "Privilege", "call,all", "Channel", caller.channel, "Uniqueid", uniqueId(caller.channel),
+                "Conference", roomNo, "CallerIDnum", caller.number, "CallerIDname", caller.name);
+    }
+
+    private static String uniqueId(String channel) {
+        return "1400000000." + Math.abs(channel.hashCode());
+    }
+
+    private static String error(String actionId, String message) {
+        return packet("Response", "Error", "ActionID", actionId, "Message", message);
+    }
+
+    private static String packet(String... keyValues) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            if (keyValues[i + 1] != null) {
+                sb.append(keyValues[i]).append(": ").append(keyValues[i + 1]).append("\r\n");
+            }
+        }
+        return sb.append("\r\n").toString();
+    }
+
+    /**
+     * The rooms currently on the server and the number of callers in each.
+     */
+    public synchronized Map<String, Integer> getRooms() {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, Caller>> entry : rooms.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().size());
+        }
+        return result;
+    }
+
+    /**
+     * The channels of the callers in a room.
+     */
+    public synchronized List<String> getChannels(String roomNo) {
+        Map<String, Caller> callers = rooms.get(roomNo);
+        return callers == null ? new ArrayList<String>() : new ArrayList<>(callers.keySet());
+    }
+
+    /**
+     * The channels muted through <code>ConfbridgeMute</code> and not unmuted since.
+     */
+    public synchronized List<String> getMutedChannels() {
+        return new ArrayList<>(mutedChannels);
+    }
+}
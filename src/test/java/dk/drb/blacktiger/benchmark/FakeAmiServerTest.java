@@ -0,0 +1,78 @@
+package dk.drb.blacktiger.benchmark;
+
+import dk.drb.blacktiger.model.ConferenceEvent;
+import dk.drb.blacktiger.model.ConferenceEventListener;
+import dk.drb.blacktiger.model.ParticipantCommentRequestEvent;
+import dk.drb.blacktiger.model.ParticipantLeaveEvent;
+import dk.drb.blacktiger.repository.asterisk.Asterisk11ConfbridgeRepository;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.asteriskjava.live.AsteriskServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class FakeAmiServerTest {
+
+    private FakeAmiServer ami;
+    private AsteriskServer server;
+    private Asterisk11ConfbridgeRepository repo;
+    private final BlockingQueue<ConferenceEvent> events = new LinkedBlockingQueue<>();
+
+    @Before
+    public void init() throws Exception {
+        ami = new FakeAmiServer();
+        ami.start();
+        ami.join("H45-0000", "H45-0000", "Hall");
+        ami.join("H45-0000", "+4512345678", "John Doe");
+
+        server = LoadGenerator.createServer(ami.getPort());
+        server.initialize();
+        repo = new Asterisk11ConfbridgeRepository();
+        repo.setAsteriskServer(server);
+        repo.addEventListener(new ConferenceEventListener() {
+
+            @Override
+            public void onParticipantEvent(ConferenceEvent event) {
+                events.add(event);
+            }
+        });
+        repo.start();
+    }
+
+    @After
+    public void destroy() throws Exception {
+        repo.stop();
+        server.shutdown();
+        ami.stop();
+    }
+
+    @Test
+    public void ifRoomsAreReadOverConnection() {
+        assertEquals(1, repo.findAll().size());
+        assertEquals(2, repo.findByRoomNo("H45-0000").size());
+        assertTrue(repo.findByRoomNoAndChannel("H45-0000", "SIP___H45-0000").isHost());
+    }
+
+    @Test
+    public void ifEventsAreReceivedOverConnection() throws Exception {
+        String channel = ami.join("H45-0000", "+4587654321", "Jane Doe");
+        assertEquals("Join", events.poll(5, TimeUnit.SECONDS).getType());
+        assertEquals(3, repo.findByRoomNo("H45-0000").size());
+
+        ami.dtmf(channel, "1");
+        ConferenceEvent event = events.poll(5, TimeUnit.SECONDS);
+        assertTrue(event instanceof ParticipantCommentRequestEvent);
+        assertEquals("SIP___+4587654321", ((ParticipantCommentRequestEvent) event).getChannel());
+    }
+
+    @Test
+    public void ifActionsAreSentOverConnection() throws Exception {
+        repo.kickParticipant("H45-0000", "SIP___+4512345678");
+        ConferenceEvent event = events.poll(5, TimeUnit.SECONDS);
+        assertTrue(event instanceof ParticipantLeaveEvent);
+        assertEquals(1, (int) ami.getRooms().get("H45-0000"));
+    }
+}
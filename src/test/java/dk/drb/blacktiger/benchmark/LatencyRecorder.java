@@ -0,0 +1,55 @@
+package dk.drb.blacktiger.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records latencies from several threads and reports percentiles of them. Samples beyond the capacity are counted but
+ * not kept.
+ */
+public class LatencyRecorder {
+
+    private final long[] samples;
+    private final AtomicInteger count = new AtomicInteger();
+
+    public LatencyRecorder(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    public void record(long nanos) {
+        int index = count.getAndIncrement();
+        if (index < samples.length) {
+            samples[index] = nanos;
+        }
+    }
+
+    public int getCount() {
+        return count.get();
+    }
+
+    /**
+     * Describes the samples recorded, fx. <code>count=1000 p50=0.120ms p90=0.350ms p99=1.200ms p99.9=4.000ms max=5.100ms</code>.
+     */
+    public String report() {
+        int size = Math.min(count.get(), samples.length);
+        if (size == 0) {
+            return "count=0";
+        }
+
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        return String.format("count=%d p50=%s p90=%s p99=%s p99.9=%s max=%s", count.get(), millis(percentile(sorted, 50)),
+                millis(percentile(sorted, 90)), millis(percentile(sorted, 99)), millis(percentile(sorted, 99.9)),
+                millis(sorted[size - 1]));
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3fms", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
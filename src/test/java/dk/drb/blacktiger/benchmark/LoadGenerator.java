@@ -0,0 +1,205 @@
+package dk.drb.blacktiger.benchmark;
+
+import dk.drb.blacktiger.repository.asterisk.ConfbridgeListEvent;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import org.asteriskjava.live.AsteriskServer;
+import org.asteriskjava.live.DefaultAsteriskServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generates load on a <code>FakeAmiServer</code> from a script.
+ * <p>
+ * A script is a list of steps separated by semicolon, fx. <code>halls 50; join 40; dtmf 2; reconnect 1; leave</code>.
+ * The steps are:</p>
+ * <ul>
+ * <li><code>halls N</code> - Starts N halls, each with the hall itself calling in as host.</li>
+ * <li><code>join M</code> - Lets M callers join each hall as fast as possible, taking turns between the halls.</li>
+ * <li><code>dtmf K</code> - Lets every caller request and cancel a comment K times.</li>
+ * <li><code>reconnect N</code> - Drops the connections to the server N times, waiting for clients to log in and read
+ * the rooms again.</li>
+ * <li><code>pause MS</code> - Waits MS milliseconds.</li>
+ * <li><code>leave</code> - Lets all callers leave and ends the halls.</li>
+ * </ul>
+ * <p>
+ * The time each event is emitted, taken just before it is written, is kept by the key the event will have when sent to WebSocket clients, see
+ * <code>keyOf</code>, so the latency through the application can be measured where the events come out.</p>
+ */
+public class LoadGenerator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoadGenerator.class);
+
+    /**
+     * Notified before a hall is started, fx. to subscribe to its events.
+     */
+    public interface HallListener {
+
+        void onHall(String roomNo);
+    }
+
+    private final FakeAmiServer server;
+    private final HallListener hallListener;
+    private final List<String> halls = new ArrayList<>();
+    private final List<String> channels = new ArrayList<>();
+    private final ConcurrentMap<String, Queue<Long>> emitted = new ConcurrentHashMap<>();
+    private int callerNo;
+    private volatile long eventCount;
+
+    public LoadGenerator(FakeAmiServer server, HallListener hallListener) {
+        this.server = server;
+        this.hallListener = hallListener;
+    }
+
+    /**
+     * Creates a client for the fake server, set up like the one created by <code>AsteriskConfig</code>.
+     */
+    public static AsteriskServer createServer(int port) {
+        DefaultAsteriskServer server = new DefaultAsteriskServer("127.0.0.1", port, "blacktiger", "secret");
+        server.getManagerConnection().registerUserEventClass(ConfbridgeListEvent.class);
+        return server;
+    }
+
+    /**
+     * The key of an event as sent to WebSocket clients, ie. its type and the normalized channel or room number.
+     */
+    public static String keyOf(String type, String channelOrRoomNo) {
+        return type + "|" + channelOrRoomNo.replace("/", "___").replace(".", "---");
+    }
+
+    /**
+     * Retrieves and forgets the time the oldest event with the given key not yet taken was emitted.
+     * @return The time as given by <code>System.nanoTime()</code> or null if no such event was emitted.
+     */
+    public Long takeEmitted(String key) {
+        Queue<Long> times = emitted.get(key);
+        return times == null ? null : times.poll();
+    }
+
+    /**
+     * The number of events emitted.
+     */
+    public long getEmittedCount() {
+        return eventCount;
+    }
+
+    private void emitted(String type, String channelOrRoomNo) {
+        String key = keyOf(type, channelOrRoomNo);
+        Queue<Long> times = emitted.get(key);
+        if (times == null) {
+            Queue<Long> newTimes = new ConcurrentLinkedQueue<>();
+            times = emitted.putIfAbsent(key, newTimes);
+            if (times == null) {
+                times = newTimes;
+            }
+        }
+        times.add(System.nanoTime());
+        eventCount++;
+    }
+
+    public void run(String script) throws InterruptedException {
+        for (String step : script.split(";")) {
+            String[] parts = step.trim().split("\\s+");
+            int arg = parts.length > 1 ? Integer.parseInt(parts[1]) : 1;
+            long start = System.currentTimeMillis();
+            switch (parts[0]) {
+                case "halls":
+                    startHalls(arg);
+                    break;
+                case "join":
+                    join(arg);
+                    break;
+                case "dtmf":
+                    dtmf(arg);
+                    break;
+                case "reconnect":
+                    reconnect(arg);
+                    break;
+                case "pause":
+                    Thread.sleep(arg);
+                    break;
+                case "leave":
+                    leave();
+                    break;
+                case "":
+                    continue;
+                default:
+                    throw new IllegalArgumentException("Unknown step: " + step);
+            }
+            LOG.info("Step done. [step={};millis={}]", step.trim(), System.currentTimeMillis() - start);
+        }
+    }
+
+    private void startHalls(int count) {
+        DecimalFormat format = new DecimalFormat("0000");
+        for (int i = 0; i < count; i++) {
+            String roomNo = "H45-" + format.format(halls.size());
+            hallListener.onHall(roomNo);
+            halls.add(roomNo);
+
+            emitted("ConferenceStart", roomNo);
+            server.startRoom(roomNo);
+            // The hall calls in with its own number, which makes it the host.
+            emitted("Join", "SIP/" + roomNo);
+            server.join(roomNo, roomNo, "Hall");
+        }
+    }
+
+    private void join(int callersPerHall) {
+        DecimalFormat format = new DecimalFormat("+4500000000");
+        for (int i = 0; i < callersPerHall; i++) {
+            for (String roomNo : halls) {
+                String number = format.format(callerNo++);
+                emitted("Join", "SIP/" + number);
+                channels.add(server.join(roomNo, number, "Caller"));
+            }
+        }
+    }
+
+    private void dtmf(int times) {
+        for (int i = 0; i < times; i++) {
+            for (String channel : channels) {
+                emitted("CommentRequest", channel);
+                server.dtmf(channel, "1");
+                emitted("CommentRequestCancel", channel);
+                server.dtmf(channel, "0");
+            }
+        }
+    }
+
+    private void reconnect(int times) throws InterruptedException {
+        int clients = server.getLoggedInCount();
+        for (int i = 0; i < times; i++) {
+            // Clients are up to date again when they have logged in and read the callers of every room.
+            long lists = server.getListRequests() + (long) clients * server.getRooms().size();
+            server.dropConnections();
+            long deadline = System.currentTimeMillis() + 30000;
+            while (server.getLoggedInCount() < clients || server.getListRequests() < lists) {
+                if (System.currentTimeMillis() > deadline) {
+                    LOG.warn("Clients did not read the rooms again in time. [clients={};loggedIn={}]", clients, server.getLoggedInCount());
+                    break;
+                }
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    private void leave() {
+        for (String channel : channels) {
+            emitted("Leave", channel);
+            server.leave(channel);
+        }
+        channels.clear();
+        for (String roomNo : halls) {
+            emitted("Leave", "SIP/" + roomNo);
+            emitted("ConferenceEnd", roomNo);
+            server.endRoom(roomNo);
+        }
+        halls.clear();
+    }
+}
@@ -0,0 +1,46 @@
+package dk.drb.blacktiger.benchmark;
+
+import dk.drb.blacktiger.util.PhoneNumber;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures <code>PhoneNumber.normalize</code> for numbers as they are entered in the phonebook and on SIP accounts:
+ * national, international with a plus and international with 00 and spaces.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PhoneNumberBenchmark {
+
+    @Param({"22334455", "+4522334455", "0045 22 33 44 55"})
+    private String number;
+
+    @Benchmark
+    public String normalize() {
+        return PhoneNumber.normalize(number, "DK");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PhoneNumberBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
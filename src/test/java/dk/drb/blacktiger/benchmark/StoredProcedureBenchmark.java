@@ -0,0 +1,125 @@
+package dk.drb.blacktiger.benchmark;
+
+import dk.drb.blacktiger.model.SipAccount;
+import dk.drb.blacktiger.repository.jdbc.JdbcSipAccountRepository;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlParameter;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.object.StoredProcedure;
+
+/**
+ * Measures the cost of calling a stored procedure through a StoredProcedure compiled for every call, as the
+ * repositories used to do, against one compiled once and reused, as the repositories do now. Both use the same
+ * declaration as <code>JdbcSipAccountRepository</code>, without its logging.
+ * <p>
+ * The procedure is an H2 alias doing nothing, so the numbers show the overhead on our side and not the cost of the
+ * procedure itself. Run with <code>main</code> or through JMH's own runner.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StoredProcedureBenchmark {
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private CreateComputerListenerSP procedure;
+    private SipAccount account;
+
+    private static class CreateComputerListenerSP extends StoredProcedure {
+
+        public CreateComputerListenerSP(JdbcTemplate jdbcTemplate) {
+            super(jdbcTemplate, "create_computer_listener");
+            declareParameter(new SqlParameter("e164", Types.VARCHAR));
+            declareParameter(new SqlParameter("name", Types.VARCHAR));
+            declareParameter(new SqlParameter("email", Types.VARCHAR));
+            declareParameter(new SqlParameter("hall", Types.VARCHAR));
+            declareParameter(new SqlParameter("mailtext", Types.VARCHAR));
+            declareParameter(new SqlParameter("key", Types.VARCHAR));
+            compile();
+        }
+
+        public void execute(String phoneNumber, String name, String email, String hall, String mailText) {
+            Map<String, Object> params = new HashMap<>();
+            params.put("e164", phoneNumber);
+            params.put("name", name);
+            params.put("email", email);
+            params.put("hall", hall);
+            params.put("mailtext", mailText);
+            params.put("key", "enckey");
+            execute(params);
+        }
+    }
+
+    /**
+     * Implementation of the <code>create_computer_listener</code> alias.
+     */
+    public static void createComputerListener(String e164, String name, String email, String hall, String mailText, String key) {
+    }
+
+    @Setup
+    public void setup() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1", "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE ALIAS IF NOT EXISTS create_computer_listener FOR \""
+                + StoredProcedureBenchmark.class.getName() + ".createComputerListener\"");
+
+        procedure = new CreateComputerListenerSP(jdbcTemplate);
+
+        // Make sure the procedure can be called through the repository, so we are not measuring failures.
+        JdbcSipAccountRepository repository = new JdbcSipAccountRepository();
+        repository.setDataSource(dataSource);
+        repository.setEncryptionKey("enckey");
+
+        account = new SipAccount();
+        account.setPhoneNumber("+4512345678");
+        account.setName("John Doe");
+        account.setEmail("john@doe.dk");
+        if (!repository.create("H45-0000", account, "Mail")) {
+            throw new IllegalStateException("Procedure could not be called.");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    public void compiledPerCall() {
+        new CreateComputerListenerSP(jdbcTemplate).execute(account.getPhoneNumber(), account.getName(), account.getEmail(), "H45-0000", "Mail");
+    }
+
+    @Benchmark
+    public void compiledOnce() {
+        procedure.execute(account.getPhoneNumber(), account.getName(), account.getEmail(), "H45-0000", "Mail");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(StoredProcedureBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
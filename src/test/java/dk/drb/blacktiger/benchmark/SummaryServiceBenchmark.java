@@ -0,0 +1,151 @@
+package dk.drb.blacktiger.benchmark;
+
+import dk.drb.blacktiger.model.CallType;
+import dk.drb.blacktiger.model.ConferenceEndEvent;
+import dk.drb.blacktiger.model.ConferenceEvent;
+import dk.drb.blacktiger.model.ConferenceEventListener;
+import dk.drb.blacktiger.model.ConferenceStartEvent;
+import dk.drb.blacktiger.model.Participant;
+import dk.drb.blacktiger.model.ParticipantJoinEvent;
+import dk.drb.blacktiger.model.ParticipantLeaveEvent;
+import dk.drb.blacktiger.model.ParticipantMuteEvent;
+import dk.drb.blacktiger.model.ParticipantUnmuteEvent;
+import dk.drb.blacktiger.model.Room;
+import dk.drb.blacktiger.model.Summary;
+import dk.drb.blacktiger.repository.memory.InMemConferenceRoomRepository;
+import dk.drb.blacktiger.service.SummaryService;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures <code>SummaryService</code> handling conference events and serving the summary.
+ * <p>
+ * The events are those of rooms in two regions starting, callers joining, opening and closing their microphones and
+ * leaving again, so the summary is back where it started after each invocation. They are given to the listener the
+ * service registers with the in-memory conference repository. Reading the summary is measured after a caller has
+ * joined or left, as a new snapshot is only taken when the summary has changed.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SummaryServiceBenchmark {
+
+    private static final int REGIONS = 2;
+    private static final int ROOMS_PER_REGION = 5;
+    private static final int CALLERS_PER_ROOM = 10;
+    private static final int EVENTS = REGIONS * ROOMS_PER_REGION * (2 + CALLERS_PER_ROOM * 4);
+
+    /**
+     * Keeps the listener registered, so events can be given to it directly.
+     */
+    private static class Repository extends InMemConferenceRoomRepository {
+
+        private ConferenceEventListener listener;
+
+        @Override
+        public void addEventListener(ConferenceEventListener listener) {
+            super.addEventListener(listener);
+            this.listener = listener;
+        }
+    }
+
+    /**
+     * Gives access to the initialization otherwise done by Spring.
+     */
+    private static class Service extends SummaryService {
+
+        public void initialize() {
+            init();
+        }
+    }
+
+    private Service service;
+    private ConferenceEventListener listener;
+    private List<ConferenceEvent> events;
+    private ConferenceEvent[] joinAndLeave;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Repository repository = new Repository();
+        service = new Service();
+        service.setConferenceRepository(repository);
+        service.initialize();
+        listener = repository.listener;
+
+        events = new ArrayList<>();
+        int callerNo = 0;
+        for (int region = 0; region < REGIONS; region++) {
+            for (int i = 0; i < ROOMS_PER_REGION; i++) {
+                String roomNo = "H" + (45 + region) + "-000" + i;
+                events.add(new ConferenceStartEvent(new Room(roomNo)));
+
+                List<Participant> participants = new ArrayList<>();
+                for (int j = 0; j < CALLERS_PER_ROOM; j++) {
+                    String number = "+45" + (10000000 + callerNo++);
+                    participants.add(new Participant("SIP___" + number, number, "Caller", number, true, false,
+                            j % 2 == 0 ? CallType.Phone : CallType.Sip, new Date()));
+                }
+                for (Participant participant : participants) {
+                    events.add(new ParticipantJoinEvent(roomNo, participant));
+                }
+                for (Participant participant : participants) {
+                    events.add(new ParticipantUnmuteEvent(roomNo, participant.getChannel()));
+                    events.add(new ParticipantMuteEvent(roomNo, participant.getChannel()));
+                }
+                for (Participant participant : participants) {
+                    events.add(new ParticipantLeaveEvent(roomNo, participant));
+                }
+                events.add(new ConferenceEndEvent(roomNo));
+            }
+        }
+
+        Participant participant = new Participant("SIP___+4520000000", "+4520000000", "Caller", "+4520000000", true, false,
+                CallType.Phone, new Date());
+        listener.onParticipantEvent(new ConferenceStartEvent(new Room("H45-1000")));
+        joinAndLeave = new ConferenceEvent[]{new ParticipantJoinEvent("H45-1000", participant),
+            new ParticipantLeaveEvent("H45-1000", participant)};
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void handleEvents() {
+        for (ConferenceEvent event : events) {
+            listener.onParticipantEvent(event);
+        }
+    }
+
+    @Benchmark
+    public Map<String, Summary> changeAndGetSummary() {
+        listener.onParticipantEvent(joinAndLeave[next++ & 1]);
+        return service.getSummary();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SummaryServiceBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
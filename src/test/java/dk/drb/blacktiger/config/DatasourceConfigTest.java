@@ -0,0 +1,49 @@
+package dk.drb.blacktiger.config;
+
+import com.jolbox.bonecp.BoneCPDataSource;
+import java.util.Properties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.mock.env.MockEnvironment;
+
+public class DatasourceConfigTest {
+
+    private AnnotationConfigApplicationContext context;
+
+    @Before
+    public void init() {
+        MockEnvironment env = new MockEnvironment();
+        env.setProperty("asteriskjdbc.driverClassName", "com.mysql.jdbc.Driver");
+        env.setProperty("asteriskjdbc.url", "jdbc:mysql://localhost/asterisk");
+        env.setProperty("asteriskjdbc.username", "asterisk");
+        env.setProperty("asteriskjdbc.password", "secret");
+
+        context = new AnnotationConfigApplicationContext();
+        context.setEnvironment(env);
+        context.register(DatasourceConfig.class);
+        context.refresh();
+    }
+
+    @After
+    public void destroy() {
+        context.close();
+    }
+
+    @Test
+    public void ifDriverPropertiesReachBoneCp() {
+        BoneCPDataSource source = context.getBean("asteriskDatasource", BoneCPDataSource.class);
+        Properties properties = source.getDriverProperties();
+
+        // BoneCP connects with the driver properties alone when they are given, so they must hold the credentials too.
+        assertEquals("asterisk", properties.getProperty("user"));
+        assertEquals("secret", properties.getProperty("password"));
+        assertEquals("true", properties.getProperty("cacheCallableStmts"));
+        assertEquals("100", properties.getProperty("callableStmtCacheSize"));
+        assertEquals("true", properties.getProperty("cachePrepStmts"));
+        assertEquals("250", properties.getProperty("prepStmtCacheSize"));
+        assertEquals("2048", properties.getProperty("prepStmtCacheSqlLimit"));
+    }
+}
@@ -2,18 +2,22 @@ package dk.drb.blacktiger.controller.rest;
 
 import static dk.drb.blacktiger.fixture.rest.ParticipantRestDataFixture.*;
 import dk.drb.blacktiger.service.ConferenceService;
+import java.util.Arrays;
+import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.isNull;
 import org.mockito.MockitoAnnotations;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.test.web.servlet.MockMvc;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
@@ -91,4 +95,27 @@ public class ParticipantControllerTest {
                 .andDo(print())
                 .andExpect(status().isOk());
     }
-}
\ No newline at end of file
+    
+    @Test
+    public void thatParticipantsCanBeMutedTogether() throws Exception {
+        when(service.muteParticipants(eq("H45-0000"), eq(Arrays.asList("1", "2")))).thenReturn(Arrays.asList("1", "2"));
+        
+        this.mockMvc.perform(post("/rooms/H45-0000/participants/mute")
+                .contentType(MediaType.APPLICATION_JSON).content("[\"1\",\"2\"]")
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().string("[\"1\",\"2\"]"));
+    }
+    
+    @Test
+    public void thatAllParticipantsCanBeMuted() throws Exception {
+        when(service.muteParticipants(eq("H45-0000"), isNull(List.class))).thenReturn(Arrays.asList("1"));
+        
+        this.mockMvc.perform(post("/rooms/H45-0000/participants/mute")
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().string("[\"1\"]"));
+    }
+}
@@ -6,9 +6,16 @@ package dk.drb.blacktiger.controller.rest;
 import dk.drb.blacktiger.controller.rest.RoomController;
 import dk.drb.blacktiger.service.ConferenceService;
 
+import dk.drb.blacktiger.model.CallType;
+import dk.drb.blacktiger.model.Participant;
+import dk.drb.blacktiger.model.Room;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.Before;
 import org.junit.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
@@ -16,6 +23,8 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 
 import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
@@ -24,6 +33,7 @@ import static org.springframework.test.web.servlet.setup.MockMvcBuilders.standal
 import static dk.drb.blacktiger.fixture.rest.RoomRestDataFixture.*;
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
+import static org.junit.Assert.assertTrue;
 
 /**
  *
@@ -32,7 +42,6 @@ public class RoomControllerTest {
 
     MockMvc mockMvc;
 
-    @InjectMocks
     RoomController controller;
 
     @Mock
@@ -41,9 +50,11 @@ public class RoomControllerTest {
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(this);
+        ObjectMapper objectMapper = new ObjectMapper();
+        controller = new RoomController(service, objectMapper);
 
         this.mockMvc = standaloneSetup(controller)
-                .setMessageConverters(new MappingJackson2HttpMessageConverter()).build();
+                .setMessageConverters(new MappingJackson2HttpMessageConverter(objectMapper)).build();
     }
 
     @Test
@@ -83,6 +94,26 @@ public class RoomControllerTest {
                 }));
     }
     
+    @Test
+    public void thatRoomsWithParticipantsAreRetrievedInOnePass() throws Exception {
+        String[] ids = {"1", "2"};
+        List<Room> rooms = standardListOfRooms(ids);
+        Map<String, List<Participant>> participants = new HashMap<>();
+        participants.put("1", Collections.singletonList(new Participant("SIP/1", "#00000001", "John Doe", "+4512345678", true, false, CallType.Sip, null)));
+        when(service.listRooms()).thenReturn(rooms);
+        when(service.listParticipants(rooms)).thenReturn(participants);
+
+        String body = this.mockMvc.perform(get("/rooms?mode=full")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        
+        assertTrue(body, body.startsWith("[{") && body.endsWith("}]"));
+        assertTrue(body, body.contains("\"participants\":[{") && body.contains("\"channel\":\"SIP/1\""));
+        assertTrue(body, body.contains("\"participants\":[]"));
+        verify(service, never()).listParticipants(eq("1"));
+    }
+    
     @Test
     public void thatARoomCanBeRetrieved() throws Exception {
         when(service.getRoom(eq("1"))).thenReturn(standardRoom("1"));
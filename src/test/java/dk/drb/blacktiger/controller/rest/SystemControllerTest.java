@@ -1,14 +1,33 @@
 package dk.drb.blacktiger.controller.rest;
 
+import dk.drb.blacktiger.security.AuthToken;
+import dk.drb.blacktiger.security.AuthTokenService;
+import dk.drb.blacktiger.security.TokenAuthentication;
+import dk.drb.blacktiger.service.SummaryHistoryService;
 import dk.drb.blacktiger.service.SystemService;
+import java.util.Collections;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.mockito.MockitoAnnotations;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.test.web.servlet.MockMvc;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
@@ -34,6 +53,12 @@ public class SystemControllerTest {
 
     @Mock
     SystemService service;
+    
+    @Mock
+    AuthTokenService tokenService;
+    
+    @Mock
+    SummaryHistoryService summaryHistoryService;
 
     @Before
     public void setup() {
@@ -42,6 +67,11 @@ public class SystemControllerTest {
         this.mockMvc = standaloneSetup(controller)
                 .setMessageConverters(new MappingJackson2HttpMessageConverter()).build();
     }
+    
+    @After
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
 
     @Test
     public void thatInfoCanBeRetrieved() throws Exception {
@@ -61,4 +91,58 @@ public class SystemControllerTest {
                 .andDo(print())
                 .andExpect(status().isOk());
     }
-}
\ No newline at end of file
+    
+    @Test
+    public void thatMetricsCanBeRetrieved() throws Exception {
+        Map<String, Number> repositoryMetrics = new HashMap<>();
+        repositoryMetrics.put("eventQueueDepth", 3);
+        Map<String, Map<String, Number>> metrics = new HashMap<>();
+        metrics.put("conferenceRoomRepository", repositoryMetrics);
+        when(service.getMetrics()).thenReturn(metrics);
+        
+        this.mockMvc.perform(get("/system/metrics")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"conferenceRoomRepository\":{\"eventQueueDepth\":3}}"));
+    }
+    
+    @Test
+    public void thatAuthenticateIssuesToken() throws Exception {
+        Authentication auth = new UsernamePasswordAuthenticationToken("H45-0000", null, 
+                Collections.<GrantedAuthority>singletonList(new SimpleGrantedAuthority("ROLE_USER")));
+        SecurityContextHolder.getContext().setAuthentication(auth);
+        when(tokenService.issue(auth)).thenReturn(new AuthToken("abc.def", 1000L));
+        
+        this.mockMvc.perform(get("/system/authenticate")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"name\":\"H45-0000\",\"roles\":[\"ROLE_USER\"],\"token\":\"abc.def\",\"tokenExpires\":1000}"));
+    }
+    
+    @Test
+    public void thatAuthenticateDoesNotIssueTokenForToken() throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(new TokenAuthentication("H45-0000", "abc.def", 
+                Collections.<GrantedAuthority>singletonList(new SimpleGrantedAuthority("ROLE_USER"))));
+        
+        this.mockMvc.perform(get("/system/authenticate")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"name\":\"H45-0000\",\"roles\":[\"ROLE_USER\"]}"));
+        verify(tokenService, never()).issue(any(Authentication.class));
+    }
+    
+    @Test
+    public void thatSummaryHistoryCanBeRetrieved() throws Exception {
+        Map<String, Object> history = new LinkedHashMap<>();
+        history.put("region", "H45");
+        history.put("start", 1000L);
+        history.put("step", 60000L);
+        history.put("halls", Arrays.asList(1, null));
+        when(summaryHistoryService.getHistory(eq("H45"), eq(1000L), eq(121000L), eq(60000L))).thenReturn(history);
+        
+        this.mockMvc.perform(get("/system/summary/history?region=H45&from=1000&to=121000&step=60")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"region\":\"H45\",\"start\":1000,\"step\":60000,\"halls\":[1,null]}"));
+    }
+}
@@ -3,6 +3,7 @@ package dk.drb.blacktiger.controller.websocket;
 import com.fasterxml.jackson.databind.util.ISO8601DateFormat;
 import dk.drb.blacktiger.controller.rest.TestChannelInterceptor;
 import java.nio.charset.Charset;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -19,7 +20,11 @@ import dk.drb.blacktiger.config.WebsocketConfig;
 import dk.drb.blacktiger.model.ConferenceEventListener;
 import dk.drb.blacktiger.model.Participant;
 import dk.drb.blacktiger.model.ParticipantLeaveEvent;
+import dk.drb.blacktiger.model.ParticipantMuteEvent;
+import dk.drb.blacktiger.model.ParticipantUnmuteEvent;
 import dk.drb.blacktiger.service.ConferenceService;
+import dk.drb.blacktiger.util.EventBatcher;
+import dk.drb.blacktiger.util.ShardedExecutor;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -55,6 +60,8 @@ public class EventControllerTest {
     private ConferenceService service;
     @Autowired
     private EventController controller;
+    @Autowired
+    private ShardedExecutor conferenceEventDispatcher;
     private ConferenceEventListener eventListener;
     
     @Before
@@ -71,6 +78,12 @@ public class EventControllerTest {
         controller.setService(service);
     }
     
+    @After
+    public void tearDown() {
+        controller.setEventBatcher(null);
+        controller.setBrokerSettings(null);
+    }
+    
     private Answer<Void> eventListenerAnswer() {
         return new Answer<Void>() {
             
@@ -136,4 +149,50 @@ public class EventControllerTest {
         json = json.replaceAll("millisSinceJoin\\\":[0-9]{1}", "millisSinceJoin\":0");
         assertEquals("{\"roomNo\":\"H45-1234\",\"participant\":{\"callerId\":\"123\",\"channel\":null,\"muted\":false,\"phoneNumber\":null,\"dateJoined\":\"" + df.format(now) + "\",\"millisSinceJoin\":0,\"name\":null,\"type\":null,\"host\":false},\"type\":\"Leave\"}", json);
     }
+    
+    @Test
+    public void getBatchedEvents() throws Exception {
+        EventBatcher batcher = new EventBatcher(100, 100, conferenceEventDispatcher);
+        controller.setEventBatcher(batcher);
+        
+        StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        headers.setSubscriptionId("0");
+        headers.setDestination("/queue/events/H45-1234");
+        headers.setSessionId("0");
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders());
+        
+        this.clientOutboundChannelInterceptor.setIncludedDestinations("/queue/events/H45-1234");
+        this.clientOutboundChannelInterceptor.startRecording();
+        this.clientInboundChannel.send(message);
+        Thread.sleep(500);
+        
+        eventListener.onParticipantEvent(new ParticipantUnmuteEvent("H45-1234", "SIP/1"));
+        eventListener.onParticipantEvent(new ParticipantMuteEvent("H45-1234", "SIP/1"));
+        
+        Message<?> reply = this.clientOutboundChannelInterceptor.awaitMessage(5);
+        assertNotNull("No reply recieved", reply);
+        
+        String json = new String((byte[]) reply.getPayload(), Charset.forName("UTF-8"));
+        assertEquals("[{\"roomNo\":\"H45-1234\",\"channel\":\"SIP/1\",\"type\":\"Unmute\"},"
+                + "{\"roomNo\":\"H45-1234\",\"channel\":\"SIP/1\",\"type\":\"Mute\"}]", json);
+        assertEquals(1L, batcher.getMetrics().get("batches"));
+        batcher.shutdown();
+    }
+    
+    @Test
+    public void getNoEventsFromNodeNotProducing() throws Exception {
+        controller.setBrokerSettings(new BrokerSettings("/queue/", false));
+        
+        this.brokerChannelInterceptor.setIncludedDestinations("/queue/events/**");
+        this.brokerChannelInterceptor.startRecording();
+        eventListener.onParticipantEvent(new ParticipantMuteEvent("H45-1234", "SIP/1"));
+        assertNull(this.brokerChannelInterceptor.awaitMessage(1));
+        
+        controller.setBrokerSettings(new BrokerSettings("/topic/", true));
+        this.brokerChannelInterceptor.setIncludedDestinations("/topic/events/**");
+        eventListener.onParticipantEvent(new ParticipantMuteEvent("H45-1234", "SIP/1"));
+        Message<?> message = this.brokerChannelInterceptor.awaitMessage(5);
+        assertNotNull(message);
+        assertEquals("/topic/events/H45-1234", StompHeaderAccessor.wrap(message).getDestination());
+    }
 }
@@ -0,0 +1,114 @@
+package dk.drb.blacktiger.controller.websocket;
+
+import dk.drb.blacktiger.config.WebsocketConfig;
+import dk.drb.blacktiger.controller.rest.TestChannelInterceptor;
+import dk.drb.blacktiger.model.Participant;
+import dk.drb.blacktiger.model.ParticipantMuteEvent;
+import dk.drb.blacktiger.model.RoomState;
+import dk.drb.blacktiger.model.RoomStateDelta;
+import dk.drb.blacktiger.service.RoomStateService;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import static org.junit.Assert.*;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {WebsocketConfig.class})
+public class RoomStateControllerTest {
+
+    static {
+        System.setProperty("test", "true");
+    }
+    
+    @Autowired
+    private AbstractSubscribableChannel clientInboundChannel;
+    
+    @Autowired
+    private AbstractSubscribableChannel clientOutboundChannel;
+    
+    @Autowired
+    private RoomStateController controller;
+    
+    @Autowired
+    private RoomStateService realService;
+    
+    private RoomStateService service;
+    private TestChannelInterceptor clientOutboundChannelInterceptor;
+    
+    @Before
+    public void setUp() throws Exception {
+        this.clientOutboundChannelInterceptor = new TestChannelInterceptor(false);
+        this.clientOutboundChannel.addInterceptor(this.clientOutboundChannelInterceptor);
+        
+        service = Mockito.mock(RoomStateService.class);
+        controller.setService(service);
+    }
+    
+    @After
+    public void tearDown() {
+        controller.setService(realService);
+        controller.setBrokerSettings(null);
+    }
+    
+    private Message<byte[]> subscribeMessage(String epoch, String sequence) {
+        StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        headers.setSubscriptionId("0");
+        headers.setDestination("/rooms/H45-1234/state");
+        headers.setSessionId("0");
+        headers.setSessionAttributes(new HashMap<String, Object>());
+        headers.setNativeHeader("epoch", epoch);
+        headers.setNativeHeader("sequence", sequence);
+        return MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders());
+    }
+    
+    @Test
+    public void getReplay() throws Exception {
+        RoomState state = RoomState.replay("H45-1234", 1000, 7, Arrays.asList(new RoomStateDelta(7, new ParticipantMuteEvent("H45-1234", "SIP/1"))));
+        Mockito.when(service.getState("H45-1234", 1000L, 6L)).thenReturn(state);
+        
+        this.clientOutboundChannelInterceptor.setIncludedDestinations("/rooms/H45-1234/state");
+        this.clientOutboundChannelInterceptor.startRecording();
+        this.clientInboundChannel.send(subscribeMessage("1000", "6"));
+        
+        Message<?> reply = this.clientOutboundChannelInterceptor.awaitMessage(5);
+        assertNotNull("No reply recieved", reply);
+        
+        StompHeaderAccessor replyHeaders = StompHeaderAccessor.wrap(reply);
+        assertEquals("0", replyHeaders.getSubscriptionId());
+        
+        String json = new String((byte[]) reply.getPayload(), Charset.forName("UTF-8"));
+        assertEquals("{\"roomNo\":\"H45-1234\",\"epoch\":1000,\"sequence\":7,\"deltas\":[{\"sequence\":7,\"event\":"
+                + "{\"roomNo\":\"H45-1234\",\"channel\":\"SIP/1\",\"type\":\"Mute\"}}],\"type\":\"Replay\"}", json);
+    }
+    
+    @Test
+    public void getSnapshotFromNodeNotProducing() throws Exception {
+        controller.setBrokerSettings(new BrokerSettings("/topic/", false));
+        RoomState state = RoomState.snapshot("H45-1234", 1000, 7, Collections.<Participant>emptyList());
+        Mockito.when(service.getState("H45-1234", null, null)).thenReturn(state);
+        
+        this.clientOutboundChannelInterceptor.setIncludedDestinations("/rooms/H45-1234/state");
+        this.clientOutboundChannelInterceptor.startRecording();
+        this.clientInboundChannel.send(subscribeMessage("1000", "6"));
+        
+        Message<?> reply = this.clientOutboundChannelInterceptor.awaitMessage(5);
+        assertNotNull("No reply recieved", reply);
+        
+        String json = new String((byte[]) reply.getPayload(), Charset.forName("UTF-8"));
+        assertEquals("{\"roomNo\":\"H45-1234\",\"epoch\":0,\"sequence\":0,\"participants\":[],\"type\":\"Snapshot\"}", json);
+    }
+}
@@ -0,0 +1,94 @@
+package dk.drb.blacktiger.repository.asterisk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.asteriskjava.manager.ManagerConnection;
+import org.asteriskjava.manager.SendActionCallback;
+import org.asteriskjava.manager.action.ConfbridgeMuteAction;
+import org.asteriskjava.manager.action.ManagerAction;
+import org.asteriskjava.manager.response.ManagerResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.util.concurrent.ListenableFuture;
+
+public class AmiActionClientTest {
+
+    private ManagerConnection connection;
+    private List<SendActionCallback> callbacks;
+    private AmiActionClient client;
+
+    @Before
+    public void init() throws Exception {
+        callbacks = new ArrayList<>();
+        connection = mock(ManagerConnection.class);
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                callbacks.add((SendActionCallback) invocation.getArguments()[1]);
+                return null;
+            }
+        }).when(connection).sendAction(any(ManagerAction.class), any(SendActionCallback.class));
+        client = new AmiActionClient(2, 200);
+    }
+
+    @After
+    public void destroy() {
+        client.shutdown();
+    }
+
+    @Test
+    public void ifActionsArePipelined() throws Exception {
+        ListenableFuture<ManagerResponse> first = client.send(connection, new ConfbridgeMuteAction("H45-0000", "SIP/1"));
+        ListenableFuture<ManagerResponse> second = client.send(connection, new ConfbridgeMuteAction("H45-0000", "SIP/2"));
+        assertEquals(2, callbacks.size());
+        assertEquals(2, client.getInFlight());
+
+        ManagerResponse response = new ManagerResponse();
+        callbacks.get(1).onResponse(response);
+        assertSame(response, second.get(1, TimeUnit.SECONDS));
+        assertFalse(first.isDone());
+        assertEquals(1, client.getInFlight());
+    }
+
+    @Test
+    public void ifActionsTimeOut() throws Exception {
+        ListenableFuture<ManagerResponse> future = client.send(connection, new ConfbridgeMuteAction("H45-0000", "SIP/1"));
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("Expected timeout.");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof TimeoutException);
+        }
+        assertEquals(0, client.getInFlight());
+        assertEquals(1, client.getTimedOut());
+
+        // A late response is ignored.
+        callbacks.get(0).onResponse(new ManagerResponse());
+        assertEquals(0, client.getInFlight());
+    }
+
+    @Test
+    public void ifActionsAreRejectedWhenTooManyAreInFlight() throws Exception {
+        client.send(connection, new ConfbridgeMuteAction("H45-0000", "SIP/1"));
+        client.send(connection, new ConfbridgeMuteAction("H45-0000", "SIP/2"));
+        ListenableFuture<ManagerResponse> future = client.send(connection, new ConfbridgeMuteAction("H45-0000", "SIP/3"));
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("Expected rejection.");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof RejectedExecutionException);
+        }
+        assertEquals(2, callbacks.size());
+        assertEquals(1, client.getRejected());
+    }
+}
@@ -9,20 +9,28 @@ import dk.drb.blacktiger.model.ParticipantCommentRequestEvent;
 import dk.drb.blacktiger.model.ParticipantLeaveEvent;
 import dk.drb.blacktiger.model.ParticipantMuteEvent;
 import dk.drb.blacktiger.model.ParticipantUnmuteEvent;
+import dk.drb.blacktiger.model.ParticipantsUnmuteEvent;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import org.asteriskjava.live.AsteriskServer;
+import org.asteriskjava.manager.EventTimeoutException;
 import org.asteriskjava.manager.ManagerConnection;
 import org.asteriskjava.manager.ManagerEventListener;
 import org.asteriskjava.manager.ResponseEvents;
+import org.asteriskjava.manager.SendActionCallback;
 import org.asteriskjava.manager.action.ConfbridgeKickAction;
 import org.asteriskjava.manager.action.ConfbridgeListAction;
 import org.asteriskjava.manager.action.ConfbridgeListRoomsAction;
 import org.asteriskjava.manager.action.ConfbridgeMuteAction;
 import org.asteriskjava.manager.action.ConfbridgeUnmuteAction;
+import org.asteriskjava.manager.action.ManagerAction;
 import org.asteriskjava.manager.event.ConfbridgeEndEvent;
+import org.asteriskjava.manager.event.ConfbridgeJoinEvent;
 import org.asteriskjava.manager.event.ConfbridgeLeaveEvent;
 import org.asteriskjava.manager.event.ConfbridgeListEvent;
 import org.asteriskjava.manager.event.ConfbridgeListRoomsEvent;
@@ -38,6 +46,7 @@ import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import org.springframework.dao.InvalidDataAccessResourceUsageException;
 
 /**
  *
@@ -125,6 +134,20 @@ public class AsteriskConfbridgeRepositoryTest {
         };
     }
     
+    private Answer<Void> answerAsync(final String response) {
+        return new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ManagerResponse r = new ManagerResponse();
+                r.setResponse(response);
+                r.setMessage(response);
+                ((SendActionCallback) invocation.getArguments()[1]).onResponse(r);
+                return null;
+            }
+        };
+    }
+    
     @Before
     public void init() throws Exception {
         repo = new Asterisk11ConfbridgeRepository();
@@ -195,11 +218,145 @@ public class AsteriskConfbridgeRepositoryTest {
         assertEquals(1, repo.findAll().size());
     }
     
+    @Test
+    public void ifListingIsTriedAgainWhenServerDoesNotAnswerInTime() throws Exception {
+        when(managerConnection.sendEventGeneratingAction(isA(ConfbridgeListAction.class), anyLong()))
+                .thenThrow(new EventTimeoutException("Timeout", null)).then(answerParticipants());
+        
+        listener.onManagerEvent(new DisconnectEvent(this));
+        listener.onManagerEvent(new ConnectEvent(this));
+        repo.handleEventQueue();
+        
+        assertEquals(10, repo.findByRoomNo("H45-0000").size());
+        assertEquals(1L, repo.getMetrics().get("listRetries"));
+        assertEquals(0L, repo.getMetrics().get("unreadRooms"));
+    }
+    
+    @Test
+    public void ifRoomsAreKeptWhenParticipantsCannotBeRead() throws Exception {
+        repo.setListRetries(1);
+        when(managerConnection.sendEventGeneratingAction(isA(ConfbridgeListAction.class), anyLong()))
+                .thenThrow(new EventTimeoutException("Timeout", null));
+        
+        listener.onManagerEvent(new DisconnectEvent(this));
+        listener.onManagerEvent(new ConnectEvent(this));
+        repo.handleEventQueue();
+        
+        assertNotNull(repo.findOne("H45-0000"));
+        assertEquals(0, repo.findByRoomNo("H45-0000").size());
+        assertEquals(1L, repo.getMetrics().get("unreadRooms"));
+        
+        // An audit unable to read the participants keeps the room as well.
+        repo.audit();
+        assertNotNull(repo.findOne("H45-0000"));
+        
+        // The next audit able to read them adds the participants.
+        when(managerConnection.sendEventGeneratingAction(isA(ConfbridgeListAction.class), anyLong())).then(answerParticipants());
+        repo.audit();
+        assertEquals(10, repo.findByRoomNo("H45-0000").size());
+    }
+    
     @Test
     public void ifParticipantsCanBeRetreived() {
         assertEquals(10, repo.findByRoomNo("H45-0000").size());
     }
     
+    @Test
+    public void ifParticipantsAreServedFromLiveState() throws Exception {
+        for(int i=0;i<5;i++) {
+            assertEquals(10, repo.findByRoomNo("H45-0000").size());
+            assertNotNull(repo.findOne("H45-0000"));
+        }
+        verify(managerConnection, times(1)).sendEventGeneratingAction(isA(ConfbridgeListAction.class), anyLong());
+    }
+    
+    @Test
+    public void ifJoinEventsUpdateLiveState() {
+        ConfbridgeJoinEvent e = new ConfbridgeJoinEvent(this);
+        e.setCallerIdName("Jane Doe");
+        e.setCallerIdNum("#00000010");
+        e.setChannel("SIP/#00000010");
+        e.setConference("H45-0000");
+        listener.onManagerEvent(e);
+        repo.handleEventQueue();
+        
+        assertEquals(11, repo.findByRoomNo("H45-0000").size());
+        assertNotNull(repo.findByRoomNoAndChannel("H45-0000", "SIP___#00000010"));
+    }
+    
+    @Test
+    public void ifLeaveEventsUpdateLiveState() {
+        ConfbridgeLeaveEvent e = new ConfbridgeLeaveEvent(this);
+        e.setCallerIdName("John Doe");
+        e.setCallerIdNum("#00000000");
+        e.setChannel("SIP___#00000000");
+        e.setConference("H45-0000");
+        listener.onManagerEvent(e);
+        repo.handleEventQueue();
+        
+        assertEquals(9, repo.findByRoomNo("H45-0000").size());
+        assertNull(repo.findByRoomNoAndChannel("H45-0000", "SIP___#00000000"));
+    }
+    
+    @Test
+    public void ifAuditRemovesParticipantsNotOnServer() {
+        ConfbridgeJoinEvent e = new ConfbridgeJoinEvent(this);
+        e.setCallerIdName("Jane Doe");
+        e.setCallerIdNum("#00000010");
+        e.setChannel("SIP___#00000010");
+        e.setConference("H45-0000");
+        listener.onManagerEvent(e);
+        repo.handleEventQueue();
+        assertEquals(11, repo.findByRoomNo("H45-0000").size());
+        
+        repo.audit();
+        
+        assertEquals(10, repo.findByRoomNo("H45-0000").size());
+        assertEquals("SIP___#00000010", ((ParticipantLeaveEvent)lastConfEvent).getParticipant().getChannel());
+    }
+    
+    @Test
+    public void ifAuditEndsRoomsNotOnServer() {
+        ConfbridgeStartEvent e = new ConfbridgeStartEvent(this);
+        e.setConference("H45-0001");
+        listener.onManagerEvent(e);
+        repo.handleEventQueue();
+        assertEquals(2, repo.findAll().size());
+        
+        repo.audit();
+        
+        assertEquals(1, repo.findAll().size());
+        assertNull(repo.findOne("H45-0001"));
+        assertEquals("H45-0001", ((ConferenceEndEvent)lastConfEvent).getRoomNo());
+    }
+    
+    @Test
+    public void ifAuditDoesNotStartRoomEndedWhileReadingServer() throws Exception {
+        when(managerConnection.sendEventGeneratingAction(isA(ConfbridgeListAction.class), anyLong())).then(new Answer<ResponseEvents>() {
+
+            @Override
+            public ResponseEvents answer(InvocationOnMock invocation) throws Throwable {
+                ResponseEvents events = answerParticipants().answer(invocation);
+                ConfbridgeEndEvent e = new ConfbridgeEndEvent(this);
+                e.setConference("H45-0000");
+                listener.onManagerEvent(e);
+                repo.handleEventQueue();
+                return events;
+            }
+        });
+        
+        repo.audit();
+        
+        assertNull(repo.findOne("H45-0000"));
+        assertNull(repo.findByRoomNo("H45-0000"));
+        assertEquals("H45-0000", ((ConferenceEndEvent)lastConfEvent).getRoomNo());
+        
+        // The room is started again by the next audit if it is still on the server.
+        when(managerConnection.sendEventGeneratingAction(isA(ConfbridgeListAction.class), anyLong())).then(answerParticipants());
+        repo.audit();
+        assertNotNull(repo.findOne("H45-0000"));
+    }
+    
     @Test
     public void ifOneParticipantCanBeRetreived() {
         assertNotNull(repo.findByRoomNoAndChannel("H45-0000", "SIP___#00000000"));
@@ -305,5 +462,97 @@ public class AsteriskConfbridgeRepositoryTest {
         assertEquals("SIP___#00000000", commentRequestEvent.getChannel());
     }
     
+    @Test
+    public void ifDtmfFromUnknownChannelIsIgnored() {
+        ConferenceEvent before = lastConfEvent;
+        DtmfEvent event = new DtmfEvent(this);
+        event.setBegin(false);
+        event.setEnd(true);
+        event.setDigit("1");
+        event.setChannel("SIP___#99999999");
+        listener.onManagerEvent(event);
+        repo.handleEventQueue();
+        
+        assertSame(before, lastConfEvent);
+        assertEquals(1L, repo.getMetrics().get("unknownDtmfChannels"));
+    }
+    
+    @Test
+    public void ifRoomEndRemovesChannelsFromIndex() {
+        assertEquals(10, repo.getMetrics().get("indexedChannels"));
+        
+        ConfbridgeEndEvent e = new ConfbridgeEndEvent(this);
+        e.setConference("H45-0000");
+        listener.onManagerEvent(e);
+        repo.handleEventQueue();
+        
+        assertEquals(0, repo.getMetrics().get("indexedChannels"));
+        assertEquals(0, repo.getMetrics().get("indexedRooms"));
+    }
     
+    @Test
+    public void ifLeaveEventsRemoveChannelsFromIndex() {
+        ConfbridgeLeaveEvent e = new ConfbridgeLeaveEvent(this);
+        e.setCallerIdName("John Doe");
+        e.setCallerIdNum("0");
+        e.setChannel("SIP___#00000000");
+        e.setConference("H45-0000");
+        listener.onManagerEvent(e);
+        repo.handleEventQueue();
+        
+        assertEquals(9, repo.getMetrics().get("indexedChannels"));
+    }
+    
+    @Test
+    public void ifMutingAsynchronouslyEmitsEvents() throws Exception {
+        doAnswer(answerAsync("Success")).when(managerConnection).sendAction(any(ManagerAction.class), any(SendActionCallback.class));
+        
+        repo.unmuteParticipantAsync("H45-0000", "SIP___#00000000").get(1, TimeUnit.SECONDS);
+        assertEquals("SIP___#00000000", ((ParticipantUnmuteEvent)lastConfEvent).getChannel());
+        assertFalse(repo.findByRoomNoAndChannel("H45-0000", "SIP___#00000000").isMuted());
+        
+        repo.muteParticipantAsync("H45-0000", "SIP___#00000000").get(1, TimeUnit.SECONDS);
+        assertEquals("SIP___#00000000", ((ParticipantMuteEvent)lastConfEvent).getChannel());
+        assertEquals(0, repo.getMetrics().get("actionsInFlight"));
+        assertEquals(2L, repo.getMetrics().get("actionsSent"));
+    }
+    
+    @Test
+    public void ifAsynchronousActionsFailOnErrorResponse() throws Exception {
+        doAnswer(answerAsync("Error")).when(managerConnection).sendAction(any(ManagerAction.class), any(SendActionCallback.class));
+        ConferenceEvent before = lastConfEvent;
+        
+        try {
+            repo.muteParticipantAsync("H45-0000", "SIP___#00000000").get(1, TimeUnit.SECONDS);
+            fail("Expected the action to fail.");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof InvalidDataAccessResourceUsageException);
+        }
+        assertSame(before, lastConfEvent);
+    }
+    
+    @Test
+    public void ifMutingSeveralEmitsOneEvent() throws Exception {
+        final List<ConferenceEvent> conferenceEvents = new ArrayList<>();
+        repo.addEventListener(new ConferenceEventListener() {
+
+            @Override
+            public void onParticipantEvent(ConferenceEvent event) {
+                conferenceEvents.add(event);
+            }
+        });
+        doAnswer(answerAsync("Success")).when(managerConnection).sendAction(isA(ConfbridgeUnmuteAction.class), any(SendActionCallback.class));
+        doAnswer(answerAsync("Error")).when(managerConnection).sendAction(isA(ConfbridgeMuteAction.class), any(SendActionCallback.class));
+        List<String> channels = Arrays.asList("SIP___#00000000", "SIP___#00000001", "SIP___#00000002");
+        
+        assertEquals(channels, repo.unmuteParticipants("H45-0000", channels));
+        assertEquals(1, conferenceEvents.size());
+        assertEquals(channels, ((ParticipantsUnmuteEvent) conferenceEvents.get(0)).getChannels());
+        assertFalse(repo.findByRoomNoAndChannel("H45-0000", "SIP___#00000002").isMuted());
+        
+        // Nothing is fired if no participant could be muted.
+        assertTrue(repo.muteParticipants("H45-0000", channels).isEmpty());
+        assertEquals(1, conferenceEvents.size());
+        assertFalse(repo.findByRoomNoAndChannel("H45-0000", "SIP___#00000002").isMuted());
+    }
 }
@@ -0,0 +1,68 @@
+package dk.drb.blacktiger.repository.asterisk;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ChannelRoomIndexTest {
+
+    @Test
+    public void ifChannelsCanBeLookedUpBothWays() {
+        ChannelRoomIndex index = new ChannelRoomIndex();
+        index.put("SIP___1", "H45-0000", false);
+        index.put("SIP___2", "H45-0000", true);
+        index.put("SIP___3", "H45-0001", false);
+
+        assertEquals("H45-0000", index.get("SIP___2").getRoomNo());
+        assertTrue(index.get("SIP___2").isHost());
+        assertEquals(new HashSet<>(Arrays.asList("SIP___1", "SIP___2")), index.getChannels("H45-0000"));
+        assertEquals(3, index.size());
+        assertEquals(2, index.getRoomCount());
+    }
+
+    @Test
+    public void ifChannelsAreMovedBetweenRooms() {
+        ChannelRoomIndex index = new ChannelRoomIndex();
+        index.put("SIP___1", "H45-0000", false);
+        index.put("SIP___1", "H45-0001", false);
+
+        assertEquals("H45-0001", index.get("SIP___1").getRoomNo());
+        assertTrue(index.getChannels("H45-0000").isEmpty());
+        assertEquals(1, index.getRoomCount());
+    }
+
+    @Test
+    public void ifRemovingLastChannelRemovesRoom() {
+        ChannelRoomIndex index = new ChannelRoomIndex();
+        index.put("SIP___1", "H45-0000", false);
+
+        assertNotNull(index.remove("SIP___1"));
+        assertNull(index.get("SIP___1"));
+        assertEquals(0, index.getRoomCount());
+    }
+
+    @Test
+    public void ifChannelIsOnlyRemovedFromGivenRoom() {
+        ChannelRoomIndex index = new ChannelRoomIndex();
+        index.put("SIP___1", "H45-0001", false);
+
+        assertFalse(index.remove("SIP___1", "H45-0000"));
+        assertNotNull(index.get("SIP___1"));
+        assertTrue(index.remove("SIP___1", "H45-0001"));
+        assertNull(index.get("SIP___1"));
+    }
+
+    @Test
+    public void ifRoomsCanBeRemoved() {
+        ChannelRoomIndex index = new ChannelRoomIndex();
+        index.put("SIP___1", "H45-0000", false);
+        index.put("SIP___2", "H45-0000", false);
+        index.put("SIP___3", "H45-0001", false);
+
+        assertEquals(2, index.removeRoom("H45-0000"));
+        assertNull(index.get("SIP___1"));
+        assertNull(index.get("SIP___2"));
+        assertEquals(1, index.size());
+    }
+}
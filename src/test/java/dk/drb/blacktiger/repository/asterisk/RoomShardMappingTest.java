@@ -0,0 +1,27 @@
+package dk.drb.blacktiger.repository.asterisk;
+
+import java.util.Arrays;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class RoomShardMappingTest {
+
+    @Test
+    public void ifLongestPrefixWins() {
+        RoomShardMapping mapping = RoomShardMapping.parse("H4=a, H45=b, *=c", Arrays.asList("a", "b", "c"));
+        assertEquals("b", mapping.serverFor("H45-0000"));
+        assertEquals("a", mapping.serverFor("H46-0000"));
+        assertEquals("c", mapping.serverFor("H50-0000"));
+    }
+
+    @Test
+    public void ifFirstServerIsDefault() {
+        RoomShardMapping mapping = RoomShardMapping.parse(null, Arrays.asList("a", "b"));
+        assertEquals("a", mapping.serverFor("H45-0000"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ifUnknownServersAreRejected() {
+        RoomShardMapping.parse("H45=x", Arrays.asList("a", "b"));
+    }
+}
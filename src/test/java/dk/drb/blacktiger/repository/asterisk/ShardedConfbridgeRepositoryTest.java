@@ -0,0 +1,152 @@
+package dk.drb.blacktiger.repository.asterisk;
+
+import dk.drb.blacktiger.benchmark.FakeAmiServer;
+import dk.drb.blacktiger.benchmark.LoadGenerator;
+import dk.drb.blacktiger.model.ConferenceEvent;
+import dk.drb.blacktiger.model.ConferenceEventListener;
+import dk.drb.blacktiger.model.ConferenceStartEvent;
+import dk.drb.blacktiger.model.Participant;
+import dk.drb.blacktiger.model.ParticipantJoinEvent;
+import dk.drb.blacktiger.model.ParticipantLeaveEvent;
+import dk.drb.blacktiger.model.Room;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.asteriskjava.live.AsteriskServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ShardedConfbridgeRepositoryTest {
+
+    private FakeAmiServer amiA;
+    private FakeAmiServer amiB;
+    private AsteriskServer serverA;
+    private AsteriskServer serverB;
+    private Asterisk11ConfbridgeRepository shardB;
+    private ShardedConfbridgeRepository repo;
+    private final BlockingQueue<ConferenceEvent> events = new LinkedBlockingQueue<>();
+
+    @Before
+    public void init() throws Exception {
+        amiA = new FakeAmiServer();
+        amiA.start();
+        amiA.join("H45-0000", "#00000001", "John Doe");
+        amiA.join("H45-0000", "#00000002", "Jane Doe");
+        amiB = new FakeAmiServer();
+        amiB.start();
+        amiB.join("H46-0000", "#00000003", "John Doe");
+        amiB.join("H45-0001", "#00000004", "Jane Doe");
+
+        serverA = LoadGenerator.createServer(amiA.getPort());
+        serverA.initialize();
+        serverB = LoadGenerator.createServer(amiB.getPort());
+        serverB.initialize();
+
+        Asterisk11ConfbridgeRepository shardA = new Asterisk11ConfbridgeRepository();
+        shardA.setAsteriskServer(serverA);
+        shardB = new Asterisk11ConfbridgeRepository();
+        shardB.setAsteriskServer(serverB);
+
+        Map<String, Asterisk11ConfbridgeRepository> shards = new LinkedHashMap<>();
+        shards.put("a", shardA);
+        shards.put("b", shardB);
+        repo = new ShardedConfbridgeRepository(shards, RoomShardMapping.parse("H46=b,*=a", Arrays.asList("a", "b")));
+        repo.addEventListener(new ConferenceEventListener() {
+
+            @Override
+            public void onParticipantEvent(ConferenceEvent event) {
+                events.add(event);
+            }
+        });
+        repo.start();
+    }
+
+    @After
+    public void destroy() throws Exception {
+        repo.stop();
+        serverA.shutdown();
+        serverB.shutdown();
+        amiA.stop();
+        amiB.stop();
+    }
+
+    @Test
+    public void ifRoomsOfAllServersAreFound() {
+        List<String> ids = new ArrayList<>();
+        for (Room room : repo.findAll()) {
+            ids.add(room.getId());
+        }
+        assertEquals(3, ids.size());
+        assertTrue(ids.containsAll(Arrays.asList("H45-0000", "H46-0000", "H45-0001")));
+    }
+
+    @Test
+    public void ifRoomsAreRoutedByMapping() {
+        assertEquals(2, repo.findByRoomNo("H45-0000").size());
+        assertEquals(1, repo.findByRoomNo("H46-0000").size());
+        assertEquals("a", repo.serverFor("H47-0000"));
+    }
+
+    @Test
+    public void ifRoomsFoundAreRoutedToTheirServer() {
+        // H45-0001 is mapped to a, but lives on b.
+        assertNull(repo.findOne("H45-0001"));
+        repo.findAll();
+        assertNotNull(repo.findOne("H45-0001"));
+
+        repo.muteParticipant("H45-0001", "SIP___#00000004");
+        assertEquals(Arrays.asList("SIP/#00000004"), amiB.getMutedChannels());
+        assertTrue(amiA.getMutedChannels().isEmpty());
+    }
+
+    @Test
+    public void ifParticipantsOfSeveralServersAreFound() {
+        repo.findAll();
+        Map<String, List<Participant>> result = repo.findByRoomNos(Arrays.asList("H46-0000", "H45-0000", "H45-0001"));
+        assertEquals(Arrays.asList("H46-0000", "H45-0000", "H45-0001"), new ArrayList<>(result.keySet()));
+        assertEquals(2, result.get("H45-0000").size());
+        assertEquals(1, result.get("H45-0001").size());
+    }
+
+    @Test
+    public void ifEventsAreTaggedWithOrigin() throws Exception {
+        amiB.startRoom("H45-0002");
+
+        ConferenceEvent event = events.poll(5, TimeUnit.SECONDS);
+        assertTrue(event instanceof ConferenceStartEvent);
+        assertEquals("b", event.getOrigin());
+        assertEquals("b", repo.serverFor("H45-0002"));
+    }
+
+    @Test
+    public void ifKickIsRoutedToServerOfRoom() throws Exception {
+        amiB.join("H45-0002", "#00000005", "John Doe");
+        assertTrue(events.poll(5, TimeUnit.SECONDS) instanceof ConferenceStartEvent);
+        assertTrue(events.poll(5, TimeUnit.SECONDS) instanceof ParticipantJoinEvent);
+
+        repo.kickParticipant("H45-0002", "SIP___#00000005");
+
+        ConferenceEvent event = events.poll(5, TimeUnit.SECONDS);
+        assertTrue(event instanceof ParticipantLeaveEvent);
+        assertEquals("b", event.getOrigin());
+        assertTrue(repo.findByRoomNo("H45-0002").isEmpty());
+        assertTrue(amiB.getChannels("H45-0002").isEmpty());
+    }
+
+    @Test
+    public void ifMetricsArePrefixedWithServer() {
+        Map<String, Number> metrics = repo.getMetrics();
+        assertEquals(2, metrics.get("servers"));
+        assertFalse(shardB.getMetrics().isEmpty());
+        for (String key : shardB.getMetrics().keySet()) {
+            assertTrue(metrics.containsKey("b." + key));
+        }
+    }
+}
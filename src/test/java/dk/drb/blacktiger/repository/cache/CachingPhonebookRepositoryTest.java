@@ -0,0 +1,139 @@
+package dk.drb.blacktiger.repository.cache;
+
+import dk.drb.blacktiger.model.CallType;
+import dk.drb.blacktiger.model.PhonebookEntry;
+import dk.drb.blacktiger.model.PhonebookUpdateEvent;
+import dk.drb.blacktiger.repository.PhonebookRepository;
+import dk.drb.blacktiger.repository.PhonebookRepository.PhonebookEventListener;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import static org.mockito.Mockito.*;
+
+public class CachingPhonebookRepositoryTest {
+    
+    private PhonebookRepository delegate;
+    private PhonebookEventListener delegateListener;
+    private CachingPhonebookRepository repository;
+    
+    @Before
+    public void init() {
+        delegate = mock(PhonebookRepository.class);
+        when(delegate.findByCallerId("H45-0000", "+4512345678")).thenReturn(new PhonebookEntry("+4512345678", "John Doe", CallType.Phone));
+        
+        repository = new CachingPhonebookRepository(delegate, 100, 60);
+        
+        ArgumentCaptor<PhonebookEventListener> captor = ArgumentCaptor.forClass(PhonebookEventListener.class);
+        verify(delegate).addEventListener(captor.capture());
+        delegateListener = captor.getValue();
+    }
+    
+    @Test
+    public void ifLookupsAreCached() {
+        assertEquals("John Doe", repository.findByCallerId("H45-0000", "+4512345678").getName());
+        assertEquals("John Doe", repository.findByCallerId("H45-0000", "+4512345678").getName());
+        
+        verify(delegate, times(1)).findByCallerId("H45-0000", "+4512345678");
+        assertEquals(1L, repository.getMetrics().get("hits"));
+        assertEquals(1L, repository.getMetrics().get("misses"));
+    }
+    
+    @Test
+    public void ifCacheIsScopedByHall() {
+        repository.findByCallerId("H45-0000", "+4512345678");
+        assertNull(repository.findByCallerId("H45-0001", "+4512345678"));
+        
+        verify(delegate, times(1)).findByCallerId("H45-0001", "+4512345678");
+    }
+    
+    @Test
+    public void ifUnknownNumbersAreNotCached() {
+        repository.findByCallerId("H45-0000", "+4587654321");
+        repository.findByCallerId("H45-0000", "+4587654321");
+        
+        verify(delegate, times(2)).findByCallerId("H45-0000", "+4587654321");
+    }
+    
+    @Test
+    public void ifSaveInvalidatesCache() {
+        repository.findByCallerId("H45-0000", "+4512345678");
+        repository.save("H45-0000", new PhonebookEntry("+4512345678", "Jane Doe", CallType.Phone));
+        repository.findByCallerId("H45-0000", "+4512345678");
+        
+        verify(delegate, times(2)).findByCallerId("H45-0000", "+4512345678");
+    }
+    
+    @Test
+    public void ifUpdateEventInvalidatesCache() {
+        repository.findByCallerId("H45-0000", "+4512345678");
+        delegateListener.onUpdate(new PhonebookUpdateEvent("+4512345678", "Jane Doe"));
+        repository.findByCallerId("H45-0000", "+4512345678");
+        
+        verify(delegate, times(2)).findByCallerId("H45-0000", "+4512345678");
+    }
+    
+    @Test
+    public void ifEntryLoadedDuringSaveIsNotCached() {
+        when(delegate.findByCallerId("H45-0000", "+4512345678")).then(new Answer<PhonebookEntry>() {
+
+            @Override
+            public PhonebookEntry answer(InvocationOnMock invocation) throws Throwable {
+                // Read before the save below was written, but returned after it has invalidated the cache.
+                repository.save("H45-0000", new PhonebookEntry("+4512345678", "Jane Doe", CallType.Phone));
+                return new PhonebookEntry("+4512345678", "John Doe", CallType.Phone);
+            }
+        });
+
+        repository.findByCallerId("H45-0000", "+4512345678");
+        repository.findByCallerId("H45-0000", "+4512345678");
+
+        verify(delegate, times(2)).findByCallerId("H45-0000", "+4512345678");
+    }
+
+    @Test
+    public void ifBulkEntriesLoadedDuringUpdateAreNotCached() {
+        when(delegate.findByCallerIds("H45-0000", Arrays.asList("+4587654321"))).then(new Answer<Map<String, PhonebookEntry>>() {
+
+            @Override
+            public Map<String, PhonebookEntry> answer(InvocationOnMock invocation) throws Throwable {
+                delegateListener.onUpdate(new PhonebookUpdateEvent("+4587654321", "John Doe"));
+                return Collections.singletonMap("+4587654321", new PhonebookEntry("+4587654321", "Jane Doe", CallType.Phone));
+            }
+        });
+
+        assertEquals("Jane Doe", repository.findByCallerIds("H45-0000", Arrays.asList("+4587654321")).get("+4587654321").getName());
+        repository.findByCallerIds("H45-0000", Arrays.asList("+4587654321"));
+
+        verify(delegate, times(2)).findByCallerIds("H45-0000", Arrays.asList("+4587654321"));
+    }
+
+    @Test
+    public void ifEntriesExpire() throws Exception {
+        repository = new CachingPhonebookRepository(delegate, 100, 0);
+        repository.findByCallerId("H45-0000", "+4512345678");
+        repository.findByCallerId("H45-0000", "+4512345678");
+        
+        verify(delegate, times(2)).findByCallerId("H45-0000", "+4512345678");
+    }
+    
+    @Test
+    public void ifBulkLookupOnlyLoadsMisses() {
+        repository.findByCallerId("H45-0000", "+4512345678");
+        when(delegate.findByCallerIds("H45-0000", Arrays.asList("+4587654321"))).thenReturn(
+                Collections.singletonMap("+4587654321", new PhonebookEntry("+4587654321", "Jane Doe", CallType.Phone)));
+        
+        Map<String, PhonebookEntry> result = repository.findByCallerIds("H45-0000", Arrays.asList("+4512345678", "+4587654321"));
+        
+        assertEquals("John Doe", result.get("+4512345678").getName());
+        assertEquals("Jane Doe", result.get("+4587654321").getName());
+        verify(delegate, times(1)).findByCallerIds("H45-0000", Arrays.asList("+4587654321"));
+        assertEquals("Jane Doe", repository.findByCallerId("H45-0000", "+4587654321").getName());
+        verify(delegate, never()).findByCallerId("H45-0000", "+4587654321");
+    }
+}
@@ -0,0 +1,82 @@
+package dk.drb.blacktiger.repository.jdbc;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+public class ActionLogWriterTest {
+    
+    private JdbcTemplate jdbcTemplate;
+    private int lastBatchSize;
+    
+    @Before
+    public void init() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.batchUpdate(anyString(), any(BatchPreparedStatementSetter.class))).then(new Answer<int[]>() {
+
+            @Override
+            public int[] answer(InvocationOnMock invocation) throws Throwable {
+                BatchPreparedStatementSetter setter = (BatchPreparedStatementSetter) invocation.getArguments()[1];
+                lastBatchSize = setter.getBatchSize();
+                return new int[lastBatchSize];
+            }
+        });
+    }
+    
+    @Test
+    public void ifEntriesAreWrittenInBatches() {
+        ActionLogWriter writer = new ActionLogWriter(jdbcTemplate, "key", 100, 10, 1000);
+        for(int i=0;i<25;i++) {
+            writer.add("+4512345678", "+4587654321", "call");
+        }
+        writer.flush();
+        
+        verify(jdbcTemplate, times(3)).batchUpdate(anyString(), any(BatchPreparedStatementSetter.class));
+        assertEquals(5, lastBatchSize);
+        assertEquals(25L, writer.getMetrics().get("written"));
+        assertEquals(3L, writer.getMetrics().get("batches"));
+    }
+    
+    @Test
+    public void ifEntriesAreDroppedWhenFull() {
+        ActionLogWriter writer = new ActionLogWriter(jdbcTemplate, "key", 2, 10, 1000);
+        assertTrue(writer.add("+4512345678", "+4587654321", "call"));
+        assertTrue(writer.add("+4512345678", "+4587654321", "call"));
+        assertFalse(writer.add("+4512345678", "+4587654321", "call"));
+        
+        assertEquals(1L, writer.getMetrics().get("dropped"));
+        assertEquals(2, writer.getMetrics().get("pending"));
+    }
+    
+    @Test
+    public void ifFailedWritesAreCounted() {
+        reset(jdbcTemplate);
+        when(jdbcTemplate.batchUpdate(anyString(), any(BatchPreparedStatementSetter.class))).thenThrow(new DataAccessResourceFailureException("Down"));
+        ActionLogWriter writer = new ActionLogWriter(jdbcTemplate, "key", 100, 10, 1000);
+        writer.add("+4512345678", "+4587654321", "call");
+        writer.add("+4512345678", "+4587654321", "hangup");
+        writer.flush();
+        
+        assertEquals(2L, writer.getMetrics().get("failed"));
+        assertEquals(0L, writer.getMetrics().get("written"));
+    }
+    
+    @Test(timeout = 5000)
+    public void ifEntriesAreWrittenInBackgroundOnTime() throws Exception {
+        ActionLogWriter writer = new ActionLogWriter(jdbcTemplate, "key", 100, 10, 50);
+        writer.start();
+        writer.add("+4512345678", "+4587654321", "call");
+        
+        while(((Long)writer.getMetrics().get("written")) == 0) {
+            Thread.sleep(10);
+        }
+        writer.stop();
+        assertEquals(1, lastBatchSize);
+    }
+}
@@ -0,0 +1,81 @@
+package dk.drb.blacktiger.repository.jdbc;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.sql.DataSource;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.jdbc.core.CallableStatementCreator;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+public class HallInfoLoaderTest {
+    
+    private JdbcTemplate jdbcTemplate;
+    private int calls;
+    
+    @Before
+    public void init() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.getDataSource()).thenReturn(mock(DataSource.class));
+        when(jdbcTemplate.call(any(CallableStatementCreator.class), anyList())).then(new Answer<Map<String, Object>>() {
+
+            @Override
+            public Map<String, Object> answer(InvocationOnMock invocation) throws Throwable {
+                calls++;
+                Map<String, Object> result = new HashMap<>();
+                result.put("name", "John Doe " + calls);
+                result.put("city", "Copenhagen");
+                return result;
+            }
+        });
+    }
+    
+    @Test
+    public void ifResultsAreCached() {
+        HallInfoLoader loader = new HallInfoLoader(jdbcTemplate, "key", 60, 60);
+        assertEquals("John Doe 1", loader.load("H45-0000").get("name"));
+        assertEquals("John Doe 1", loader.load("H45-0000").get("name"));
+        assertEquals(1, calls);
+        
+        loader.load("H45-0001");
+        assertEquals(2, calls);
+        loader.shutdown();
+    }
+    
+    @Test
+    public void ifInvalidationForcesReload() {
+        HallInfoLoader loader = new HallInfoLoader(jdbcTemplate, "key", 60, 60);
+        loader.load("H45-0000");
+        loader.invalidate("H45-0000");
+        
+        assertEquals("John Doe 2", loader.load("H45-0000").get("name"));
+        loader.shutdown();
+    }
+    
+    @Test(timeout = 5000)
+    public void ifStaleResultsAreRefreshedInBackground() throws Exception {
+        HallInfoLoader loader = new HallInfoLoader(jdbcTemplate, "key", 60, 0);
+        loader.load("H45-0000");
+        
+        // Returns the cached result while the refresh happens in the background.
+        assertEquals("John Doe 1", loader.load("H45-0000").get("name"));
+        while(((Long)loader.getMetrics().get("refreshes")) == 0) {
+            Thread.sleep(10);
+        }
+        assertEquals("John Doe 2", loader.load("H45-0000").get("name"));
+        loader.shutdown();
+    }
+    
+    @Test
+    public void ifNothingIsCachedWithoutTtl() {
+        HallInfoLoader loader = new HallInfoLoader(jdbcTemplate, "key", 0, 0);
+        loader.load("H45-0000");
+        loader.load("H45-0000");
+        assertEquals(2, calls);
+        loader.shutdown();
+    }
+}
@@ -0,0 +1,125 @@
+package dk.drb.blacktiger.repository.jdbc;
+
+import dk.drb.blacktiger.model.CallInformation;
+import dk.drb.blacktiger.repository.CallInformationRepository.CallInformationHandler;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+public class JdbcCallInformationRepositoryTest {
+
+    private static final long BASE = 1400000000000L;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcCallInformationRepository repository;
+    private final List<String> cursors = new ArrayList<>();
+    private final List<CallInformation> calls = new ArrayList<>();
+    private final CallInformationHandler handler = new CallInformationHandler() {
+
+        @Override
+        public void onCall(CallInformation callInformation, String cursor) {
+            calls.add(callInformation);
+            cursors.add(cursor);
+        }
+    };
+
+    @Before
+    public void init() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:cdr", "sa", "", true);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE cdr (calldate TIMESTAMP, src VARCHAR(80), dcontext VARCHAR(80), billsec INT, roomNo VARCHAR(20))");
+        insert(jdbcTemplate, 0, "+4512345678", "H45-0000", 60);
+        insert(jdbcTemplate, 1, "4587654321", "H45-0000", 60);
+        insert(jdbcTemplate, 2, "004511111111", "H45-0000", 60);
+        insert(jdbcTemplate, 3, "+4512345678", "H45-0000", 30);
+        insert(jdbcTemplate, 4, "+4522222222", "H45-0000", 5);
+        insert(jdbcTemplate, 5, "+4533333333", "H45-0001", 60);
+        // Same first call as the one above, so the source number decides the order.
+        insert(jdbcTemplate, 1, "+4544444444", "H45-0000", 60);
+
+        repository = new JdbcCallInformationRepository();
+        repository.setDataSource(dataSource);
+    }
+
+    @After
+    public void destroy() {
+        new JdbcTemplate(dataSource).execute("DROP TABLE cdr");
+        dataSource.destroy();
+    }
+
+    private void insert(JdbcTemplate jdbcTemplate, int minute, String src, String roomNo, int billsec) {
+        jdbcTemplate.update("INSERT INTO cdr (calldate, src, dcontext, billsec, roomNo) VALUES (?,?,?,?,?)",
+                new Timestamp(BASE + minute * 60000L), src, "conference-" + roomNo, billsec, roomNo);
+    }
+
+    @Test
+    public void ifCallsAreGroupedByNumberAndFiltered() {
+        List<CallInformation> result = repository.findByRoomNoAndPeriodAndDuration("H45-0000", new Date(BASE - 1000), new Date(BASE + 3600000), 10);
+
+        assertEquals(4, result.size());
+        assertEquals("+4512345678", result.get(0).getPhoneNumber());
+        assertEquals(2, result.get(0).getNumberOfCalls());
+        assertEquals(90, result.get(0).getTotalDuration());
+        assertEquals("+4544444444", result.get(1).getPhoneNumber());
+        assertEquals("+4587654321", result.get(2).getPhoneNumber());
+        assertEquals("+4511111111", result.get(3).getPhoneNumber());
+    }
+
+    @Test
+    public void ifCallsAreFoundByRoomColumn() {
+        repository.setRoomColumn(true);
+        List<CallInformation> result = repository.findByRoomNoAndPeriodAndDuration("H45-0000", new Date(BASE - 1000), new Date(BASE + 3600000), 10);
+
+        assertEquals(4, result.size());
+        assertEquals("+4512345678", result.get(0).getPhoneNumber());
+        assertEquals("+4511111111", result.get(3).getPhoneNumber());
+    }
+
+    @Test
+    public void ifNumbersAreMatchedInAnyStoredForm() {
+        List<CallInformation> result = repository.findByRoomNoAndPeriodAndDurationAndNumbers("H45-0000", new Date(BASE - 1000),
+                new Date(BASE + 3600000), 0, new String[]{"+4587654321", "+4511111111", "+4533333333"});
+
+        assertEquals(2, result.size());
+        assertEquals("+4587654321", result.get(0).getPhoneNumber());
+        assertEquals("+4511111111", result.get(1).getPhoneNumber());
+
+        assertTrue(repository.findByRoomNoAndPeriodAndDurationAndNumbers("H45-0000", new Date(BASE - 1000),
+                new Date(BASE + 3600000), 0, new String[0]).isEmpty());
+    }
+
+    @Test
+    public void ifCallsCanBeReadInPages() {
+        Date start = new Date(BASE - 1000);
+        Date end = new Date(BASE + 3600000);
+        assertEquals(2, repository.streamByRoomNoAndPeriodAndDurationAndNumbers("H45-0000", start, end, 0, null, null, 2, handler));
+        assertEquals(2, repository.streamByRoomNoAndPeriodAndDurationAndNumbers("H45-0000", start, end, 0, null, cursors.get(1), 2, handler));
+        assertEquals(1, repository.streamByRoomNoAndPeriodAndDurationAndNumbers("H45-0000", start, end, 0, null, cursors.get(3), 2, handler));
+
+        // Pages are ordered by the source number as stored.
+        assertEquals(5, calls.size());
+        assertEquals("+4512345678", calls.get(0).getPhoneNumber());
+        assertEquals("+4522222222", calls.get(1).getPhoneNumber());
+        assertEquals("+4544444444", calls.get(2).getPhoneNumber());
+        assertEquals("+4511111111", calls.get(3).getPhoneNumber());
+        assertEquals("+4587654321", calls.get(4).getPhoneNumber());
+        assertEquals("004511111111", cursors.get(3));
+    }
+
+    @Test
+    public void ifCallsAfterCursorAreReadWithoutLimit() {
+        assertEquals(2, repository.streamByRoomNoAndPeriodAndDurationAndNumbers("H45-0000", new Date(BASE - 1000),
+                new Date(BASE + 3600000), 0, null, "+4544444444", 0, handler));
+
+        assertEquals("+4511111111", calls.get(0).getPhoneNumber());
+        assertEquals(60, calls.get(0).getTotalDuration());
+        assertEquals("+4587654321", calls.get(1).getPhoneNumber());
+    }
+}
@@ -0,0 +1,123 @@
+package dk.drb.blacktiger.repository.rest;
+
+import dk.drb.blacktiger.model.ConferenceEvent;
+import dk.drb.blacktiger.model.ConferenceEventListener;
+import dk.drb.blacktiger.model.Participant;
+import dk.drb.blacktiger.security.AuthTokenService;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.junit.matchers.JUnitMatchers.containsString;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.client.RequestMatcher;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.*;
+import org.springframework.web.client.RestTemplate;
+
+public class RestConferenceRoomRepositoryTest {
+
+    private final AuthTokenService authTokenService = new AuthTokenService("secret", 60);
+    private MockRestServiceServer producer;
+    private RestConferenceRoomRepository repository;
+
+    @Before
+    public void init() {
+        RestTemplate restTemplate = new RestTemplate();
+        producer = MockRestServiceServer.createServer(restTemplate);
+        repository = new RestConferenceRoomRepository("http://producer:8080/blacktiger/");
+        repository.setRestTemplate(restTemplate);
+        repository.setAuthTokenService(authTokenService);
+
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("H45-0000", null,
+                Arrays.<GrantedAuthority>asList(new SimpleGrantedAuthority("ROLE_ROOMACCESS_H45-0000"), new SimpleGrantedAuthority("ROLE_USER"))));
+    }
+
+    @After
+    public void destroy() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void ifParticipantsAreReadFromProducerOnBehalfOfUser() {
+        producer.expect(requestTo("http://producer:8080/blacktiger/rooms/H45-0000/participants"))
+                .andExpect(method(HttpMethod.GET))
+                .andExpect(tokenOf("H45-0000"))
+                .andRespond(withSuccess("[{\"channel\":\"SIP___#00000001\",\"callerId\":\"#00000001\",\"name\":\"John Doe\","
+                        + "\"muted\":false,\"host\":false,\"type\":\"Sip\",\"dateJoined\":0,\"millisSinceJoin\":1000}]", MediaType.APPLICATION_JSON));
+
+        List<Participant> participants = repository.findByRoomNo("H45-0000");
+
+        producer.verify();
+        assertEquals(1, participants.size());
+        assertEquals("SIP___#00000001", participants.get(0).getChannel());
+        assertEquals("John Doe", participants.get(0).getName());
+        assertFalse(participants.get(0).isMuted());
+    }
+
+    @Test
+    public void ifMuteIsSentToProducer() {
+        producer.expect(requestTo("http://producer:8080/blacktiger/rooms/H45-0000/participants/SIP___%2300000001"))
+                .andExpect(method(HttpMethod.PUT))
+                .andExpect(tokenOf("H45-0000"))
+                .andExpect(content().string(containsString("\"muted\":true")))
+                .andRespond(withSuccess());
+
+        repository.muteParticipant("H45-0000", "SIP___#00000001");
+
+        producer.verify();
+    }
+
+    @Test
+    public void ifMissingRoomIsNull() {
+        producer.expect(requestTo("http://producer:8080/blacktiger/rooms/H45-0001"))
+                .andRespond(withStatus(HttpStatus.NOT_FOUND));
+
+        assertNull(repository.findOne("H45-0001"));
+        producer.verify();
+    }
+
+    @Test
+    public void ifNoEventsAreReceived() {
+        // Events are published by the producer. Listening here would handle, and log, every call once more.
+        repository.addEventListener(new ConferenceEventListener() {
+
+            @Override
+            public void onParticipantEvent(ConferenceEvent event) {
+                fail("No events expected.");
+            }
+        });
+        producer.expect(requestTo("http://producer:8080/blacktiger/rooms/H45-0000/participants/SIP___%2300000001"))
+                .andExpect(method(HttpMethod.DELETE))
+                .andRespond(withSuccess());
+
+        repository.kickParticipant("H45-0000", "SIP___#00000001");
+
+        producer.verify();
+    }
+
+    private RequestMatcher tokenOf(final String user) {
+        return new RequestMatcher() {
+
+            @Override
+            public void match(ClientHttpRequest request) throws IOException, AssertionError {
+                String authorization = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+                assertNotNull(authorization);
+                assertTrue(authorization.startsWith("Bearer "));
+                assertEquals(user, authTokenService.verify(authorization.substring("Bearer ".length())).getName());
+            }
+        };
+    }
+}
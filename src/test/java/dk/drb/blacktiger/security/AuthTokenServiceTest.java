@@ -0,0 +1,57 @@
+package dk.drb.blacktiger.security;
+
+import java.util.Arrays;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.CredentialsExpiredException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+public class AuthTokenServiceTest {
+
+    private final Authentication authentication = new UsernamePasswordAuthenticationToken("H45-0000", null,
+            Arrays.<GrantedAuthority>asList(new SimpleGrantedAuthority("ROLE_ROOMACCESS_H45-0000"), new SimpleGrantedAuthority("ROLE_USER")));
+
+    @Test
+    public void ifIssuedTokenCanBeVerified() {
+        AuthTokenService service = new AuthTokenService("secret", 60);
+        AuthToken token = service.issue(authentication);
+
+        TokenAuthentication result = service.verify(token.getValue());
+        assertTrue(result.isAuthenticated());
+        assertEquals("H45-0000", result.getName());
+        assertEquals(authentication.getAuthorities(), result.getAuthorities());
+        assertTrue(token.getExpires() > System.currentTimeMillis());
+    }
+
+    @Test(expected = BadCredentialsException.class)
+    public void ifTokenFromOtherSecretIsRejected() {
+        String token = new AuthTokenService("secret", 60).issue(authentication).getValue();
+        new AuthTokenService("other", 60).verify(token);
+    }
+
+    @Test(expected = BadCredentialsException.class)
+    public void ifTamperedTokenIsRejected() {
+        AuthTokenService service = new AuthTokenService("secret", 60);
+        String token = service.issue(authentication).getValue();
+        String forged = new AuthTokenService("secret", 60).issue(new UsernamePasswordAuthenticationToken("admin", null,
+                Arrays.<GrantedAuthority>asList(new SimpleGrantedAuthority("ROLE_ADMIN")))).getValue();
+
+        // The payload of one token with the signature of another.
+        service.verify(forged.substring(0, forged.indexOf('.')) + token.substring(token.indexOf('.')));
+    }
+
+    @Test(expected = BadCredentialsException.class)
+    public void ifMalformedTokenIsRejected() {
+        new AuthTokenService("secret", 60).verify("not-a-token");
+    }
+
+    @Test(expected = CredentialsExpiredException.class)
+    public void ifExpiredTokenIsRejected() {
+        AuthTokenService service = new AuthTokenService("secret", 0);
+        service.verify(service.issue(authentication).getValue());
+    }
+}
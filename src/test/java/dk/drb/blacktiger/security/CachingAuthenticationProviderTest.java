@@ -0,0 +1,103 @@
+package dk.drb.blacktiger.security;
+
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import org.mockito.invocation.InvocationOnMock;
+import static org.mockito.Mockito.*;
+import org.mockito.stubbing.Answer;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+public class CachingAuthenticationProviderTest {
+
+    private AuthenticationProvider delegate;
+    private CachingAuthenticationProvider provider;
+
+    @Before
+    public void init() {
+        delegate = mock(AuthenticationProvider.class);
+        when(delegate.authenticate(any(Authentication.class))).thenAnswer(new Answer<Authentication>() {
+
+            @Override
+            public Authentication answer(InvocationOnMock invocation) throws Throwable {
+                Authentication auth = (Authentication) invocation.getArguments()[0];
+                if (!"12345".equals(auth.getCredentials())) {
+                    throw new BadCredentialsException("Username or password is not valid.");
+                }
+                return new UsernamePasswordAuthenticationToken(auth.getName(), auth.getCredentials(),
+                        Arrays.<GrantedAuthority>asList(new SimpleGrantedAuthority("ROLE_USER")));
+            }
+        });
+
+        provider = new CachingAuthenticationProvider(delegate, 100, 60);
+    }
+
+    @Test
+    public void ifSuccessfulAuthenticationsAreCached() {
+        Authentication first = provider.authenticate(new UsernamePasswordAuthenticationToken("H45-0000", "12345"));
+        Authentication second = provider.authenticate(new UsernamePasswordAuthenticationToken("H45-0000", "12345"));
+
+        verify(delegate, times(1)).authenticate(any(Authentication.class));
+        assertNotSame(first, second);
+        assertTrue(second.isAuthenticated());
+        assertEquals("H45-0000", second.getName());
+        assertEquals(first.getAuthorities(), second.getAuthorities());
+        assertEquals(1L, provider.getMetrics().get("hits"));
+    }
+
+    @Test
+    public void ifWrongPasswordIsNotServedFromCache() {
+        provider.authenticate(new UsernamePasswordAuthenticationToken("H45-0000", "12345"));
+
+        try {
+            provider.authenticate(new UsernamePasswordAuthenticationToken("H45-0000", "54321"));
+            fail("Expected BadCredentialsException");
+        } catch (BadCredentialsException ex) {
+            // Expected
+        }
+        verify(delegate, times(2)).authenticate(any(Authentication.class));
+    }
+
+    @Test
+    public void ifFailedAuthenticationsAreNotCached() {
+        for (int i = 0; i < 2; i++) {
+            try {
+                provider.authenticate(new UsernamePasswordAuthenticationToken("H45-0000", "54321"));
+                fail("Expected BadCredentialsException");
+            } catch (BadCredentialsException ex) {
+                // Expected
+            }
+        }
+        verify(delegate, times(2)).authenticate(any(Authentication.class));
+        assertEquals(0, provider.getMetrics().get("size"));
+    }
+
+    @Test
+    public void ifEvictedUserIsAuthenticatedAgain() {
+        provider.authenticate(new UsernamePasswordAuthenticationToken("H45-0000", "12345"));
+        provider.authenticate(new UsernamePasswordAuthenticationToken("H45-0001", "12345"));
+
+        provider.evict("H45-0000");
+        provider.authenticate(new UsernamePasswordAuthenticationToken("H45-0000", "12345"));
+        provider.authenticate(new UsernamePasswordAuthenticationToken("H45-0001", "12345"));
+
+        verify(delegate, times(3)).authenticate(any(Authentication.class));
+    }
+
+    @Test
+    public void ifErasedCredentialsDoNotAffectCache() {
+        UsernamePasswordAuthenticationToken result = (UsernamePasswordAuthenticationToken)
+                provider.authenticate(new UsernamePasswordAuthenticationToken("H45-0000", "12345"));
+        result.eraseCredentials();
+
+        Authentication cached = provider.authenticate(new UsernamePasswordAuthenticationToken("H45-0000", "12345"));
+        assertEquals("12345", cached.getCredentials());
+    }
+}
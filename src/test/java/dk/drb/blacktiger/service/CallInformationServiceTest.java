@@ -0,0 +1,98 @@
+package dk.drb.blacktiger.service;
+
+import dk.drb.blacktiger.model.CallInformation;
+import dk.drb.blacktiger.model.CallType;
+import dk.drb.blacktiger.model.PhonebookEntry;
+import dk.drb.blacktiger.repository.CallInformationRepository;
+import dk.drb.blacktiger.repository.CallInformationRepository.CallInformationHandler;
+import dk.drb.blacktiger.repository.PhonebookRepository;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+public class CallInformationServiceTest {
+
+    private CallInformationRepository repository;
+    private PhonebookRepository phonebookRepository;
+    private CallInformationService service;
+
+    @Before
+    public void init() {
+        repository = Mockito.mock(CallInformationRepository.class);
+        phonebookRepository = Mockito.mock(PhonebookRepository.class);
+        service = new CallInformationService();
+        service.setRepository(repository);
+        service.setPhonebookRepository(phonebookRepository);
+
+        Collection<? extends GrantedAuthority> auths = Arrays.asList((GrantedAuthority)new SimpleGrantedAuthority("ROLE_ROOMACCESS_H45-0000"));
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("H45-0000", "doe", auths));
+    }
+
+    @After
+    public void destroy() {
+        SecurityContextHolder.getContext().setAuthentication(null);
+    }
+
+    @Test
+    public void ifNamesAreResolvedInOneLookup() {
+        Mockito.when(repository.findByRoomNoAndPeriodAndDurationAndNumbers(Mockito.eq("H45-0000"), Mockito.any(Date.class),
+                Mockito.any(Date.class), Mockito.eq(0), Mockito.any(String[].class))).thenReturn(Arrays.asList(
+                        new CallInformation("+4512345678", null, 1, 60, new Date()),
+                        new CallInformation("+4587654321", null, 1, 60, new Date())));
+        Mockito.when(phonebookRepository.findByCallerIds(Mockito.eq("H45-0000"), Mockito.anyCollection())).thenReturn(
+                Collections.singletonMap("+4512345678", new PhonebookEntry("+4512345678", "Jane Doe", CallType.Phone)));
+
+        List<CallInformation> result = service.getReport("H45-0000", new Date(), new Date(), 0, null);
+
+        assertEquals("Jane Doe", result.get(0).getName());
+        assertNull(result.get(1).getName());
+        Mockito.verify(phonebookRepository).findByCallerIds(Mockito.eq("H45-0000"), Mockito.anyCollection());
+        Mockito.verify(phonebookRepository, Mockito.never()).findByCallerId(Mockito.anyString(), Mockito.anyString());
+    }
+
+    @Test
+    public void ifStreamedReportReturnsCursorOfLastCall() {
+        Mockito.when(repository.streamByRoomNoAndPeriodAndDurationAndNumbers(Mockito.eq("H45-0000"), Mockito.any(Date.class),
+                Mockito.any(Date.class), Mockito.eq(0), Mockito.any(String[].class), Mockito.anyString(), Mockito.anyInt(),
+                Mockito.any(CallInformationHandler.class))).then(new Answer<Integer>() {
+
+            @Override
+            public Integer answer(InvocationOnMock invocation) throws Throwable {
+                int limit = (Integer) invocation.getArguments()[6];
+                CallInformationHandler handler = (CallInformationHandler) invocation.getArguments()[7];
+                handler.onCall(new CallInformation("+4512345678", null, 1, 60, new Date()), "1");
+                handler.onCall(new CallInformation("+4587654321", null, 1, 60, new Date()), "2");
+                return Math.min(limit, 2);
+            }
+        });
+        Mockito.when(phonebookRepository.findByCallerIds(Mockito.eq("H45-0000"), Mockito.anyCollection())).thenReturn(
+                Collections.singletonMap("+4587654321", new PhonebookEntry("+4587654321", "John Doe", CallType.Phone)));
+        final List<CallInformation> calls = new ArrayList<>();
+        CallInformationService.ReportHandler handler = new CallInformationService.ReportHandler() {
+
+            @Override
+            public void onCall(CallInformation callInformation) {
+                calls.add(callInformation);
+            }
+        };
+
+        assertEquals("2", service.streamReport("H45-0000", new Date(), new Date(), 0, null, "0", 2, handler));
+        assertEquals(2, calls.size());
+        assertEquals("John Doe", calls.get(1).getName());
+        assertNull(service.streamReport("H45-0000", new Date(), new Date(), 0, null, "0", 3, handler));
+    }
+}
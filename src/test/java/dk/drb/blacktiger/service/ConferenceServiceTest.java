@@ -1,11 +1,15 @@
 package dk.drb.blacktiger.service;
 
 import dk.drb.blacktiger.model.CallType;
+import dk.drb.blacktiger.model.ConferenceEndEvent;
 import dk.drb.blacktiger.model.ConferenceEvent;
 import dk.drb.blacktiger.model.ConferenceEventListener;
 import dk.drb.blacktiger.model.Participant;
 import dk.drb.blacktiger.model.ParticipantChangeEvent;
+import dk.drb.blacktiger.model.ParticipantCommentRequestCancelEvent;
+import dk.drb.blacktiger.model.ParticipantCommentRequestEvent;
 import dk.drb.blacktiger.model.ParticipantJoinEvent;
+import dk.drb.blacktiger.model.ParticipantLeaveEvent;
 import dk.drb.blacktiger.model.ParticipantMuteEvent;
 import dk.drb.blacktiger.model.ParticipantUnmuteEvent;
 import dk.drb.blacktiger.model.PhonebookEntry;
@@ -289,4 +293,124 @@ public class ConferenceServiceTest {
         assertTrue(p.isMuted());
         
     }
-}
\ No newline at end of file
+    
+    @Test
+    public void ifParticipantStateIsRemovedOnLeave() {
+        Collection<? extends GrantedAuthority> auths = Arrays.asList((GrantedAuthority)new SimpleGrantedAuthority("ROLE_ADMIN"));
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("H45-0000-1", "doe", auths));
+        Mockito.when(roomInfoRepository.findById(Mockito.anyString())).thenReturn(rooms.get(0));
+        Mockito.when(conferenceRoomRepository.findByRoomNoAndChannel(Mockito.anyString(), Mockito.anyString())).thenReturn(participants.get(0));
+        
+        conferenceEventListener.onParticipantEvent(new ParticipantJoinEvent("H45-0000-1", participants.get(0)));
+        service.unmuteParticipant("H45-0000-1", "SIP___#000000001");
+        assertEquals(1, service.getMetrics().get("participantStates"));
+        assertEquals(1, service.getMetrics().get("unmutedParticipants"));
+        
+        conferenceEventListener.onParticipantEvent(new ParticipantLeaveEvent("H45-0000-1", participants.get(0)));
+        assertEquals(0, service.getMetrics().get("participantStates"));
+        
+        // Joining again on the same channel starts out muted.
+        conferenceEventListener.onParticipantEvent(new ParticipantJoinEvent("H45-0000-1", participants.get(0)));
+        assertTrue(service.getParticipant("H45-0000-1", "SIP___#000000001").isMuted());
+        SecurityContextHolder.getContext().setAuthentication(null);
+    }
+    
+    @Test
+    public void ifParticipantStatesAreRemovedWhenRoomEnds() {
+        Mockito.when(roomInfoRepository.findById(Mockito.anyString())).thenReturn(rooms.get(0));
+        
+        conferenceEventListener.onParticipantEvent(new ParticipantJoinEvent("H45-0000-1", participants.get(0)));
+        conferenceEventListener.onParticipantEvent(new ParticipantCommentRequestEvent("H45-0000-1", "SIP___#000000001"));
+        assertEquals(1, service.getMetrics().get("participantStates"));
+        assertEquals(1, service.getMetrics().get("commentRequests"));
+        
+        conferenceEventListener.onParticipantEvent(new ConferenceEndEvent("H45-0000-1"));
+        assertEquals(0, service.getMetrics().get("participantStates"));
+        assertEquals(0, service.getMetrics().get("participantStateRooms"));
+    }
+    
+    @Test
+    public void ifCommentRequestsAreTracked() {
+        Mockito.when(roomInfoRepository.findById(Mockito.anyString())).thenReturn(rooms.get(0));
+        conferenceEventListener.onParticipantEvent(new ParticipantJoinEvent("H45-0000-1", participants.get(0)));
+        conferenceEventListener.onParticipantEvent(new ParticipantCommentRequestEvent("H45-0000-1", "SIP___#000000001"));
+        assertEquals(1, service.getMetrics().get("commentRequests"));
+        
+        conferenceEventListener.onParticipantEvent(new ParticipantCommentRequestCancelEvent("H45-0000-1", "SIP___#000000001"));
+        assertEquals(0, service.getMetrics().get("commentRequests"));
+    }
+    
+    @Test
+    public void ifCommentRequestAfterLeaveLeavesNoState() {
+        Mockito.when(roomInfoRepository.findById(Mockito.anyString())).thenReturn(rooms.get(0));
+        conferenceEventListener.onParticipantEvent(new ParticipantJoinEvent("H45-0000-1", participants.get(0)));
+        conferenceEventListener.onParticipantEvent(new ParticipantLeaveEvent("H45-0000-1", participants.get(0)));
+        conferenceEventListener.onParticipantEvent(new ParticipantCommentRequestEvent("H45-0000-1", "SIP___#000000001"));
+        
+        assertEquals(0, service.getMetrics().get("participantStates"));
+        assertEquals(0, service.getMetrics().get("commentRequests"));
+    }
+    
+    @Test
+    public void ifUnmuteAfterLeaveLeavesNoState() {
+        Mockito.when(roomInfoRepository.findById(Mockito.anyString())).thenReturn(rooms.get(0));
+        Collection<? extends GrantedAuthority> auths = Arrays.asList((GrantedAuthority)new SimpleGrantedAuthority("ROLE_ADMIN"));
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("H45-0000-1", "doe", auths));
+        
+        conferenceEventListener.onParticipantEvent(new ParticipantJoinEvent("H45-0000-1", participants.get(0)));
+        conferenceEventListener.onParticipantEvent(new ParticipantLeaveEvent("H45-0000-1", participants.get(0)));
+        // The participant is no longer in the room when the unmute is handled.
+        service.unmuteParticipant("H45-0000-1", "SIP___#000000001");
+        
+        assertEquals(0, service.getMetrics().get("participantStates"));
+        assertEquals(0, service.getMetrics().get("unmutedParticipants"));
+        SecurityContextHolder.getContext().setAuthentication(null);
+    }
+    
+    @Test
+    public void ifUnmuteBeforeJoinIsKept() {
+        Collection<? extends GrantedAuthority> auths = Arrays.asList((GrantedAuthority)new SimpleGrantedAuthority("ROLE_ADMIN"));
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("H45-0000-1", "doe", auths));
+        Mockito.when(roomInfoRepository.findById(Mockito.anyString())).thenReturn(rooms.get(0));
+        Mockito.when(conferenceRoomRepository.findByRoomNoAndChannel(Mockito.anyString(), Mockito.anyString())).thenReturn(participants.get(0));
+        
+        // The participant is in the room, but the join event has not been handled yet.
+        service.unmuteParticipant("H45-0000-1", "SIP___#000000001");
+        conferenceEventListener.onParticipantEvent(new ParticipantJoinEvent("H45-0000-1", participants.get(0)));
+        
+        assertEquals(1, service.getMetrics().get("participantStates"));
+        assertEquals(1, service.getMetrics().get("unmutedParticipants"));
+        Participant p = service.getParticipant("H45-0000-1", "SIP___#000000001");
+        assertFalse(p.isMuted());
+        assertNotNull(p.getDateJoined());
+        SecurityContextHolder.getContext().setAuthentication(null);
+    }
+    
+    @Test
+    public void ifAllButHostsAreMutedWhenNoChannelsAreGiven() {
+        Mockito.when(roomInfoRepository.findById(Mockito.anyString())).thenReturn(rooms.get(0));
+        Collection<? extends GrantedAuthority> auths = Arrays.asList((GrantedAuthority)new SimpleGrantedAuthority("ROLE_ADMIN"));
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("H45-0000-1", "doe", auths));
+        Mockito.when(conferenceRoomRepository.unmuteParticipants(Mockito.anyString(), Mockito.anyList())).then(answerChannels());
+        Mockito.when(conferenceRoomRepository.muteParticipants(Mockito.anyString(), Mockito.anyList())).then(answerChannels());
+        conferenceEventListener.onParticipantEvent(new ParticipantJoinEvent("H45-0000-1", participants.get(0)));
+        
+        assertEquals(Arrays.asList("SIP___#000000001"), service.unmuteParticipants("H45-0000-1", null));
+        assertEquals(1, service.getMetrics().get("unmutedParticipants"));
+        
+        assertEquals(Arrays.asList("SIP___#000000001"), service.muteParticipants("H45-0000-1", null));
+        assertEquals(0, service.getMetrics().get("unmutedParticipants"));
+        Mockito.verify(conferenceRoomRepository).muteParticipants("H45-0000-1", Arrays.asList("SIP___#000000001"));
+        SecurityContextHolder.getContext().setAuthentication(null);
+    }
+    
+    private Answer<List<String>> answerChannels() {
+        return new Answer<List<String>>() {
+
+            @Override
+            public List<String> answer(InvocationOnMock invocation) throws Throwable {
+                return (List<String>) invocation.getArguments()[1];
+            }
+        };
+    }
+}
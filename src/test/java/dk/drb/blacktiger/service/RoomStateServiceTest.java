@@ -0,0 +1,144 @@
+package dk.drb.blacktiger.service;
+
+import dk.drb.blacktiger.model.ConferenceEndEvent;
+import dk.drb.blacktiger.model.ConferenceEventListener;
+import dk.drb.blacktiger.model.Participant;
+import dk.drb.blacktiger.model.ParticipantMuteEvent;
+import dk.drb.blacktiger.model.ParticipantUnmuteEvent;
+import dk.drb.blacktiger.model.RoomState;
+import dk.drb.blacktiger.model.RoomStateDelta;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class RoomStateServiceTest {
+
+    private ConferenceService conferenceService;
+    private ConferenceEventListener eventListener;
+    private RoomStateService service;
+    private final List<RoomStateDelta> deltas = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        conferenceService = mock(ConferenceService.class);
+        service = new RoomStateService(2);
+        service.setConferenceService(conferenceService);
+        service.init();
+        service.addListener(new RoomStateService.RoomStateListener() {
+
+            @Override
+            public void onDelta(RoomStateDelta delta) {
+                deltas.add(delta);
+            }
+        });
+
+        ArgumentCaptor<ConferenceEventListener> captor = ArgumentCaptor.forClass(ConferenceEventListener.class);
+        verify(conferenceService).addEventListener(captor.capture());
+        eventListener = captor.getValue();
+
+        Collection<? extends GrantedAuthority> auths = Arrays.asList((GrantedAuthority) new SimpleGrantedAuthority("ROLE_ROOMACCESS_H45-0000"));
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("H45-0000", "123", auths));
+    }
+
+    @After
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void ifDeltasAreNumberedPerRoom() {
+        eventListener.onParticipantEvent(new ParticipantUnmuteEvent("H45-0000", "SIP/1"));
+        eventListener.onParticipantEvent(new ParticipantUnmuteEvent("H45-0001", "SIP/2"));
+        eventListener.onParticipantEvent(new ParticipantMuteEvent("H45-0000", "SIP/1"));
+
+        assertEquals(3, deltas.size());
+        assertEquals(1, deltas.get(0).getSequence());
+        assertEquals(1, deltas.get(1).getSequence());
+        assertEquals(2, deltas.get(2).getSequence());
+        assertEquals("H45-0000", deltas.get(2).getRoomNo());
+    }
+
+    @Test
+    public void ifSnapshotHasCurrentSequence() {
+        List<Participant> participants = Collections.singletonList(new Participant());
+        when(conferenceService.listParticipants("H45-0000")).thenReturn(participants);
+        eventListener.onParticipantEvent(new ParticipantUnmuteEvent("H45-0000", "SIP/1"));
+
+        RoomState state = service.getState("H45-0000", null, null);
+        assertFalse(state.isReplay());
+        assertEquals(1, state.getSequence());
+        assertEquals(service.getEpoch(), state.getEpoch());
+        assertSame(participants, state.getParticipants());
+    }
+
+    @Test
+    public void ifMissedDeltasAreReplayed() {
+        eventListener.onParticipantEvent(new ParticipantUnmuteEvent("H45-0000", "SIP/1"));
+        eventListener.onParticipantEvent(new ParticipantMuteEvent("H45-0000", "SIP/1"));
+        eventListener.onParticipantEvent(new ParticipantUnmuteEvent("H45-0000", "SIP/1"));
+
+        RoomState state = service.getState("H45-0000", service.getEpoch(), 1L);
+        assertTrue(state.isReplay());
+        assertEquals(3, state.getSequence());
+        assertEquals(2, state.getDeltas().size());
+        assertEquals(2, state.getDeltas().get(0).getSequence());
+        assertEquals(3, state.getDeltas().get(1).getSequence());
+
+        state = service.getState("H45-0000", service.getEpoch(), 3L);
+        assertTrue(state.isReplay());
+        assertTrue(state.getDeltas().isEmpty());
+        verify(conferenceService, never()).listParticipants(anyString());
+    }
+
+    @Test
+    public void ifSnapshotIsReturnedWhenDeltasAreGone() {
+        when(conferenceService.listParticipants("H45-0000")).thenReturn(Collections.<Participant>emptyList());
+        eventListener.onParticipantEvent(new ParticipantUnmuteEvent("H45-0000", "SIP/1"));
+        eventListener.onParticipantEvent(new ParticipantMuteEvent("H45-0000", "SIP/1"));
+        eventListener.onParticipantEvent(new ParticipantUnmuteEvent("H45-0000", "SIP/1"));
+
+        // Only the last 2 deltas are kept.
+        assertFalse(service.getState("H45-0000", service.getEpoch(), 0L).isReplay());
+        // Sequence numbers from another epoch cannot be resumed from.
+        assertFalse(service.getState("H45-0000", service.getEpoch() - 1, 2L).isReplay());
+        // Nor can sequence numbers not yet issued.
+        assertFalse(service.getState("H45-0000", service.getEpoch(), 4L).isReplay());
+    }
+
+    @Test
+    public void ifDeltasAreDroppedWhenRoomEnds() {
+        when(conferenceService.listParticipants("H45-0000")).thenReturn(Collections.<Participant>emptyList());
+        eventListener.onParticipantEvent(new ParticipantUnmuteEvent("H45-0000", "SIP/1"));
+        eventListener.onParticipantEvent(new ConferenceEndEvent("H45-0000"));
+
+        assertEquals(2, deltas.size());
+        // The end was published, but is not kept for resuming.
+        assertFalse(service.getState("H45-0000", service.getEpoch(), 1L).isReplay());
+        assertTrue(service.getState("H45-0000", service.getEpoch(), 2L).getDeltas().isEmpty());
+
+        // The next meeting of the room continues the sequence numbers.
+        eventListener.onParticipantEvent(new ParticipantUnmuteEvent("H45-0000", "SIP/1"));
+        assertEquals(3, deltas.get(2).getSequence());
+        RoomState state = service.getState("H45-0000", service.getEpoch(), 2L);
+        assertTrue(state.isReplay());
+        assertEquals(1, state.getDeltas().size());
+    }
+
+    @Test(expected = AccessDeniedException.class)
+    public void ifAccessToOtherRoomsIsDenied() {
+        service.getState("H45-0001", service.getEpoch(), 0L);
+    }
+}
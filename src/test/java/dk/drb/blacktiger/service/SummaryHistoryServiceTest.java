@@ -0,0 +1,52 @@
+package dk.drb.blacktiger.service;
+
+import dk.drb.blacktiger.model.Summary;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SummaryHistoryServiceTest {
+
+    @Test
+    public void ifSeriesCanBeParsed() {
+        List<SummaryHistoryService.SeriesSpec> specs = SummaryHistoryService.parseSeries("1s/1h, 1m/7d");
+        assertEquals(2, specs.size());
+        assertEquals(1000L, specs.get(0).getResolution());
+        assertEquals(3600000L, specs.get(0).getRetention());
+        assertEquals(60000L, specs.get(1).getResolution());
+        assertEquals(604800000L, specs.get(1).getRetention());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ifInvalidSeriesIsRejected() {
+        SummaryHistoryService.parseSeries("1x/1h");
+    }
+
+    @Test
+    public void ifHistoryIsRecordedPerRegion() {
+        SummaryHistoryService service = new SummaryHistoryService(SummaryHistoryService.parseSeries("1s/1m"));
+        long now = System.currentTimeMillis();
+        long time = now - now % 1000 - 2000;
+
+        Map<String, Summary> summaries = new HashMap<>();
+        summaries.put(SummaryService.GLOBAL_IDENTIFIER, new Summary(2, 5, 3, 2, 1));
+        summaries.put("H45", new Summary(1, 4, 2, 2, 1));
+        service.record(time, summaries);
+        service.record(time + 1000, Collections.singletonMap(SummaryService.GLOBAL_IDENTIFIER, new Summary(1, 1, 1, 0, 0)));
+
+        Map<String, Object> history = service.getHistory("H45", time, time + 2000, 0);
+        assertEquals(time, history.get("start"));
+        assertEquals(1000L, history.get("step"));
+        assertEquals(Arrays.asList(1, 0), history.get("halls"));
+        assertEquals(Arrays.asList(4, 0), history.get("participants"));
+
+        history = service.getHistory(SummaryService.GLOBAL_IDENTIFIER, time, time + 2000, 2000);
+        assertEquals(Arrays.asList(5), history.get("participants"));
+
+        assertNull(service.getHistory("H298", time, time + 2000, 0));
+    }
+}
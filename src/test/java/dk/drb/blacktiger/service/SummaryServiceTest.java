@@ -9,11 +9,19 @@ import dk.drb.blacktiger.model.ParticipantJoinEvent;
 import dk.drb.blacktiger.model.ParticipantLeaveEvent;
 import dk.drb.blacktiger.model.ParticipantMuteEvent;
 import dk.drb.blacktiger.model.ParticipantUnmuteEvent;
+import dk.drb.blacktiger.model.ParticipantsMuteEvent;
+import dk.drb.blacktiger.model.ParticipantsUnmuteEvent;
 import dk.drb.blacktiger.model.Room;
 import dk.drb.blacktiger.model.Summary;
 import dk.drb.blacktiger.repository.ConferenceRoomRepository;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -137,4 +145,83 @@ public class SummaryServiceTest {
         
     }
     
+    @Test
+    public void ifConcurrentEventsNeverGiveTornSnapshots() throws Exception {
+        final int threads = 4;
+        final int iterations = 2000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<String> failure = new AtomicReference<>();
+        
+        Thread reader = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                while (running.get()) {
+                    for (Map.Entry<String, Summary> e : summaryService.getSummary().entrySet()) {
+                        Summary s = e.getValue();
+                        // Every participant joins via phone or sip, so a consistent snapshot always adds up.
+                        if (s.getParticipants() != s.getParticipantsViaPhone() + s.getParticipantsViaSip()) {
+                            failure.set("Torn snapshot for " + e.getKey());
+                        }
+                    }
+                }
+            }
+        });
+        reader.start();
+        
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final Room room = new Room("H" + t + "-1234", "Room " + t, null, null, null, null);
+            Thread writer = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                    eventListener.onParticipantEvent(new ConferenceStartEvent(room));
+                    for (int i = 0; i < iterations; i++) {
+                        Participant p = new Participant("SIP/" + room.getId() + "-" + i, "+45" + i, "John Doe", "+45" + i, true, false, 
+                                i % 2 == 0 ? CallType.Sip : CallType.Phone, new Date());
+                        eventListener.onParticipantEvent(new ParticipantJoinEvent(room.getId(), p));
+                        eventListener.onParticipantEvent(new ParticipantUnmuteEvent(room.getId(), p.getChannel()));
+                        if (i % 3 != 0) {
+                            eventListener.onParticipantEvent(new ParticipantLeaveEvent(room.getId(), p));
+                        }
+                    }
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        
+        start.countDown();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        running.set(false);
+        reader.join();
+        
+        assertNull(failure.get());
+        int remaining = (iterations + 2) / 3;
+        Map<String, Summary> map = summaryService.getSummary();
+        assertEquals(threads, map.get(SummaryService.GLOBAL_IDENTIFIER).getHalls());
+        assertEquals(threads * remaining, map.get(SummaryService.GLOBAL_IDENTIFIER).getParticipants());
+        assertEquals(threads * remaining, map.get(SummaryService.GLOBAL_IDENTIFIER).getOpenMicrophones());
+        assertEquals(remaining, map.get("H0").getParticipants());
+    }
+    
+    @Test
+    public void ifBulkMutenessChangesOpenMicrophones() {
+        Room room = new Room("H45-0000", "Testsal");
+        eventListener.onParticipantEvent(new ConferenceStartEvent(room));
+        eventListener.onParticipantEvent(new ParticipantsUnmuteEvent(room.getId(), Arrays.asList("SIP/1", "SIP/2", "SIP/3")));
+        assertEquals(3, summaryService.getSummary().get("H45").getOpenMicrophones());
+        
+        eventListener.onParticipantEvent(new ParticipantsMuteEvent(room.getId(), Arrays.asList("SIP/1", "SIP/2", "SIP/4")));
+        assertEquals(1, summaryService.getSummary().get("H45").getOpenMicrophones());
+    }
 }
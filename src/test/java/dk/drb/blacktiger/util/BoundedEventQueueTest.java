@@ -0,0 +1,91 @@
+package dk.drb.blacktiger.util;
+
+import dk.drb.blacktiger.util.BoundedEventQueue.OverflowPolicy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class BoundedEventQueueTest {
+    
+    @Test
+    public void ifEventsAreReturnedInOrder() {
+        BoundedEventQueue<String> queue = new BoundedEventQueue<>(10, OverflowPolicy.DROP_NEWEST);
+        queue.offer("a");
+        queue.offer("b");
+        
+        assertEquals(2, queue.size());
+        assertEquals("a", queue.poll());
+        assertEquals("b", queue.poll());
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+    }
+    
+    @Test
+    public void ifNewestIsDroppedWhenFull() {
+        BoundedEventQueue<String> queue = new BoundedEventQueue<>(2, OverflowPolicy.DROP_NEWEST);
+        assertTrue(queue.offer("a"));
+        assertTrue(queue.offer("b"));
+        assertFalse(queue.offer("c"));
+        
+        assertEquals(1, queue.getDropped());
+        assertEquals("a", queue.poll());
+        assertEquals("b", queue.poll());
+    }
+    
+    @Test
+    public void ifOldestIsDroppedWhenFull() {
+        BoundedEventQueue<String> queue = new BoundedEventQueue<>(2, OverflowPolicy.DROP_OLDEST);
+        queue.offer("a");
+        queue.offer("b");
+        assertTrue(queue.offer("c"));
+        
+        assertEquals(1, queue.getDropped());
+        assertEquals(2, queue.size());
+        assertEquals("b", queue.poll());
+        assertEquals("c", queue.poll());
+    }
+    
+    @Test(timeout = 5000)
+    public void ifProducerIsBlockedWhenFull() throws Exception {
+        final BoundedEventQueue<String> queue = new BoundedEventQueue<>(1, OverflowPolicy.BLOCK);
+        final CountDownLatch offered = new CountDownLatch(1);
+        queue.offer("a");
+        
+        new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                queue.offer("b");
+                offered.countDown();
+            }
+        }).start();
+        
+        assertFalse(offered.await(100, TimeUnit.MILLISECONDS));
+        assertEquals("a", queue.poll());
+        assertTrue(offered.await(1, TimeUnit.SECONDS));
+        assertEquals("b", queue.poll());
+        assertEquals(0, queue.getDropped());
+    }
+    
+    @Test(timeout = 5000)
+    public void ifConsumerIsWokenOnArrival() throws Exception {
+        final BoundedEventQueue<String> queue = new BoundedEventQueue<>(10, OverflowPolicy.DROP_NEWEST);
+        final CountDownLatch received = new CountDownLatch(1);
+        
+        new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                while (queue.poll() == null) {
+                    queue.await(1, TimeUnit.MINUTES);
+                }
+                received.countDown();
+            }
+        }).start();
+        
+        Thread.sleep(50);
+        queue.offer("a");
+        assertTrue(received.await(1, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,127 @@
+package dk.drb.blacktiger.util;
+
+import dk.drb.blacktiger.model.ConferenceEndEvent;
+import dk.drb.blacktiger.model.ConferenceEvent;
+import dk.drb.blacktiger.model.ParticipantMuteEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class EventBatcherTest {
+
+    private final List<String> rooms = Collections.synchronizedList(new ArrayList<String>());
+    private final List<List<ConferenceEvent>> batches = Collections.synchronizedList(new ArrayList<List<ConferenceEvent>>());
+    private final List<String> threads = Collections.synchronizedList(new ArrayList<String>());
+    private final ShardedExecutor executor = new ShardedExecutor(2, "test-events");
+    private CountDownLatch latch;
+    private EventBatcher batcher;
+
+    private EventBatcher.Sink sink() {
+        return new EventBatcher.Sink() {
+
+            @Override
+            public void send(String roomNo, List<ConferenceEvent> events) {
+                rooms.add(roomNo);
+                batches.add(events);
+                threads.add(Thread.currentThread().getName());
+                latch.countDown();
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        batcher.shutdown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void ifEventsWithinWindowAreSentTogether() throws Exception {
+        latch = new CountDownLatch(2);
+        batcher = new EventBatcher(50, 100, executor);
+        batcher.setSink(sink());
+
+        ConferenceEvent first = new ParticipantMuteEvent("H45-0000", "SIP/1");
+        ConferenceEvent second = new ParticipantMuteEvent("H45-0000", "SIP/2");
+        ConferenceEvent other = new ConferenceEndEvent("H45-0001");
+        batcher.add(first);
+        batcher.add(other);
+        batcher.add(second);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(2, batches.size());
+        int index = rooms.indexOf("H45-0000");
+        assertEquals(2, batches.get(index).size());
+        assertSame(first, batches.get(index).get(0));
+        assertSame(second, batches.get(index).get(1));
+        assertEquals(Collections.singletonList(other), batches.get(1 - index));
+    }
+
+    @Test
+    public void ifFullBatchIsSentImmediately() throws Exception {
+        latch = new CountDownLatch(1);
+        batcher = new EventBatcher(TimeUnit.MINUTES.toMillis(1), 2, executor);
+        batcher.setSink(sink());
+
+        batcher.add(new ParticipantMuteEvent("H45-0000", "SIP/1"));
+        assertTrue(batches.isEmpty());
+        batcher.add(new ParticipantMuteEvent("H45-0000", "SIP/2"));
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(2, batches.get(0).size());
+    }
+
+    @Test
+    public void ifBatchesAreSentOnShardOfRoom() throws Exception {
+        latch = new CountDownLatch(2);
+        batcher = new EventBatcher(50, 2, executor);
+        batcher.setSink(sink());
+
+        batcher.add(new ParticipantMuteEvent("H45-0000", "SIP/1"));
+        batcher.add(new ParticipantMuteEvent("H45-0000", "SIP/2"));
+        batcher.add(new ParticipantMuteEvent("H45-0000", "SIP/3"));
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(2, batches.size());
+        assertEquals(threads.get(0), threads.get(1));
+        assertTrue(threads.get(0), threads.get(0).startsWith("test-events-"));
+        assertEquals(2, batches.get(0).size());
+        assertEquals(1, batches.get(1).size());
+    }
+
+    @Test
+    public void ifBatchOfRoomIsDroppedWhenSent() throws Exception {
+        latch = new CountDownLatch(1);
+        batcher = new EventBatcher(20, 100, executor);
+        batcher.setSink(sink());
+
+        batcher.add(new ConferenceEndEvent("H45-0000"));
+        assertEquals(1, batcher.getMetrics().get("rooms"));
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(0, batcher.getMetrics().get("rooms"));
+
+        latch = new CountDownLatch(1);
+        batcher.add(new ParticipantMuteEvent("H45-0000", "SIP/1"));
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(2, batches.size());
+    }
+
+    @Test
+    public void ifShutdownSendsPendingEvents() throws Exception {
+        latch = new CountDownLatch(1);
+        batcher = new EventBatcher(TimeUnit.MINUTES.toMillis(1), 100, executor);
+        batcher.setSink(sink());
+
+        batcher.add(new ParticipantMuteEvent("H45-0000", "SIP/1"));
+        batcher.shutdown();
+
+        assertEquals(1, batches.size());
+        assertEquals(1L, batcher.getMetrics().get("batches"));
+    }
+}
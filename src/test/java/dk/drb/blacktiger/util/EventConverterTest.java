@@ -0,0 +1,88 @@
+package dk.drb.blacktiger.util;
+
+import dk.drb.blacktiger.model.CallType;
+import dk.drb.blacktiger.model.ConferenceEndEvent;
+import dk.drb.blacktiger.model.ConferenceEvent;
+import dk.drb.blacktiger.model.ConferenceStartEvent;
+import dk.drb.blacktiger.model.Participant;
+import dk.drb.blacktiger.model.ParticipantJoinEvent;
+import dk.drb.blacktiger.model.ParticipantMuteEvent;
+import dk.drb.blacktiger.model.ParticipantsMuteEvent;
+import dk.drb.blacktiger.model.Room;
+import dk.drb.blacktiger.model.RoomState;
+import dk.drb.blacktiger.model.RoomStateDelta;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Date;
+import org.junit.Test;
+import org.springframework.messaging.Message;
+import static org.junit.Assert.*;
+
+public class EventConverterTest {
+
+    private final EventConverter streaming = new EventConverter();
+    private final EventConverter legacy = new EventConverter(false);
+
+    private Participant participant(long dateJoined) {
+        return new Participant("SIP/1-0001", "+4512345678", "Jens \"Æble\" Jensen", "+4512345678", false, false,
+                CallType.Sip, new Date(dateJoined));
+    }
+
+    private String convert(EventConverter converter, Object payload) {
+        Message<?> message = converter.toMessage(payload, null);
+        return new String((byte[]) message.getPayload(), Charset.forName("UTF-8"));
+    }
+
+    private void assertSameOutput(Object payload) {
+        // millisSinceJoin is dynamic - we need to control it
+        String expected = convert(legacy, payload).replaceAll("millisSinceJoin\":[0-9]+", "millisSinceJoin\":0");
+        String actual = convert(streaming, payload).replaceAll("millisSinceJoin\":[0-9]+", "millisSinceJoin\":0");
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void ifStreamingOutputEqualsMapperOutput() {
+        long now = System.currentTimeMillis();
+        for (long dateJoined : new long[]{now, now - 86400000L * 400 + 999, 951782399000L}) {
+            assertSameOutput(new ParticipantJoinEvent("H45-0000", participant(dateJoined)));
+        }
+        Participant participant = participant(now);
+        participant.setDateJoined(null);
+        participant.setType(null);
+        assertSameOutput(new ParticipantJoinEvent("H45-0000", participant));
+        assertSameOutput(new ParticipantMuteEvent("H45-0000", "SIP/1"));
+        assertSameOutput(new ParticipantsMuteEvent("H45-0000", Arrays.asList("SIP/1", "SIP/2")));
+        assertSameOutput(new ConferenceEndEvent("H45-0000"));
+
+        Room room = new Room("H45-0000", "Testsal");
+        assertSameOutput(new ConferenceStartEvent(room));
+
+        ConferenceEvent event = new ParticipantMuteEvent("H45-0000", "SIP/1");
+        assertSameOutput(Arrays.asList(event, new ConferenceEndEvent("H45-0000")));
+        assertSameOutput(new RoomStateDelta(42, event));
+        assertSameOutput(RoomState.replay("H45-0000", 1000, 42, Arrays.asList(new RoomStateDelta(42, event))));
+        assertSameOutput(RoomState.snapshot("H45-0000", 1000, 42, Arrays.asList(new Participant())));
+    }
+
+    @Test
+    public void ifDatesAreEncodedLikeIso8601DateFormat() throws Exception {
+        com.fasterxml.jackson.databind.util.ISO8601DateFormat df = new com.fasterxml.jackson.databind.util.ISO8601DateFormat();
+        for (long time : new long[]{0, 999, 86399999L, 951782399000L, 951868800000L, 4102444799000L, System.currentTimeMillis()}) {
+            Participant participant = new Participant();
+            participant.setDateJoined(new Date(time));
+            String json = convert(streaming, new ParticipantJoinEvent("H45-0000", participant));
+            assertTrue(json, json.contains("\"dateJoined\":\"" + df.format(new Date(time)) + "\""));
+        }
+    }
+
+    @Test
+    public void ifEventIsEncodedOnceForSeveralDestinations() throws Exception {
+        EventEncoder encoder = new EventEncoder(legacy.getObjectMapper().getFactory());
+        ConferenceEvent event = new ParticipantMuteEvent("H45-0000", "SIP/1");
+
+        byte[] bytes = encoder.encode(event);
+        assertSame(bytes, encoder.encode(event));
+        encoder.encode(new RoomStateDelta(1, event));
+        assertSame(bytes, encoder.encode(event));
+    }
+}
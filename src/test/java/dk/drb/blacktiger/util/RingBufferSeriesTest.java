@@ -0,0 +1,59 @@
+package dk.drb.blacktiger.util;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class RingBufferSeriesTest {
+
+    @Test
+    public void ifSamplesInSameSlotKeepMaximum() {
+        RingBufferSeries series = new RingBufferSeries(2, 1000, 10);
+        series.record(5000, new int[]{1, 7});
+        series.record(5500, new int[]{3, 2});
+
+        RingBufferSeries.Range range = series.read(5000, 6000, 1000);
+        assertEquals(5000, range.getStart());
+        assertEquals(1, range.getValues()[0].length);
+        assertEquals(Integer.valueOf(3), range.getValues()[0][0]);
+        assertEquals(Integer.valueOf(7), range.getValues()[1][0]);
+    }
+
+    @Test
+    public void ifMissingSlotsAreNull() {
+        RingBufferSeries series = new RingBufferSeries(1, 1000, 10);
+        series.record(5000, new int[]{1});
+        series.record(7000, new int[]{2});
+
+        Integer[] values = series.read(5000, 8000, 1000).getValues()[0];
+        assertArrayEquals(new Integer[]{1, null, 2}, values);
+    }
+
+    @Test
+    public void ifOldSlotsAreOverwritten() {
+        RingBufferSeries series = new RingBufferSeries(1, 1000, 3);
+        for (int i = 0; i < 5; i++) {
+            series.record(i * 1000, new int[]{i});
+        }
+
+        Integer[] values = series.read(0, 5000, 1000).getValues()[0];
+        assertArrayEquals(new Integer[]{null, null, 2, 3, 4}, values);
+    }
+
+    @Test
+    public void ifReadIsDownsampled() {
+        RingBufferSeries series = new RingBufferSeries(1, 1000, 10);
+        for (int i = 0; i < 6; i++) {
+            series.record(i * 1000, new int[]{i % 3});
+        }
+
+        RingBufferSeries.Range range = series.read(0, 6000, 2500);
+        assertEquals(3000, range.getStep());
+        assertArrayEquals(new Integer[]{2, 2}, range.getValues()[0]);
+    }
+
+    @Test
+    public void ifEmptyRangeHasNoPoints() {
+        RingBufferSeries series = new RingBufferSeries(1, 1000, 10);
+        assertEquals(0, series.read(5000, 5000, 1000).getValues()[0].length);
+    }
+}
@@ -0,0 +1,98 @@
+package dk.drb.blacktiger.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ShardedExecutorTest {
+    
+    @Test(timeout = 5000)
+    public void ifTasksWithSameKeyAreExecutedInOrder() throws Exception {
+        ShardedExecutor executor = new ShardedExecutor(4, "test");
+        final List<Integer> result = Collections.synchronizedList(new ArrayList<Integer>());
+        
+        for(int i=0;i<1000;i++) {
+            final int value = i;
+            executor.execute("H45-0000", new Runnable() {
+
+                @Override
+                public void run() {
+                    result.add(value);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        
+        assertEquals(1000, result.size());
+        for(int i=0;i<1000;i++) {
+            assertEquals(i, (int) result.get(i));
+        }
+    }
+    
+    @Test(timeout = 5000)
+    public void ifBlockedKeyDoesNotBlockOtherKeys() throws Exception {
+        ShardedExecutor executor = new ShardedExecutor(2, "test");
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch executed = new CountDownLatch(1);
+        
+        // Find two keys which are handled by different shards.
+        String blockedKey = "H45-0000";
+        String otherKey = "H45-0001";
+        if ((blockedKey.hashCode() & Integer.MAX_VALUE) % 2 == (otherKey.hashCode() & Integer.MAX_VALUE) % 2) {
+            otherKey = "H45-0002";
+        }
+        
+        executor.execute(blockedKey, new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        executor.execute(otherKey, new Runnable() {
+
+            @Override
+            public void run() {
+                executed.countDown();
+            }
+        });
+        
+        assertTrue(executed.await(1, TimeUnit.SECONDS));
+        release.countDown();
+        executor.shutdown();
+    }
+    
+    @Test(timeout = 5000)
+    public void ifFailingTaskDoesNotStopShard() throws Exception {
+        ShardedExecutor executor = new ShardedExecutor(1, "test");
+        final CountDownLatch executed = new CountDownLatch(1);
+        
+        executor.execute("H45-0000", new Runnable() {
+
+            @Override
+            public void run() {
+                throw new IllegalStateException("Failure");
+            }
+        });
+        executor.execute("H45-0000", new Runnable() {
+
+            @Override
+            public void run() {
+                executed.countDown();
+            }
+        });
+        
+        assertTrue(executed.await(1, TimeUnit.SECONDS));
+        assertEquals(1L, executor.getMetrics().get("failed"));
+        executor.shutdown();
+    }
+}